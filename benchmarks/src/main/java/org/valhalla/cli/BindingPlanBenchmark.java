@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This benchmark measures the configuration of one target set per worker of a
+ * generated model from the same arguments. The process benchmark calls
+ * processArguements for every worker, the plan benchmark parses the arguments
+ * once and binds the parse result to every worker through a binding plan.
+ * The target sets are created by both benchmarks.
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BindingPlanBenchmark {
+
+	@Param({ "100", "1000" })
+	public int optionCount;
+
+	@Param({ "8" })
+	public int workers;
+
+	private final Map<String, String> environment = Collections.emptyMap();
+	private GeneratedModel model;
+	private Options options;
+	private String arguments[];
+
+	@Setup
+	public void setUp() throws OptionsException {
+		model = ModelGenerator.generate(optionCount, 2, 4);
+		options = new Options(model.getRootClasses());
+		arguments = model.arguments(optionCount / 10);
+	}
+
+	@Benchmark
+	public Object[] process() throws OptionsException {
+		Object objects[] = null;
+		for (int idx = 0; idx < workers; idx++) {
+			objects = model.newInstances();
+			options.processArguements(arguments, environment, objects);
+		}
+		return objects;
+	}
+
+	@Benchmark
+	public Object[] plan() throws OptionsException {
+		Object objects[] = model.newInstances();
+		BindingPlan plan = options.parse(arguments, environment, null).plan(objects);
+		for (int idx = 0; idx < workers; idx++) {
+			objects = model.newInstances();
+			plan.bind(objects);
+		}
+		return objects;
+	}
+
+}
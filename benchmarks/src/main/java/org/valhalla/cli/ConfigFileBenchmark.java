@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This benchmark measures the loading of a configuration file that sets every
+ * option of a generated model, compared to loading it with the Properties
+ * class, the processing of the loaded values and the reload of the unchanged
+ * file by a ConfigWatcher.
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigFileBenchmark {
+
+	@Param({ "1000", "10000" })
+	public int optionCount;
+
+	private GeneratedModel model;
+	private Options options;
+	private Path file;
+	private ConfigFile config;
+	private ConfigWatcher watcher;
+
+	@Setup
+	public void setUp() throws OptionsException, IOException {
+		model = ModelGenerator.generate(optionCount, 2, 4);
+		options = new Options(model.getRootClasses());
+		file = Files.createTempFile("benchmark", ".properties");
+		Files.write(file, model.configuration(optionCount).getBytes(StandardCharsets.UTF_8));
+		config = ConfigFile.load(options, file);
+		watcher = new ConfigWatcher(options, file, model.newInstances());
+		watcher.process(new String[0], Collections.<String, String> emptyMap());
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Benchmark
+	public ConfigFile load() throws IOException {
+		return ConfigFile.load(options, file);
+	}
+
+	@Benchmark
+	public Properties properties() throws IOException {
+		Properties properties = new Properties();
+		InputStream in = Files.newInputStream(file);
+		try {
+			properties.load(in);
+		} finally {
+			in.close();
+		}
+		return properties;
+	}
+
+	@Benchmark
+	public String[] process() throws OptionsException {
+		return options.processArguements(new String[0], Collections.<String, String> emptyMap(), config,
+				model.newInstances());
+	}
+
+	@Benchmark
+	public boolean reload() throws IOException, OptionsException {
+		return watcher.reload();
+	}
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.valhalla.cli.Options.ConvertCommand;
+
+/**
+ * This benchmark measures each of the converters registered with the Options
+ * class as well as the ClassConvertCommand used for types with a String
+ * constructor.
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConverterBenchmark {
+
+	@Param({ "String", "Integer", "Long", "Double", "Float", "Short", "Byte",
+			"AtomicLong", "AtomicInteger", "BigInteger", "BigDecimal",
+			"Boolean", "Class" })
+	public String type;
+
+	private ConvertCommand command;
+	private String value;
+
+	@Setup
+	public void setUp() throws ClassNotFoundException {
+		if ("String".equals(type)) {
+			command = Options.convert(String.class);
+			value = "value";
+		} else if ("Integer".equals(type)) {
+			command = Options.convert(Integer.class);
+			value = "12345";
+		} else if ("Long".equals(type)) {
+			command = Options.convert(Long.class);
+			value = "1234567890123";
+		} else if ("Double".equals(type)) {
+			command = Options.convert(Double.class);
+			value = "12345.6789";
+		} else if ("Float".equals(type)) {
+			command = Options.convert(Float.class);
+			value = "123.45";
+		} else if ("Short".equals(type)) {
+			command = Options.convert(Short.class);
+			value = "1234";
+		} else if ("Byte".equals(type)) {
+			command = Options.convert(Byte.class);
+			value = "123";
+		} else if ("AtomicLong".equals(type)) {
+			command = Options.convert(java.util.concurrent.atomic.AtomicLong.class);
+			value = "1234567890123";
+		} else if ("AtomicInteger".equals(type)) {
+			command = Options.convert(java.util.concurrent.atomic.AtomicInteger.class);
+			value = "12345";
+		} else if ("BigInteger".equals(type)) {
+			command = Options.convert(java.math.BigInteger.class);
+			value = "12345678901234567890";
+		} else if ("BigDecimal".equals(type)) {
+			command = Options.convert(java.math.BigDecimal.class);
+			value = "12345678901234567890.1234567890";
+		} else if ("Boolean".equals(type)) {
+			command = Options.convert(Boolean.class);
+			value = "true";
+		} else if ("Class".equals(type)) {
+			// Not part of the converters table, uses the ClassConvertCommand
+			command = Options.convert(ParameterValue.class);
+			value = "ParameterValue";
+		} else {
+			throw new IllegalArgumentException("Unknown type " + type);
+		}
+	}
+
+	@Benchmark
+	public Object convert() throws Exception {
+		return command.execute(value);
+	}
+
+}
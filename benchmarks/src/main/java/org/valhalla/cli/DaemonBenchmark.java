@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This benchmark measures the completion and validation requests answered by
+ * the OptionsDaemon for generated models, without the socket round trip.
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DaemonBenchmark {
+
+	@Param({ "1000", "10000" })
+	public int optionCount;
+
+	private OptionsDaemon daemon;
+	private String prefix[];
+	private String value[];
+	private String arguments[];
+
+	@Setup
+	public void setUp() throws OptionsException {
+		GeneratedModel model = ModelGenerator.generate(optionCount, 2, 4);
+		daemon = new OptionsDaemon(Paths.get("daemon.sock"), model.getRootClasses());
+		prefix = new String[] { "--" + GeneratedModel.longName(optionCount / 2) };
+		value = new String[] { "--" + GeneratedModel.longName(0), "" };
+		arguments = model.arguments(10);
+	}
+
+	@Benchmark
+	public List<String> completeName() {
+		return daemon.complete(prefix);
+	}
+
+	@Benchmark
+	public List<String> completeValue() {
+		return daemon.complete(value);
+	}
+
+	@Benchmark
+	public String validate() {
+		return daemon.validate(arguments);
+	}
+
+}
@@ -0,0 +1,70 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+/**
+ * This class contains the option class sets used by the different benchmarks.
+ * They reuse the test fixtures of the library, from a single option class with
+ * a few options to the Simple class that contains an option for every
+ * supported type.
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+final class Fixtures {
+
+	private Fixtures() {
+	}
+
+	/**
+	 * This method will return the option classes for the passed model size.
+	 * 
+	 * @param size
+	 *            One of small, medium or large
+	 * @return The option classes for the given size
+	 */
+	static Class<?>[] optionClasses(String size) {
+		if ("small".equals(size)) {
+			return new Class<?>[] { OptionImplTwo.class, MainClass.class };
+		} else if ("medium".equals(size)) {
+			return new Class<?>[] { OptionReferenceEmbeddedImpl.class };
+		} else if ("large".equals(size)) {
+			return new Class<?>[] { Simple.class };
+		}
+		throw new IllegalArgumentException("Unknown model size " + size);
+	}
+
+	/**
+	 * This method will return new instances of the passed option classes.
+	 * 
+	 * @param classes
+	 *            The option classes
+	 * @return An instance for each of the passed classes
+	 */
+	static Object[] newInstances(Class<?>[] classes) {
+		Object objects[] = new Object[classes.length];
+		try {
+			for (int idx = 0; idx < classes.length; idx++) {
+				objects[idx] = classes[idx].getConstructor().newInstance();
+			}
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to create option instances", e);
+		}
+		return objects;
+	}
+
+}
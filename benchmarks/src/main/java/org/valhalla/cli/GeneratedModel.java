@@ -0,0 +1,170 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class contains the option classes created by the
+ * {@link ModelGenerator} and is able to create instances and command line
+ * arguments for them.
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+public final class GeneratedModel {
+
+	static final int INT_OPTION = 0;
+	static final int STRING_OPTION = 1;
+	static final int FLAG_OPTION = 2;
+
+	private final Class<?> rootClasses[];
+	private final int optionCount;
+	private final int classCount;
+
+	GeneratedModel(Class<?> rootClasses[], int optionCount, int classCount) {
+		this.rootClasses = rootClasses;
+		this.optionCount = optionCount;
+		this.classCount = classCount;
+	}
+
+	/**
+	 * The kind of the option with the passed index
+	 */
+	static int kind(int option) {
+		return option % 3;
+	}
+
+	/**
+	 * The long name of the option with the passed index
+	 */
+	static String longName(int option) {
+		return "opt-" + option;
+	}
+
+	/**
+	 * @return The top-level classes that are passed to the Options constructor
+	 */
+	public Class<?>[] getRootClasses() {
+		return rootClasses.clone();
+	}
+
+	/**
+	 * @return The total number of options
+	 */
+	public int getOptionCount() {
+		return optionCount;
+	}
+
+	/**
+	 * @return The total number of generated classes
+	 */
+	public int getClassCount() {
+		return classCount;
+	}
+
+	/**
+	 * This method will create a new instance of each top-level class, the
+	 * referenced classes are created by the top-level instances.
+	 * 
+	 * @return The objects passed to processArguements
+	 */
+	public Object[] newInstances() {
+		Object objects[] = new Object[rootClasses.length];
+		try {
+			for (int idx = 0; idx < rootClasses.length; idx++) {
+				objects[idx] = rootClasses[idx].getConstructor().newInstance();
+			}
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to create generated instances", e);
+		}
+		return objects;
+	}
+
+	/**
+	 * This method will generate command line arguments that set the passed
+	 * number of options. The options are picked at an even interval over the
+	 * whole model and use the --name value, --name=value and --name forms.
+	 * 
+	 * @param count
+	 *            The number of options to set
+	 * @return The command line arguments
+	 */
+	public String[] arguments(int count) {
+		return arguments(optionCount, count);
+	}
+
+	/**
+	 * This method will generate command line arguments for a model with the
+	 * passed number of options.
+	 * 
+	 * @see #arguments(int)
+	 */
+	static String[] arguments(int optionCount, int count) {
+		count = Math.min(count, optionCount);
+		List<String> args = new ArrayList<String>();
+		for (int idx = 0; idx < count; idx++) {
+			int option = (int) ((long) idx * optionCount / count);
+			switch (kind(option)) {
+			case INT_OPTION:
+				args.add("--" + longName(option));
+				args.add(String.valueOf(idx));
+				break;
+			case STRING_OPTION:
+				args.add("--" + longName(option) + "=value" + idx);
+				break;
+			default:
+				args.add("--" + longName(option));
+				break;
+			}
+		}
+		return args.toArray(new String[args.size()]);
+	}
+
+	/**
+	 * This method will generate the content of a configuration file in the
+	 * properties format that sets the passed number of options, they are
+	 * picked the same way as the command line arguments.
+	 * 
+	 * @param count
+	 *            The number of options to set
+	 * @return The properties content
+	 */
+	public String configuration(int count) {
+		count = Math.min(count, optionCount);
+		StringBuilder config = new StringBuilder();
+		for (int idx = 0; idx < count; idx++) {
+			int option = (int) ((long) idx * optionCount / count);
+			config.append(longName(option)).append('=');
+			switch (kind(option)) {
+			case INT_OPTION:
+				config.append(idx);
+				break;
+			case STRING_OPTION:
+				config.append("value").append(idx);
+				break;
+			default:
+				config.append("true");
+				break;
+			}
+			config.append('\n');
+		}
+		return config.toString();
+	}
+
+}
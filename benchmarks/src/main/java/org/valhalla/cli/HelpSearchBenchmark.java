@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * This benchmark measures the help search of generated models, both the
+ * search itself and the rendering of the matching options.
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HelpSearchBenchmark {
+
+	@Param({ "1000", "10000" })
+	public int optionCount;
+
+	@Param({ "opt-42", "string" })
+	public String query;
+
+	private Options options;
+
+	@Setup
+	public void setUp() throws OptionsException {
+		options = new Options(ModelGenerator.generate(optionCount, 2, 4).getRootClasses());
+		// Create the index before measuring
+		options.search(query);
+	}
+
+	@Benchmark
+	public List<Option> search() {
+		return options.search(query);
+	}
+
+	@Benchmark
+	public StringBuilder usage() throws IOException {
+		StringBuilder str = new StringBuilder();
+		options.usage(MainClass.class, "[options]", query, str);
+		return str;
+	}
+
+}
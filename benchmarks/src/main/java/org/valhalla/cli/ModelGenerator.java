@@ -0,0 +1,348 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * This class generates option classes at runtime to create option models of
+ * an arbitrary size. The generated source is compiled in memory using the
+ * system Java compiler and loaded by a dedicated class loader. </p>
+ * 
+ * Each generated model is a tree of option classes. Every class contains
+ * public fields annotated with OptionReference that reference its children,
+ * the depth and fan out of the tree are configurable. The options are spread
+ * evenly over the classes of the tree and cycle through an int option with a
+ * default value, a String option and a no-parameter option. </p>
+ * 
+ * When a single tree would put more than {@link #MAX_OPTIONS_PER_CLASS}
+ * options into a class, additional trees are generated to stay within the
+ * class file constant pool limits.
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+public final class ModelGenerator {
+
+	/**
+	 * The maximum number of options generated within a single class
+	 */
+	public static final int MAX_OPTIONS_PER_CLASS = 2000;
+
+	private static final String PACKAGE = "org.valhalla.cli.generated";
+
+	private ModelGenerator() {
+	}
+
+	/**
+	 * This method will generate, compile and load an option model.
+	 * 
+	 * @param optionCount
+	 *            The total number of options of the model
+	 * @param depth
+	 *            The depth of the OptionReference tree, 0 is a single class
+	 * @param fanOut
+	 *            The number of OptionReference fields of each non-leaf class
+	 * @return The generated model
+	 */
+	public static GeneratedModel generate(int optionCount, int depth, int fanOut) {
+		Map<String, String> sources = new HashMap<String, String>();
+		List<String> roots = generateSources(sources, optionCount, depth, fanOut);
+		ClassLoader loader = compile(sources);
+		Class<?> rootClasses[] = new Class<?>[roots.size()];
+		try {
+			for (int idx = 0; idx < rootClasses.length; idx++) {
+				rootClasses[idx] = loader.loadClass(roots.get(idx));
+			}
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException("Unable to load generated class", e);
+		}
+		return new GeneratedModel(rootClasses, optionCount, sources.size());
+	}
+
+	/**
+	 * This method will generate an option model and compile it into the
+	 * passed directory instead of loading it. This is used when the model has
+	 * to be loaded by another JVM.
+	 * 
+	 * @param directory
+	 *            The directory the class files are written to
+	 * @param optionCount
+	 *            The total number of options of the model
+	 * @param depth
+	 *            The depth of the OptionReference tree, 0 is a single class
+	 * @param fanOut
+	 *            The number of OptionReference fields of each non-leaf class
+	 * @return The names of the top-level classes of the model
+	 */
+	public static List<String> write(File directory, int optionCount, int depth, int fanOut) {
+		Map<String, String> sources = new HashMap<String, String>();
+		List<String> roots = generateSources(sources, optionCount, depth, fanOut);
+		write(directory, sources);
+		return roots;
+	}
+
+	/**
+	 * This method will generate the options of a model as the getters of
+	 * option interfaces and compile them into the passed directory. The
+	 * options have the same names and kinds as the options of the generated
+	 * classes, each interface declares at most
+	 * {@link #MAX_OPTIONS_PER_CLASS} options.
+	 * 
+	 * @param directory
+	 *            The directory the class files are written to
+	 * @param optionCount
+	 *            The total number of options of the model
+	 * @return The names of the generated interfaces
+	 */
+	public static List<String> writeInterfaces(File directory, int optionCount) {
+		if (optionCount < 1) {
+			throw new IllegalArgumentException("Invalid model optionCount=" + optionCount);
+		}
+		Map<String, String> sources = new HashMap<String, String>();
+		List<String> names = new ArrayList<String>();
+		for (int first = 0; first < optionCount; first += MAX_OPTIONS_PER_CLASS) {
+			String name = "ModelOptions" + names.size();
+			StringBuilder src = new StringBuilder();
+			src.append("package ").append(PACKAGE).append(";\n\n");
+			src.append("import org.valhalla.cli.annotations.Option;\n\n");
+			src.append("public interface ").append(name).append(" {\n");
+			for (int option = first; option < Math.min(optionCount, first + MAX_OPTIONS_PER_CLASS); option++) {
+				switch (GeneratedModel.kind(option)) {
+				case GeneratedModel.INT_OPTION:
+					src.append("  @Option(longName = \"").append(GeneratedModel.longName(option))
+							.append("\", defaultValue = \"").append(option)
+							.append("\", description = \"Generated int option ").append(option).append("\")\n");
+					src.append("  int value").append(option).append("();\n");
+					break;
+				case GeneratedModel.STRING_OPTION:
+					src.append("  @Option(longName = \"").append(GeneratedModel.longName(option))
+							.append("\", description = \"Generated String option ").append(option).append("\")\n");
+					src.append("  String value").append(option).append("();\n");
+					break;
+				default:
+					src.append("  @Option(longName = \"").append(GeneratedModel.longName(option))
+							.append("\", description = \"Generated flag option ").append(option).append("\")\n");
+					src.append("  boolean value").append(option).append("();\n");
+					break;
+				}
+			}
+			src.append("}\n");
+			sources.put(PACKAGE + "." + name, src.toString());
+			names.add(PACKAGE + "." + name);
+		}
+		write(directory, sources);
+		return names;
+	}
+
+	/**
+	 * This method will compile the passed sources into the passed directory.
+	 */
+	private static void write(File directory, Map<String, String> sources) {
+		JavaCompiler compiler = systemCompiler();
+		StandardJavaFileManager manager = compiler.getStandardFileManager(null, null, null);
+		try {
+			compile(compiler, manager, sources, "-d", directory.getAbsolutePath());
+			manager.close();
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to write the generated option classes", e);
+		}
+	}
+
+	/**
+	 * This method will generate the sources of all of the classes of a model.
+	 * 
+	 * @return The names of the top-level classes
+	 */
+	private static List<String> generateSources(Map<String, String> sources, int optionCount, int depth,
+			int fanOut) {
+		if (optionCount < 1 || depth < 0 || fanOut < 1) {
+			throw new IllegalArgumentException("Invalid model optionCount=" + optionCount
+					+ ", depth=" + depth + ", fanOut=" + fanOut);
+		}
+		int treeSize = 0;
+		for (int level = 0, width = 1; level <= depth; level++, width *= fanOut) {
+			treeSize += width;
+		}
+		int trees = (optionCount + (treeSize * MAX_OPTIONS_PER_CLASS) - 1) / (treeSize * MAX_OPTIONS_PER_CLASS);
+		int classCount = trees * treeSize;
+		List<String> roots = new ArrayList<String>();
+		int next[] = new int[] { 0, 0 }; // next class index, next option index
+		for (int tree = 0; tree < trees; tree++) {
+			roots.add(PACKAGE + "." + generateClass(sources, depth, fanOut, optionCount, classCount, next));
+		}
+		return roots;
+	}
+
+	/**
+	 * This method will generate the source of an option class and all of its
+	 * referenced child classes.
+	 * 
+	 * @return The simple name of the generated class
+	 */
+	private static String generateClass(Map<String, String> sources, int depth, int fanOut,
+			int optionCount, int classCount, int next[]) {
+		int classIndex = next[0]++;
+		String name = "Model" + classIndex;
+		StringBuilder src = new StringBuilder();
+		src.append("package ").append(PACKAGE).append(";\n\n");
+		src.append("import org.valhalla.cli.annotations.Option;\n");
+		src.append("import org.valhalla.cli.annotations.OptionReference;\n\n");
+		src.append("public class ").append(name).append(" {\n");
+		if (depth > 0) {
+			for (int child = 0; child < fanOut; child++) {
+				String childName = generateClass(sources, depth - 1, fanOut, optionCount, classCount, next);
+				src.append("  @OptionReference\n  public ").append(childName).append(' ')
+						.append("child").append(child).append(" = new ").append(childName).append("();\n");
+			}
+		}
+		// Spread the options evenly, the first classes receive the remainder
+		int count = optionCount / classCount + ((classIndex < optionCount % classCount) ? 1 : 0);
+		for (int idx = 0; idx < count; idx++) {
+			int option = next[1]++;
+			switch (GeneratedModel.kind(option)) {
+			case GeneratedModel.INT_OPTION:
+				src.append("  public int value").append(option).append(";\n");
+				src.append("  @Option(longName = \"").append(GeneratedModel.longName(option))
+						.append("\", defaultValue = \"").append(option)
+						.append("\", description = \"Generated int option ").append(option).append("\")\n");
+				src.append("  public void setValue").append(option).append("(int value) { this.value")
+						.append(option).append(" = value; }\n");
+				break;
+			case GeneratedModel.STRING_OPTION:
+				src.append("  public String value").append(option).append(";\n");
+				src.append("  @Option(longName = \"").append(GeneratedModel.longName(option))
+						.append("\", description = \"Generated String option ").append(option).append("\")\n");
+				src.append("  public void setValue").append(option).append("(String value) { this.value")
+						.append(option).append(" = value; }\n");
+				break;
+			default:
+				src.append("  public boolean value").append(option).append(";\n");
+				src.append("  @Option(longName = \"").append(GeneratedModel.longName(option))
+						.append("\", description = \"Generated flag option ").append(option).append("\")\n");
+				src.append("  public void enableValue").append(option).append("() { this.value")
+						.append(option).append(" = true; }\n");
+				break;
+			}
+		}
+		src.append("}\n");
+		sources.put(PACKAGE + "." + name, src.toString());
+		return name;
+	}
+
+	/**
+	 * This method will compile the passed sources in memory and return a
+	 * class loader that is able to load the compiled classes.
+	 */
+	private static ClassLoader compile(Map<String, String> sources) {
+		JavaCompiler compiler = systemCompiler();
+		final Map<String, ByteArrayOutputStream> classes = new HashMap<String, ByteArrayOutputStream>();
+		StandardJavaFileManager standard = compiler.getStandardFileManager(null, null, null);
+		JavaFileManager manager = new ForwardingJavaFileManager<StandardJavaFileManager>(standard) {
+			@Override
+			public JavaFileObject getJavaFileForOutput(Location location, final String className,
+					JavaFileObject.Kind kind, FileObject sibling) {
+				return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+					@Override
+					public OutputStream openOutputStream() {
+						ByteArrayOutputStream out = new ByteArrayOutputStream();
+						classes.put(className, out);
+						return out;
+					}
+				};
+			}
+		};
+		compile(compiler, manager, sources);
+		final Map<String, byte[]> bytecode = new HashMap<String, byte[]>();
+		for (Map.Entry<String, ByteArrayOutputStream> entry : classes.entrySet()) {
+			bytecode.put(entry.getKey(), entry.getValue().toByteArray());
+		}
+		return new ClassLoader(ModelGenerator.class.getClassLoader()) {
+			private final Map<String, byte[]> pending = Collections.synchronizedMap(bytecode);
+
+			@Override
+			protected Class<?> findClass(String name) throws ClassNotFoundException {
+				byte code[] = pending.remove(name);
+				if (code == null) {
+					throw new ClassNotFoundException(name);
+				}
+				return defineClass(name, code, 0, code.length);
+			}
+		};
+	}
+
+	private static JavaCompiler systemCompiler() {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			throw new IllegalStateException("A JDK is required to compile the generated option classes");
+		}
+		return compiler;
+	}
+
+	/**
+	 * This method will compile the passed sources using the passed file
+	 * manager.
+	 */
+	private static void compile(JavaCompiler compiler, JavaFileManager manager, Map<String, String> sources,
+			String... extraOptions) {
+		List<JavaFileObject> units = new ArrayList<JavaFileObject>();
+		for (final Map.Entry<String, String> source : sources.entrySet()) {
+			units.add(new SimpleJavaFileObject(URI.create("mem:///" + source.getKey().replace('.', '/')
+					+ JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+				@Override
+				public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+					return source.getValue();
+				}
+			});
+		}
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		List<String> compilerOptions = new ArrayList<String>();
+		compilerOptions.add("-classpath");
+		compilerOptions.add(System.getProperty("java.class.path"));
+		compilerOptions.add("-proc:none");
+		compilerOptions.addAll(Arrays.asList(extraOptions));
+		if (!compiler.getTask(null, manager, diagnostics, compilerOptions, null, units).call()) {
+			StringBuilder message = new StringBuilder("Unable to compile the generated option classes");
+			for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+				message.append(System.lineSeparator()).append(diagnostic);
+			}
+			throw new IllegalStateException(message.toString());
+		}
+	}
+
+}
@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * This benchmark measures reading the options of a generated option interface
+ * implementation, compared to reading the fields of a plain class and to a
+ * dynamic proxy of the same interface.
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OptionInterfaceBenchmark {
+
+	public interface Settings {
+
+		@Option(longName = "port", defaultValue = "8080")
+		int port();
+
+		@Option(longName = "timeout", defaultValue = "30")
+		long timeout();
+
+	}
+
+	public static final class PlainSettings {
+
+		private int port = 8080;
+		private long timeout = 30;
+
+		public int port() {
+			return port;
+		}
+
+		public long timeout() {
+			return timeout;
+		}
+
+	}
+
+	private Settings generated;
+	private Settings proxy;
+	private PlainSettings plain;
+
+	@Setup
+	public void setUp() throws OptionsException {
+		Options options = new Options(new Class<?>[] { Settings.class });
+		generated = options.newInstance(Settings.class);
+		options.processArguements(new String[0], new Object[] { generated });
+		proxy = (Settings) Proxy.newProxyInstance(Settings.class.getClassLoader(), new Class<?>[] { Settings.class },
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object args[]) {
+						return method.getName().equals("port") ? (Object) Integer.valueOf(8080) : (Object) Long
+								.valueOf(30);
+					}
+				});
+		plain = new PlainSettings();
+	}
+
+	@Benchmark
+	public long generated() {
+		return generated.port() + generated.timeout();
+	}
+
+	@Benchmark
+	public long plain() {
+		return plain.port() + plain.timeout();
+	}
+
+	@Benchmark
+	public long proxy() {
+		return proxy.port() + proxy.timeout();
+	}
+
+}
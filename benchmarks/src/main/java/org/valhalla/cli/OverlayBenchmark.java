@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This benchmark measures the parsing of a per request overlay of a few
+ * options of a generated model and the reads of an overlay value and of a
+ * base value while the overlay is bound.
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OverlayBenchmark {
+
+	@Param({ "1000", "10000" })
+	public int optionCount;
+
+	private OptionOverlays overlays;
+	private String arguments[];
+	private OptionOverlay overlay;
+	private int overridden;
+	private int base;
+	private final Runnable read = new Runnable() {
+		public void run() {
+			sum = overlays.getInt(overridden, 0) + overlays.getInt(base, 1);
+		}
+	};
+	private int sum;
+
+	@Setup
+	public void setUp() throws OptionsException {
+		GeneratedModel model = ModelGenerator.generate(optionCount, 2, 4);
+		overlays = new OptionOverlays(new Options(model.getRootClasses()));
+		arguments = model.arguments(3);
+		overlay = overlays.parse(arguments);
+		// The first generated option is an int option set by the arguments
+		overridden = overlays.id(GeneratedModel.longName(0));
+		base = overlays.id(GeneratedModel.longName(3));
+	}
+
+	@Benchmark
+	public OptionOverlay parse() throws OptionsException {
+		return overlays.parse(arguments);
+	}
+
+	@Benchmark
+	public int read() {
+		overlays.run(overlay, read);
+		return sum;
+	}
+
+}
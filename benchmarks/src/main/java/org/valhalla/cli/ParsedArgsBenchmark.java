@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This benchmark measures the parsing of the arguments of a generated model
+ * into a ParsedArgs, compared to applying them to option instances with
+ * processArguements.
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParsedArgsBenchmark {
+
+	@Param({ "100", "1000" })
+	public int optionCount;
+
+	@Param({ "10" })
+	public int argumentCount;
+
+	private Options options;
+	private ParsedArgsParser parser;
+	private String arguments[];
+	private Object objects[];
+
+	@Setup
+	public void setUp() throws OptionsException {
+		GeneratedModel model = ModelGenerator.generate(optionCount, 2, 4);
+		options = new Options(model.getRootClasses());
+		parser = new ParsedArgsParser(options);
+		arguments = model.arguments(argumentCount);
+		objects = model.newInstances();
+	}
+
+	@Benchmark
+	public ParsedArgs parsed() throws OptionsException {
+		return parser.parse(arguments);
+	}
+
+	@Benchmark
+	public String[] process() throws OptionsException {
+		return options.processArguements(arguments, objects);
+	}
+
+}
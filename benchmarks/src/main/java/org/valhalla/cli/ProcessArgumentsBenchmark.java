@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This benchmark measures the processArguements method for each of the
+ * supported command line syntaxes. </p>
+ * 
+ * <ul>
+ * <li>short - -I 23</li>
+ * <li>long - --iName 43</li>
+ * <li>grouped - -QTZ 11501234 true</li>
+ * <li>embedded - -C5 -A3, using an OptionReference</li>
+ * <li>property - foo=bar</li>
+ * <li>longValue - --iName=43</li>
+ * </ul>
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessArgumentsBenchmark {
+
+	@Param({ "short", "long", "grouped", "embedded", "property", "longValue" })
+	public String syntax;
+
+	private Options options;
+	private Object objects[];
+	private String args[];
+
+	@Setup
+	public void setUp() throws OptionsException {
+		Class<?> classes[] = new Class<?>[] { Simple.class };
+		if ("short".equals(syntax)) {
+			args = new String[] { "-I", "23" };
+		} else if ("long".equals(syntax)) {
+			args = new String[] { "--iName", "43" };
+		} else if ("grouped".equals(syntax)) {
+			args = new String[] { "-QTZ", "11501234", "true" };
+		} else if ("embedded".equals(syntax)) {
+			classes = new Class<?>[] { OptionReferenceEmbeddedImpl.class };
+			args = new String[] { "-C5", "-A3" };
+		} else if ("property".equals(syntax)) {
+			args = new String[] { "foo=bar" };
+		} else if ("longValue".equals(syntax)) {
+			args = new String[] { "--iName=43" };
+		} else {
+			throw new IllegalArgumentException("Unknown syntax " + syntax);
+		}
+		options = new Options(classes);
+		objects = Fixtures.newInstances(classes);
+	}
+
+	@Benchmark
+	public String[] process() throws OptionsException {
+		return options.processArguements(args, objects);
+	}
+
+}
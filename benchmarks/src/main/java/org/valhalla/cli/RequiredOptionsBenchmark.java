@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This benchmark measures the required option check, both when all required
+ * options were passed and when one of them is missing.
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequiredOptionsBenchmark {
+
+	private Options options;
+	private Object objects[];
+	private String satisfied[] = new String[] { "-A", "-B" };
+	private String missing[] = new String[] { "-A" };
+
+	@Setup
+	public void setUp() throws OptionsException {
+		Class<?> classes[] = new Class<?>[] { OptionImplOne.class, OptionImplThree.class };
+		options = new Options(classes);
+		objects = Fixtures.newInstances(classes);
+	}
+
+	@Benchmark
+	public String[] satisfied() throws OptionsException {
+		return options.processArguements(satisfied, objects);
+	}
+
+	@Benchmark
+	public OptionsException missing() {
+		try {
+			options.processArguements(missing, objects);
+		} catch (OptionsException e) {
+			return e;
+		}
+		throw new IllegalStateException("The missing required option was not detected");
+	}
+
+}
@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This benchmark measures the construction of the option model and the
+ * processing of the command line arguments against generated models of
+ * increasing size. The processed arguments always set the same number of
+ * options so that any growth of the process time is due to the model size.
+ * 
+ * @author Claudio Corsi
+ * 
+ * @see ModelGenerator
+ * @see ScalingReport
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScalingBenchmark {
+
+	@Param({ "10", "100", "1000", "10000" })
+	public int optionCount;
+
+	@Param({ "0", "3" })
+	public int depth;
+
+	@Param({ "4" })
+	public int fanOut;
+
+	@Param({ "16" })
+	public int argumentCount;
+
+	private GeneratedModel model;
+	private Class<?> classes[];
+	private Options options;
+	private Object objects[];
+	private String args[];
+
+	@Setup
+	public void setUp() throws OptionsException {
+		model = ModelGenerator.generate(optionCount, depth, fanOut);
+		classes = model.getRootClasses();
+		options = new Options(classes);
+		objects = model.newInstances();
+		args = model.arguments(argumentCount);
+	}
+
+	@Benchmark
+	public Options construct() throws OptionsException {
+		return new Options(classes);
+	}
+
+	@Benchmark
+	public String[] process() throws OptionsException {
+		return options.processArguements(args, objects);
+	}
+
+}
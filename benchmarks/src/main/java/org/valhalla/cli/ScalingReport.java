@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.ref.Reference;
+import java.util.Arrays;
+
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * This class generates a CSV report of the construction time, process time
+ * and retained heap of generated option models against their size. The
+ * report can be charted to find any non-linear behaviour of the library. </p>
+ * 
+ * usage: java -XX:+UseSerialGC -cp benchmarks.jar org.valhalla.cli.ScalingReport
+ * [--counts=10,100,1000,10000] [--depth=3] [--fanOut=4] [--repeat=20]
+ * [--output=file]
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+public class ScalingReport {
+
+	private static final int RETAINED_COPIES = 10;
+
+	private int counts[];
+	private int depth;
+	private int fanOut;
+	private int repeat;
+	private String output;
+
+	@Option(longName = "counts", defaultValue = "10,100,1000,10000", description = "Comma separated list of model option counts")
+	public void setCounts(String counts) {
+		String values[] = counts.split(",");
+		this.counts = new int[values.length];
+		for (int idx = 0; idx < values.length; idx++) {
+			this.counts[idx] = Integer.parseInt(values[idx].trim());
+		}
+	}
+
+	@Option(longName = "depth", defaultValue = "3", description = "The OptionReference depth of the generated models")
+	public void setDepth(int depth) {
+		this.depth = depth;
+	}
+
+	@Option(longName = "fanOut", defaultValue = "4", description = "The number of references of each generated class")
+	public void setFanOut(int fanOut) {
+		this.fanOut = fanOut;
+	}
+
+	@Option(longName = "repeat", defaultValue = "20", description = "The number of measured runs for each model size")
+	public void setRepeat(int repeat) {
+		this.repeat = repeat;
+	}
+
+	@Option(longName = "output", description = "The report file, the report is written to standard output by default")
+	public void setOutput(String output) {
+		this.output = output;
+	}
+
+	public static void main(String args[]) throws Exception {
+		ScalingReport report = new ScalingReport();
+		Options options = new Options(new Class<?>[] { ScalingReport.class });
+		options.processArguements(args, new Object[] { report });
+		Writer writer = (report.output != null) ? new FileWriter(report.output) : new PrintWriter(System.out);
+		try {
+			report.run(new PrintWriter(writer));
+		} finally {
+			writer.flush();
+			if (report.output != null) {
+				writer.close();
+			}
+		}
+	}
+
+	private void run(PrintWriter out) throws OptionsException, IOException {
+		out.println("optionCount,depth,fanOut,classCount,constructMicros,processMicros,retainedBytes");
+		for (int count : counts) {
+			GeneratedModel model = ModelGenerator.generate(count, depth, fanOut);
+			Class<?> classes[] = model.getRootClasses();
+			String args[] = model.arguments(16);
+			Object objects[] = model.newInstances();
+			long construct[] = new long[repeat];
+			long process[] = new long[repeat];
+			// The first runs warm up the code, only the median is reported
+			for (int idx = 0; idx < repeat; idx++) {
+				long start = System.nanoTime();
+				Options options = new Options(classes);
+				construct[idx] = System.nanoTime() - start;
+				start = System.nanoTime();
+				options.processArguements(args, objects);
+				process[idx] = System.nanoTime() - start;
+			}
+			// The first measurement includes the release of the memory used
+			// by the compiler when the model was generated.
+			retained(classes);
+			out.printf("%d,%d,%d,%d,%.1f,%.1f,%d%n", count, depth, fanOut, model.getClassCount(),
+					median(construct) / 1000.0, median(process) / 1000.0, retained(classes));
+			out.flush();
+		}
+	}
+
+	private static long median(long values[]) {
+		long sorted[] = values.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+
+	/**
+	 * This method will return the number of heap bytes retained by an Options
+	 * instance created for the passed classes. Several instances are retained
+	 * at once to reduce the noise of the heap usage reported after a gc, the
+	 * SerialGC will give the most stable results.
+	 */
+	private static long retained(Class<?> classes[]) throws OptionsException {
+		Options options[] = new Options[RETAINED_COPIES];
+		long before = usedAfterGC();
+		for (int idx = 0; idx < options.length; idx++) {
+			options[idx] = new Options(classes);
+		}
+		long after = usedAfterGC();
+		Reference.reachabilityFence(options);
+		return (after - before) / RETAINED_COPIES;
+	}
+
+	/**
+	 * This method will return the heap usage right after a full gc, using the
+	 * usage of the heap pools recorded by the collector itself.
+	 */
+	private static long usedAfterGC() {
+		for (int idx = 0; idx < 3; idx++) {
+			System.gc();
+		}
+		long used = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.getCollectionUsage() != null) {
+				used += pool.getCollectionUsage().getUsed();
+			}
+		}
+		return used;
+	}
+
+}
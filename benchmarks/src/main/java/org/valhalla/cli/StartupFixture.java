@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * This class is the command line application started by the
+ * {@link StartupHarness}. It will process the passed arguments using the
+ * requested mode and print the {@link #PROCESSED} marker as soon as the
+ * arguments were applied. </p>
+ * 
+ * usage: java org.valhalla.cli.StartupFixture mode class... -- arguments...
+ * 
+ * The following modes are supported:
+ * 
+ * <ul>
+ * <li>reflective - new Options(classes) followed by processArguements</li>
+ * <li>parse - new Options(classes) followed by parse and bind</li>
+ * <li>plan - new Options(classes) followed by parse, a binding plan compiled
+ * for the instances and its bind</li>
+ * <li>parsed - new Options(classes) followed by a ParsedArgsParser parse, no
+ * option method is called</li>
+ * <li>interface - the classes are option interfaces, their generated
+ * implementations are passed to processArguements</li>
+ * </ul>
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+public class StartupFixture {
+
+	/**
+	 * The line printed once the arguments were processed
+	 */
+	static final String PROCESSED = "org.valhalla.cli.StartupFixture processed";
+
+	/**
+	 * The supported modes
+	 */
+	static final String[] MODES = new String[] { "reflective", "parse", "plan", "parsed", "interface" };
+
+	/**
+	 * The mode whose classes are option interfaces
+	 */
+	static final String INTERFACE = "interface";
+
+	public static void main(String args[]) throws Exception {
+		String mode = args[0];
+		int separator = Arrays.asList(args).indexOf("--");
+		Class<?> classes[] = new Class<?>[separator - 1];
+		for (int idx = 1; idx < separator; idx++) {
+			classes[idx - 1] = Class.forName(args[idx]);
+		}
+		String arguments[] = Arrays.copyOfRange(args, separator + 1, args.length);
+		Options options = new Options(classes);
+		if ("reflective".equals(mode)) {
+			options.processArguements(arguments, Fixtures.newInstances(classes));
+		} else if ("parse".equals(mode)) {
+			options.parse(arguments, Collections.<String, String> emptyMap(), null).bind(
+					Fixtures.newInstances(classes));
+		} else if ("plan".equals(mode)) {
+			Object objects[] = Fixtures.newInstances(classes);
+			options.parse(arguments, Collections.<String, String> emptyMap(), null).plan(objects).bind(objects);
+		} else if ("parsed".equals(mode)) {
+			new ParsedArgsParser(options).parse(arguments);
+		} else if (INTERFACE.equals(mode)) {
+			Object objects[] = new Object[classes.length];
+			for (int idx = 0; idx < classes.length; idx++) {
+				objects[idx] = options.newInstance(classes[idx]);
+			}
+			options.processArguements(arguments, objects);
+		} else {
+			throw new IllegalArgumentException("Unknown mode " + mode);
+		}
+		System.out.println(PROCESSED);
+		System.out.flush();
+	}
+
+}
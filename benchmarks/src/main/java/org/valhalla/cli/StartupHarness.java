@@ -0,0 +1,218 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * This class measures the startup time of a command line application built on
+ * the Options class by repeatedly starting a new JVM that runs the
+ * {@link StartupFixture}. This includes the class loading, the logging
+ * initialization and the reflection costs that a micro benchmark does not
+ * capture. </p>
+ * 
+ * For each mode and model size the wall time from the start of the process
+ * until the end of the argument processing is measured, as well as the number
+ * of classes loaded at that point using an additional run with the class load
+ * logging enabled. </p>
+ * 
+ * usage: java -cp benchmarks.jar org.valhalla.cli.StartupHarness
+ * [--counts=10,100,1000,10000] [--modes=reflective,parse,plan,parsed,interface]
+ * [--runs=10] [--depth=2]
+ * [--fanOut=4] [--jvmArgs="-Xshare:auto"] [--output=file]
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+public class StartupHarness {
+
+	private int counts[];
+	private String modes[];
+	private int runs;
+	private int depth;
+	private int fanOut;
+	private String jvmArgs[] = new String[0];
+	private String output;
+
+	@Option(longName = "counts", defaultValue = "10,100,1000,10000", description = "Comma separated list of model option counts")
+	public void setCounts(String counts) {
+		String values[] = counts.split(",");
+		this.counts = new int[values.length];
+		for (int idx = 0; idx < values.length; idx++) {
+			this.counts[idx] = Integer.parseInt(values[idx].trim());
+		}
+	}
+
+	@Option(longName = "modes", defaultValue = "reflective", description = "Comma separated list of the measured StartupFixture modes")
+	public void setModes(String modes) {
+		this.modes = modes.split(",");
+		for (String mode : this.modes) {
+			if (!Arrays.asList(StartupFixture.MODES).contains(mode)) {
+				throw new IllegalArgumentException("Unknown mode " + mode + ", the supported modes are "
+						+ Arrays.toString(StartupFixture.MODES));
+			}
+		}
+	}
+
+	@Option(longName = "runs", defaultValue = "10", description = "The number of started JVMs for each mode and model size")
+	public void setRuns(int runs) {
+		this.runs = runs;
+	}
+
+	@Option(longName = "depth", defaultValue = "2", description = "The OptionReference depth of the generated models")
+	public void setDepth(int depth) {
+		this.depth = depth;
+	}
+
+	@Option(longName = "fanOut", defaultValue = "4", description = "The number of references of each generated class")
+	public void setFanOut(int fanOut) {
+		this.fanOut = fanOut;
+	}
+
+	@Option(longName = "jvmArgs", description = "Space separated list of arguments passed to the started JVMs")
+	public void setJvmArgs(String jvmArgs) {
+		this.jvmArgs = jvmArgs.trim().split("\\s+");
+	}
+
+	@Option(longName = "output", description = "The report file, the report is written to standard output by default")
+	public void setOutput(String output) {
+		this.output = output;
+	}
+
+	public static void main(String args[]) throws Exception {
+		StartupHarness harness = new StartupHarness();
+		Options options = new Options(new Class<?>[] { StartupHarness.class });
+		options.processArguements(args, new Object[] { harness });
+		Writer writer = (harness.output != null) ? new FileWriter(harness.output) : new PrintWriter(System.out);
+		try {
+			harness.run(new PrintWriter(writer));
+		} finally {
+			writer.flush();
+			if (harness.output != null) {
+				writer.close();
+			}
+		}
+	}
+
+	private void run(PrintWriter out) throws IOException, InterruptedException {
+		out.println("mode,optionCount,runs,medianMillis,minMillis,maxMillis,loadedClasses");
+		for (int count : counts) {
+			File directory = createDirectory(count);
+			List<String> classes = ModelGenerator.write(directory, count, depth, fanOut);
+			List<String> interfaces = Arrays.asList(modes).contains(StartupFixture.INTERFACE) ? ModelGenerator
+					.writeInterfaces(directory, count) : null;
+			String arguments[] = GeneratedModel.arguments(count, 16);
+			for (String mode : modes) {
+				List<String> roots = StartupFixture.INTERFACE.equals(mode) ? interfaces : classes;
+				long times[] = new long[runs];
+				for (int idx = 0; idx < runs; idx++) {
+					times[idx] = launch(command(directory, mode, roots, arguments, false), null);
+				}
+				Arrays.sort(times);
+				int loaded[] = new int[1];
+				launch(command(directory, mode, roots, arguments, true), loaded);
+				out.printf("%s,%d,%d,%.1f,%.1f,%.1f,%d%n", mode, count, runs, times[runs / 2] / 1e6,
+						times[0] / 1e6, times[runs - 1] / 1e6, loaded[0]);
+				out.flush();
+			}
+			delete(directory);
+		}
+	}
+
+	private List<String> command(File directory, String mode, List<String> roots, String arguments[],
+			boolean logClassLoading) {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		for (String jvmArg : jvmArgs) {
+			command.add(jvmArg);
+		}
+		if (logClassLoading) {
+			command.add("-Xlog:class+load=info:stdout");
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path") + File.pathSeparator + directory.getAbsolutePath());
+		command.add(StartupFixture.class.getName());
+		command.add(mode);
+		command.addAll(roots);
+		command.add("--");
+		command.addAll(Arrays.asList(arguments));
+		return command;
+	}
+
+	/**
+	 * This method will start the passed command and return the number of
+	 * nanoseconds until the fixture printed the processed marker. The number
+	 * of class load log lines printed before the marker are stored in the
+	 * passed loaded array when it is not null.
+	 */
+	private long launch(List<String> command, int loaded[]) throws IOException, InterruptedException {
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		long start = System.nanoTime();
+		Process process = builder.start();
+		long elapsed = -1;
+		BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.equals(StartupFixture.PROCESSED)) {
+					elapsed = System.nanoTime() - start;
+				} else if (loaded != null && elapsed < 0 && line.contains("[class,load]")) {
+					loaded[0]++;
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		int exitCode = process.waitFor();
+		if (elapsed < 0) {
+			throw new IllegalStateException("The fixture exited with " + exitCode + " before processing the arguments: "
+					+ command);
+		}
+		return elapsed;
+	}
+
+	private static File createDirectory(int count) throws IOException {
+		File directory = File.createTempFile("startup-" + count + "-", "");
+		if (!directory.delete() || !directory.mkdirs()) {
+			throw new IOException("Unable to create directory " + directory);
+		}
+		return directory;
+	}
+
+	private static void delete(File file) {
+		File children[] = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
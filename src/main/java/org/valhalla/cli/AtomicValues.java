@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class updates the atomic values held by option instances in place, it
+ * is used by the options declared with {@link
+ * org.valhalla.cli.annotations.Option#inPlace()}. The threads holding a
+ * reference to the atomic see the new value without the atomic being
+ * replaced. </p>
+ *
+ * @author Claudio Corsi
+ *
+ */
+final class AtomicValues {
+
+	private static final Logger logger = LoggerFactory.getLogger(AtomicValues.class);
+
+	private static final Class<?> TYPES[] = new Class<?>[] { AtomicInteger.class, AtomicLong.class,
+			AtomicBoolean.class, AtomicReference.class, LongAdder.class };
+
+	private AtomicValues() {
+	}
+
+	/**
+	 * @return true, if the passed type can be updated in place
+	 */
+	static boolean isAtomic(Class<?> type) {
+		for (Class<?> atomic : TYPES) {
+			if (atomic == type) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * This method will return the getter or the field holding the atomic that
+	 * is set by the passed option method. The getter of setFoo is getFoo and
+	 * the field is foo, it is looked up in the class and its super classes.
+	 *
+	 * @param clz
+	 *            The class that contains the option method
+	 * @param method
+	 *            The option method
+	 * @return The getter method or the field
+	 * @throws OptionsException
+	 *             If the option type can not be updated in place or no getter
+	 *             or field was found
+	 */
+	static AccessibleObject accessor(Class<?> clz, Method method) throws OptionsException {
+		Class<?> type = method.getParameterTypes()[0];
+		if (!isAtomic(type)) {
+			logger.error("The in place option {} of class {} does not expect an atomic value", method.getName(),
+					clz.getName());
+			throw new OptionsException("The in place option " + method.getName() + " of class " + clz.getName()
+					+ " does not expect an atomic value");
+		}
+		String name = method.getName();
+		if (name.startsWith("set") && name.length() > 3) {
+			name = name.substring(3);
+		}
+		try {
+			Method getter = clz.getMethod("get" + Character.toUpperCase(name.charAt(0)) + name.substring(1));
+			if (getter.getReturnType() == type) {
+				return getter;
+			}
+		} catch (NoSuchMethodException e) {
+			// Look for the field
+		}
+		String fieldName = Character.toLowerCase(name.charAt(0)) + name.substring(1);
+		for (Class<?> current = clz; current != null; current = current.getSuperclass()) {
+			try {
+				Field field = current.getDeclaredField(fieldName);
+				if (field.getType() == type) {
+					field.setAccessible(true);
+					return field;
+				}
+			} catch (NoSuchFieldException e) {
+				// Look at the super class
+			}
+		}
+		logger.error("No getter or field holds the value of the in place option {} of class {}", method.getName(),
+				clz.getName());
+		throw new OptionsException("No getter or field holds the value of the in place option "
+				+ method.getName() + " of class " + clz.getName());
+	}
+
+	/**
+	 * @return The atomic currently held by the passed object
+	 */
+	static Object current(AccessibleObject accessor, Object object) throws Exception {
+		if (accessor instanceof Method) {
+			return ((Method) accessor).invoke(object);
+		}
+		return ((Field) accessor).get(object);
+	}
+
+	/**
+	 * This method will store the value of the passed converted atomic into the
+	 * current atomic. A LongAdder is adjusted by the difference between the
+	 * values so that the readers do not observe an intermediate reset.
+	 *
+	 * @param current
+	 *            The atomic that is updated
+	 * @param value
+	 *            The converted atomic whose value is stored
+	 */
+	@SuppressWarnings("unchecked")
+	static void set(Object current, Object value) {
+		if (current instanceof AtomicInteger) {
+			((AtomicInteger) current).set(((AtomicInteger) value).get());
+		} else if (current instanceof AtomicLong) {
+			((AtomicLong) current).set(((AtomicLong) value).get());
+		} else if (current instanceof AtomicBoolean) {
+			((AtomicBoolean) current).set(((AtomicBoolean) value).get());
+		} else if (current instanceof AtomicReference) {
+			((AtomicReference<Object>) current).set(((AtomicReference<Object>) value).get());
+		} else {
+			LongAdder adder = (LongAdder) current;
+			adder.add(((LongAdder) value).sum() - adder.sum());
+		}
+	}
+
+}
@@ -0,0 +1,193 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.valhalla.cli.annotations.OptionReference;
+
+/**
+ * This class binds the values of a {@link ParseResult} to many target sets
+ * with the same shape, for instance one set of option instances per worker
+ * thread. The plan is compiled from a sample target set returned by
+ * {@link ParseResult#plan(Object[])}. It records the OptionReference members
+ * leading to every option instance and the values applied to each instance,
+ * the members are then read without looking them up again and the values are
+ * not converted again. </p>
+ *
+ * The immutable converted values, strings, numbers and enums, are passed to
+ * every target set. The mutable values, for instance the atomics, are
+ * converted again for every target set so that the sets do not share them.
+ * A plan can be used by many threads at the same time. </p>
+ *
+ * @author Claudio Corsi
+ *
+ */
+public final class BindingPlan {
+
+	private static final Logger logger = LoggerFactory.getLogger(BindingPlan.class);
+
+	/**
+	 * The number of instances passed to the bind method
+	 */
+	private final int roots;
+	/**
+	 * The index of the instance holding the reference of each instance, -1 for
+	 * the passed instances
+	 */
+	private final int parents[];
+	/**
+	 * The OptionReference field or method of each instance, null for the
+	 * passed instances
+	 */
+	private final Member references[];
+	private final Class<?> classes[];
+	private final ParseResult.Value values[][];
+
+	BindingPlan(ParseResult result, Object objects[]) throws OptionsException {
+		List<Object> instances = new ArrayList<Object>();
+		List<Integer> parents = new ArrayList<Integer>();
+		List<Member> references = new ArrayList<Member>();
+		for (Object object : objects) {
+			instances.add(object);
+			parents.add(-1);
+			references.add(null);
+		}
+		// The instances are visited in the order of Options.findOptionObjects
+		for (int idx = 0; idx < instances.size(); idx++) {
+			Class<?> clz = instances.get(idx).getClass();
+			for (Field field : clz.getFields()) {
+				if (field.getAnnotation(OptionReference.class) != null) {
+					Object value = reference(field, instances.get(idx));
+					if (value != null) {
+						instances.add(value);
+						parents.add(idx);
+						references.add(field);
+					}
+				}
+			}
+			for (Method method : clz.getMethods()) {
+				if (method.getAnnotation(OptionReference.class) != null) {
+					Object value = reference(method, instances.get(idx));
+					if (value != null && !instances.contains(value)) {
+						instances.add(value);
+						parents.add(idx);
+						references.add(method);
+					}
+				}
+			}
+		}
+		this.roots = objects.length;
+		this.parents = new int[instances.size()];
+		this.references = references.toArray(new Member[instances.size()]);
+		this.classes = new Class<?>[instances.size()];
+		this.values = new ParseResult.Value[instances.size()][];
+		Set<Class<?>> boundClasses = new HashSet<Class<?>>();
+		for (int idx = 0; idx < instances.size(); idx++) {
+			this.parents[idx] = parents.get(idx);
+			this.classes[idx] = instances.get(idx).getClass();
+			this.values[idx] = result.values(classes[idx], boundClasses.add(classes[idx]));
+		}
+		result.checkInstances(boundClasses);
+	}
+
+	/**
+	 * @return The number of option instances of a target set
+	 */
+	public int size() {
+		return classes.length;
+	}
+
+	/**
+	 * This method will apply the values to the passed instances and the
+	 * instances referenced by them. Every instance is resolved and every value
+	 * is checked against its instance before the first option method is
+	 * called.
+	 *
+	 * @param objects
+	 *            The instances of a target set, their classes must match the
+	 *            sample instances of the plan
+	 * @throws OptionsException
+	 *             If a reference could not be read, a value can not be applied
+	 *             to its instance or an option method raised an exception
+	 * @throws IllegalArgumentException
+	 *             If the target set does not have the shape of the sample
+	 *             instances
+	 */
+	public void bind(Object objects[]) throws OptionsException {
+		if (objects.length != roots) {
+			throw new IllegalArgumentException("Expected " + roots + " instances but " + objects.length
+					+ " were passed");
+		}
+		Object instances[] = new Object[classes.length];
+		for (int idx = 0; idx < instances.length; idx++) {
+			Object instance = (parents[idx] < 0) ? objects[idx] : reference(references[idx],
+					instances[parents[idx]]);
+			if (instance == null || instance.getClass() != classes[idx]) {
+				throw new IllegalArgumentException("Expected an instance of " + classes[idx].getName() + " but got "
+						+ instance);
+			}
+			instances[idx] = instance;
+		}
+		for (int idx = 0; idx < instances.length; idx++) {
+			for (ParseResult.Value value : values[idx]) {
+				value.check(instances[idx]);
+			}
+		}
+		for (int idx = 0; idx < instances.length; idx++) {
+			for (ParseResult.Value value : values[idx]) {
+				value.apply(instances[idx]);
+			}
+		}
+	}
+
+	/**
+	 * @return The value of the passed OptionReference field or method
+	 */
+	private static Object reference(Member member, Object object) throws OptionsException {
+		try {
+			if (member instanceof Field) {
+				return ((Field) member).get(object);
+			}
+			return ((Method) member).invoke(object);
+		} catch (IllegalAccessException e) {
+			throw referenceException(member, e);
+		} catch (IllegalArgumentException e) {
+			throw referenceException(member, e);
+		} catch (InvocationTargetException e) {
+			throw referenceException(member, e);
+		}
+	}
+
+	private static OptionsException referenceException(Member member, Exception e) {
+		logger.error("Unable to retrieve value for {}: {} for class: {}", new Object[] {
+				(member instanceof Field) ? "field" : "method", member.getName(),
+				member.getDeclaringClass().getName(), e });
+		return new OptionsException("Unable to retrieve value for " + ((member instanceof Field) ? "field" : "method")
+				+ ": " + member.getName() + " for class: " + member.getDeclaringClass().getName(), e);
+	}
+
+}
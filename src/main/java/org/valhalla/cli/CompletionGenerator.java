@@ -0,0 +1,442 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * This class generates self-contained shell completion scripts for the
+ * options of an Options instance. The generated scripts complete the short,
+ * long and property options without starting a JVM. </p>
+ * 
+ * The value of an option is completed with the constants of an enum typed
+ * option and with the file names of a File typed option. Embedded options
+ * are completed as their option prefix, -O, followed by the value. </p>
+ * 
+ * The generator can be used through its API or as a main class. </p>
+ * 
+ * usage: java org.valhalla.cli.CompletionGenerator --shell=bash|zsh|fish
+ * --command=name [--output=file] class...
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+public class CompletionGenerator {
+
+	/**
+	 * The shells that completion scripts can be generated for
+	 */
+	public static enum Shell {
+		bash, zsh, fish
+	}
+
+	private final OptionProcessor processors[];
+	private final String descriptions[];
+	private final String command;
+	private final String function;
+	private final String lineSep = "\n";
+
+	/**
+	 * @param options
+	 *            The options that will be completed
+	 * @param command
+	 *            The name of the command the options are passed to
+	 */
+	public CompletionGenerator(Options options, String command) {
+		this.processors = options.usageRenderer().processors();
+		this.descriptions = options.usageRenderer().descriptions(Locale.getDefault());
+		this.command = command;
+		this.function = "_" + command.replaceAll("[^A-Za-z0-9_]", "_") + "_complete";
+	}
+
+	/**
+	 * This method will write the completion script for the passed shell.
+	 * 
+	 * @param shell
+	 *            The shell that will use the generated script
+	 * @param out
+	 *            The appendable the script is written to
+	 * @throws IOException
+	 *             If the script could not be written
+	 */
+	public void generate(Shell shell, Appendable out) throws IOException {
+		switch (shell) {
+		case bash:
+			bash(out);
+			break;
+		case zsh:
+			zsh(out);
+			break;
+		case fish:
+			fish(out);
+			break;
+		}
+	}
+
+	/**
+	 * This method will write a bash completion script, it is installed by
+	 * sourcing it or by copying it into the bash-completion directory.
+	 * 
+	 * @param out
+	 *            The appendable the script is written to
+	 * @throws IOException
+	 *             If the script could not be written
+	 */
+	public void bash(Appendable out) throws IOException {
+		StringBuilder words = new StringBuilder();
+		StringBuilder values = new StringBuilder();
+		for (OptionProcessor processor : processors) {
+			Option option = processor.getOption();
+			List<String> names = names(processor);
+			for (String name : names) {
+				if (option.embeddedValue()) {
+					String constants[] = constants(processor);
+					if (constants != null) {
+						for (String constant : constants) {
+							append(words, name + constant);
+						}
+						continue;
+					}
+				}
+				append(words, name);
+			}
+			if (!processor.hasValue() || option.embeddedValue()) {
+				continue;
+			}
+			// The names whose value is the next word or follows the = sign
+			StringBuilder pattern = new StringBuilder();
+			for (String name : names) {
+				if (pattern.length() > 0) {
+					pattern.append('|');
+				}
+				pattern.append(name.endsWith("=") ? name.substring(0, name.length() - 1) : name);
+			}
+			values.append("        ").append(pattern).append(')').append(lineSep);
+			String constants[] = constants(processor);
+			if (constants != null) {
+				values.append("            COMPREPLY=( $(compgen -W \"").append(join(constants))
+						.append("\" -- \"$cur\") )").append(lineSep);
+			} else if (isFile(processor)) {
+				values.append("            COMPREPLY=( $(compgen -f -- \"$cur\") )").append(lineSep);
+			} else {
+				values.append("            COMPREPLY=()").append(lineSep);
+			}
+			values.append("            return 0").append(lineSep);
+			values.append("            ;;").append(lineSep);
+		}
+		out.append("# bash completion for ").append(command).append(lineSep);
+		out.append("# generated by ").append(getClass().getName()).append(lineSep);
+		out.append(function).append("() {").append(lineSep);
+		out.append("    local cur prev").append(lineSep);
+		out.append("    cur=\"${COMP_WORDS[COMP_CWORD]}\"").append(lineSep);
+		out.append("    prev=\"${COMP_WORDS[COMP_CWORD-1]}\"").append(lineSep);
+		out.append("    # The = sign is a word of its own when it is part of COMP_WORDBREAKS").append(lineSep);
+		out.append("    if [[ \"$cur\" == \"=\" ]]; then").append(lineSep);
+		out.append("        cur=\"\"").append(lineSep);
+		out.append("    elif [[ \"$prev\" == \"=\" && $COMP_CWORD -gt 1 ]]; then").append(lineSep);
+		out.append("        prev=\"${COMP_WORDS[COMP_CWORD-2]}\"").append(lineSep);
+		out.append("    elif [[ \"$cur\" == *=* ]]; then").append(lineSep);
+		out.append("        prev=\"${cur%%=*}\"").append(lineSep);
+		out.append("        cur=\"${cur#*=}\"").append(lineSep);
+		out.append("    fi").append(lineSep);
+		out.append("    case \"$prev\" in").append(lineSep);
+		out.append(values);
+		out.append("    esac").append(lineSep);
+		out.append("    COMPREPLY=( $(compgen -W \"").append(words).append("\" -- \"$cur\") )").append(lineSep);
+		out.append("    # Do not add a space after an option that expects an attached value").append(lineSep);
+		out.append("    if [[ ${#COMPREPLY[@]} -eq 1 && \"${COMPREPLY[0]}\" == *= ]]; then").append(lineSep);
+		out.append("        compopt -o nospace 2>/dev/null").append(lineSep);
+		out.append("    fi").append(lineSep);
+		out.append("    return 0").append(lineSep);
+		out.append("}").append(lineSep);
+		out.append("complete -o default -F ").append(function).append(' ').append(command).append(lineSep);
+	}
+
+	/**
+	 * This method will write a zsh completion script, it is installed by
+	 * copying it as _command into a directory of the fpath.
+	 * 
+	 * @param out
+	 *            The appendable the script is written to
+	 * @throws IOException
+	 *             If the script could not be written
+	 */
+	public void zsh(Appendable out) throws IOException {
+		StringBuilder properties = new StringBuilder();
+		out.append("#compdef ").append(command).append(lineSep);
+		out.append("# zsh completion for ").append(command).append(lineSep);
+		out.append("# generated by ").append(getClass().getName()).append(lineSep).append(lineSep);
+		StringBuilder specs = new StringBuilder();
+		for (int idx = 0; idx < processors.length; idx++) {
+			OptionProcessor processor = processors[idx];
+			Option option = processor.getOption();
+			String description = "[" + zshEscape(descriptions[idx]) + "]";
+			String action = zshAction(processor);
+			if (option.propertyValue()) {
+				for (String name : names(processor)) {
+					append(properties, zshQuote(name));
+				}
+				continue;
+			}
+			String exclusion = "";
+			if (option.shortName() != ' ' && option.longName().length() > 0) {
+				exclusion = "(-" + option.shortName() + " --" + option.longName() + ")";
+			}
+			if (option.shortName() != ' ') {
+				String spec = "-" + option.shortName();
+				if (option.embeddedValue()) {
+					spec += "-" + description + ":value:" + action;
+				} else if (processor.hasValue()) {
+					spec += description + ":value:" + action;
+				} else {
+					spec += description;
+				}
+				specs.append("    '").append(exclusion).append(spec).append("' \\").append(lineSep);
+			}
+			if (option.longName().length() > 0) {
+				String spec = "--" + option.longName();
+				if (processor.hasValue()) {
+					spec += "=" + description + ":value:" + action;
+				} else {
+					spec += description;
+				}
+				specs.append("    '").append(exclusion).append(spec).append("' \\").append(lineSep);
+			}
+		}
+		out.append(function).append("_arguments() {").append(lineSep);
+		if (properties.length() > 0) {
+			out.append("    compadd -S '' -- ").append(properties).append(lineSep);
+		}
+		out.append("    _files").append(lineSep);
+		out.append("}").append(lineSep).append(lineSep);
+		out.append("_arguments -s -S \\").append(lineSep);
+		out.append(specs);
+		out.append("    '*:argument:").append(function).append("_arguments'").append(lineSep);
+	}
+
+	/**
+	 * This method will write a fish completion script, it is installed by
+	 * copying it as command.fish into the fish completions directory.
+	 * 
+	 * @param out
+	 *            The appendable the script is written to
+	 * @throws IOException
+	 *             If the script could not be written
+	 */
+	public void fish(Appendable out) throws IOException {
+		out.append("# fish completion for ").append(command).append(lineSep);
+		out.append("# generated by ").append(getClass().getName()).append(lineSep);
+		for (int idx = 0; idx < processors.length; idx++) {
+			OptionProcessor processor = processors[idx];
+			Option option = processor.getOption();
+			out.append("complete -c ").append(fishQuote(command));
+			if (option.propertyValue()) {
+				StringBuilder properties = new StringBuilder();
+				for (String name : names(processor)) {
+					append(properties, name);
+				}
+				out.append(" -f -a ").append(fishQuote(properties.toString()));
+			} else {
+				if (option.shortName() != ' ') {
+					out.append(" -s ").append(fishQuote(String.valueOf(option.shortName())));
+				}
+				if (option.longName().length() > 0) {
+					out.append(" -l ").append(fishQuote(option.longName()));
+				}
+				if (processor.hasValue()) {
+					String constants[] = constants(processor);
+					if (constants != null) {
+						out.append(" -x -a ").append(fishQuote(join(constants)));
+					} else if (isFile(processor)) {
+						out.append(" -r -F");
+					} else {
+						out.append(" -x");
+					}
+				}
+			}
+			if (descriptions[idx].length() > 0) {
+				out.append(" -d ").append(fishQuote(descriptions[idx]));
+			}
+			out.append(lineSep);
+		}
+	}
+
+	/**
+	 * This method will return the names of the passed option as they are
+	 * passed on the command line, property options include the = sign.
+	 */
+	static List<String> names(OptionProcessor processor) {
+		Option option = processor.getOption();
+		List<String> names = new ArrayList<String>(2);
+		if (option.propertyValue()) {
+			if (option.shortName() != ' ') {
+				names.add(option.shortName() + "=");
+			}
+			if (option.longName().length() > 0) {
+				names.add(option.longName() + "=");
+			}
+		} else {
+			if (option.shortName() != ' ') {
+				names.add("-" + option.shortName());
+			}
+			if (option.longName().length() > 0) {
+				names.add("--" + option.longName());
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * @return The names of the enum constants of the option value, null if the
+	 *         option value is not an enum
+	 */
+	static String[] constants(OptionProcessor processor) {
+		Class<?> type = processor.getValueType();
+		if (type == null || !type.isEnum()) {
+			return null;
+		}
+		Object constants[] = type.getEnumConstants();
+		String names[] = new String[constants.length];
+		for (int idx = 0; idx < constants.length; idx++) {
+			names[idx] = ((Enum<?>) constants[idx]).name();
+		}
+		return names;
+	}
+
+	private static boolean isFile(OptionProcessor processor) {
+		return processor.getValueType() == File.class;
+	}
+
+	private String zshAction(OptionProcessor processor) {
+		String constants[] = constants(processor);
+		if (constants != null) {
+			return "(" + join(constants) + ")";
+		} else if (isFile(processor)) {
+			return "_files";
+		}
+		return " ";
+	}
+
+	private static String join(String values[]) {
+		StringBuilder str = new StringBuilder();
+		for (String value : values) {
+			append(str, value);
+		}
+		return str.toString();
+	}
+
+	private static void append(StringBuilder str, String word) {
+		if (str.length() > 0) {
+			str.append(' ');
+		}
+		str.append(word);
+	}
+
+	/**
+	 * This method will escape the characters of a zsh option description that
+	 * are part of the _arguments syntax or that end the single quoted string.
+	 */
+	private static String zshEscape(String value) {
+		return value.replace("\\", "\\\\").replace("[", "\\[").replace("]", "\\]")
+				.replace(":", "\\:").replace("'", "'\\''");
+	}
+
+	private static String zshQuote(String value) {
+		return "'" + value.replace("'", "'\\''") + "'";
+	}
+
+	private static String fishQuote(String value) {
+		return "'" + value.replace("\\", "\\\\").replace("'", "\\'") + "'";
+	}
+
+	/**
+	 * The options of the main method.
+	 */
+	static class Settings {
+
+		private Shell shell;
+		private String command;
+		private String output;
+
+		@Option(longName = "shell", description = "The shell of the generated script, bash, zsh or fish", required = true)
+		public void setShell(Shell shell) {
+			this.shell = shell;
+		}
+
+		@Option(longName = "command", description = "The name of the completed command", required = true)
+		public void setCommand(String command) {
+			this.command = command;
+		}
+
+		@Option(longName = "output", description = "The script file, the script is written to standard output by default")
+		public void setOutput(String output) {
+			this.output = output;
+		}
+
+	}
+
+	/**
+	 * This method will generate the completion script for the option classes
+	 * passed on the command line.
+	 * 
+	 * @param args
+	 *            The generator options followed by the option class names
+	 * @throws Exception
+	 *             If the script could not be generated
+	 */
+	public static void main(String args[]) throws Exception {
+		Settings settings = new Settings();
+		Options options = new Options(new Class<?>[] { Settings.class });
+		String classNames[];
+		try {
+			classNames = options.processArguements(args, new Object[] { settings });
+			if (classNames.length == 0) {
+				throw new OptionsException("No option class was passed");
+			}
+		} catch (OptionsException e) {
+			System.err.println(e.getMessage());
+			System.err.print(options.usage(CompletionGenerator.class, "--shell=bash|zsh|fish --command=name class..."));
+			System.exit(1);
+			return;
+		}
+		Class<?> classes[] = new Class<?>[classNames.length];
+		for (int idx = 0; idx < classNames.length; idx++) {
+			classes[idx] = Class.forName(classNames[idx]);
+		}
+		CompletionGenerator generator = new CompletionGenerator(new Options(classes), settings.command);
+		Writer writer = (settings.output != null) ? new FileWriter(settings.output) : new OutputStreamWriter(System.out);
+		try {
+			generator.generate(settings.shell, writer);
+		} finally {
+			if (settings.output != null) {
+				writer.close();
+			} else {
+				writer.flush();
+			}
+		}
+	}
+
+}
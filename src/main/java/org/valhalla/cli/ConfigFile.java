@@ -0,0 +1,339 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class contains the option values of a configuration file in the
+ * properties format. The keys are the long names of the options and the names
+ * of the property options. </p>
+ *
+ * The file is memory mapped and parsed in a single pass, each key is looked
+ * up in the option tables of the Options instance as soon as it is read. Only
+ * the values of the known keys are decoded and kept, the unknown keys are
+ * skipped with a warning. The file is expected to be UTF-8 encoded, the
+ * comments, separators, escapes and line continuations of the properties
+ * format are supported. </p>
+ *
+ * The values are applied by
+ * {@link Options#processArguements(String[], Map, ConfigFile, Object[])} to
+ * the options that were not passed on the command line or defined by the
+ * environment. </p>
+ *
+ * @author Claudio Corsi
+ *
+ */
+public final class ConfigFile {
+
+	private static final Logger logger = LoggerFactory.getLogger(ConfigFile.class);
+
+	private final Options options;
+	private final Path path;
+	private final Map<OptionProcessor, String> values;
+
+	private ConfigFile(Options options, Path path, Map<OptionProcessor, String> values) {
+		this.options = options;
+		this.path = path;
+		this.values = values;
+	}
+
+	/**
+	 * This method will parse the passed configuration file for the options of
+	 * the passed Options instance.
+	 *
+	 * @param options
+	 *            The options whose values are read
+	 * @param path
+	 *            The configuration file
+	 * @return The option values of the file
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	public static ConfigFile load(Options options, Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("The configuration file " + path + " is too large");
+			}
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			return new ConfigFile(options, path, new Parser(options, path, buffer).parse());
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * This method will read the passed configuration file into the heap
+	 * instead of mapping it. A file that is rewritten in place can be truncated
+	 * while it is mapped, this is used by the {@link ConfigWatcher} to reload
+	 * the file once it changed.
+	 *
+	 * @param options
+	 *            The options whose values are read
+	 * @param path
+	 *            The configuration file
+	 * @return The option values of the file, null if the file is empty since
+	 *         it is then being rewritten
+	 * @throws IOException
+	 *             If the file could not be read or changed while it was read
+	 */
+	static ConfigFile read(Options options, Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			FileTime modified = Files.getLastModifiedTime(path);
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("The configuration file " + path + " is too large");
+			}
+			if (size == 0) {
+				return null;
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+				;
+			}
+			if (buffer.hasRemaining() || channel.size() != size
+					|| !modified.equals(Files.getLastModifiedTime(path))) {
+				throw new IOException("The configuration file " + path + " changed while it was read");
+			}
+			buffer.flip();
+			return new ConfigFile(options, path, new Parser(options, path, buffer).parse());
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * @return The path of the configuration file
+	 */
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * @return The options the configuration file was loaded for
+	 */
+	Options getOptions() {
+		return options;
+	}
+
+	/**
+	 * @return The number of option values of the configuration file
+	 */
+	public int size() {
+		return values.size();
+	}
+
+	/**
+	 * @return The option values in the order of the file, the last value of a
+	 *         repeated key is kept
+	 */
+	Map<OptionProcessor, String> values() {
+		return values;
+	}
+
+	/**
+	 * This class parses the bytes of a properties file.
+	 */
+	private static class Parser {
+
+		private final Options options;
+		private final Path path;
+		private final ByteBuffer buffer;
+		private final int limit;
+		private byte scratch[] = new byte[256];
+
+		Parser(Options options, Path path, ByteBuffer buffer) {
+			this.options = options;
+			this.path = path;
+			this.buffer = buffer;
+			this.limit = buffer.limit();
+		}
+
+		Map<OptionProcessor, String> parse() throws IOException {
+			Map<OptionProcessor, String> values = new LinkedHashMap<OptionProcessor, String>();
+			int pos = 0;
+			while (pos < limit) {
+				byte c = buffer.get(pos);
+				if (isWhitespace(c) || c == '\r' || c == '\n') {
+					pos++;
+					continue;
+				}
+				if (c == '#' || c == '!') {
+					while (pos < limit && buffer.get(pos) != '\n' && buffer.get(pos) != '\r') {
+						pos++;
+					}
+					continue;
+				}
+				// The key ends at the first separator that is not escaped
+				int keyStart = pos;
+				boolean keyEscaped = false;
+				while (pos < limit) {
+					c = buffer.get(pos);
+					if (c == '\\') {
+						keyEscaped = true;
+						pos = skipEscape(pos);
+						continue;
+					}
+					if (c == '=' || c == ':' || isWhitespace(c) || c == '\r' || c == '\n') {
+						break;
+					}
+					pos++;
+				}
+				int keyEnd = Math.min(pos, limit);
+				while (pos < limit && isWhitespace(buffer.get(pos))) {
+					pos++;
+				}
+				if (pos < limit && (buffer.get(pos) == '=' || buffer.get(pos) == ':')) {
+					pos++;
+				}
+				while (pos < limit && isWhitespace(buffer.get(pos))) {
+					pos++;
+				}
+				// The value ends at the end of the line that is not escaped
+				int valueStart = pos;
+				boolean valueEscaped = false;
+				while (pos < limit) {
+					c = buffer.get(pos);
+					if (c == '\\') {
+						valueEscaped = true;
+						pos = skipEscape(pos);
+						continue;
+					}
+					if (c == '\r' || c == '\n') {
+						break;
+					}
+					pos++;
+				}
+				int valueEnd = Math.min(pos, limit);
+				String key = decode(keyStart, keyEnd, keyEscaped);
+				OptionProcessor processor = options.configProcessor(key);
+				if (processor == null) {
+					logger.warn("Unknown option {} in configuration file {}", key, path);
+					continue;
+				}
+				values.put(processor, decode(valueStart, valueEnd, valueEscaped));
+			}
+			return Collections.unmodifiableMap(values);
+		}
+
+		/**
+		 * @return The position following the escape sequence at the passed
+		 *         position, an escaped \r\n line end is skipped as a whole
+		 */
+		private int skipEscape(int pos) {
+			pos += 2;
+			if (pos < limit && buffer.get(pos - 1) == '\r' && buffer.get(pos) == '\n') {
+				pos++;
+			}
+			return pos;
+		}
+
+		private String decode(int start, int end, boolean escaped) throws IOException {
+			int length = end - start;
+			if (length > scratch.length) {
+				scratch = new byte[Math.max(length, scratch.length * 2)];
+			}
+			for (int idx = 0; idx < length; idx++) {
+				scratch[idx] = buffer.get(start + idx);
+			}
+			String value = new String(scratch, 0, length, StandardCharsets.UTF_8);
+			if (!escaped) {
+				return value;
+			}
+			try {
+				return unescape(value);
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Malformed escape sequence in configuration file " + path + ": " + value, e);
+			}
+		}
+
+		private static boolean isWhitespace(byte c) {
+			return c == ' ' || c == '\t' || c == '\f';
+		}
+
+		/**
+		 * This method will replace the escape sequences of the properties
+		 * format and remove the line continuations.
+		 */
+		static String unescape(String value) {
+			StringBuilder str = new StringBuilder(value.length());
+			int length = value.length();
+			for (int idx = 0; idx < length; idx++) {
+				char c = value.charAt(idx);
+				if (c != '\\' || idx + 1 == length) {
+					str.append(c);
+					continue;
+				}
+				c = value.charAt(++idx);
+				switch (c) {
+				case 't':
+					str.append('\t');
+					break;
+				case 'n':
+					str.append('\n');
+					break;
+				case 'r':
+					str.append('\r');
+					break;
+				case 'f':
+					str.append('\f');
+					break;
+				case 'u':
+					if (idx + 4 < length) {
+						str.append((char) Integer.parseInt(value.substring(idx + 1, idx + 5), 16));
+						idx += 4;
+					} else {
+						throw new IllegalArgumentException("Malformed \\uxxxx encoding in " + value);
+					}
+					break;
+				case '\r':
+				case '\n':
+					// A line continuation, the leading whitespace of the next line is removed
+					if (c == '\r' && idx + 1 < length && value.charAt(idx + 1) == '\n') {
+						idx++;
+					}
+					while (idx + 1 < length && " \t\f".indexOf(value.charAt(idx + 1)) >= 0) {
+						idx++;
+					}
+					break;
+				default:
+					str.append(c);
+					break;
+				}
+			}
+			return str.toString();
+		}
+
+	}
+
+}
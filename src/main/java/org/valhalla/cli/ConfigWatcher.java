@@ -0,0 +1,414 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * This class re-applies the values of a configuration file when it changes,
+ * this is used by long running services to change their tuning options
+ * without being restarted. </p>
+ *
+ * The file is parsed again once the WatchService stopped reporting changes
+ * for a short time and the values are compared to the values that were last
+ * applied. The file is read into the heap, an empty file or a file that
+ * changes while it is read is ignored until the next change since it is
+ * being rewritten. Only the methods
+ * of the options whose value changed are called. The options passed on the
+ * command line or defined by the environment keep their value, a removed key
+ * restores the default value of its option. </p>
+ *
+ * All of the changed values are converted and checked before any of them is
+ * applied, a value that can not be converted rejects the whole reload and the
+ * previous values stay in place. The option methods are then called while
+ * holding the lock returned by {@link #getLock()}, the readers that
+ * synchronize on it never see a partially applied configuration. When an
+ * option method throws an exception the values that were already applied are
+ * restored to their previous value, or to the default value of their option
+ * when the previous file did not define them, before the exception is thrown.
+ * An option without a previous or default value keeps the applied value:
+ *
+ * <pre>
+ * ConfigWatcher watcher = new ConfigWatcher(options, path, new Object[] { settings });
+ * String remaining[] = watcher.process(args, System.getenv());
+ * watcher.start();
+ * ...
+ * synchronized (watcher.getLock()) {
+ * 	pool.resize(settings.getMinimum(), settings.getMaximum());
+ * }
+ * </pre>
+ *
+ * A watcher created for a {@link SnapshotPublisher} publishes a new snapshot
+ * of all the values instead when the file changed, the readers do not need
+ * to hold a lock. </p>
+ *
+ * @author Claudio Corsi
+ *
+ */
+public class ConfigWatcher implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(ConfigWatcher.class);
+
+	/**
+	 * The time in milliseconds without a change before the file is reloaded
+	 */
+	private static final long QUIET_PERIOD = 50;
+
+	private final Options options;
+	private final Path path;
+	private final Object objects[];
+	private final SnapshotPublisher publisher;
+	private final Object lock = new Object();
+	/**
+	 * The command line parameters and environment variables of the published
+	 * snapshots
+	 */
+	private String args[] = new String[0];
+	private Map<String, String> environment = Collections.emptyMap();
+	/**
+	 * The options passed on the command line or defined by the environment
+	 */
+	private Set<Option> overridden = Collections.emptySet();
+	/**
+	 * The configuration that was last applied, null if none was applied
+	 */
+	private ConfigFile config;
+	private WatchService watchService;
+
+	/**
+	 * @param options
+	 *            The options the configuration file is loaded for
+	 * @param path
+	 *            The configuration file
+	 * @param objects
+	 *            The instances that the values are applied to
+	 */
+	public ConfigWatcher(Options options, Path path, Object objects[]) {
+		this.options = options;
+		this.path = path.toAbsolutePath();
+		this.objects = objects;
+		this.publisher = null;
+	}
+
+	/**
+	 * @param publisher
+	 *            The publisher of the snapshots
+	 * @param path
+	 *            The configuration file
+	 */
+	public ConfigWatcher(SnapshotPublisher publisher, Path path) {
+		this.options = publisher.getOptions();
+		this.path = path.toAbsolutePath();
+		this.objects = null;
+		this.publisher = publisher;
+	}
+
+	/**
+	 * This method will process the command line parameters with the values of
+	 * the configuration file, if it exists, and remember which options are not
+	 * taken from the file.
+	 *
+	 * @param args
+	 *            The command line parameters
+	 * @param environment
+	 *            The environment variables
+	 * @return An array of the remaining arguments that were not processed
+	 * @throws OptionsException
+	 *             If any inconsistency happened while processing the command
+	 *             line parameters
+	 * @throws IOException
+	 *             If the configuration file could not be read
+	 *
+	 * @see Options#processArguements(String[], Map, ConfigFile, Object[])
+	 */
+	public synchronized String[] process(String args[], Map<String, String> environment)
+			throws OptionsException, IOException {
+		ConfigFile config = Files.exists(path) ? ConfigFile.load(options, path) : null;
+		if (publisher != null) {
+			OptionsSnapshot snapshot = publisher.publish(args, environment, config);
+			this.args = args.clone();
+			this.environment = environment;
+			this.config = config;
+			return snapshot.getRemaining();
+		}
+		Set<Option> overridden = new HashSet<Option>();
+		String remaining[];
+		synchronized (lock) {
+			remaining = options.processArguements(args, environment, config, objects, overridden);
+		}
+		for (OptionProcessor processor : options.getProcessors()) {
+			String name = options.environmentName(processor);
+			if (name != null && environment.get(name) != null) {
+				overridden.add(processor.getOption());
+			}
+		}
+		this.overridden = overridden;
+		this.config = config;
+		return remaining;
+	}
+
+	/**
+	 * This method will parse the configuration file and apply the values that
+	 * changed since the last time it was applied.
+	 *
+	 * @return true, if a value was applied
+	 * @throws IOException
+	 *             If the configuration file could not be read or changed while
+	 *             it was read
+	 * @throws OptionsException
+	 *             If a value could not be converted or applied
+	 */
+	public synchronized boolean reload() throws IOException, OptionsException {
+		ConfigFile config = ConfigFile.read(options, path);
+		if (config == null) {
+			// The file is being rewritten, the previous values stay in place
+			logger.debug("Ignoring empty configuration file {}", path);
+			return false;
+		}
+		Map<OptionProcessor, String> previous = (this.config != null) ? this.config.values() : Collections
+				.<OptionProcessor, String> emptyMap();
+		if (publisher != null) {
+			if (previous.equals(config.values())) {
+				this.config = config;
+				return false;
+			}
+			// All of the values are applied to the new snapshot
+			publisher.publish(args, environment, config);
+			this.config = config;
+			return true;
+		}
+		Object optionObjects[] = options.findOptionObjects(objects);
+		List<OptionProcessor> processors = new ArrayList<OptionProcessor>();
+		List<Object> targets = new ArrayList<Object>();
+		List<Object> values = new ArrayList<Object>();
+		for (Map.Entry<OptionProcessor, String> entry : config.values().entrySet()) {
+			OptionProcessor processor = entry.getKey();
+			String value = entry.getValue();
+			if (overridden.contains(processor.getOption()) || value.equals(previous.get(processor))) {
+				continue;
+			}
+			if (!processor.hasValue() && !Options.isEnabled(value)) {
+				// An option without a value can not be disabled once applied
+				continue;
+			}
+			changed(processor, value, optionObjects, processors, targets, values);
+		}
+		for (OptionProcessor processor : previous.keySet()) {
+			Option option = processor.getOption();
+			if (!config.values().containsKey(processor) && !overridden.contains(option)
+					&& processor.hasValue() && option.defaultValue().length() > 0) {
+				changed(processor, option.defaultValue(), optionObjects, processors, targets, values);
+			}
+		}
+		for (int idx = 0; idx < processors.size(); idx++) {
+			OptionProcessor processor = processors.get(idx);
+			try {
+				processor.check(targets.get(idx), values.get(idx));
+			} catch (Exception e) {
+				logger.error("The value of option {} in configuration file {} was rejected", name(processor), path);
+				throw new OptionsException("The value of option " + name(processor) + " in configuration file "
+						+ path + " was rejected", e);
+			}
+		}
+		if (!processors.isEmpty()) {
+			synchronized (lock) {
+				for (int idx = 0; idx < processors.size(); idx++) {
+					OptionProcessor processor = processors.get(idx);
+					try {
+						processor.apply(targets.get(idx), values.get(idx));
+					} catch (Exception e) {
+						logger.error("An exception was thrown when processing option {}", name(processor), e);
+						restore(processors.subList(0, idx), targets, previous);
+						throw new OptionsException("An exception was thrown when processing option "
+								+ name(processor), e);
+					}
+				}
+			}
+			logger.debug("Applied {} changed values of configuration file {}", processors.size(), path);
+		}
+		this.config = config;
+		return !processors.isEmpty();
+	}
+
+	/**
+	 * This method will convert the changed value and add it to the values that
+	 * are applied.
+	 */
+	private void changed(OptionProcessor processor, String value, Object optionObjects[],
+			List<OptionProcessor> processors, List<Object> targets, List<Object> values) throws OptionsException {
+		String name = name(processor);
+		Object object = options.checkAndReturnTypeInstance(optionObjects, name, processor);
+		try {
+			values.add(processor.hasValue() ? processor.convert(value) : null);
+		} catch (Exception e) {
+			logger.error("Unable to convert the value {} of option {} in configuration file {}", new Object[] {
+					value, name, path }, e);
+			throw new OptionsException("Unable to convert the value " + value + " of option " + name
+					+ " in configuration file " + path, e);
+		}
+		processors.add(processor);
+		targets.add(object);
+	}
+
+	/**
+	 * This method will restore the previous values of the passed processors
+	 * that were applied before an option method threw an exception. The
+	 * values are restored in reverse order, a value that was not defined by
+	 * the previous file is restored to the default value of its option.
+	 */
+	private void restore(List<OptionProcessor> applied, List<Object> targets, Map<OptionProcessor, String> previous) {
+		for (int idx = applied.size() - 1; idx >= 0; idx--) {
+			OptionProcessor processor = applied.get(idx);
+			String value = previous.get(processor);
+			if (value == null) {
+				value = processor.getOption().defaultValue();
+			}
+			if (!processor.hasValue() || value.length() == 0) {
+				logger.warn("The previous value of option {} can not be restored", name(processor));
+				continue;
+			}
+			try {
+				processor.apply(targets.get(idx), processor.convert(value));
+			} catch (Exception e) {
+				logger.error("Unable to restore the previous value " + value + " of option " + name(processor), e);
+			}
+		}
+	}
+
+	private static String name(OptionProcessor processor) {
+		Option option = processor.getOption();
+		return (option.longName().length() > 0) ? option.longName() : String.valueOf(option.shortName());
+	}
+
+	/**
+	 * @return The lock held while the changed values are applied, it is not
+	 *         used when snapshots are published
+	 */
+	public Object getLock() {
+		return lock;
+	}
+
+	/**
+	 * @return The path of the watched configuration file
+	 */
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * This method will start watching the directory of the configuration file,
+	 * the file is reloaded by a daemon thread whenever it is changed.
+	 *
+	 * @throws IOException
+	 *             If the directory could not be watched
+	 */
+	public synchronized void start() throws IOException {
+		if (watchService != null) {
+			throw new IllegalStateException("The watcher was already started");
+		}
+		watchService = path.getFileSystem().newWatchService();
+		path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY);
+		final WatchService watchService = this.watchService;
+		Thread watcher = new Thread(new Runnable() {
+			public void run() {
+				watch(watchService);
+			}
+		}, "ConfigWatcher " + path);
+		watcher.setDaemon(true);
+		watcher.start();
+		logger.debug("Watching configuration file {}", path);
+	}
+
+	/**
+	 * This method will stop watching the configuration file.
+	 */
+	public synchronized void close() throws IOException {
+		if (watchService != null) {
+			watchService.close();
+			watchService = null;
+		}
+	}
+
+	private void watch(WatchService watchService) {
+		Path name = path.getFileName();
+		while (true) {
+			WatchKey key;
+			try {
+				key = watchService.take();
+			} catch (ClosedWatchServiceException e) {
+				return;
+			} catch (InterruptedException e) {
+				return;
+			}
+			boolean changed = changed(key, name);
+			if (changed) {
+				// The file is reloaded once it is no longer being written
+				try {
+					while ((key = watchService.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS)) != null) {
+						changed(key, name);
+					}
+				} catch (ClosedWatchServiceException e) {
+					return;
+				} catch (InterruptedException e) {
+					return;
+				}
+				try {
+					reload();
+				} catch (Throwable e) {
+					// The previous values stay in place until the file is fixed
+					logger.error("Unable to reload configuration file " + path, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return true, if one of the events of the passed key is a change of the
+	 *         configuration file
+	 */
+	private static boolean changed(WatchKey key, Path name) {
+		boolean changed = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(event.context())) {
+				changed = true;
+			}
+		}
+		key.reset();
+		return changed;
+	}
+
+}
@@ -0,0 +1,270 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class removes the description element of the Option annotations from
+ * compiled class files. The descriptions are then not part of the annotations
+ * created at runtime, their default empty value is returned instead. This is
+ * used by the {@link HelpGenerator} once the help text was rendered into
+ * resources. </p>
+ *
+ * Only the RuntimeVisibleAnnotations attributes of the fields and methods are
+ * rewritten, the constant pool is copied as is. </p>
+ *
+ * @author Claudio Corsi
+ *
+ */
+final class DescriptionStripper {
+
+	private static final Logger logger = LoggerFactory.getLogger(DescriptionStripper.class);
+
+	private static final int MAGIC = 0xCAFEBABE;
+	private static final String OPTION_DESCRIPTOR = "Lorg/valhalla/cli/annotations/Option;";
+	private static final String ANNOTATIONS = "RuntimeVisibleAnnotations";
+	private static final String DESCRIPTION = "description";
+
+	private final String utf8[];
+	private boolean stripped;
+
+	private DescriptionStripper(String utf8[]) {
+		this.utf8 = utf8;
+	}
+
+	/**
+	 * This method will strip the class files found under the passed directory.
+	 *
+	 * @param directory
+	 *            The root directory of the compiled classes
+	 * @return The number of class files that were rewritten
+	 * @throws IOException
+	 *             If a class file could not be read or written
+	 */
+	static int strip(File directory) throws IOException {
+		int count = 0;
+		File files[] = directory.listFiles();
+		if (files == null) {
+			return 0;
+		}
+		for (File file : files) {
+			if (file.isDirectory()) {
+				count += strip(file);
+			} else if (file.getName().endsWith(".class")) {
+				byte stripped[] = strip(Files.readAllBytes(file.toPath()));
+				if (stripped != null) {
+					Files.write(file.toPath(), stripped);
+					logger.debug("Stripped the option descriptions of {}", file);
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * This method will strip the passed class file.
+	 *
+	 * @param classFile
+	 *            The content of the class file
+	 * @return The content of the stripped class file, null if the class file
+	 *         does not contain an option description
+	 * @throws IOException
+	 *             If the class file is not valid
+	 */
+	static byte[] strip(byte classFile[]) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(classFile.length);
+		DataOutputStream out = new DataOutputStream(bytes);
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a class file");
+		}
+		out.writeInt(MAGIC);
+		copy(in, out, 4); // minor and major version
+		int count = in.readUnsignedShort();
+		out.writeShort(count);
+		String utf8[] = new String[count];
+		for (int idx = 1; idx < count; idx++) {
+			int tag = in.readUnsignedByte();
+			out.writeByte(tag);
+			switch (tag) {
+			case 1: // Utf8
+				utf8[idx] = in.readUTF();
+				out.writeUTF(utf8[idx]);
+				break;
+			case 3: // Integer
+			case 4: // Float
+			case 9: // Fieldref
+			case 10: // Methodref
+			case 11: // InterfaceMethodref
+			case 12: // NameAndType
+			case 17: // Dynamic
+			case 18: // InvokeDynamic
+				copy(in, out, 4);
+				break;
+			case 5: // Long
+			case 6: // Double
+				copy(in, out, 8);
+				idx++; // Takes two entries
+				break;
+			case 7: // Class
+			case 8: // String
+			case 16: // MethodType
+			case 19: // Module
+			case 20: // Package
+				copy(in, out, 2);
+				break;
+			case 15: // MethodHandle
+				copy(in, out, 3);
+				break;
+			default:
+				throw new IOException("Unknown constant pool tag " + tag);
+			}
+		}
+		copy(in, out, 6); // access flags, this and super class
+		int interfaces = in.readUnsignedShort();
+		out.writeShort(interfaces);
+		copy(in, out, interfaces * 2);
+		DescriptionStripper stripper = new DescriptionStripper(utf8);
+		stripper.members(in, out); // fields
+		stripper.members(in, out); // methods
+		stripper.attributes(in, out, false);
+		if (in.read() != -1) {
+			throw new IOException("Unexpected content at the end of the class file");
+		}
+		out.flush();
+		return stripper.stripped ? bytes.toByteArray() : null;
+	}
+
+	private void members(DataInputStream in, DataOutputStream out) throws IOException {
+		int count = in.readUnsignedShort();
+		out.writeShort(count);
+		for (int idx = 0; idx < count; idx++) {
+			copy(in, out, 6); // access flags, name and descriptor
+			attributes(in, out, true);
+		}
+	}
+
+	private void attributes(DataInputStream in, DataOutputStream out, boolean member) throws IOException {
+		int count = in.readUnsignedShort();
+		out.writeShort(count);
+		for (int idx = 0; idx < count; idx++) {
+			int name = in.readUnsignedShort();
+			int length = in.readInt();
+			byte content[] = new byte[length];
+			in.readFully(content);
+			if (member && ANNOTATIONS.equals(utf8[name])) {
+				content = annotations(content);
+			}
+			out.writeShort(name);
+			out.writeInt(content.length);
+			out.write(content);
+		}
+	}
+
+	/**
+	 * @return The annotations attribute without the option descriptions
+	 */
+	private byte[] annotations(byte content[]) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length);
+		DataOutputStream out = new DataOutputStream(bytes);
+		int count = in.readUnsignedShort();
+		out.writeShort(count);
+		for (int idx = 0; idx < count; idx++) {
+			annotation(in, out);
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private void annotation(DataInputStream in, DataOutputStream out) throws IOException {
+		int type = in.readUnsignedShort();
+		boolean option = OPTION_DESCRIPTOR.equals(utf8[type]);
+		int count = in.readUnsignedShort();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream pairs = new DataOutputStream(bytes);
+		int written = 0;
+		for (int idx = 0; idx < count; idx++) {
+			int name = in.readUnsignedShort();
+			if (option && DESCRIPTION.equals(utf8[name])) {
+				// Skip the description value
+				elementValue(in, new DataOutputStream(new ByteArrayOutputStream()));
+				stripped = true;
+				continue;
+			}
+			pairs.writeShort(name);
+			elementValue(in, pairs);
+			written++;
+		}
+		pairs.flush();
+		out.writeShort(type);
+		out.writeShort(written);
+		bytes.writeTo(out);
+	}
+
+	private void elementValue(DataInputStream in, DataOutputStream out) throws IOException {
+		int tag = in.readUnsignedByte();
+		out.writeByte(tag);
+		switch (tag) {
+		case 'B':
+		case 'C':
+		case 'D':
+		case 'F':
+		case 'I':
+		case 'J':
+		case 'S':
+		case 'Z':
+		case 's':
+		case 'c':
+			copy(in, out, 2);
+			break;
+		case 'e':
+			copy(in, out, 4);
+			break;
+		case '@':
+			annotation(in, out);
+			break;
+		case '[':
+			int count = in.readUnsignedShort();
+			out.writeShort(count);
+			for (int idx = 0; idx < count; idx++) {
+				elementValue(in, out);
+			}
+			break;
+		default:
+			throw new IOException("Unknown annotation element value tag " + (char) tag);
+		}
+	}
+
+	private static void copy(DataInputStream in, DataOutputStream out, int length) throws IOException {
+		byte buffer[] = new byte[length];
+		in.readFully(buffer);
+		out.write(buffer);
+	}
+
+}
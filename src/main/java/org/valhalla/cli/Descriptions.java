@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * This class resolves the descriptions of the options for a given locale.
+ * The options with a description key are looked up in the resource bundle
+ * named after the class that declares the option, the other options use their
+ * description. The descriptions are only resolved the first time that they
+ * are requested for a locale and are then cached for that locale. </p>
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+final class Descriptions {
+
+	private static final Logger logger = LoggerFactory.getLogger(Descriptions.class);
+
+	private final OptionProcessor processors[];
+	private final ConcurrentMap<Locale, String[]> resolved = new ConcurrentHashMap<Locale, String[]>();
+
+	/**
+	 * @param processors
+	 *            The option processors, the descriptions are returned in the
+	 *            same order
+	 */
+	Descriptions(OptionProcessor processors[]) {
+		this.processors = processors;
+	}
+
+	/**
+	 * @param locale
+	 *            The locale of the descriptions
+	 * @return The descriptions of the options in the order of the processors,
+	 *         the returned array must not be modified
+	 */
+	String[] get(Locale locale) {
+		String descriptions[] = resolved.get(locale);
+		if (descriptions == null) {
+			descriptions = resolve(locale);
+			String previous[] = resolved.putIfAbsent(locale, descriptions);
+			if (previous != null) {
+				descriptions = previous;
+			}
+		}
+		return descriptions;
+	}
+
+	private String[] resolve(Locale locale) {
+		String descriptions[] = new String[processors.length];
+		Map<Class<?>, ResourceBundle> bundles = new HashMap<Class<?>, ResourceBundle>();
+		for (int idx = 0; idx < processors.length; idx++) {
+			Option option = processors[idx].getOption();
+			descriptions[idx] = option.description();
+			String key = option.descriptionKey();
+			if (key.length() == 0) {
+				continue;
+			}
+			Class<?> type = processors[idx].getDeclaringClass();
+			ResourceBundle bundle = bundles.get(type);
+			if (bundle == null && !bundles.containsKey(type)) {
+				try {
+					bundle = ResourceBundle.getBundle(type.getName(), locale, type.getClassLoader());
+				} catch (MissingResourceException e) {
+					logger.warn("No description resource bundle {} found for locale {}", type.getName(), locale);
+				}
+				bundles.put(type, bundle);
+			}
+			if (bundle != null) {
+				try {
+					descriptions[idx] = bundle.getString(key);
+				} catch (MissingResourceException e) {
+					logger.warn("No description found for key {} in resource bundle {}", key, type.getName());
+				}
+			}
+		}
+		return descriptions;
+	}
+
+}
@@ -0,0 +1,279 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class contains a family of named boolean flags, it is returned by the
+ * method of an option declared with
+ * {@link org.valhalla.cli.annotations.Option#flagFamily()}. Each flag is
+ * identified by its index in the names passed to the constructor, its state
+ * is a bit of an array of longs that is updated one word at a time with a
+ * compare and set. Reading a flag does not lock and does not allocate. </p>
+ *
+ * <pre>
+ * public final FlagSet features = new FlagSet(Feature.class);
+ *
+ * &#064;Option(longName = "feature-", flagFamily = true, description = "Enables the named feature")
+ * public FlagSet getFeatures() {
+ * 	return features;
+ * }
+ * ...
+ * if (features.isEnabled(Feature.FAST_PATH)) {
+ * </pre>
+ *
+ * @author Claudio Corsi
+ *
+ */
+public final class FlagSet {
+
+	private final String names[];
+	private final Map<String, Integer> ids;
+	private final AtomicLongArray words;
+
+	/**
+	 * @param names
+	 *            The names of the flags, the id of a flag is its index
+	 */
+	public FlagSet(String... names) {
+		this.names = names.clone();
+		this.ids = new HashMap<String, Integer>(names.length * 4 / 3 + 1);
+		for (int idx = 0; idx < names.length; idx++) {
+			if (ids.put(names[idx], idx) != null) {
+				throw new IllegalArgumentException("The flag " + names[idx] + " is already defined");
+			}
+		}
+		this.words = new AtomicLongArray((names.length + 63) >>> 6);
+	}
+
+	/**
+	 * @param type
+	 *            The enum whose constants are the flags, the id of a flag is
+	 *            the ordinal of its constant and its name is the lower case
+	 *            constant name with dashes instead of underscores, fast-path
+	 *            for FAST_PATH
+	 */
+	public <E extends Enum<E>> FlagSet(Class<E> type) {
+		this(names(type));
+	}
+
+	private static <E extends Enum<E>> String[] names(Class<E> type) {
+		E constants[] = type.getEnumConstants();
+		String names[] = new String[constants.length];
+		for (int idx = 0; idx < constants.length; idx++) {
+			names[idx] = constants[idx].name().toLowerCase(Locale.ROOT).replace('_', '-');
+		}
+		return names;
+	}
+
+	/**
+	 * @return The number of flags of this family
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * @return The id of the flag with the passed name, -1 if there is none
+	 */
+	public int id(String name) {
+		Integer id = ids.get(name);
+		return (id != null) ? id.intValue() : -1;
+	}
+
+	/**
+	 * @return The name of the flag with the passed id
+	 */
+	public String name(int id) {
+		return names[id];
+	}
+
+	/**
+	 * @return true, if the flag with the passed id is enabled
+	 */
+	public boolean isEnabled(int id) {
+		check(id);
+		return (words.get(id >>> 6) & (1L << id)) != 0;
+	}
+
+	/**
+	 * @return true, if the flag of the passed constant is enabled, the set
+	 *         must have been created for the enum of the constant
+	 */
+	public boolean isEnabled(Enum<?> flag) {
+		return isEnabled(flag.ordinal());
+	}
+
+	/**
+	 * @return true, if the flag with the passed name is enabled
+	 * @throws IllegalArgumentException
+	 *             If there is no flag with the passed name
+	 */
+	public boolean isEnabled(String name) {
+		return isEnabled(checkedId(name));
+	}
+
+	/**
+	 * This method will enable or disable the flag with the passed id.
+	 */
+	public void set(int id, boolean enabled) {
+		check(id);
+		int word = id >>> 6;
+		long mask = 1L << id;
+		long current;
+		long next;
+		do {
+			current = words.get(word);
+			next = enabled ? (current | mask) : (current & ~mask);
+		} while (current != next && !words.compareAndSet(word, current, next));
+	}
+
+	/**
+	 * @return The number of enabled flags
+	 */
+	public int cardinality() {
+		int count = 0;
+		for (int idx = 0; idx < words.length(); idx++) {
+			count += Long.bitCount(words.get(idx));
+		}
+		return count;
+	}
+
+	/**
+	 * This method will apply the comma separated flags of the passed value, a
+	 * flag is enabled unless it is followed by =false, =0 or =. Every flag is
+	 * resolved before the first one is applied.
+	 *
+	 * @param value
+	 *            The flags, for instance fast-path,cache=false
+	 * @throws IllegalArgumentException
+	 *             If a flag is not part of this family
+	 */
+	void apply(String value) {
+		Changes changes = Changes.parse(value);
+		apply(ids(changes), changes);
+	}
+
+	/**
+	 * @return The ids of the flags of the passed changes
+	 * @throws IllegalArgumentException
+	 *             If a flag is not part of this family
+	 */
+	int[] ids(Changes changes) {
+		int ids[] = new int[changes.names.length];
+		for (int idx = 0; idx < ids.length; idx++) {
+			ids[idx] = checkedId(changes.names[idx]);
+		}
+		return ids;
+	}
+
+	/**
+	 * This method will apply the passed changes whose flags were resolved by
+	 * {@link #ids(Changes)}.
+	 */
+	void apply(int ids[], Changes changes) {
+		for (int idx = 0; idx < ids.length; idx++) {
+			set(ids[idx], changes.enabled[idx]);
+		}
+	}
+
+	/**
+	 * The flags of a flag family option value and whether they are enabled,
+	 * the names are resolved by the FlagSet they are applied to.
+	 */
+	static final class Changes {
+
+		private final String names[];
+		private final boolean enabled[];
+
+		private Changes(String names[], boolean enabled[]) {
+			this.names = names;
+			this.enabled = enabled;
+		}
+
+		/**
+		 * @param value
+		 *            The comma separated flags, for instance
+		 *            fast-path,cache=false
+		 * @return The changes of the passed value
+		 */
+		static Changes parse(String value) {
+			List<String> names = new ArrayList<String>();
+			List<Boolean> enabled = new ArrayList<Boolean>();
+			int start = 0;
+			while (start <= value.length()) {
+				int end = value.indexOf(',', start);
+				if (end < 0) {
+					end = value.length();
+				}
+				String flag = value.substring(start, end);
+				if (flag.length() > 0) {
+					int eq = flag.indexOf('=');
+					if (eq < 0) {
+						names.add(flag);
+						enabled.add(Boolean.TRUE);
+					} else {
+						names.add(flag.substring(0, eq));
+						enabled.add(Options.isEnabled(flag.substring(eq + 1)));
+					}
+				}
+				start = end + 1;
+			}
+			boolean states[] = new boolean[enabled.size()];
+			for (int idx = 0; idx < states.length; idx++) {
+				states[idx] = enabled.get(idx);
+			}
+			return new Changes(names.toArray(new String[names.size()]), states);
+		}
+
+	}
+
+	private int checkedId(String name) {
+		int id = id(name);
+		if (id < 0) {
+			throw new IllegalArgumentException("Unknown flag " + name);
+		}
+		return id;
+	}
+
+	private void check(int id) {
+		if (id < 0 || id >= names.length) {
+			throw new IndexOutOfBoundsException("Invalid flag id " + id);
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder str = new StringBuilder("FlagSet [");
+		for (int idx = 0; idx < names.length; idx++) {
+			if (isEnabled(idx)) {
+				if (str.charAt(str.length() - 1) != '[') {
+					str.append(", ");
+				}
+				str.append(names[idx]);
+			}
+		}
+		return str.append(']').toString();
+	}
+
+}
@@ -0,0 +1,275 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * This class renders the help of an Options instance at build time. It
+ * generates the following files next to the main class resource path:
+ *
+ * <ul>
+ * <li>Main.usage - the option lines streamed by the usage methods of the
+ * Options class instead of rendering them, preceded by the fingerprint of the
+ * options so that a stale resource is not used</li>
+ * <li>Main.1 - a roff man page</li>
+ * <li>Main.md - a markdown reference</li>
+ * </ul>
+ *
+ * The generator can also remove the option descriptions from the compiled
+ * classes once the help was rendered so that the descriptions are not loaded
+ * at runtime. The option search then only matches the option names. </p>
+ *
+ * usage: java org.valhalla.cli.HelpGenerator --main=class --output=directory
+ * [--command=name] [--message=text] [--strip=classes] class...
+ *
+ * @author Claudio Corsi
+ *
+ */
+public class HelpGenerator {
+
+	private final UsageRenderer renderer;
+	private final Class<?> mainClass;
+	private final String command;
+	private final String message;
+	private final String lineSep = "\n";
+
+	/**
+	 * @param options
+	 *            The options whose help is rendered
+	 * @param mainClass
+	 *            The main class the help is rendered for
+	 * @param command
+	 *            The name of the command used by the man page and markdown
+	 * @param message
+	 *            The message explaining the parameter line choices
+	 */
+	public HelpGenerator(Options options, Class<?> mainClass, String command, String message) {
+		this.renderer = options.usageRenderer();
+		this.mainClass = mainClass;
+		this.command = command;
+		this.message = message;
+	}
+
+	/**
+	 * This method will write the option lines of the usage text at the default
+	 * width, this is the content of the usage resource.
+	 *
+	 * @param out
+	 *            The appendable the option lines are written to
+	 * @throws IOException
+	 *             If the option lines could not be written
+	 */
+	public void text(Appendable out) throws IOException {
+		out.append(renderer.options(UsageRenderer.DEFAULT_WIDTH));
+	}
+
+	/**
+	 * This method will write a roff man page in section 1.
+	 *
+	 * @param out
+	 *            The appendable the man page is written to
+	 * @throws IOException
+	 *             If the man page could not be written
+	 */
+	public void man(Appendable out) throws IOException {
+		out.append(".\\\" generated by ").append(getClass().getName()).append(lineSep);
+		out.append(".TH ").append(roff(command.toUpperCase())).append(" 1").append(lineSep);
+		out.append(".SH NAME").append(lineSep);
+		out.append(roff(command)).append(lineSep);
+		out.append(".SH SYNOPSIS").append(lineSep);
+		out.append(".B ").append(roff(command)).append(lineSep);
+		out.append(roff(message)).append(lineSep);
+		out.append(".SH OPTIONS").append(lineSep);
+		OptionProcessor processors[] = renderer.processors();
+		String descriptions[] = renderer.descriptions(Locale.getDefault());
+		for (int idx = 0; idx < processors.length; idx++) {
+			out.append(".TP").append(lineSep);
+			out.append(".B ").append(roff(renderer.column(idx).trim())).append(lineSep);
+			String description = descriptions[idx];
+			if (description.length() > 0) {
+				out.append(roff(description)).append(lineSep);
+			}
+		}
+	}
+
+	/**
+	 * This method will write a markdown reference of the options.
+	 *
+	 * @param out
+	 *            The appendable the reference is written to
+	 * @throws IOException
+	 *             If the reference could not be written
+	 */
+	public void markdown(Appendable out) throws IOException {
+		out.append("# ").append(command).append(" #").append(lineSep).append(lineSep);
+		out.append("    ").append(command).append(' ').append(message).append(lineSep).append(lineSep);
+		out.append("## Options ##").append(lineSep).append(lineSep);
+		OptionProcessor processors[] = renderer.processors();
+		String descriptions[] = renderer.descriptions(Locale.getDefault());
+		for (int idx = 0; idx < processors.length; idx++) {
+			Option option = processors[idx].getOption();
+			out.append("* `").append(renderer.column(idx).trim()).append('`');
+			if (option.required()) {
+				out.append(" __required__");
+			}
+			if (descriptions[idx].length() > 0) {
+				out.append(" - ").append(descriptions[idx]);
+			}
+			out.append(lineSep);
+		}
+	}
+
+	/**
+	 * This method will write the usage resource, the man page and the markdown
+	 * reference into the passed directory using the resource path of the main
+	 * class.
+	 *
+	 * @param directory
+	 *            The root directory of the generated resources
+	 * @throws IOException
+	 *             If a file could not be written
+	 */
+	public void write(File directory) throws IOException {
+		String name = mainClass.getName();
+		int idx = name.lastIndexOf('.');
+		File parent = (idx < 0) ? directory : new File(directory, name.substring(0, idx).replace('.', '/'));
+		if (!parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("Unable to create the directory " + parent);
+		}
+		String base = name.substring(idx + 1);
+		Writer writer = writer(new File(parent, base + UsageRenderer.RESOURCE_SUFFIX));
+		try {
+			writer.append(renderer.fingerprint()).append(lineSep);
+			text(writer);
+		} finally {
+			writer.close();
+		}
+		writer = writer(new File(parent, base + ".1"));
+		try {
+			man(writer);
+		} finally {
+			writer.close();
+		}
+		writer = writer(new File(parent, base + ".md"));
+		try {
+			markdown(writer);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static Writer writer(File file) throws IOException {
+		return new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * This method will escape the backslashes and dashes of the passed text and
+	 * protect a leading control character.
+	 */
+	private static String roff(String text) {
+		String escaped = text.replace("\\", "\\e").replace("-", "\\-");
+		if (escaped.startsWith(".") || escaped.startsWith("'")) {
+			escaped = "\\&" + escaped;
+		}
+		return escaped;
+	}
+
+	/**
+	 * The options of the main method.
+	 */
+	static class Settings {
+
+		private String main;
+		private String output;
+		private String command;
+		private String message;
+		private String strip;
+
+		@Option(longName = "main", description = "The main class the help is rendered for", required = true)
+		public void setMain(String main) {
+			this.main = main;
+		}
+
+		@Option(longName = "output", description = "The root directory of the generated resources", required = true)
+		public void setOutput(String output) {
+			this.output = output;
+		}
+
+		@Option(longName = "command", description = "The command name, the simple name of the main class by default")
+		public void setCommand(String command) {
+			this.command = command;
+		}
+
+		@Option(longName = "message", defaultValue = "[options]", description = "The message following the command name")
+		public void setMessage(String message) {
+			this.message = message;
+		}
+
+		@Option(longName = "strip", description = "The compiled classes directory whose option descriptions are removed")
+		public void setStrip(String strip) {
+			this.strip = strip;
+		}
+
+	}
+
+	/**
+	 * This method will generate the help resources for the option classes
+	 * passed on the command line.
+	 *
+	 * @param args
+	 *            The generator options followed by the option class names
+	 * @throws Exception
+	 *             If the help could not be generated
+	 */
+	public static void main(String args[]) throws Exception {
+		Settings settings = new Settings();
+		Options options = new Options(new Class<?>[] { Settings.class });
+		String classNames[];
+		try {
+			classNames = options.processArguements(args, new Object[] { settings });
+			if (classNames.length == 0) {
+				throw new OptionsException("No option class was passed");
+			}
+		} catch (OptionsException e) {
+			System.err.println(e.getMessage());
+			System.err.print(options.usage(HelpGenerator.class, "--main=class --output=directory class..."));
+			System.exit(1);
+			return;
+		}
+		Class<?> classes[] = new Class<?>[classNames.length];
+		for (int idx = 0; idx < classNames.length; idx++) {
+			classes[idx] = Class.forName(classNames[idx]);
+		}
+		Class<?> mainClass = Class.forName(settings.main);
+		String command = (settings.command != null) ? settings.command : mainClass.getSimpleName();
+		new HelpGenerator(new Options(classes), mainClass, command, settings.message).write(new File(settings.output));
+		if (settings.strip != null) {
+			// The descriptions were rendered, they are no longer needed at runtime
+			DescriptionStripper.strip(new File(settings.strip));
+		}
+	}
+
+}
@@ -0,0 +1,217 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * This class is an inverted index over the names and descriptions of the
+ * options of an Options instance. It is used to find the options that match a
+ * help query without rendering the whole usage text. </p>
+ * 
+ * The option names and descriptions are split into lower case tokens, the
+ * long names are also split on their camel case and punctuation boundaries so
+ * that --cacheSize is found by "cache" and "size". Each token is given a
+ * weight depending on where it was found, a name match weighs more than a
+ * description match. The tokens are kept sorted so that a query term matches
+ * all of the tokens that it is a prefix of, an exact match counts twice as
+ * much as a prefix match. </p>
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+final class HelpIndex {
+
+	private static final int NAME_WEIGHT = 8;
+	private static final int NAME_PART_WEIGHT = 4;
+	private static final int DESCRIPTION_WEIGHT = 1;
+
+	private final int size;
+	private final String tokens[];
+	// For each token, pairs of option index and weight
+	private final int postings[][];
+
+	/**
+	 * @param processors
+	 *            The option processors in the order they are displayed
+	 * @param descriptions
+	 *            The descriptions of the option processors
+	 */
+	HelpIndex(OptionProcessor processors[], String descriptions[]) {
+		this.size = processors.length;
+		Map<String, Map<Integer, Integer>> index = new HashMap<String, Map<Integer, Integer>>();
+		for (int idx = 0; idx < processors.length; idx++) {
+			Option option = processors[idx].getOption();
+			if (option.shortName() != ' ') {
+				add(index, String.valueOf(option.shortName()).toLowerCase(Locale.ROOT), idx, NAME_WEIGHT);
+			}
+			if (option.longName().length() > 0) {
+				add(index, option.longName().toLowerCase(Locale.ROOT), idx, NAME_WEIGHT);
+				for (String part : tokenize(option.longName(), true)) {
+					add(index, part, idx, NAME_PART_WEIGHT);
+				}
+			}
+			for (String word : tokenize(descriptions[idx], false)) {
+				add(index, word, idx, DESCRIPTION_WEIGHT);
+			}
+		}
+		this.tokens = index.keySet().toArray(new String[index.size()]);
+		Arrays.sort(this.tokens);
+		this.postings = new int[this.tokens.length][];
+		for (int idx = 0; idx < this.tokens.length; idx++) {
+			Map<Integer, Integer> weights = index.get(this.tokens[idx]);
+			int posting[] = new int[weights.size() * 2];
+			int pos = 0;
+			for (Map.Entry<Integer, Integer> entry : weights.entrySet()) {
+				posting[pos++] = entry.getKey().intValue();
+				posting[pos++] = entry.getValue().intValue();
+			}
+			this.postings[idx] = posting;
+		}
+	}
+
+	/**
+	 * This method will return the indexes of the options that match the
+	 * passed query ordered by relevance. Options with the same relevance are
+	 * returned in the order they are displayed by the usage.
+	 * 
+	 * @param query
+	 *            One or more space separated terms, leading dashes of a term
+	 *            are ignored
+	 * @return The matching option indexes, empty if none matched
+	 */
+	int[] search(String query) {
+		int scores[] = new int[size];
+		int matches = 0;
+		for (String term : query.trim().toLowerCase(Locale.ROOT).split("\\s+")) {
+			// Allow the options to be searched as they are passed, --name
+			int start = 0;
+			while (start < term.length() && term.charAt(start) == '-') {
+				start++;
+			}
+			term = term.substring(start);
+			if (term.length() == 0) {
+				continue;
+			}
+			int found = match(term, scores);
+			if (found < 0) {
+				// Fall back to the words of the term, cache-size is cache and size
+				for (String word : tokenize(term, false)) {
+					found = match(word, scores);
+					if (found > 0) {
+						matches += found;
+					}
+				}
+			} else {
+				matches += found;
+			}
+		}
+		// Sort by decreasing score and then by option index
+		long ranked[] = new long[matches];
+		int pos = 0;
+		for (int idx = 0; idx < size; idx++) {
+			if (scores[idx] > 0) {
+				ranked[pos++] = ((long) -scores[idx] << 32) | idx;
+			}
+		}
+		Arrays.sort(ranked);
+		int result[] = new int[matches];
+		for (int idx = 0; idx < matches; idx++) {
+			result[idx] = (int) ranked[idx];
+		}
+		return result;
+	}
+
+	/**
+	 * This method will add the weights of the options that have a token that
+	 * starts with the passed term to the passed scores.
+	 * 
+	 * @return The number of options that were matched for the first time, -1
+	 *         if no token matched the term
+	 */
+	private int match(String term, int scores[]) {
+		// Find the first token that starts with the term
+		int pos = Arrays.binarySearch(tokens, term);
+		if (pos < 0) {
+			pos = -pos - 1;
+		}
+		int matches = -1;
+		for (; pos < tokens.length && tokens[pos].startsWith(term); pos++) {
+			if (matches < 0) {
+				matches = 0;
+			}
+			int multiplier = (tokens[pos].length() == term.length()) ? 2 : 1;
+			int posting[] = postings[pos];
+			for (int idx = 0; idx < posting.length; idx += 2) {
+				if (scores[posting[idx]] == 0) {
+					matches++;
+				}
+				scores[posting[idx]] += posting[idx + 1] * multiplier;
+			}
+		}
+		return matches;
+	}
+
+	private static void add(Map<String, Map<Integer, Integer>> index, String token, int option, int weight) {
+		Map<Integer, Integer> weights = index.get(token);
+		if (weights == null) {
+			weights = new HashMap<Integer, Integer>();
+			index.put(token, weights);
+		}
+		Integer key = Integer.valueOf(option);
+		Integer current = weights.get(key);
+		weights.put(key, Integer.valueOf((current != null) ? current.intValue() + weight : weight));
+	}
+
+	/**
+	 * This method will split the passed text into lower case tokens of letters
+	 * and digits.
+	 * 
+	 * @param text
+	 *            The text to split
+	 * @param camelCase
+	 *            true, if an upper case letter following a lower case letter
+	 *            starts a new token
+	 * @return The tokens of the text
+	 */
+	static List<String> tokenize(String text, boolean camelCase) {
+		List<String> words = new ArrayList<String>();
+		int start = -1;
+		for (int idx = 0; idx <= text.length(); idx++) {
+			char ch = (idx < text.length()) ? text.charAt(idx) : ' ';
+			boolean letterOrDigit = Character.isLetterOrDigit(ch);
+			boolean boundary = camelCase && start >= 0 && Character.isUpperCase(ch)
+					&& Character.isLowerCase(text.charAt(idx - 1));
+			if (start >= 0 && (!letterOrDigit || boundary)) {
+				words.add(text.substring(start, idx).toLowerCase(Locale.ROOT));
+				start = -1;
+			}
+			if (letterOrDigit && start < 0) {
+				start = idx;
+			}
+		}
+		return words;
+	}
+
+}
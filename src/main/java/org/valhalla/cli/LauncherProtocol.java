@@ -0,0 +1,270 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class defines the protocol used between the {@link OptionsClient} and
+ * the {@link OptionsServer}. </p>
+ *
+ * The client starts with the request header:
+ *
+ * <pre>
+ * int magic, string command, string working directory,
+ * int count, count * (string name, string value) environment,
+ * int count, count * string argument
+ * </pre>
+ *
+ * where a string is an int length followed by its UTF-8 bytes so that the
+ * values are not limited to the 64KB of the modified UTF-8 encoding.
+ * and then sends the standard input as {@link #STDIN} chunks followed by an
+ * {@link #EOF} chunk. The server sends the standard output and error as
+ * {@link #STDOUT} and {@link #STDERR} chunks and ends with an {@link #EXIT}
+ * chunk that contains the exit code. A chunk is its type byte followed by an
+ * int length and the bytes of the chunk. </p>
+ *
+ * The server reads the lengths and counts sent by the client before
+ * allocating anything for them, a string longer than
+ * {@link #MAX_STRING_LENGTH}, a count larger than {@link #MAX_COUNT} or a
+ * chunk longer than {@link #MAX_CHUNK_LENGTH} is rejected with an
+ * IOException and the connection is closed. </p>
+ *
+ * @author Claudio Corsi
+ *
+ */
+final class LauncherProtocol {
+
+	static final int MAGIC = 0x4f505431;
+
+	static final byte STDIN = 'I';
+	static final byte EOF = 'E';
+	static final byte STDOUT = 'O';
+	static final byte STDERR = 'R';
+	static final byte EXIT = 'X';
+
+	/**
+	 * The maximum number of UTF-8 bytes of a string
+	 */
+	static final int MAX_STRING_LENGTH = 1 << 20;
+
+	/**
+	 * The maximum number of environment variables or arguments of a request
+	 */
+	static final int MAX_COUNT = 1 << 16;
+
+	/**
+	 * The maximum length of a standard input chunk
+	 */
+	static final int MAX_CHUNK_LENGTH = 1 << 20;
+
+	private LauncherProtocol() {
+	}
+
+	/**
+	 * This method will write the length of the UTF-8 bytes of the passed string
+	 * followed by the bytes.
+	 */
+	static void writeString(DataOutputStream out, String value) throws IOException {
+		byte bytes[] = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * @return The string written by {@link #writeString(DataOutputStream, String)}
+	 */
+	static String readString(DataInputStream in) throws IOException {
+		byte bytes[] = new byte[readLength(in, MAX_STRING_LENGTH, "string length")];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * This method will read a length or count and check that it is between
+	 * zero and the passed maximum before the caller allocates anything for it.
+	 *
+	 * @throws IOException
+	 *             If the value read is negative or larger than the maximum
+	 */
+	static int readLength(DataInputStream in, int maximum, String name) throws IOException {
+		int length = in.readInt();
+		if (length < 0 || length > maximum) {
+			throw new IOException("Invalid " + name + " " + length + ", the maximum is " + maximum);
+		}
+		return length;
+	}
+
+	/**
+	 * This method will write a chunk of the passed type. The chunks written by
+	 * different threads to the same stream are not interleaved.
+	 */
+	static void writeChunk(DataOutputStream out, byte type, byte buffer[], int offset, int length) throws IOException {
+		synchronized (out) {
+			out.writeByte(type);
+			out.writeInt(length);
+			out.write(buffer, offset, length);
+			out.flush();
+		}
+	}
+
+	/**
+	 * This method will return an input stream that reads from the passed
+	 * channel. The streams of the Channels class are not used since they
+	 * synchronize on the blocking lock of the channel and a pending read
+	 * would then block the writes in the other direction.
+	 */
+	static InputStream newInputStream(final SocketChannel channel) {
+		return new InputStream() {
+
+			@Override
+			public int read() throws IOException {
+				byte buffer[] = new byte[1];
+				return (read(buffer, 0, 1) < 0) ? -1 : (buffer[0] & 0xff);
+			}
+
+			@Override
+			public int read(byte[] buffer, int offset, int length) throws IOException {
+				return (length == 0) ? 0 : channel.read(ByteBuffer.wrap(buffer, offset, length));
+			}
+
+		};
+	}
+
+	/**
+	 * This method will return an output stream that writes to the passed
+	 * channel.
+	 *
+	 * @see #newInputStream(SocketChannel)
+	 */
+	static OutputStream newOutputStream(final SocketChannel channel) {
+		return new OutputStream() {
+
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] buffer, int offset, int length) throws IOException {
+				ByteBuffer bytes = ByteBuffer.wrap(buffer, offset, length);
+				while (bytes.hasRemaining()) {
+					channel.write(bytes);
+				}
+			}
+
+		};
+	}
+
+	/**
+	 * This output stream will write each write call as a chunk of its type.
+	 */
+	static class ChunkOutputStream extends OutputStream {
+
+		private final DataOutputStream out;
+		private final byte type;
+
+		ChunkOutputStream(DataOutputStream out, byte type) {
+			this.out = out;
+			this.type = type;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length) throws IOException {
+			if (length > 0) {
+				writeChunk(out, type, buffer, offset, length);
+			}
+		}
+
+	}
+
+	/**
+	 * This input stream reads the content of the {@link LauncherProtocol#STDIN}
+	 * chunks until the {@link LauncherProtocol#EOF} chunk is received. The
+	 * chunks are only read when the command reads its standard input.
+	 */
+	static class ChunkInputStream extends InputStream {
+
+		private final DataInputStream in;
+		private int remaining;
+		private boolean eof;
+
+		ChunkInputStream(DataInputStream in) {
+			this.in = in;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte buffer[] = new byte[1];
+			return (read(buffer, 0, 1) < 0) ? -1 : (buffer[0] & 0xff);
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			if (length == 0) {
+				return 0;
+			}
+			while (remaining == 0) {
+				if (eof) {
+					return -1;
+				}
+				byte type;
+				try {
+					type = in.readByte();
+				} catch (EOFException e) {
+					// The client went away without closing its standard input
+					eof = true;
+					return -1;
+				}
+				int size = readLength(in, MAX_CHUNK_LENGTH, "chunk length");
+				if (type == EOF) {
+					eof = true;
+				} else if (type == STDIN) {
+					remaining = size;
+				} else {
+					throw new IOException("Unexpected chunk type " + (char) type);
+				}
+			}
+			int count = in.read(buffer, offset, Math.min(length, remaining));
+			if (count < 0) {
+				throw new EOFException("The standard input chunk was truncated");
+			}
+			remaining -= count;
+			return count;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return Math.min(remaining, in.available());
+		}
+
+	}
+
+}
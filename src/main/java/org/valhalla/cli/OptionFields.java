@@ -0,0 +1,448 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * This class creates the commands of the fields annotated with the Option
+ * annotation. The fields are written with VarHandles, a private field is
+ * accessed through {@link MethodHandles#privateLookupIn(Class, MethodHandles.Lookup)}.
+ * The int, long, short, byte, double and float fields are written without
+ * boxing the value when the option is processed, the values converted ahead
+ * of time by {@link Options#parse(String[], java.util.Map, ConfigFile)} are
+ * unboxed before being written. A boolean field is an option without a value
+ * that sets the field to true. </p>
+ *
+ * The type of a field declared with a type variable of a super class is the
+ * type argument passed by the class whose instances the option is applied to,
+ * a field whose type can not be converted from a String, for instance an
+ * array or an unresolved type variable with an abstract bound, is rejected
+ * when the options are created. </p>
+ *
+ * @author Claudio Corsi
+ *
+ */
+final class OptionFields {
+
+	private static final Logger logger = LoggerFactory.getLogger(OptionFields.class);
+
+	private OptionFields() {
+	}
+
+	/**
+	 * @return The fields of the passed class and its super classes that are
+	 *         annotated with the Option annotation
+	 */
+	static List<Field> fields(Class<?> clz) {
+		List<Field> fields = new ArrayList<Field>();
+		for (Class<?> type = clz; type != null && type != Object.class; type = type.getSuperclass()) {
+			for (Field field : type.getDeclaredFields()) {
+				if (field.getAnnotation(Option.class) != null) {
+					fields.add(field);
+				}
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * This method will create the command writing the passed field.
+	 *
+	 * @param clz
+	 *            The class whose instances the option is applied to
+	 * @param field
+	 *            The field annotated with the option
+	 * @return The command of the option
+	 * @throws OptionsException
+	 *             If the option is not supported by a field or the field can
+	 *             not be accessed
+	 */
+	static OptionCommand command(Class<?> clz, Field field, Option option) throws OptionsException {
+		Type genericType = resolve(clz, field.getGenericType());
+		Class<?> type = Options.erasure(genericType);
+		boolean flag = type == Boolean.TYPE || type == Boolean.class;
+		if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) {
+			logger.error("The option field {} for class {} can not be static or final", field.getName(),
+					clz.getName());
+			throw new OptionsException("The option field " + field.getName() + " for class " + clz.getName()
+					+ " can not be static or final");
+		}
+		if (option.help() || option.version() || option.flagFamily()) {
+			logger.error("The option field {} for class {} can not be a help, version or flag family option",
+					field.getName(), clz.getName());
+			throw new OptionsException("The option field " + field.getName() + " for class " + clz.getName()
+					+ " can not be a help, version or flag family option");
+		}
+		if (flag && (option.embeddedValue() || option.propertyValue())) {
+			logger.error("You can not set the embedded or property type option with boolean field {} for class {}",
+					field.getName(), clz.getName());
+			throw new OptionsException("You can not set the embedded or property type option with boolean field "
+					+ field.getName() + " for class " + clz.getName());
+		}
+		if (option.inPlace() && !AtomicValues.isAtomic(type)) {
+			logger.error("The in place option field {} for class {} must be an atomic", field.getName(),
+					clz.getName());
+			throw new OptionsException("The in place option field " + field.getName() + " for class "
+					+ clz.getName() + " must be an atomic");
+		}
+		VarHandle handle;
+		try {
+			handle = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup())
+					.unreflectVarHandle(field);
+		} catch (IllegalAccessException e) {
+			logger.error("Unable to access the option field " + field.getName() + " for class " + clz.getName(), e);
+			throw new OptionsException("Unable to access the option field " + field.getName() + " for class "
+					+ clz.getName(), e);
+		}
+		if (flag) {
+			return new FlagCommand(clz, handle, type.isPrimitive());
+		} else if (type == Integer.TYPE) {
+			return new IntCommand(clz, handle);
+		} else if (type == Long.TYPE) {
+			return new LongCommand(clz, handle);
+		} else if (type == Short.TYPE) {
+			return new ShortCommand(clz, handle);
+		} else if (type == Byte.TYPE) {
+			return new ByteCommand(clz, handle);
+		} else if (type == Double.TYPE) {
+			return new DoubleCommand(clz, handle);
+		} else if (type == Float.TYPE) {
+			return new FloatCommand(clz, handle);
+		}
+		if (!Options.isConvertible(type)) {
+			logger.error("The type {} of option field {} for class {} can not be converted from a String",
+					new Object[] { type.getName(), field.getName(), clz.getName() });
+			throw new OptionsException("The type " + type.getName() + " of option field " + field.getName()
+					+ " for class " + clz.getName() + " can not be converted from a String");
+		}
+		Options.ConvertCommand converter;
+		try {
+			converter = Options.convert(genericType);
+		} catch (RuntimeException e) {
+			logger.error("An exception was raised while processing option field " + field.getName() + " for class "
+					+ clz.getName(), e);
+			throw new OptionsException("An exception was raised while processing option field " + field.getName()
+					+ " for class " + clz.getName(), e);
+		}
+		return new ObjectCommand(clz, handle, converter, option.inPlace());
+	}
+
+	/**
+	 * @return The type of the values of the passed field when it is applied
+	 *         to the instances of the passed class
+	 */
+	static Class<?> type(Class<?> clz, Field field) {
+		return Options.erasure(resolve(clz, field.getGenericType()));
+	}
+
+	/**
+	 * This method will replace a type variable declared by a super class of
+	 * the passed class with the type argument passed by its sub class, until
+	 * the type is not a type variable or the type argument is not known.
+	 */
+	private static Type resolve(Class<?> clz, Type type) {
+		while (type instanceof TypeVariable) {
+			Type argument = argument(clz, (TypeVariable<?>) type);
+			if (argument == null) {
+				break;
+			}
+			type = argument;
+		}
+		return type;
+	}
+
+	/**
+	 * @return The type argument of the passed type variable in the generic
+	 *         super class declaration of the passed class or one of its super
+	 *         classes, null if it is not known
+	 */
+	private static Type argument(Class<?> clz, TypeVariable<?> variable) {
+		if (!(variable.getGenericDeclaration() instanceof Class)) {
+			return null;
+		}
+		Class<?> declaration = (Class<?>) variable.getGenericDeclaration();
+		for (Class<?> type = clz; type != null; type = type.getSuperclass()) {
+			if (type.getSuperclass() != declaration) {
+				continue;
+			}
+			if (!(type.getGenericSuperclass() instanceof ParameterizedType)) {
+				// The super class is extended as a raw type
+				return null;
+			}
+			TypeVariable<?> variables[] = declaration.getTypeParameters();
+			for (int idx = 0; idx < variables.length; idx++) {
+				if (variables[idx].equals(variable)) {
+					return ((ParameterizedType) type.getGenericSuperclass()).getActualTypeArguments()[idx];
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The command of an option field.
+	 */
+	private static abstract class FieldCommand implements Options.ValueCommand {
+
+		final Class<?> clz;
+		final VarHandle handle;
+
+		FieldCommand(Class<?> clz, VarHandle handle) {
+			this.clz = clz;
+			this.handle = handle;
+		}
+
+		@Override
+		public boolean hasValue() {
+			return true;
+		}
+
+		@Override
+		public Class<?> forClass() {
+			return clz;
+		}
+
+	}
+
+	private static class FlagCommand extends FieldCommand {
+
+		private final boolean primitive;
+
+		FlagCommand(Class<?> clz, VarHandle handle, boolean primitive) {
+			super(clz, handle);
+			this.primitive = primitive;
+		}
+
+		@Override
+		public void execute(Object object, String value) {
+			// The default value of a flag can disable it
+			set(object, value == null || Boolean.parseBoolean(value));
+		}
+
+		@Override
+		public Object convert(String value) {
+			return (value == null) ? Boolean.TRUE : Boolean.valueOf(value);
+		}
+
+		@Override
+		public void apply(Object object, Object value) {
+			set(object, ((Boolean) value).booleanValue());
+		}
+
+		private void set(Object object, boolean value) {
+			if (primitive) {
+				handle.set(object, value);
+			} else {
+				handle.set(object, Boolean.valueOf(value));
+			}
+		}
+
+		@Override
+		public boolean hasValue() {
+			return false;
+		}
+
+	}
+
+	private static class IntCommand extends FieldCommand {
+
+		IntCommand(Class<?> clz, VarHandle handle) {
+			super(clz, handle);
+		}
+
+		@Override
+		public void execute(Object object, String value) {
+			handle.set(object, Integer.parseInt(value));
+		}
+
+		@Override
+		public Object convert(String value) {
+			return Integer.valueOf(value);
+		}
+
+		@Override
+		public void apply(Object object, Object value) {
+			handle.set(object, ((Integer) value).intValue());
+		}
+
+	}
+
+	private static class LongCommand extends FieldCommand {
+
+		LongCommand(Class<?> clz, VarHandle handle) {
+			super(clz, handle);
+		}
+
+		@Override
+		public void execute(Object object, String value) {
+			handle.set(object, Long.parseLong(value));
+		}
+
+		@Override
+		public Object convert(String value) {
+			return Long.valueOf(value);
+		}
+
+		@Override
+		public void apply(Object object, Object value) {
+			handle.set(object, ((Long) value).longValue());
+		}
+
+	}
+
+	private static class ShortCommand extends FieldCommand {
+
+		ShortCommand(Class<?> clz, VarHandle handle) {
+			super(clz, handle);
+		}
+
+		@Override
+		public void execute(Object object, String value) {
+			handle.set(object, Short.parseShort(value));
+		}
+
+		@Override
+		public Object convert(String value) {
+			return Short.valueOf(value);
+		}
+
+		@Override
+		public void apply(Object object, Object value) {
+			handle.set(object, ((Short) value).shortValue());
+		}
+
+	}
+
+	private static class ByteCommand extends FieldCommand {
+
+		ByteCommand(Class<?> clz, VarHandle handle) {
+			super(clz, handle);
+		}
+
+		@Override
+		public void execute(Object object, String value) {
+			handle.set(object, Byte.parseByte(value));
+		}
+
+		@Override
+		public Object convert(String value) {
+			return Byte.valueOf(value);
+		}
+
+		@Override
+		public void apply(Object object, Object value) {
+			handle.set(object, ((Byte) value).byteValue());
+		}
+
+	}
+
+	private static class DoubleCommand extends FieldCommand {
+
+		DoubleCommand(Class<?> clz, VarHandle handle) {
+			super(clz, handle);
+		}
+
+		@Override
+		public void execute(Object object, String value) {
+			handle.set(object, Double.parseDouble(value));
+		}
+
+		@Override
+		public Object convert(String value) {
+			return Double.valueOf(value);
+		}
+
+		@Override
+		public void apply(Object object, Object value) {
+			handle.set(object, ((Double) value).doubleValue());
+		}
+
+	}
+
+	private static class FloatCommand extends FieldCommand {
+
+		FloatCommand(Class<?> clz, VarHandle handle) {
+			super(clz, handle);
+		}
+
+		@Override
+		public void execute(Object object, String value) {
+			handle.set(object, Float.parseFloat(value));
+		}
+
+		@Override
+		public Object convert(String value) {
+			return Float.valueOf(value);
+		}
+
+		@Override
+		public void apply(Object object, Object value) {
+			handle.set(object, ((Float) value).floatValue());
+		}
+
+	}
+
+	private static class ObjectCommand extends FieldCommand {
+
+		private final Options.ConvertCommand converter;
+		private final boolean inPlace;
+
+		ObjectCommand(Class<?> clz, VarHandle handle, Options.ConvertCommand converter, boolean inPlace) {
+			super(clz, handle);
+			this.converter = converter;
+			this.inPlace = inPlace;
+		}
+
+		@Override
+		public void execute(Object object, String value) throws Exception {
+			apply(object, convert(value));
+		}
+
+		@Override
+		public Object convert(String value) throws Exception {
+			return converter.execute(value);
+		}
+
+		@Override
+		public void apply(Object object, Object value) {
+			if (inPlace) {
+				// The atomic held by the field is updated
+				Object current = handle.get(object);
+				if (current != null) {
+					AtomicValues.set(current, value);
+					return;
+				}
+			}
+			handle.set(object, value);
+		}
+
+	}
+
+}
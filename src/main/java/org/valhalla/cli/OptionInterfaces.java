@@ -0,0 +1,506 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * This class generates the implementations of the option interfaces, the
+ * interfaces whose abstract methods are getters annotated with the Option
+ * annotation. The implementation is a final hidden class with a field of the
+ * return type of each getter, the getters only read their field. The option
+ * values are written to the fields with VarHandles. </p>
+ *
+ * The class file is written by hand and defined with
+ * {@link MethodHandles.Lookup#defineHiddenClass(byte[], boolean, MethodHandles.Lookup.ClassOption...)}
+ * in the package of the interface using a private lookup in the interface, the
+ * implementation is linked by the class loader of the interface. An interface
+ * loaded by another class loader than this library is in another unnamed
+ * module and its private lookup can not define hidden classes, the
+ * implementation is then defined by a class loader whose parent is the class
+ * loader of the interface. The implementation of an interface is generated
+ * once. </p>
+ *
+ * A getter inherited from several interfaces with covariant return types is
+ * implemented once with the most specific return type, the other return
+ * types are implemented by bridge methods reading the same field. </p>
+ *
+ * @author Claudio Corsi
+ *
+ */
+final class OptionInterfaces {
+
+	private static final Logger logger = LoggerFactory.getLogger(OptionInterfaces.class);
+
+	private static final int MAGIC = 0xCAFEBABE;
+	private static final int VERSION = 52;
+	private static final int ACC_PUBLIC = 0x0001;
+	private static final int ACC_PRIVATE = 0x0002;
+	private static final int ACC_FINAL = 0x0010;
+	private static final int ACC_SUPER = 0x0020;
+	private static final int ACC_BRIDGE = 0x0040;
+	private static final int ACC_SYNTHETIC = 0x1000;
+
+	/**
+	 * The implementation of each interface or the exception raised while
+	 * generating it
+	 */
+	private static final ClassValue<Object> IMPLEMENTATIONS = new ClassValue<Object>() {
+		@Override
+		protected Object computeValue(Class<?> type) {
+			try {
+				return new Implementation(type);
+			} catch (OptionsException e) {
+				return e;
+			}
+		}
+	};
+
+	private OptionInterfaces() {
+	}
+
+	/**
+	 * @param type
+	 *            The option interface
+	 * @return The implementation of the passed interface
+	 * @throws OptionsException
+	 *             If the interface is not a valid option interface
+	 */
+	static Implementation implementation(Class<?> type) throws OptionsException {
+		Object implementation = IMPLEMENTATIONS.get(type);
+		if (implementation instanceof OptionsException) {
+			OptionsException e = (OptionsException) implementation;
+			throw new OptionsException(e.getMessage(), e);
+		}
+		return (Implementation) implementation;
+	}
+
+	/**
+	 * The generated implementation of an option interface.
+	 */
+	static final class Implementation {
+
+		private final Class<?> type;
+		private final MethodHandle constructor;
+		/**
+		 * The getters of the interface, one per option
+		 */
+		private final List<Method> getters;
+		/**
+		 * The field of each getter
+		 */
+		private final Map<Method, VarHandle> fields = new HashMap<Method, VarHandle>();
+
+		Implementation(Class<?> type) throws OptionsException {
+			if (!type.isInterface() || !Modifier.isPublic(type.getModifiers())) {
+				logger.error("The option interface {} must be a public interface", type.getName());
+				throw new OptionsException("The option interface " + type.getName()
+						+ " must be a public interface");
+			}
+			List<Method> getters = getters(type);
+			try {
+				byte bytes[] = generate(type, getters);
+				MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+				if (lookup.hasFullPrivilegeAccess()) {
+					lookup = lookup.defineHiddenClass(bytes, true);
+				} else {
+					Class<?> implementation = new ImplementationLoader(type.getClassLoader()).define(
+							name(type).replace('/', '.'), bytes);
+					lookup = MethodHandles.privateLookupIn(implementation, MethodHandles.lookup());
+				}
+				this.type = lookup.lookupClass();
+				this.getters = getters;
+				this.constructor = lookup.findConstructor(this.type, MethodType.methodType(void.class));
+				for (int idx = 0; idx < getters.size(); idx++) {
+					Method getter = getters.get(idx);
+					fields.put(getter, lookup.findVarHandle(this.type, field(idx), getter.getReturnType()));
+				}
+			} catch (Exception e) {
+				logger.error("Unable to generate the implementation of option interface {}", type.getName(), e);
+				throw new OptionsException("Unable to generate the implementation of option interface "
+						+ type.getName(), e);
+			}
+		}
+
+		/**
+		 * @return The generated class, the options of the interface are
+		 *         applied to its instances
+		 */
+		Class<?> getType() {
+			return type;
+		}
+
+		/**
+		 * @return The getters of the interface sorted by name, one per option
+		 */
+		List<Method> getGetters() {
+			return getters;
+		}
+
+		/**
+		 * @return A new instance of the generated class, its fields are not
+		 *         set
+		 */
+		Object newInstance() {
+			try {
+				return constructor.invoke();
+			} catch (Throwable e) {
+				throw new IllegalStateException("Unable to create an instance of " + type, e);
+			}
+		}
+
+		/**
+		 * This method will create the command setting the field of the passed
+		 * getter. A boolean getter is a flag, it is set to true when the option
+		 * is passed without a value.
+		 *
+		 * @throws OptionsException
+		 *             If the option is not supported by an option interface
+		 */
+		OptionCommand command(final Method getter) throws OptionsException {
+			Option option = getter.getAnnotation(Option.class);
+			final VarHandle field = fields.get(getter);
+			if (field == null || option.help() || option.version() || option.flagFamily() || option.inPlace()) {
+				logger.error("The option {} of interface {} can not be a help, version, in place or flag family option",
+						getter.getName(), getter.getDeclaringClass().getName());
+				throw new OptionsException("The option " + getter.getName() + " of interface "
+						+ getter.getDeclaringClass().getName()
+						+ " can not be a help, version, in place or flag family option");
+			}
+			final boolean flag = getter.getReturnType() == Boolean.TYPE || getter.getReturnType() == Boolean.class;
+			if (flag && (option.embeddedValue() || option.propertyValue())) {
+				logger.error(
+						"You can not set the embedded or property type option with no-parameter method {} for class {}",
+						getter.getName(), getter.getDeclaringClass().getName());
+				throw new OptionsException(
+						"You can not set the embedded or property type option with no-parameter method "
+								+ getter.getName() + " for class " + getter.getDeclaringClass().getName());
+			}
+			final Options.ConvertCommand converter = flag ? null : Options.convert(getter.getGenericReturnType());
+			return new Options.ValueCommand() {
+
+				@Override
+				public void execute(Object object, String value) throws Exception {
+					apply(object, convert(value));
+				}
+
+				@Override
+				public Object convert(String value) throws Exception {
+					if (flag) {
+						// The default value of a flag can disable it
+						return (value == null) ? Boolean.TRUE : Boolean.valueOf(value);
+					}
+					return converter.execute(value);
+				}
+
+				@Override
+				public void apply(Object object, Object value) {
+					field.set(object, value);
+				}
+
+				@Override
+				public boolean hasValue() {
+					return !flag;
+				}
+
+				@Override
+				public Class<?> forClass() {
+					return type;
+				}
+
+			};
+		}
+
+	}
+
+	/**
+	 * @return The abstract methods of the passed interface sorted by name, a
+	 *         getter declared with covariant return types is returned once
+	 *         with its most specific return type
+	 * @throws OptionsException
+	 *             If an abstract method is not a getter annotated with the
+	 *             Option annotation or the return types of a getter declared
+	 *             more than once are not covariant
+	 */
+	private static List<Method> getters(Class<?> type) throws OptionsException {
+		Map<String, Method> getters = new LinkedHashMap<String, Method>();
+		for (Method method : type.getMethods()) {
+			if (!Modifier.isAbstract(method.getModifiers())) {
+				continue;
+			}
+			if (method.getAnnotation(Option.class) == null || method.getParameterTypes().length > 0
+					|| method.getReturnType() == Void.TYPE) {
+				logger.error("The method {} of option interface {} must be a getter annotated with the Option annotation",
+						method.getName(), type.getName());
+				throw new OptionsException("The method " + method.getName() + " of option interface " + type.getName()
+						+ " must be a getter annotated with the Option annotation");
+			}
+			// A getter has no parameters, its name is its signature
+			Method previous = getters.get(method.getName());
+			if (previous == null || previous.getReturnType() != method.getReturnType()
+					&& previous.getReturnType().isAssignableFrom(method.getReturnType())) {
+				getters.put(method.getName(), method);
+			} else if (!method.getReturnType().isAssignableFrom(previous.getReturnType())) {
+				logger.error("The return types of method {} of option interface {} are not covariant",
+						method.getName(), type.getName());
+				throw new OptionsException("The return types of method " + method.getName() + " of option interface "
+						+ type.getName() + " are not covariant");
+			}
+		}
+		List<Method> sorted = new ArrayList<Method>(getters.values());
+		sorted.sort(new Comparator<Method>() {
+			@Override
+			public int compare(Method first, Method second) {
+				return first.getName().compareTo(second.getName());
+			}
+		});
+		return sorted;
+	}
+
+	private static String field(int idx) {
+		return "option" + idx;
+	}
+
+	/**
+	 * @return The internal name of the implementation of the passed
+	 *         interface, it is in the package of the interface
+	 */
+	private static String name(Class<?> type) {
+		return type.getPackageName().replace('.', '/') + (type.getPackageName().isEmpty() ? "" : "/")
+				+ type.getSimpleName() + "$Options";
+	}
+
+	/**
+	 * @return The return types of the abstract methods of the passed
+	 *         interface with the name of the passed getter, other than the
+	 *         return type of the getter
+	 */
+	private static List<Class<?>> bridges(Class<?> type, Method getter) {
+		List<Class<?>> bridges = new ArrayList<Class<?>>();
+		for (Method method : type.getMethods()) {
+			if (Modifier.isAbstract(method.getModifiers()) && method.getName().equals(getter.getName())
+					&& method.getReturnType() != getter.getReturnType()
+					&& !bridges.contains(method.getReturnType())) {
+				bridges.add(method.getReturnType());
+			}
+		}
+		return bridges;
+	}
+
+	/**
+	 * This method will write the class file of the implementation of the
+	 * passed interface.
+	 */
+	static byte[] generate(Class<?> type, List<Method> getters) throws IOException {
+		ConstantPool pool = new ConstantPool();
+		int thisClass = pool.classInfo(name(type));
+		int superClass = pool.classInfo("java/lang/Object");
+		int interfaceClass = pool.classInfo(type.getName().replace('.', '/'));
+		int code = pool.utf8("Code");
+		int init = pool.utf8("<init>");
+		int voidDescriptor = pool.utf8("()V");
+		int superInit = pool.member(10, superClass, "<init>", "()V");
+		int fieldNames[] = new int[getters.size()];
+		int fieldDescriptors[] = new int[getters.size()];
+		int fieldRefs[] = new int[getters.size()];
+		int methodNames[] = new int[getters.size()];
+		int methodDescriptors[] = new int[getters.size()];
+		int bridgeDescriptors[][] = new int[getters.size()][];
+		int methodCount = getters.size() + 1;
+		for (int idx = 0; idx < getters.size(); idx++) {
+			List<Class<?>> bridges = bridges(type, getters.get(idx));
+			bridgeDescriptors[idx] = new int[bridges.size()];
+			for (int bridge = 0; bridge < bridges.size(); bridge++) {
+				bridgeDescriptors[idx][bridge] = pool.utf8("()" + bridges.get(bridge).descriptorString());
+			}
+			methodCount += bridges.size();
+			String descriptor = getters.get(idx).getReturnType().descriptorString();
+			fieldNames[idx] = pool.utf8(field(idx));
+			fieldDescriptors[idx] = pool.utf8(descriptor);
+			fieldRefs[idx] = pool.member(9, thisClass, field(idx), descriptor);
+			methodNames[idx] = pool.utf8(getters.get(idx).getName());
+			methodDescriptors[idx] = pool.utf8("()" + descriptor);
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeShort(0);
+		out.writeShort(VERSION);
+		pool.write(out);
+		out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+		out.writeShort(thisClass);
+		out.writeShort(superClass);
+		out.writeShort(1);
+		out.writeShort(interfaceClass);
+		out.writeShort(getters.size());
+		for (int idx = 0; idx < getters.size(); idx++) {
+			out.writeShort(ACC_PRIVATE);
+			out.writeShort(fieldNames[idx]);
+			out.writeShort(fieldDescriptors[idx]);
+			out.writeShort(0);
+		}
+		out.writeShort(methodCount);
+		// public <init>() { super(); }
+		out.writeShort(ACC_PUBLIC);
+		out.writeShort(init);
+		out.writeShort(voidDescriptor);
+		code(out, code, 1, new byte[] { 0x2a, (byte) 0xb7, (byte) (superInit >> 8), (byte) superInit, (byte) 0xb1 });
+		// public final T getter() { return this.optionN; }
+		for (int idx = 0; idx < getters.size(); idx++) {
+			out.writeShort(ACC_PUBLIC | ACC_FINAL);
+			out.writeShort(methodNames[idx]);
+			out.writeShort(methodDescriptors[idx]);
+			code(out, code, 2, new byte[] { 0x2a, (byte) 0xb4, (byte) (fieldRefs[idx] >> 8), (byte) fieldRefs[idx],
+					returnOpcode(getters.get(idx).getReturnType()) });
+			// public final S getter() { return this.optionN; } for each covariant return type S
+			for (int bridge = 0; bridge < bridgeDescriptors[idx].length; bridge++) {
+				out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_BRIDGE | ACC_SYNTHETIC);
+				out.writeShort(methodNames[idx]);
+				out.writeShort(bridgeDescriptors[idx][bridge]);
+				code(out, code, 2, new byte[] { 0x2a, (byte) 0xb4, (byte) (fieldRefs[idx] >> 8),
+						(byte) fieldRefs[idx], returnOpcode(getters.get(idx).getReturnType()) });
+			}
+		}
+		out.writeShort(0); // class attributes
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * This method will write the attributes of a method with the passed code,
+	 * the method only uses the this local variable.
+	 */
+	private static void code(DataOutputStream out, int code, int maxStack, byte instructions[]) throws IOException {
+		out.writeShort(1); // attributes
+		out.writeShort(code);
+		out.writeInt(12 + instructions.length);
+		out.writeShort(maxStack);
+		out.writeShort(1); // max locals
+		out.writeInt(instructions.length);
+		out.write(instructions);
+		out.writeShort(0); // exception table
+		out.writeShort(0); // attributes
+	}
+
+	private static byte returnOpcode(Class<?> type) {
+		if (type == Long.TYPE) {
+			return (byte) 0xad; // lreturn
+		} else if (type == Float.TYPE) {
+			return (byte) 0xae; // freturn
+		} else if (type == Double.TYPE) {
+			return (byte) 0xaf; // dreturn
+		} else if (type.isPrimitive()) {
+			return (byte) 0xac; // ireturn
+		}
+		return (byte) 0xb0; // areturn
+	}
+
+	/**
+	 * The class loader of the implementations of the interfaces loaded by
+	 * another class loader than this library.
+	 */
+	private static final class ImplementationLoader extends ClassLoader {
+
+		ImplementationLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		Class<?> define(String name, byte bytes[]) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+
+	}
+
+	/**
+	 * The constant pool of a generated class file.
+	 */
+	private static class ConstantPool {
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+		private final Map<String, Integer> entries = new HashMap<String, Integer>();
+		private int count = 1;
+
+		int utf8(String value) throws IOException {
+			Integer idx = entries.get("utf8:" + value);
+			if (idx == null) {
+				out.writeByte(1);
+				out.writeUTF(value);
+				idx = add("utf8:" + value);
+			}
+			return idx;
+		}
+
+		int classInfo(String name) throws IOException {
+			int utf8 = utf8(name);
+			Integer idx = entries.get("class:" + name);
+			if (idx == null) {
+				out.writeByte(7);
+				out.writeShort(utf8);
+				idx = add("class:" + name);
+			}
+			return idx;
+		}
+
+		/**
+		 * @return The index of a Fieldref (9) or Methodref (10) entry
+		 */
+		int member(int tag, int owner, String name, String descriptor) throws IOException {
+			int nameIdx = utf8(name);
+			int descriptorIdx = utf8(descriptor);
+			out.writeByte(12); // NameAndType
+			out.writeShort(nameIdx);
+			out.writeShort(descriptorIdx);
+			int nameAndType = add("nameAndType:" + count);
+			out.writeByte(tag);
+			out.writeShort(owner);
+			out.writeShort(nameAndType);
+			return add("member:" + count);
+		}
+
+		private int add(String key) {
+			entries.put(key, count);
+			return count++;
+		}
+
+		void write(DataOutputStream target) throws IOException {
+			out.flush();
+			target.writeShort(count);
+			bytes.writeTo(target);
+		}
+
+	}
+
+}
@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.Arrays;
+
+/**
+ * This class contains the option values of a per request overlay parsed by
+ * {@link OptionOverlays#parse(String[])}. The values are converted but not
+ * applied to any object, they are read through the OptionOverlays instance
+ * while the overlay is bound to the current thread. </p>
+ *
+ * The values are kept in arrays sorted by option id that are sized for the
+ * passed arguments, an overlay of a few options is a few small arrays. </p>
+ *
+ * @author Claudio Corsi
+ *
+ */
+public final class OptionOverlay {
+
+	static final OptionOverlay EMPTY = new OptionOverlay(new int[0], new Object[0], 0);
+
+	private final int ids[];
+	private final Object values[];
+	private final int size;
+
+	OptionOverlay(int ids[], Object values[], int size) {
+		this.ids = ids;
+		this.values = values;
+		this.size = size;
+	}
+
+	/**
+	 * @return The number of options set by this overlay
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return The index of the value of the passed option id, a negative
+	 *         value if the overlay does not set it
+	 */
+	int index(int id) {
+		if (size <= 8) {
+			for (int idx = 0; idx < size; idx++) {
+				if (ids[idx] == id) {
+					return idx;
+				}
+			}
+			return -1;
+		}
+		return Arrays.binarySearch(ids, 0, size, id);
+	}
+
+	Object value(int index) {
+		return values[index];
+	}
+
+}
@@ -0,0 +1,285 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * This class parses per request option overrides, for instance taken from
+ * request headers, into an {@link OptionOverlay} that is layered over the base
+ * configuration. The overlay is bound to the current thread while a task is
+ * run and the readers pass the base value of the option they read, the
+ * overlay value is returned when the bound overlay sets the option:
+ *
+ * <pre>
+ * OptionOverlays overlays = new OptionOverlays(options);
+ * final int timeout = overlays.id("timeout");
+ * ...
+ * overlays.run(overlays.parse(headerArgs), handler);
+ * ...
+ * long value = overlays.get(timeout, settings.getTimeout());
+ * </pre>
+ *
+ * The base objects are neither copied nor changed. The option methods are not
+ * called, the overlay values are only converted. An overlay accepts the long
+ * names, short names and property names of the options with or without a
+ * value, the embedded options, flag families and help options are not
+ * supported. The required options are not checked. </p>
+ *
+ * The overlay is bound with a ThreadLocal, the previous overlay of the thread
+ * is restored once the task returned so that the binding can not leak to the
+ * next request served by a pooled thread. Binding an overlay does not
+ * allocate. </p>
+ *
+ * @author Claudio Corsi
+ *
+ */
+public class OptionOverlays {
+
+	private static final Logger logger = LoggerFactory.getLogger(OptionOverlays.class);
+
+	private final OptionProcessor processors[];
+	/**
+	 * The option ids keyed by the long and short names of the options
+	 */
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+	/**
+	 * The option ids keyed by the names as they are passed, --name, -n or
+	 * name= for a property option
+	 */
+	private final Map<String, Integer> arguments = new HashMap<String, Integer>();
+	private final ThreadLocal<OptionOverlay> current = new ThreadLocal<OptionOverlay>();
+
+	/**
+	 * @param options
+	 *            The options whose values are overridden
+	 */
+	public OptionOverlays(Options options) {
+		Collection<OptionProcessor> processors = options.getProcessors();
+		this.processors = processors.toArray(new OptionProcessor[processors.size()]);
+		for (int id = 0; id < this.processors.length; id++) {
+			Option option = this.processors[id].getOption();
+			if (option.help() || option.version() || option.embeddedValue() || option.flagFamily()) {
+				continue;
+			}
+			if (option.shortName() != ' ') {
+				String name = String.valueOf(option.shortName());
+				ids.put(name, id);
+				arguments.put(option.propertyValue() ? name + "=" : "-" + name, id);
+			}
+			if (option.longName().length() > 0) {
+				ids.put(option.longName(), id);
+				arguments.put(option.propertyValue() ? option.longName() + "=" : "--" + option.longName(), id);
+			}
+		}
+	}
+
+	/**
+	 * @param name
+	 *            The long name or short name of an option
+	 * @return The id of the option, it is used to read the option value
+	 * @throws IllegalArgumentException
+	 *             If there is no option with the passed name
+	 */
+	public int id(String name) {
+		Integer id = ids.get(name);
+		if (id == null) {
+			throw new IllegalArgumentException("No available option for " + name);
+		}
+		return id.intValue();
+	}
+
+	/**
+	 * This method will parse and convert the passed arguments into an overlay.
+	 *
+	 * @param args
+	 *            The option arguments of the overlay
+	 * @return The overlay
+	 * @throws OptionsException
+	 *             If an argument is not an option or its value could not be
+	 *             converted
+	 */
+	public OptionOverlay parse(String args[]) throws OptionsException {
+		if (args.length == 0) {
+			return OptionOverlay.EMPTY;
+		}
+		int ids[] = new int[args.length];
+		Object values[] = new Object[args.length];
+		int size = 0;
+		for (int idx = 0; idx < args.length; idx++) {
+			String arg = args[idx];
+			String value = null;
+			Integer id = arguments.get(arg);
+			if (id == null) {
+				int eq = arg.indexOf('=');
+				if (eq > 0) {
+					// --name=value or name=value
+					id = arguments.get(arg.substring(0, arg.startsWith("--") ? eq : eq + 1));
+					value = arg.substring(eq + 1);
+				}
+				if (id == null || (!processors[id].hasValue())) {
+					logger.error("No available overlay option for {}", arg);
+					throw new OptionsException("No available overlay option for " + arg);
+				}
+			} else if (processors[id].hasValue()) {
+				if (++idx == args.length) {
+					logger.error("Missing value for option {}", arg);
+					throw new OptionsException("Missing value for option " + arg);
+				}
+				value = args[idx];
+			}
+			OptionProcessor processor = processors[id];
+			Object converted;
+			try {
+				converted = processor.hasValue() ? processor.convert(value) : Boolean.TRUE;
+			} catch (Exception e) {
+				logger.error("An exception was thrown when converting option {}", arg, e);
+				throw new OptionsException("An exception was thrown when converting option " + arg, e);
+			}
+			// Keep the ids sorted, the last value of a repeated option wins
+			int pos = size;
+			while (pos > 0 && ids[pos - 1] > id) {
+				pos--;
+			}
+			if (pos > 0 && ids[pos - 1] == id) {
+				values[pos - 1] = converted;
+				continue;
+			}
+			System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+			System.arraycopy(values, pos, values, pos + 1, size - pos);
+			ids[pos] = id;
+			values[pos] = converted;
+			size++;
+		}
+		return new OptionOverlay(ids, values, size);
+	}
+
+	/**
+	 * This method will run the passed task with the passed overlay bound to
+	 * the current thread.
+	 */
+	public void run(OptionOverlay overlay, Runnable task) {
+		OptionOverlay previous = bind(overlay);
+		try {
+			task.run();
+		} finally {
+			restore(previous);
+		}
+	}
+
+	/**
+	 * This method will call the passed task with the passed overlay bound to
+	 * the current thread.
+	 *
+	 * @return The value returned by the task
+	 * @throws Exception
+	 *             The exception thrown by the task
+	 */
+	public <T> T call(OptionOverlay overlay, Callable<T> task) throws Exception {
+		OptionOverlay previous = bind(overlay);
+		try {
+			return task.call();
+		} finally {
+			restore(previous);
+		}
+	}
+
+	private OptionOverlay bind(OptionOverlay overlay) {
+		OptionOverlay previous = current.get();
+		current.set(overlay);
+		return previous;
+	}
+
+	private void restore(OptionOverlay previous) {
+		// The entry of the thread is kept, removing it would allocate a new
+		// one for each request
+		current.set(previous);
+	}
+
+	/**
+	 * @return The overlay bound to the current thread, null if there is none
+	 */
+	public OptionOverlay current() {
+		return current.get();
+	}
+
+	/**
+	 * This method will return the value of the passed option.
+	 *
+	 * @param id
+	 *            The id of the option
+	 * @param base
+	 *            The value of the option in the base configuration
+	 * @return The value of the bound overlay, the base value if no overlay is
+	 *         bound or it does not set the option
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(int id, T base) {
+		OptionOverlay overlay = current.get();
+		if (overlay == null) {
+			return base;
+		}
+		int index = overlay.index(id);
+		return (index >= 0) ? (T) overlay.value(index) : base;
+	}
+
+	/**
+	 * @see #get(int, Object)
+	 */
+	public int getInt(int id, int base) {
+		OptionOverlay overlay = current.get();
+		int index = (overlay != null) ? overlay.index(id) : -1;
+		return (index >= 0) ? ((Number) overlay.value(index)).intValue() : base;
+	}
+
+	/**
+	 * @see #get(int, Object)
+	 */
+	public long getLong(int id, long base) {
+		OptionOverlay overlay = current.get();
+		int index = (overlay != null) ? overlay.index(id) : -1;
+		return (index >= 0) ? ((Number) overlay.value(index)).longValue() : base;
+	}
+
+	/**
+	 * @return true, if the bound overlay passes the option without a value
+	 *         or sets it to true, else the base value
+	 */
+	public boolean isEnabled(int id, boolean base) {
+		OptionOverlay overlay = current.get();
+		int index = (overlay != null) ? overlay.index(id) : -1;
+		return (index >= 0) ? ((Boolean) overlay.value(index)).booleanValue() : base;
+	}
+
+	/**
+	 * This method will return the value of the option with the passed name,
+	 * this looks the name up on each call.
+	 *
+	 * @see #get(int, Object)
+	 */
+	public <T> T get(String name, T base) {
+		return get(id(name), base);
+	}
+
+}
@@ -29,6 +29,8 @@ public class OptionProcessor {
 
 	private OptionCommand command;
 	private Option option;
+	private Class<?> valueType;
+	private Class<?> declaringClass;
 
 	/**
 	 * This constructors expects the option command that is used to apply
@@ -41,8 +43,40 @@ public class OptionProcessor {
 	 *                being applied
 	 */
 	public OptionProcessor(OptionCommand command, Option option) {
+		this(command, option, null);
+	}
+
+	/**
+	 * This constructor will also define the type of the value that the
+	 * option command converts the passed string value into.
+	 * 
+	 * @param command  The command used to apply the passed value to an instance
+	 * @param option  The option associated to the particular command line option
+	 *                being applied
+	 * @param valueType  The type of the option value, null if the option does
+	 *                not expect a value
+	 */
+	public OptionProcessor(OptionCommand command, Option option, Class<?> valueType) {
+		this(command, option, valueType, null);
+	}
+
+	/**
+	 * This constructor will also define the class that declares the option
+	 * when it is not the class of the instances the option is applied to.
+	 * 
+	 * @param command  The command used to apply the passed value to an instance
+	 * @param option  The option associated to the particular command line option
+	 *                being applied
+	 * @param valueType  The type of the option value, null if the option does
+	 *                not expect a value
+	 * @param declaringClass  The class declaring the option, null if it is the
+	 *                class of the command
+	 */
+	OptionProcessor(OptionCommand command, Option option, Class<?> valueType, Class<?> declaringClass) {
 		this.command = command;
 		this.option  = option;
+		this.valueType = valueType;
+		this.declaringClass = declaringClass;
 	}
 
 	/**
@@ -66,7 +100,28 @@ public class OptionProcessor {
 	public Class<?> forClass() {
 		return this.command.forClass();
 	}
+
+	/**
+	 * This method will return the class that declares the option, this is the
+	 * option interface of a generated implementation.
+	 * 
+	 * @return The class whose resource bundle contains the option description
+	 */
+	Class<?> getDeclaringClass() {
+		return (this.declaringClass != null) ? this.declaringClass : forClass();
+	}
 	
+	/**
+	 * This method will return the type that the option value is converted into
+	 * before being applied.
+	 * 
+	 * @return The type of the option value, null if it is unknown or the option
+	 *         does not expect a value
+	 */
+	public Class<?> getValueType() {
+		return this.valueType;
+	}
+
 	/**
 	 * This method will inform the caller is this option expects to have a value associated with it.
 	 * 
@@ -90,6 +145,53 @@ public class OptionProcessor {
 		this.command.execute(object, value);
 	}
 
+	/**
+	 * This method will convert the passed value without applying it, the value
+	 * is returned as is when the command does not separate the conversion.
+	 * 
+	 * @param value The value that will be converted
+	 * @return The converted value
+	 * @throws Exception Thrown if unable to convert the passed value
+	 * 
+	 * @see #apply(Object, Object)
+	 */
+	Object convert(String value) throws Exception {
+		if (this.command instanceof Options.ValueCommand) {
+			return ((Options.ValueCommand) this.command).convert(value);
+		}
+		return value;
+	}
+
+	/**
+	 * This method will check that a value returned by {@link #convert(String)}
+	 * can be applied to the passed object, without applying it.
+	 * 
+	 * @param object The object that this option value will be applied to
+	 * @param value The converted value
+	 * @throws Exception Thrown if the value can not be applied to the passed object
+	 */
+	void check(Object object, Object value) throws Exception {
+		if (this.command instanceof Options.CheckedCommand) {
+			((Options.CheckedCommand) this.command).check(object, value);
+		}
+	}
+
+	/**
+	 * This method will apply a value returned by {@link #convert(String)} to
+	 * the passed object.
+	 * 
+	 * @param object The object that this option value will be applied to
+	 * @param value The converted value
+	 * @throws Exception  Thrown if unable to pass the passed value to the passed object
+	 */
+	void apply(Object object, Object value) throws Exception {
+		if (this.command instanceof Options.ValueCommand) {
+			((Options.ValueCommand) this.command).apply(object, value);
+		} else {
+			this.command.execute(object, (String) value);
+		}
+	}
+
 	/**
 	 * This method will return detailed information about this processor for debugging purposes.
 	 * 
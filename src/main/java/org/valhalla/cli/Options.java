@@ -16,24 +16,40 @@
  */
 package org.valhalla.cli;
 
+import java.io.Flushable;
+import java.io.IOException;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,7 +73,6 @@ import org.valhalla.cli.annotations.OptionReference;
  */
 public class Options {
 	
-	private static final String FOUR_SPACE_TAB = "    ";
 	private static final Logger logger = LoggerFactory.getLogger(Options.class);
 
 	/**
@@ -69,7 +84,7 @@ public class Options {
 	 * @author Claudio Corsi
 	 * 
 	 */
-	private static interface ConvertCommand {
+	static interface ConvertCommand {
 		/**
 		 * This method will convert the passed string value into the required
 		 * type instance.
@@ -84,6 +99,53 @@ public class Options {
 		Object execute(String value) throws Exception;
 	}
 
+	/**
+	 * This interface is implemented by the option commands created by the
+	 * Options instance. It separates the conversion of the value from the call
+	 * of the option method so that a set of values can be converted before any
+	 * of them is applied.
+	 * 
+	 * @author Claudio Corsi
+	 * 
+	 */
+	static interface ValueCommand extends OptionCommand {
+		/**
+		 * @param value
+		 *            The value to be converted
+		 * @return The converted value, null for an option without a value
+		 * @throws Exception
+		 *             If the value could not be converted
+		 */
+		Object convert(String value) throws Exception;
+
+		/**
+		 * @param object
+		 *            The object the value is applied to
+		 * @param value
+		 *            The converted value
+		 * @throws Exception
+		 *             If the option method raised an exception
+		 */
+		void apply(Object object, Object value) throws Exception;
+	}
+
+	/**
+	 * A command whose converted value can only be validated against the
+	 * instance it is applied to. The value is checked against every instance
+	 * before the first option method is called.
+	 */
+	static interface CheckedCommand extends ValueCommand {
+		/**
+		 * @param object
+		 *            The object the value will be applied to
+		 * @param value
+		 *            The converted value
+		 * @throws Exception
+		 *             If the value can not be applied to the passed object
+		 */
+		void check(Object object, Object value) throws Exception;
+	}
+
 	private static class StringConvertCommand implements ConvertCommand {
 
 		@Override
@@ -165,6 +227,41 @@ public class Options {
 
 	}
 	
+	private static class AtomicBooleanConvertCommand implements ConvertCommand {
+
+		@Override
+		public Object execute(String value) throws Exception {
+			return new AtomicBoolean(Boolean.parseBoolean(value));
+		}
+
+	}
+	
+	private static class LongAdderConvertCommand implements ConvertCommand {
+
+		@Override
+		public Object execute(String value) throws Exception {
+			LongAdder adder = new LongAdder();
+			adder.add(Long.parseLong(value));
+			return adder;
+		}
+
+	}
+
+	private static class AtomicReferenceConvertCommand implements ConvertCommand {
+
+		private ConvertCommand convert;
+
+		AtomicReferenceConvertCommand(ConvertCommand convert) {
+			this.convert = convert;
+		}
+
+		@Override
+		public Object execute(String value) throws Exception {
+			return new AtomicReference<Object>(convert.execute(value));
+		}
+
+	}
+	
 	private static class BigIntegerConvertCommand implements ConvertCommand {
 
 		@Override
@@ -212,6 +309,27 @@ public class Options {
 
 	}
 
+	private static class EnumConvertCommand implements ConvertCommand {
+
+		private Class<?> type;
+
+		EnumConvertCommand(Class<?> type) {
+			this.type = type;
+		}
+
+		@Override
+		public Object execute(String value) throws Exception {
+			for (Object constant : type.getEnumConstants()) {
+				if (((Enum<?>) constant).name().equals(value)) {
+					return constant;
+				}
+			}
+			throw new IllegalArgumentException("Invalid value " + value
+					+ " for " + type.getName());
+		}
+
+	}
+
 	private static Map<Class<?>, ConvertCommand> converters = new HashMap<Class<?>, ConvertCommand>();
 
 	static {
@@ -230,6 +348,8 @@ public class Options {
 		converters.put(Byte.TYPE, converters.get(Byte.class));
 		converters.put(AtomicLong.class, new AtomicLongConvertCommand());
 		converters.put(AtomicInteger.class, new AtomicIntegerConvertCommand());
+		converters.put(AtomicBoolean.class, new AtomicBooleanConvertCommand());
+		converters.put(LongAdder.class, new LongAdderConvertCommand());
 		converters.put(BigInteger.class, new BigIntegerConvertCommand());
 		converters.put(BigDecimal.class, new BigDecimalConvertCommand());
 		converters.put(Boolean.class, new BooleanConvertCommand());
@@ -238,11 +358,34 @@ public class Options {
 	
 	private Map<String, OptionProcessor> shortNames = new HashMap<String, OptionProcessor>();
 	private Map<String, OptionProcessor> longNames = new HashMap<String, OptionProcessor>();
-	private Map<Class<?>, Collection<OptionProcessor>> defaultValues = new HashMap<Class<?>, Collection<OptionProcessor>>();
+	/**
+	 * The processors of the flag families, matched by the prefix of the long
+	 * names that are not defined
+	 */
+	private List<OptionProcessor> flagFamilies = new ArrayList<OptionProcessor>();
+	/**
+	 * The options of each class whose value is taken from the environment or
+	 * their default value when they are not passed on the command line
+	 */
+	private Map<Class<?>, Collection<OptionProcessor>> fallbackValues = new HashMap<Class<?>, Collection<OptionProcessor>>();
+	private Map<OptionProcessor, String> environmentNames = new HashMap<OptionProcessor, String>();
 	private Map<String, OptionProcessor> propsNames = new HashMap<String, OptionProcessor>();
 	private Collection<Option> options = new LinkedList<Option>();
-	private Collection<Map.Entry<Method, Option>> methodOptions = new LinkedList<Map.Entry<Method, Option>>();
+	private Collection<OptionProcessor> processors = new LinkedList<OptionProcessor>();
 	private Collection<Option> requiredOptions = new LinkedList<Option>();
+	private Map<String, OptionProcessor> helpNames = new HashMap<String, OptionProcessor>();
+	/**
+	 * The option interfaces whose implementation is generated
+	 */
+	private Collection<Class<?>> optionInterfaces = new LinkedList<Class<?>>();
+	private volatile boolean parallelConversion;
+	private Appendable helpOutput;
+	private Class<?> helpMainClass;
+	private String helpMessage;
+	private Appendable versionOutput;
+	private String version;
+	private volatile UsageRenderer usageRenderer;
+	private volatile HelpIndex helpIndex;
 
 	/**
 	 * This constructor will expect an array of classes that contains methods
@@ -256,7 +399,20 @@ public class Options {
 	public Options(Class<?> cliOptions[]) throws OptionsException {
 		// Process all of the classes.
 		for (Class<?> clz : findOptionClasses(cliOptions)) {
-			processCLIOptions(clz);
+			OptionsBuildEvent event = new OptionsBuildEvent();
+			event.begin();
+			int count = options.size();
+			if (clz.isInterface()) {
+				processInterfaceOptions(clz);
+			} else {
+				processCLIOptions(clz);
+			}
+			event.end();
+			if (event.shouldCommit()) {
+				event.optionClass = clz.getName();
+				event.optionCount = options.size() - count;
+				event.commit();
+			}
 		}
 	}
 
@@ -321,34 +477,185 @@ public class Options {
 	 */
 	public String[] processArguements(String[] args, Object[] objects)
 			throws OptionsException {
-		objects = findOptionObjects(objects);
-		// Process all default values
-		for (Object object : objects) {
-			Collection<OptionProcessor> defaultOptions = defaultValues
-					.get(object.getClass());
-			if (defaultOptions != null) {
-				for (OptionProcessor option : defaultOptions) {
-					try {
-						option.process(object, option.getOption()
-								.defaultValue());
-					} catch (Exception e) {
-						logger.error("An exception was raised while trying to set the default value for option {}", option.getOption(), e);
-						throw new OptionsException(
-								"An exception was raised while trying to set the default value for option "
-										+ option.getOption(), e);
-					}
-				}
+		return processArguements(args, environmentNames.isEmpty() ? Collections.<String, String> emptyMap()
+				: System.getenv(), objects);
+	}
+
+	/**
+	 * This method will process the command line parameters and apply the
+	 * results to the passed objects. The options that are not passed on the
+	 * command line are then taken from the passed environment, when they are
+	 * mapped to an environment variable, else their default value is applied.
+	 * The command line values are applied last, the method of an option is
+	 * not called for its default value when the option was passed.
+	 * 
+	 * @param args
+	 *            The command line parameters
+	 * @param environment
+	 *            The environment variables, System.getenv() is used by
+	 *            {@link #processArguements(String[], Object[])}
+	 * @param objects
+	 *            The instances that the passed arguments will be applied to
+	 * @return An array of the remaining arguments that were not processed
+	 * @throws OptionsException
+	 *             If any inconsistency happened while processing the command
+	 *             line parameters
+	 * 
+	 * @see Option#env()
+	 * @see #setEnvironmentPrefix(String)
+	 */
+	public String[] processArguements(String[] args, Map<String, String> environment, Object[] objects)
+			throws OptionsException {
+		return processArguements(args, environment, null, objects);
+	}
+
+	/**
+	 * This method will process the command line parameters and apply the
+	 * results to the passed objects. The options that are not passed on the
+	 * command line or defined by the passed environment are then taken from
+	 * the passed configuration file, else their default value is applied.
+	 * 
+	 * @param args
+	 *            The command line parameters
+	 * @param environment
+	 *            The environment variables
+	 * @param config
+	 *            The configuration file values, loaded for this instance, or
+	 *            null
+	 * @param objects
+	 *            The instances that the passed arguments will be applied to
+	 * @return An array of the remaining arguments that were not processed
+	 * @throws OptionsException
+	 *             If any inconsistency happened while processing the command
+	 *             line parameters
+	 * 
+	 * @see ConfigFile#load(Options, java.nio.file.Path)
+	 */
+	public String[] processArguements(String[] args, Map<String, String> environment, ConfigFile config,
+			Object[] objects) throws OptionsException {
+		return processArguements(args, environment, config, objects, null);
+	}
+
+	/**
+	 * @param commandLine
+	 *            The options passed on the command line are added to it, if
+	 *            not null
+	 * 
+	 * @see #processArguements(String[], Map, ConfigFile, Object[])
+	 */
+	String[] processArguements(String[] args, Map<String, String> environment, ConfigFile config,
+			Object[] objects, Set<Option> commandLine) throws OptionsException {
+		if (config != null && config.getOptions() != this) {
+			throw new IllegalArgumentException("The configuration file " + config.getPath()
+					+ " was not loaded for this instance");
+		}
+		ProcessArgumentsEvent event = new ProcessArgumentsEvent();
+		event.begin();
+		String outcome = "success";
+		String remaining[] = null;
+		try {
+			remaining = applyArguements(args, environment, config, objects, commandLine);
+			return remaining;
+		} catch (OptionsException e) {
+			outcome = e.getMessage();
+			throw e;
+		} catch (RuntimeException e) {
+			outcome = e.toString();
+			throw e;
+		} finally {
+			event.end();
+			if (event.shouldCommit()) {
+				event.argumentCount = args.length;
+				event.remainingCount = (remaining != null) ? remaining.length : 0;
+				event.outcome = outcome;
+				event.commit();
 			}
 		}
+	}
+
+	/**
+	 * This method will apply the command line parameters to the passed objects
+	 * and return the remaining parameters.
+	 * 
+	 * @see #processArguements(String[], Map, ConfigFile, Object[])
+	 */
+	private String[] applyArguements(String[] args, Map<String, String> environment, ConfigFile config,
+			Object[] objects, Set<Option> commandLine)
+			throws OptionsException {
+		if (!helpNames.isEmpty() && processHelpOptions(args, objects, this.helpOutput, this.versionOutput)) {
+			// Nothing else is processed when the help or version was requested
+			return new String[0];
+		}
+		ParseResult result = parseArguements(args, environment, config);
+		result.bind(objects);
+		if (commandLine != null) {
+			commandLine.addAll(result.getCommandLine());
+		}
+		return result.getRemaining();
+	}
+
+	/**
+	 * This method will parse the command line parameters, the environment and
+	 * the configuration file without calling any option method. The values are
+	 * converted and the required options are checked, the returned result then
+	 * applies the values to the option instances. The instances are left
+	 * untouched when the parameters can not be parsed and no option method is
+	 * called when one of the values can not be converted. </p>
+	 * 
+	 * The help and version options are not looked at, they are processed by
+	 * {@link #processArguements(String[], Map, ConfigFile, Object[])}.
+	 * 
+	 * @param args
+	 *            The command line parameters
+	 * @param environment
+	 *            The environment variables
+	 * @param config
+	 *            The configuration file values, loaded for this instance, or
+	 *            null
+	 * @return The converted values of the options
+	 * @throws OptionsException
+	 *             If the parameters could not be parsed or one of the command
+	 *             line or configuration file values could not be converted
+	 * 
+	 * @see ParseResult#bind(Object[])
+	 */
+	public ParseResult parse(String[] args, Map<String, String> environment, ConfigFile config)
+			throws OptionsException {
+		if (config != null && config.getOptions() != this) {
+			throw new IllegalArgumentException("The configuration file " + config.getPath()
+					+ " was not loaded for this instance");
+		}
+		return parseArguements(args, environment, config);
+	}
+
+	/**
+	 * This method will convert the option values using the common fork join
+	 * pool when set. This is only worth it for slow conversions of many
+	 * values, the option types are then expected to be thread safe.
+	 * 
+	 * @param parallelConversion
+	 *            true, if the values are converted in parallel
+	 */
+	public void setParallelConversion(boolean parallelConversion) {
+		this.parallelConversion = parallelConversion;
+	}
+
+	/**
+	 * @see #parse(String[], Map, ConfigFile)
+	 */
+	private ParseResult parseArguements(String[] args, Map<String, String> environment, ConfigFile config)
+			throws OptionsException {
 		List<String> argsList = new LinkedList<String>();
 		// This is used to determine if all of the required options have been
 		// satisfied.
 		Set<Option> processedOptions = new HashSet<Option>();
+		// The command line values are applied once the environment and default
+		// values of the other options were applied
+		List<ParseResult.Value> commandLineValues = new ArrayList<ParseResult.Value>();
 		// Process each argument on the command line
 		for (int idx = 0; idx < args.length; idx++) {
 			String arg = args[idx];
 			if (arg.charAt(0) == '-') {
-				Object object = null;
 				String value = null;
 				if (arg.charAt(1) == '-') {
 					String name = arg.substring(2);
@@ -362,6 +669,13 @@ public class Options {
 							// The value is embedded with the long name
 							value = name.substring(eq + 1);
 						}
+						if (processor == null && !flagFamilies.isEmpty()) {
+							processor = flagFamily(name);
+							if (processor != null) {
+								// The value is the flag name with its optional value
+								value = name.substring(processor.getOption().longName().length());
+							}
+						}
 					} else {
 						if (processor.hasValue()) {
 							idx++;
@@ -373,18 +687,15 @@ public class Options {
 							value = args[idx];
 						}
 					}
-					object = checkAndReturnTypeInstance(objects, name,
-							processor);
+					checkProcessor(name, processor);
 					// Pass the name from the option longName value.
-					processedOptions.add(applyValue(processor.getOption()
-							.longName(), processor, object, value));
+					processedOptions.add(pending(commandLineValues, processor.getOption()
+							.longName(), processor, value));
 				} else {
 					// This can be multiple short names or an embedded name.
 					String name = arg.substring(1);
 					OptionProcessor processor = this.shortNames.get(name);
 					if (processor != null) {
-						object = checkAndReturnTypeInstance(objects, name,
-								processor);
 						if (processor.hasValue()) {
 							if (!processor.getOption().embeddedValue()) {
 								idx++;
@@ -405,13 +716,12 @@ public class Options {
 								value = name.substring(1);
 							}
 						}
-						processedOptions.add(applyValue(name, processor,
-								object, value));
+						processedOptions.add(pending(commandLineValues, name, processor,
+								value));
 					} else {
 						String embeddedName = name.substring(0, 1);
 						processor = this.shortNames.get(embeddedName);
-						object = checkAndReturnTypeInstance(objects,
-								embeddedName, processor);
+						checkProcessor(embeddedName, processor);
 						if (processor.getOption().embeddedValue()) {
 							// The value is part of the passed option
 							if (name.length() < 2) {
@@ -421,8 +731,8 @@ public class Options {
 												+ name);
 							}
 							value = name.substring(1);
-							processedOptions.add(applyValue(embeddedName,
-									processor, object, value));
+							processedOptions.add(pending(commandLineValues, embeddedName,
+									processor, value));
 						} else {
 							if (processor.hasValue()) {
 								idx++;
@@ -434,15 +744,14 @@ public class Options {
 								}
 								value = args[idx];
 							}
-							processedOptions.add(applyValue(embeddedName,
-									processor, object, value));
+							processedOptions.add(pending(commandLineValues, embeddedName,
+									processor, value));
 							// Process all short names
 							for (int innerIdx = 1; innerIdx < name.length(); innerIdx++) {
 								embeddedName = name.substring(innerIdx,
 										innerIdx + 1);
 								processor = this.shortNames.get(embeddedName);
-								object = checkAndReturnTypeInstance(objects,
-										embeddedName, processor);
+								checkProcessor(embeddedName, processor);
 								if (processor.hasValue()) {
 									if (processor.getOption().embeddedValue()) {
 										logger.error(
@@ -464,8 +773,8 @@ public class Options {
 									}
 									value = args[idx];
 								}
-								processedOptions.add(applyValue(embeddedName,
-										processor, object, value));
+								processedOptions.add(pending(commandLineValues, embeddedName,
+										processor, value));
 							}
 						}
 					}
@@ -474,8 +783,7 @@ public class Options {
 				int eqIdx = arg.indexOf('=');
 				String name = arg.substring(0, eqIdx);
 				OptionProcessor processor = this.propsNames.get(name);
-				Object object = checkAndReturnTypeInstance(objects, name,
-						processor);
+				checkProcessor(name, processor);
 				eqIdx++; // Move to the next index
 				if (eqIdx == arg.length()) {
 					logger.error("The passed option does not contain a value for option {}", name);
@@ -484,153 +792,550 @@ public class Options {
 									+ name);
 				}
 				String value = arg.substring(eqIdx);
-				try {
-					processor.process(object, value);
-					processedOptions.add(processor.getOption());
-				} catch (Exception e) {
-					logger.error("An exception was thrown when processing option {}", name, e);
-					throw new OptionsException(
-							"An exception was thrown when processing option "
-									+ name, e);
-				}
+				processedOptions.add(pending(commandLineValues, name, processor, value));
 			} else {
 				argsList.add(arg);
 			}
 		}
+		Set<Option> commandLine = new HashSet<Option>(processedOptions);
+		Map<Class<?>, List<ParseResult.Value>> values = new HashMap<Class<?>, List<ParseResult.Value>>();
+		List<ParseResult.Value> configured = (config != null) ? new ArrayList<ParseResult.Value>() : Collections
+				.<ParseResult.Value> emptyList();
+		fallbackValues(environment, config, commandLine, processedOptions, values, configured);
+		Map<Class<?>, String> requiredClasses = Collections.emptyMap();
+		for (ParseResult.Value value : configured) {
+			requiredClasses = requireInstance(requiredClasses, value);
+		}
+		for (ParseResult.Value value : commandLineValues) {
+			add(values, value);
+			requiredClasses = requireInstance(requiredClasses, value);
+		}
 		if (processedOptions.containsAll(requiredOptions) == false) {
-			StringBuilder message = new StringBuilder(
-					"Not all required options where included");
-			message.append("missing:");
 			// Get the list of options that were not passed.
+			List<Option> missing = new ArrayList<Option>();
 			for (Option option : requiredOptions) {
 				if (processedOptions.contains(option) == false) {
-					message.append('[');
-					if (option.shortName() != ' ') {
-						message.append('-').append(option.shortName());
-					}
-					if (option.longName().length() > 0) {
-						if (message.charAt(message.length() - 1) == '[') {
-							message.append('|');
-						} else {
-							message.append('[');
-						}
-						if (option.propertyValue()) {
-							message.append(option.longName())
-									.append("=<value>");
-						} else {
-							message.append("--").append(option.longName());
-						}
-					}
-					message.append(']');
+					missing.add(option);
 				}
 			}
-			logger.error(message.toString());
-			throw new OptionsException(message.toString());
+			String message = missingOptions(missing);
+			logger.error(message);
+			throw new OptionsException(message);
+		}
+		convert(values);
+		// The command line and configuration file values are always applied
+		for (ParseResult.Value value : configured) {
+			value.check();
+		}
+		for (ParseResult.Value value : commandLineValues) {
+			value.check();
 		}
-		return argsList.toArray(new String[0]);
+		return new ParseResult(this, argsList.toArray(new String[0]), values, requiredClasses, commandLine);
 	}
 
 	/**
-	 * @param objects
-	 * @return
+	 * @return The message listing the passed required options that were not
+	 *         passed
 	 */
-	private Object[] findOptionObjects(Object[] objects) {
-		Queue<Object> objectList = new LinkedList<Object>();
-		Queue<Object> moreObjects = new LinkedList<Object>();
-		for(Object object : objects) {
-			objectList.add(object);
-		}
-		moreObjects.addAll(objectList);
-		logger.debug("moreObjects: {}", moreObjects);
-		Object object;
-		while( ( object = moreObjects.poll() ) != null ) {
-			logger.debug("Processing object: {}", object);
-			Class<?> clz = object.getClass();
-			for(Field field : clz.getFields()) {
-				logger.debug("Looking at field: {}", field.getName());
-				if (field.getAnnotation(OptionReference.class) != null) {
-					try {
-						logger.debug("Found field with OptionReference: {}", field.getName());
-						Object value = field.get(object);
-						logger.debug("Returned field value: {}", value);
-						moreObjects.add(value);
-						objectList.add(value);
-					} catch (IllegalArgumentException e) {
-						logger.error(
-								"Unable to retrieve value for field: {} for class: {}",
-								new Object[] { field.getName(), clz.getName() },
-								e);
-						new OptionsException(
-								"Unable to retrieve value for field: "
-										+ field.getName() + " for class: "
-										+ clz.getName(), e);
-					} catch (IllegalAccessException e) {
-						logger.error(
-								"Unable to retrieve value for field: {} for class: {}",
-								new Object[] { field.getName(), clz.getName() },
-								e);
-						new OptionsException(
-								"Unable to retrieve value for field: "
-										+ field.getName() + " for class: "
-										+ clz.getName(), e);
-					}
-				}
+	static String missingOptions(Collection<Option> missing) {
+		StringBuilder message = new StringBuilder(
+				"Not all required options where included");
+		message.append("missing:");
+		for (Option option : missing) {
+			message.append('[');
+			if (option.shortName() != ' ') {
+				message.append('-').append(option.shortName());
 			}
-			for(Method method : clz.getMethods()) {
-				logger.debug("Looking at method: {}", method.getName());
-				if (method.getAnnotation(OptionReference.class) != null) {
-					try {
-						logger.debug("Found method with OptionReference: {}",
-								method.getName());
-						Object value = method.invoke(object);
-						if (!objectList.contains(value)) {
-							logger.debug("Returned method return value: {}",
-									value);
-							moreObjects.add(value);
-							objectList.add(value);
-						}
-					} catch (IllegalArgumentException e) {
-						logger.error(
-								"Unable to retrieve value for method: {} for class: {}",
-								new Object[] { method.getName(), clz.getName() },
-								e);
-						new OptionsException(
-								"Unable to retrieve value for method: "
-										+ method.getName() + " for class: "
-										+ clz.getName(), e);
-					} catch (IllegalAccessException e) {
-						logger.error(
-								"Unable to retrieve value for method: {} for class: {}",
-								new Object[] { method.getName(), clz.getName() },
-								e);
-						new OptionsException(
-								"Unable to retrieve value for method: "
-										+ method.getName() + " for class: "
-										+ clz.getName(), e);
-					} catch (InvocationTargetException e) {
-						logger.error(
-								"Unable to retrieve value for method: {} for class: {}",
-								new Object[] { method.getName(), clz.getName() },
-								e);
-						new OptionsException(
-								"Unable to retrieve value for method: "
-										+ method.getName() + " for class: "
-										+ clz.getName(), e);
-					}
+			if (option.longName().length() > 0) {
+				if (message.charAt(message.length() - 1) == '[') {
+					message.append('|');
+				} else {
+					message.append('[');
+				}
+				if (option.propertyValue()) {
+					message.append(option.longName())
+							.append("=<value>");
+				} else {
+					message.append("--").append(option.longName());
 				}
 			}
+			message.append(']');
 		}
-		return objectList.toArray();
+		return message.toString();
 	}
 
 	/**
-	 * The method will apply the value to the passed object using the passed
-	 * processor. The name is only used to generate the exception if anything
-	 * went wrong.
+	 * This method will add the passed command line value to the pending values.
 	 * 
-	 * @param name
-	 *            The name of the option that is being processed
-	 * @param processor
+	 * @return The option of the passed processor
+	 */
+	private static Option pending(List<ParseResult.Value> pendingValues, String name, OptionProcessor processor,
+			String value) {
+		pendingValues.add(new ParseResult.Value(name, processor, value, false, true, false));
+		return processor.getOption();
+	}
+
+	private static void add(Map<Class<?>, List<ParseResult.Value>> values, ParseResult.Value value) {
+		List<ParseResult.Value> list = values.get(value.processor.forClass());
+		if (list == null) {
+			list = new ArrayList<ParseResult.Value>();
+			values.put(value.processor.forClass(), list);
+		}
+		list.add(value);
+	}
+
+	/**
+	 * This method will add the class of the passed value to the classes that
+	 * require an instance, the map is only created once a class is added.
+	 * 
+	 * @return The classes that require an instance
+	 */
+	private static Map<Class<?>, String> requireInstance(Map<Class<?>, String> requiredClasses,
+			ParseResult.Value value) {
+		if (!requiredClasses.containsKey(value.processor.forClass())) {
+			if (requiredClasses.isEmpty()) {
+				requiredClasses = new HashMap<Class<?>, String>();
+			}
+			requiredClasses.put(value.processor.forClass(), value.name);
+		}
+		return requiredClasses;
+	}
+
+	/**
+	 * This method will collect the environment variable, the configuration file
+	 * or the default value of the options that were not passed on the command
+	 * line. The options passed on the command line and in the configuration
+	 * file are only applied to the first instance of their class, the other
+	 * instances are passed all of their environment and default values.
+	 * 
+	 * @param environment
+	 *            The environment variables
+	 * @param config
+	 *            The configuration file values or null
+	 * @param passed
+	 *            The options passed on the command line
+	 * @param processedOptions
+	 *            The options that were passed, the options taken from the
+	 *            environment and configuration file are added to it
+	 * @param values
+	 *            The values of each class, in the order they are applied
+	 * @param configured
+	 *            The configuration file values are added to it
+	 */
+	private void fallbackValues(Map<String, String> environment, ConfigFile config, Set<Option> passed,
+			Set<Option> processedOptions, Map<Class<?>, List<ParseResult.Value>> values,
+			List<ParseResult.Value> configured) {
+		Map<OptionProcessor, String> configValues = (config != null) ? config.values() : Collections
+				.<OptionProcessor, String> emptyMap();
+		for (Collection<OptionProcessor> fallbackOptions : fallbackValues.values()) {
+			for (OptionProcessor processor : fallbackOptions) {
+				Option option = processor.getOption();
+				String name = environmentName(processor);
+				String value = (name != null) ? environment.get(name) : null;
+				String fallback;
+				if (value != null) {
+					if (!processor.hasValue() && !isEnabled(value)) {
+						continue;
+					}
+					fallback = processor.hasValue() ? value : null;
+				} else if (option.defaultValue().length() > 0) {
+					fallback = option.defaultValue();
+				} else {
+					continue;
+				}
+				// The default flags of a family are applied before the passed flags
+				boolean first = (!passed.contains(option) || option.flagFamily())
+						&& (value != null || !configValues.containsKey(processor));
+				add(values, (value != null) ? new ParseResult.Value(name, processor, fallback, false, first, true)
+						: new ParseResult.Value(option.longName(), processor, fallback, true, first, true));
+				if (first && value != null) {
+					processedOptions.add(option);
+				}
+			}
+		}
+		for (Map.Entry<OptionProcessor, String> entry : configValues.entrySet()) {
+			OptionProcessor processor = entry.getKey();
+			Option option = processor.getOption();
+			if (processedOptions.contains(option)) {
+				continue;
+			}
+			String name = environmentName(processor);
+			if (name != null && environment.get(name) != null) {
+				continue;
+			}
+			String key = (option.longName().length() > 0) ? option.longName() : String.valueOf(option.shortName());
+			ParseResult.Value value;
+			if (processor.hasValue()) {
+				value = new ParseResult.Value(key, processor, entry.getValue(), false, true, false);
+			} else if (isEnabled(entry.getValue())) {
+				value = new ParseResult.Value(key, processor, null, false, true, false);
+			} else {
+				continue;
+			}
+			add(values, value);
+			configured.add(value);
+			processedOptions.add(option);
+		}
+	}
+
+	/**
+	 * This method will convert each of the passed values, in parallel when
+	 * enabled.
+	 */
+	private void convert(Map<Class<?>, List<ParseResult.Value>> values) {
+		List<Callable<Object>> tasks = parallelConversion ? new ArrayList<Callable<Object>>() : null;
+		for (List<ParseResult.Value> classValues : values.values()) {
+			for (final ParseResult.Value value : classValues) {
+				if (tasks == null) {
+					value.convert();
+					continue;
+				}
+				tasks.add(new Callable<Object>() {
+					@Override
+					public Object call() {
+						value.convert();
+						return null;
+					}
+				});
+			}
+		}
+		if (tasks == null) {
+			return;
+		}
+		// The conversion failures are kept by the values
+		ForkJoinPool.commonPool().invokeAll(tasks);
+	}
+
+	/**
+	 * @throws OptionsException
+	 *             If the passed processor is null
+	 */
+	private static void checkProcessor(String name, OptionProcessor processor) throws OptionsException {
+		if (processor == null) {
+			logger.error("No available option for {}", name);
+			throw new OptionsException("No available option for " + name);
+		}
+	}
+
+	/**
+	 * @return The flag family processor with the longest long name prefix of
+	 *         the passed name, null if there is none
+	 */
+	private OptionProcessor flagFamily(String name) {
+		OptionProcessor family = null;
+		for (OptionProcessor processor : flagFamilies) {
+			String prefix = processor.getOption().longName();
+			if (name.startsWith(prefix) && name.length() > prefix.length()
+					&& (family == null || prefix.length() > family.getOption().longName().length())) {
+				family = processor;
+			}
+		}
+		return family;
+	}
+
+	/**
+	 * @return The environment variable name of the passed processor, null if
+	 *         it is not mapped to an environment variable
+	 */
+	String environmentName(OptionProcessor processor) {
+		return environmentNames.isEmpty() ? null : environmentNames.get(processor);
+	}
+
+	/**
+	 * This method will return the processor of a configuration file key, the
+	 * keys are the long names of the options and the names of the property
+	 * options. The help and version options can not be configured.
+	 * 
+	 * @param key
+	 *            The configuration file key
+	 * @return The processor of the key or null if the key is not an option
+	 */
+	OptionProcessor configProcessor(String key) {
+		OptionProcessor processor = longNames.get(key);
+		if (processor == null) {
+			processor = propsNames.get(key);
+		}
+		if (processor != null && (processor.getOption().help() || processor.getOption().version())) {
+			return null;
+		}
+		return processor;
+	}
+
+	/**
+	 * @return true, if the environment variable value of an option without a
+	 *         value enables the option
+	 */
+	static boolean isEnabled(String value) {
+		return value.length() > 0 && !value.equals("0") && !value.equalsIgnoreCase("false");
+	}
+
+	/**
+	 * This method will look for a help or version option within the passed
+	 * arguments. If one is found its method is called and the usage or version
+	 * is written to the passed output, if any. The other arguments are not
+	 * looked at, the option object graph is only walked if the help option
+	 * method is not part of one of the passed objects.
+	 * 
+	 * @param args
+	 *            The command line parameters
+	 * @param objects
+	 *            The instances that the passed arguments will be applied to
+	 * @param out
+	 *            The output the usage and version are written to instead of
+	 *            the configured outputs
+	 * @return true, if a help or version option was processed
+	 * @throws OptionsException
+	 *             If the option could not be applied or the output could not be
+	 *             written
+	 */
+	boolean processHelpOptions(String[] args, Object[] objects, Appendable out) throws OptionsException {
+		return !helpNames.isEmpty() && processHelpOptions(args, objects, out, (this.version != null) ? out : null);
+	}
+
+	/**
+	 * @see #processHelpOptions(String[], Object[], Appendable)
+	 */
+	private boolean processHelpOptions(String[] args, Object[] objects, Appendable helpOutput,
+			Appendable versionOutput) throws OptionsException {
+		for (int idx = 0; idx < args.length; idx++) {
+			String arg = args[idx];
+			if (arg.length() < 2 || arg.charAt(0) != '-') {
+				continue;
+			}
+			String name = arg;
+			String term = null;
+			OptionProcessor processor = this.helpNames.get(name);
+			if (processor == null) {
+				// Possible long name as --help=term, look for = character
+				int eq = arg.indexOf('=');
+				if (eq > 0 && arg.charAt(1) == '-') {
+					name = arg.substring(0, eq);
+					processor = this.helpNames.get(name);
+					term = arg.substring(eq + 1);
+				}
+			}
+			if (processor == null) {
+				continue;
+			}
+			Option option = processor.getOption();
+			if (option.help() && term == null) {
+				// The search term is optional and can not be an option
+				if (idx + 1 < args.length && args[idx + 1].charAt(0) != '-') {
+					term = args[idx + 1];
+				} else {
+					term = option.defaultValue();
+				}
+			}
+			Object object = null;
+			Class<?> type = processor.forClass();
+			for (Object o : objects) {
+				if (o.getClass() == type) {
+					object = o;
+					break;
+				}
+			}
+			if (object == null) {
+				object = checkAndReturnTypeInstance(findOptionObjects(objects),
+						name, processor);
+			}
+			applyValue(name, processor, object, term);
+			try {
+				if (option.help() && helpOutput != null) {
+					// The declaring class is displayed when no main class was configured
+					Class<?> mainClass = (this.helpMainClass != null) ? this.helpMainClass : type;
+					String message = (this.helpMessage != null) ? this.helpMessage : "[options]";
+					if (term != null && term.length() > 0) {
+						usage(mainClass, message, term, helpOutput);
+					} else {
+						usage(mainClass, message, helpOutput);
+					}
+					flush(helpOutput);
+				} else if (option.version() && versionOutput != null) {
+					versionOutput.append(this.version).append(System.getProperty("line.separator"));
+					flush(versionOutput);
+				}
+			} catch (IOException e) {
+				logger.error("Unable to write the output for option {}", name, e);
+				throw new OptionsException(
+						"Unable to write the output for option " + name, e);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	private static void flush(Appendable out) throws IOException {
+		if (out instanceof Flushable) {
+			((Flushable) out).flush();
+		}
+	}
+
+	/**
+	 * This method will configure the output of the help options. When set,
+	 * the usage will be written to the passed output whenever a help option is
+	 * passed, else the help option method is expected to display the usage.
+	 * The usage will only contain the matching options if a search term
+	 * followed the help option.
+	 * 
+	 * @param out
+	 *            The output the usage is written to, for instance System.out
+	 * @param mainClass
+	 *            The main class displayed as part of the usage
+	 * @param message
+	 *            The message explaining the parameter line choices
+	 * 
+	 * @see Option#help()
+	 * @see #usage(Class, String, String, Appendable)
+	 */
+	public void setHelpOutput(Appendable out, Class<?> mainClass, String message) {
+		this.helpOutput = out;
+		this.helpMainClass = mainClass;
+		this.helpMessage = message;
+	}
+
+	/**
+	 * This method will configure the output of the version options. When set,
+	 * the passed version will be written to the passed output whenever a
+	 * version option is passed.
+	 * 
+	 * @param out
+	 *            The output the version is written to, for instance System.out
+	 * @param version
+	 *            The version line of the application
+	 * 
+	 * @see Option#version()
+	 */
+	public void setVersionOutput(Appendable out, String version) {
+		this.versionOutput = out;
+		this.version = version;
+	}
+
+	/**
+	 * This method will map the options that have a long name and do not
+	 * define an environment variable to the environment variable named after
+	 * the passed prefix and their long name. For instance, the --cache-size
+	 * option is mapped to APP_CACHE_SIZE for the APP prefix. This method has to
+	 * be called before the arguments are processed.
+	 * 
+	 * @param prefix
+	 *            The prefix of the environment variable names
+	 * 
+	 * @see Option#env()
+	 */
+	public void setEnvironmentPrefix(String prefix) {
+		for (OptionProcessor processor : processors) {
+			Option option = processor.getOption();
+			if (option.help() || option.version() || option.flagFamily() || option.env().length() > 0
+					|| option.longName().length() == 0) {
+				continue;
+			}
+			String name = option.longName().toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9]", "_");
+			environmentNames.put(processor, (prefix.length() > 0) ? prefix + "_" + name : name);
+			addFallbackValue(processor.forClass(), processor);
+		}
+	}
+
+	/**
+	 * @param objects
+	 * @return
+	 */
+	Object[] findOptionObjects(Object[] objects) {
+		Queue<Object> objectList = new LinkedList<Object>();
+		Queue<Object> moreObjects = new LinkedList<Object>();
+		for(Object object : objects) {
+			objectList.add(object);
+		}
+		moreObjects.addAll(objectList);
+		logger.debug("moreObjects: {}", moreObjects);
+		Object object;
+		while( ( object = moreObjects.poll() ) != null ) {
+			logger.debug("Processing object: {}", object);
+			Class<?> clz = object.getClass();
+			for(Field field : clz.getFields()) {
+				logger.debug("Looking at field: {}", field.getName());
+				if (field.getAnnotation(OptionReference.class) != null) {
+					try {
+						logger.debug("Found field with OptionReference: {}", field.getName());
+						Object value = field.get(object);
+						logger.debug("Returned field value: {}", value);
+						moreObjects.add(value);
+						objectList.add(value);
+					} catch (IllegalArgumentException e) {
+						logger.error(
+								"Unable to retrieve value for field: {} for class: {}",
+								new Object[] { field.getName(), clz.getName() },
+								e);
+						new OptionsException(
+								"Unable to retrieve value for field: "
+										+ field.getName() + " for class: "
+										+ clz.getName(), e);
+					} catch (IllegalAccessException e) {
+						logger.error(
+								"Unable to retrieve value for field: {} for class: {}",
+								new Object[] { field.getName(), clz.getName() },
+								e);
+						new OptionsException(
+								"Unable to retrieve value for field: "
+										+ field.getName() + " for class: "
+										+ clz.getName(), e);
+					}
+				}
+			}
+			for(Method method : clz.getMethods()) {
+				logger.debug("Looking at method: {}", method.getName());
+				if (method.getAnnotation(OptionReference.class) != null) {
+					try {
+						logger.debug("Found method with OptionReference: {}",
+								method.getName());
+						Object value = method.invoke(object);
+						if (!objectList.contains(value)) {
+							logger.debug("Returned method return value: {}",
+									value);
+							moreObjects.add(value);
+							objectList.add(value);
+						}
+					} catch (IllegalArgumentException e) {
+						logger.error(
+								"Unable to retrieve value for method: {} for class: {}",
+								new Object[] { method.getName(), clz.getName() },
+								e);
+						new OptionsException(
+								"Unable to retrieve value for method: "
+										+ method.getName() + " for class: "
+										+ clz.getName(), e);
+					} catch (IllegalAccessException e) {
+						logger.error(
+								"Unable to retrieve value for method: {} for class: {}",
+								new Object[] { method.getName(), clz.getName() },
+								e);
+						new OptionsException(
+								"Unable to retrieve value for method: "
+										+ method.getName() + " for class: "
+										+ clz.getName(), e);
+					} catch (InvocationTargetException e) {
+						logger.error(
+								"Unable to retrieve value for method: {} for class: {}",
+								new Object[] { method.getName(), clz.getName() },
+								e);
+						new OptionsException(
+								"Unable to retrieve value for method: "
+										+ method.getName() + " for class: "
+										+ clz.getName(), e);
+					}
+				}
+			}
+		}
+		return objectList.toArray();
+	}
+
+	/**
+	 * The method will apply the value to the passed object using the passed
+	 * processor. The name is only used to generate the exception if anything
+	 * went wrong.
+	 * 
+	 * @param name
+	 *            The name of the option that is being processed
+	 * @param processor
 	 *            The processor instance used to apply the value
 	 * @param object
 	 *            The object that the value will be applied to
@@ -645,8 +1350,10 @@ public class Options {
 	private Option applyValue(String name, OptionProcessor processor,
 			Object object, String value) throws OptionsException {
 		try {
-			logger.debug("Applying value: {} to object: {} for option: {}",
-					new Object[] { value, object, name });
+			if (logger.isDebugEnabled()) {
+				logger.debug("Applying value: {} to object: {} for option: {}",
+						new Object[] { value, object, name });
+			}
 			processor.process(object, value);
 			return processor.getOption();
 		} catch (Exception e) {
@@ -673,7 +1380,7 @@ public class Options {
 	 *             If the passed processor is null or if there is no instance
 	 *             that can be used by the processor
 	 */
-	private Object checkAndReturnTypeInstance(Object[] objects, String name,
+	Object checkAndReturnTypeInstance(Object[] objects, String name,
 			OptionProcessor processor) throws OptionsException {
 		if (processor == null) {
 			logger.error("No available option for {}", name);
@@ -732,59 +1439,111 @@ public class Options {
 										+ " for class "
 										+ clz.getName());
 					}
-					// Create an option command that will be used to process the
-					// current option
-					command = new OptionCommand() {
-						private Method method;
-						private Class<?> clz;
-
-						@Override
-						public void execute(Object object, String value)
-								throws Exception {
-							method.invoke(object);
-						}
+					if (option.flagFamily()) {
+						command = flagFamilyCommand(clz, method, option);
+					} else {
+						// Create an option command that will be used to process the
+						// current option
+						command = new ValueCommand() {
+							private Method method;
+							private Class<?> clz;
 
-						OptionCommand setFields(Method method, Class<?> clz) {
-							this.method = method;
-							this.clz = clz;
-							return this;
-						}
+							@Override
+							public void execute(Object object, String value)
+									throws Exception {
+								method.invoke(object);
+							}
 
-						@Override
-						public boolean hasValue() {
-							return false;
-						}
+							@Override
+							public Object convert(String value) {
+								return null;
+							}
 
-						@Override
-						public Class<?> forClass() {
-							return this.clz;
-						}
+							@Override
+							public void apply(Object object, Object value)
+									throws Exception {
+								method.invoke(object);
+							}
+
+							OptionCommand setFields(Method method, Class<?> clz) {
+								this.method = method;
+								this.clz = clz;
+								return this;
+							}
+
+							@Override
+							public boolean hasValue() {
+								return false;
+							}
+
+							@Override
+							public Class<?> forClass() {
+								return this.clz;
+							}
 
-					}.setFields(method, clz);
+						}.setFields(method, clz);
+					}
 				} else {
-					Class<?> type = parameterTypes[0];
+					if (option.flagFamily()) {
+						logger.error("The flag family method {} for class {} is not allowed to expect a parameter",
+								method.getName(), clz.getName());
+						throw new OptionsException("The flag family method " + method.getName()
+								+ " for class " + clz.getName() + " is not allowed to expect a parameter");
+					}
+					Type type = method.getGenericParameterTypes()[0];
+					// The atomic held by the instance is updated by in place options
+					AccessibleObject accessor = option.inPlace() ? AtomicValues.accessor(clz, method) : null;
 					// Create an option command that will be used to process the
 					// current option
 					try {
-						command = new OptionCommand() {
+						command = new ValueCommand() {
 							private Method method;
 							private ConvertCommand convert;
 							private Class<?> clz;
+							private AccessibleObject accessor;
 
 							OptionCommand setFields(Method method,
-									Class<?> type, Class<?> clz)
+									Type type, Class<?> clz, AccessibleObject accessor)
 									throws Exception {
 								this.method = method;
-								this.convert = convert(type);
+								this.convert = Options.convert(type);
 								this.clz = clz;
+								this.accessor = accessor;
 								return this;
 							}
 
 							@Override
 							public void execute(Object object, String value)
 									throws Exception {
-								method.invoke(object, convert.execute(value));
+								apply(object, convert(value));
+							}
 
+							@Override
+							public Object convert(String value) throws Exception {
+								SlowConversionEvent event = new SlowConversionEvent();
+								event.begin();
+								Object converted = convert.execute(value);
+								event.end();
+								if (event.shouldCommit()) {
+									event.optionClass = clz.getName();
+									event.method = method.getName();
+									event.type = method.getParameterTypes()[0].getName();
+									event.commit();
+								}
+								return converted;
+							}
+
+							@Override
+							public void apply(Object object, Object value)
+									throws Exception {
+								if (accessor != null) {
+									Object current = AtomicValues.current(accessor, object);
+									if (current != null) {
+										AtomicValues.set(current, value);
+										return;
+									}
+								}
+								method.invoke(object, value);
 							}
 
 							@Override
@@ -796,7 +1555,7 @@ public class Options {
 							public Class<?> forClass() {
 								return this.clz;
 							}
-						}.setFields(method, type, clz);
+						}.setFields(method, type, clz, accessor);
 					} catch (Exception e) {
 						logger.error(
 								"An exception was raised while processing option: {} for class {}",
@@ -807,83 +1566,246 @@ public class Options {
 										+ clz.getName(), e);
 					}
 				}
-				String shortName;
-				OptionProcessor optionProcessor = new OptionProcessor(command,
-						option);
-				if (option.shortName() != ' ') {
-					shortName = new String(new char[] { option.shortName() });
-					if (option.propertyValue()) {
-						if (propsNames.put(shortName, optionProcessor) != null) {
-							logger.error("Option {} is already defined", shortName);
-							throw new OptionsException("Option " + shortName
-									+ " is already defined");
-						}
-					} else {
-						if (shortNames.put(shortName, optionProcessor) != null) {
-							logger.error("Option {} is already defined", shortName);
-							throw new OptionsException("Option " + shortName
-									+ " is already defined");
-						}
-					}
+				addProcessor(clz, method, new OptionProcessor(command,
+						option, (parameterTypes.length > 0) ? parameterTypes[0] : null,
+						method.getDeclaringClass()));
+			}
+		}
+		for (Field field : OptionFields.fields(clz)) {
+			Option option = field.getAnnotation(Option.class);
+			OptionCommand command = OptionFields.command(clz, field, option);
+			// A field can not be a help or version option, the method is not needed
+			addProcessor(clz, null, new OptionProcessor(command, option, command.hasValue() ? OptionFields.type(clz,
+					field) : null, field.getDeclaringClass()));
+		}
+	}
+
+	/**
+	 * This method will extract the getters with the Option annotation of the
+	 * passed option interface, the options are applied to the instances of the
+	 * generated implementation of the interface.
+	 * 
+	 * @param type
+	 *            The option interface
+	 * @throws OptionsException
+	 *             If the interface is not a valid option interface
+	 * 
+	 * @see #newInstance(Class)
+	 */
+	private void processInterfaceOptions(Class<?> type) throws OptionsException {
+		OptionInterfaces.Implementation implementation = OptionInterfaces.implementation(type);
+		for (Method method : implementation.getGetters()) {
+			OptionCommand command = implementation.command(method);
+			// The descriptions are looked up in the bundle of the interface
+			addProcessor(implementation.getType(), method, new OptionProcessor(command,
+					method.getAnnotation(Option.class), command.hasValue() ? method.getReturnType() : null, type));
+		}
+		optionInterfaces.add(type);
+	}
+
+	/**
+	 * This method will create an instance of an option interface passed to the
+	 * constructor. The instance is generated with a field for each getter,
+	 * the getters only read their field. The values are set by passing the
+	 * instance to the processArguements methods.
+	 * 
+	 * @param type
+	 *            The option interface
+	 * @return A new instance of the interface whose options are not set
+	 * @throws OptionsException
+	 *             If the implementation of the interface could not be
+	 *             generated
+	 * @throws IllegalArgumentException
+	 *             If the interface was not passed to the constructor
+	 */
+	public <T> T newInstance(Class<T> type) throws OptionsException {
+		if (!optionInterfaces.contains(type)) {
+			throw new IllegalArgumentException("The option interface " + type.getName()
+					+ " was not passed to the constructor");
+		}
+		return type.cast(OptionInterfaces.implementation(type).newInstance());
+	}
+
+	/**
+	 * This method will register the names, environment variable, default
+	 * value and required flag of the option of the passed processor.
+	 * 
+	 * @param clz
+	 *            The class whose instances the option is applied to
+	 * @param method
+	 *            The method annotated with the option
+	 * @param optionProcessor
+	 *            The processor of the option
+	 * @throws OptionsException
+	 *             If a name of the option is already defined
+	 */
+	private void addProcessor(Class<?> clz, Method method, OptionProcessor optionProcessor)
+			throws OptionsException {
+		Option option = optionProcessor.getOption();
+		String shortName;
+		if (option.help() || option.version()) {
+			processHelpOption(clz, method, optionProcessor);
+		}
+		if (option.shortName() != ' ') {
+			shortName = new String(new char[] { option.shortName() });
+			if (option.propertyValue()) {
+				if (propsNames.put(shortName, optionProcessor) != null) {
+					logger.error("Option {} is already defined", shortName);
+					throw new OptionsException("Option " + shortName
+							+ " is already defined");
 				}
-				String longName;
-				if ((longName = option.longName()).length() > 0) {
-					if (option.propertyValue()) {
-						if (propsNames.put(longName, optionProcessor) != null) {
-							logger.error("Option {} is already defined", longName);
-							throw new OptionsException("Option " + longName
-									+ " is already defined");
-						}
-					} else {
-						if (longNames.put(longName, optionProcessor) != null) {
-							logger.error("Option {} is already defined", longName);
-							throw new OptionsException("Option " + longName
-									+ " is already defined");
-						}
-					}
+			} else {
+				if (shortNames.put(shortName, optionProcessor) != null) {
+					logger.error("Option {} is already defined", shortName);
+					throw new OptionsException("Option " + shortName
+							+ " is already defined");
 				}
-				if (option.defaultValue().length() > 0) {
-					Collection<OptionProcessor> defaultOptions = defaultValues
-							.get(clz);
-					if (defaultOptions == null) {
-						defaultOptions = new HashSet<OptionProcessor>();
-						defaultValues.put(clz, defaultOptions);
-					}
-					defaultOptions.add(optionProcessor);
+			}
+		}
+		String longName;
+		if (option.flagFamily()) {
+			for (OptionProcessor family : flagFamilies) {
+				if (family.getOption().longName().equals(option.longName())) {
+					logger.error("Option {} is already defined", option.longName());
+					throw new OptionsException("Option " + option.longName()
+							+ " is already defined");
+				}
+			}
+			flagFamilies.add(optionProcessor);
+		} else if ((longName = option.longName()).length() > 0) {
+			if (option.propertyValue()) {
+				if (propsNames.put(longName, optionProcessor) != null) {
+					logger.error("Option {} is already defined", longName);
+					throw new OptionsException("Option " + longName
+							+ " is already defined");
+				}
+			} else {
+				if (longNames.put(longName, optionProcessor) != null) {
+					logger.error("Option {} is already defined", longName);
+					throw new OptionsException("Option " + longName
+							+ " is already defined");
 				}
-				options.add(option);
-				methodOptions.add(new Map.Entry<Method, Option>() {
+			}
+		}
+		// The default value of a help option is its search term
+		if (!option.help()) {
+			if (option.env().length() > 0) {
+				environmentNames.put(optionProcessor, option.env());
+			}
+			if (option.defaultValue().length() > 0 || option.env().length() > 0) {
+				addFallbackValue(clz, optionProcessor);
+			}
+		}
+		options.add(option);
+		processors.add(optionProcessor);
+		if (option.required()) {
+			requiredOptions.add(option);
+		}
+	}
 
-					private Method method;
-					private Option option;
+	/**
+	 * This method will create the command of a flag family, it applies the
+	 * flags passed as its value to the FlagSet returned by the option method.
+	 * The flags are parsed when the value is converted and resolved against
+	 * the FlagSet of every instance before any flag is set.
+	 */
+	private static OptionCommand flagFamilyCommand(final Class<?> clz, final Method method, Option option)
+			throws OptionsException {
+		if (method.getReturnType() != FlagSet.class || option.longName().length() == 0
+				|| option.shortName() != ' ' || option.required() || option.help() || option.version()) {
+			logger.error(
+					"The flag family method {} for class {} must return a FlagSet and only define a long name",
+					method.getName(), clz.getName());
+			throw new OptionsException("The flag family method " + method.getName() + " for class "
+					+ clz.getName() + " must return a FlagSet and only define a long name");
+		}
+		return new CheckedCommand() {
 
-					@Override
-					public Method getKey() {
-						return this.method;
-					}
+			@Override
+			public void execute(Object object, String value) throws Exception {
+				apply(object, convert(value));
+			}
 
-					public Entry<Method, Option> setFields(Method method,
-							Option option) {
-						this.method = method;
-						this.option = option;
-						return this;
-					}
+			@Override
+			public Object convert(String value) {
+				return FlagSet.Changes.parse(value);
+			}
 
-					@Override
-					public Option getValue() {
-						return this.option;
-					}
+			@Override
+			public void check(Object object, Object value) throws Exception {
+				flags(object).ids((FlagSet.Changes) value);
+			}
 
-					@Override
-					public Option setValue(Option arg0) {
-						return this.option;
-					}
+			@Override
+			public void apply(Object object, Object value) throws Exception {
+				FlagSet flags = flags(object);
+				flags.apply(flags.ids((FlagSet.Changes) value), (FlagSet.Changes) value);
+			}
 
-				}.setFields(method, option));
-				if (option.required()) {
-					requiredOptions.add(option);
+			private FlagSet flags(Object object) throws Exception {
+				FlagSet flags = (FlagSet) method.invoke(object);
+				if (flags == null) {
+					throw new IllegalStateException("The flag family method " + method.getName()
+							+ " returned null");
 				}
+				return flags;
 			}
+
+			@Override
+			public boolean hasValue() {
+				return false;
+			}
+
+			@Override
+			public Class<?> forClass() {
+				return clz;
+			}
+
+		};
+	}
+
+	private void addFallbackValue(Class<?> clz, OptionProcessor processor) {
+		Collection<OptionProcessor> fallbackOptions = fallbackValues.get(clz);
+		if (fallbackOptions == null) {
+			fallbackOptions = new HashSet<OptionProcessor>();
+			fallbackValues.put(clz, fallbackOptions);
+		}
+		fallbackOptions.add(processor);
+	}
+
+	/**
+	 * This method will validate the passed help or version option and register
+	 * its names so that they are detected before any other option.
+	 * 
+	 * @param clz
+	 *            The class that contains the option
+	 * @param method
+	 *            The method annotated with the option
+	 * @param processor
+	 *            The processor of the option
+	 * @throws OptionsException
+	 *             If the option is not a valid help or version option
+	 */
+	private void processHelpOption(Class<?> clz, Method method,
+			OptionProcessor processor) throws OptionsException {
+		Option option = processor.getOption();
+		Class<?> parameterTypes[] = method.getParameterTypes();
+		if ((option.help() && option.version()) || option.embeddedValue()
+				|| option.propertyValue() || option.required()
+				|| (option.version() && parameterTypes.length > 0)
+				|| (parameterTypes.length > 0 && parameterTypes[0] != String.class)) {
+			logger.error(
+					"Invalid help or version option method {} for class {}",
+					method.getName(), clz.getName());
+			throw new OptionsException(
+					"Invalid help or version option method " + method.getName()
+							+ " for class " + clz.getName());
+		}
+		if (option.shortName() != ' ') {
+			helpNames.put("-" + option.shortName(), processor);
+		}
+		if (option.longName().length() > 0) {
+			helpNames.put("--" + option.longName(), processor);
 		}
 	}
 
@@ -898,6 +1820,63 @@ public class Options {
 		primitiveTypes.add(Float.TYPE);
 	}
 
+	/**
+	 * This method will return the converter of the passed generic parameter
+	 * type, the value of an AtomicReference is converted to its type argument
+	 * or kept as a String when it has none. The other types are converted to
+	 * their erasure.
+	 */
+	static ConvertCommand convert(Type type) {
+		Class<?> rawType = erasure(type);
+		if (rawType == AtomicReference.class) {
+			Type argument = (type instanceof ParameterizedType) ? ((ParameterizedType) type)
+					.getActualTypeArguments()[0] : String.class;
+			return new AtomicReferenceConvertCommand(convert((argument instanceof Class) ? (Class<?>) argument
+					: String.class));
+		}
+		return convert(rawType);
+	}
+
+	/**
+	 * @return The class of the passed generic type, the bound of a type
+	 *         variable or wildcard and the array of the erased component type
+	 *         of a generic array
+	 */
+	static Class<?> erasure(Type type) {
+		if (type instanceof Class) {
+			return (Class<?>) type;
+		} else if (type instanceof ParameterizedType) {
+			return erasure(((ParameterizedType) type).getRawType());
+		} else if (type instanceof TypeVariable) {
+			return erasure(((TypeVariable<?>) type).getBounds()[0]);
+		} else if (type instanceof WildcardType) {
+			return erasure(((WildcardType) type).getUpperBounds()[0]);
+		} else if (type instanceof GenericArrayType) {
+			return Array.newInstance(erasure(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+		}
+		return Object.class;
+	}
+
+	/**
+	 * @return true, if the values of the passed type can be converted from a
+	 *         String, the type has a converter, is an enum, an AtomicReference
+	 *         or a concrete class with a public String constructor
+	 */
+	static boolean isConvertible(Class<?> type) {
+		if (converters.containsKey(type) || type.isEnum() || type == AtomicReference.class) {
+			return true;
+		}
+		if (type.isArray() || type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+			return false;
+		}
+		try {
+			type.getConstructor(String.class);
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
 	/**
 	 * This method will generate an instance of a ConvertCommand instance that
 	 * will transform the string value into the passed type class.
@@ -907,10 +1886,14 @@ public class Options {
 	 *            will return
 	 * @return A ConvertCommand instance
 	 */
-	private ConvertCommand convert(Class<?> type) {
+	static ConvertCommand convert(Class<?> type) {
 		ConvertCommand convertCommand = converters.get(type);
 		if (convertCommand == null) {
-			convertCommand = new ClassConvertCommand(type);
+			if (type.isEnum()) {
+				convertCommand = new EnumConvertCommand(type);
+			} else {
+				convertCommand = new ClassConvertCommand(type);
+			}
 		}
 		return convertCommand;
 	}
@@ -946,138 +1929,190 @@ public class Options {
 	 * @return A formatted string with all of the options available
 	 */
 	public String usage(Class<?> mainClass, String message) {
-		String lineSep = System.getProperty("line.separator");
-		StringBuffer str = new StringBuffer("usage: java ");
-		int startIndex = str.length();
-		String className = mainClass.getName();
-		if ( ( (str.length() - startIndex) + className.length() + message.length() ) <= 120 ) {
-			str.append(className).append(" ").append(message).append(lineSep);
-		} else if (((str.length() - startIndex) + className.length()) <= 120) {
-			str.append(className).append(" ").append(lineSep);
-			int maxLength = 120 - str.length() + startIndex;
-			while (message.charAt(--maxLength) != ' ' && maxLength > 0)
-				;
-			if (maxLength != 0) {
-				str.append(message, 0, maxLength);
-			}
-			// Add the line separator and continue to process the message string... 
-			str.append(lineSep);
-			// It is possible that we are just copying the whole string into the truncatedMessage string which is fine...
-			String truncatedMessage = message.substring(maxLength);
-			while (truncatedMessage.length() > 116) {
-				logger.debug("Message is greater than 116 characters: " + truncatedMessage);
-				maxLength = 120;
-				while (truncatedMessage.charAt(--maxLength) != ' '
-						&& maxLength > 0)
-					;
-				// Prepend each string with four spaces...
-				str.append(FOUR_SPACE_TAB);
-				if (maxLength != 0) {
-					str.append(truncatedMessage, 0, maxLength);
-					truncatedMessage = truncatedMessage.substring(maxLength);
-				} else {
-					// What, this single set of characters does not contain a
-					// space for 120 characters!!!!!
-					str.append(truncatedMessage);
-					truncatedMessage = "";
-				}
-				// Always include the line separator...
-				str.append(lineSep);
-			}
-			// Check if there is any remaining message information that needs to be displayed...
-			if ( ! truncatedMessage.isEmpty() ) {
-				str.append(FOUR_SPACE_TAB).append(truncatedMessage).append(lineSep);
-			}
-		} else {
-			// What am I going to do here!!!!
-			// For now, just display the extended method name and move on...
-			str.append(className).append(" ").append(lineSep).append(message).append(lineSep);
-		}
-		// Let us process all of the different options and generate a standard output....
-		for (Entry<Method, Option> methodOption : this.methodOptions) {
-			Option option = methodOption.getValue();
-			Method method = methodOption.getKey();
-			startIndex = str.length();
-			logger.debug("startIndex=" + startIndex);
-			if (option.shortName() != ' ') {
-				str.append("  ");
-				if (!option.propertyValue()) {
-					str.append("-").append(option.shortName());
-					if (option.embeddedValue()) {
-						str.append("[value]");
-					} else {
-						if (method.getParameterTypes().length > 0) {
-							str.append(" [value]");
-						}
-					}
-				} else {
-					str.append(option.shortName()).append("=[value]");
-				}
-			}
-			logger.debug("After short check str=[[" + str.toString() + "]]");
-			if (option.longName().length() > 0) {
-				// We've already included an option definition and add some spaces instead of a comma...
-				if (startIndex == str.length()) {
-					str.append("  ");
-				} else {
-					str.append(", ");
-				}
-				if (!option.propertyValue()) {
-					str.append("--").append(option.longName());
-					// Determine if a value is expected.
-					if (method.getParameterTypes().length > 0) {
-						str.append("[=value| value]");
-					}
-				} else {
-					str.append(option.longName()).append("=[value]");
+		StringBuilder str = new StringBuilder();
+		try {
+			usage(mainClass, message, UsageRenderer.DEFAULT_WIDTH, str);
+		} catch (IOException e) {
+			// A StringBuilder does not throw an IOException
+			throw new IllegalStateException(e);
+		}
+		return str.toString();
+	}
+
+	/**
+	 * This method will write the usage text to the passed appendable, for
+	 * instance a Writer or a PrintStream, instead of creating a string.
+	 * 
+	 * @param mainClass
+	 *            The main class that a user calls and passed the command line
+	 *            parameters to.
+	 * @param message
+	 *            The message that will be displayed explaining parameter line
+	 *            choices.
+	 * @param out
+	 *            The appendable the usage text is written to
+	 * @throws IOException
+	 *             If the appendable was unable to write the usage text
+	 * 
+	 * @see #usage(Class, String)
+	 */
+	public void usage(Class<?> mainClass, String message, Appendable out) throws IOException {
+		usage(mainClass, message, UsageRenderer.DEFAULT_WIDTH, out);
+	}
+
+	/**
+	 * This method will write the usage text formatted for the passed line
+	 * width to the passed appendable. The formatted option lines are cached
+	 * for each width so only the first call for a given width formats them.
+	 * 
+	 * @param mainClass
+	 *            The main class that a user calls and passed the command line
+	 *            parameters to.
+	 * @param message
+	 *            The message that will be displayed explaining parameter line
+	 *            choices.
+	 * @param width
+	 *            The maximum number of characters per line
+	 * @param out
+	 *            The appendable the usage text is written to
+	 * @throws IOException
+	 *             If the appendable was unable to write the usage text
+	 */
+	public void usage(Class<?> mainClass, String message, int width, Appendable out) throws IOException {
+		usageRenderer().render(mainClass, message, width, out);
+	}
+
+	/**
+	 * This method will write the usage text with the option descriptions of
+	 * the passed locale to the passed appendable. The descriptions of the
+	 * options that define a description key are looked up in the resource
+	 * bundle of their class for that locale.
+	 * 
+	 * @param mainClass
+	 *            The main class that a user calls and passed the command line
+	 *            parameters to.
+	 * @param message
+	 *            The message that will be displayed explaining parameter line
+	 *            choices.
+	 * @param locale
+	 *            The locale of the option descriptions
+	 * @param out
+	 *            The appendable the usage text is written to
+	 * @throws IOException
+	 *             If the appendable was unable to write the usage text
+	 * 
+	 * @see Option#descriptionKey()
+	 */
+	public void usage(Class<?> mainClass, String message, Locale locale, Appendable out) throws IOException {
+		usage(mainClass, message, UsageRenderer.DEFAULT_WIDTH, locale, out);
+	}
+
+	/**
+	 * This method will write the usage text formatted for the passed line
+	 * width with the option descriptions of the passed locale.
+	 * 
+	 * @see #usage(Class, String, int, Appendable)
+	 * @see #usage(Class, String, Locale, Appendable)
+	 */
+	public void usage(Class<?> mainClass, String message, int width, Locale locale, Appendable out)
+			throws IOException {
+		usageRenderer().render(mainClass, message, width, locale, out);
+	}
+
+	/**
+	 * This method will return the options whose names or description match
+	 * the passed query, ordered by relevance. A query term matches any word of
+	 * a name or description that it is a prefix of, the long names are split
+	 * on their camel case boundaries. The search index is only created the
+	 * first time that this method is called.
+	 * 
+	 * @param query
+	 *            One or more space separated search terms
+	 * @return The matching options, the best match first
+	 */
+	public List<Option> search(String query) {
+		OptionProcessor processors[] = usageRenderer().processors();
+		int indexes[] = helpIndex().search(query);
+		List<Option> found = new ArrayList<Option>(indexes.length);
+		for (int index : indexes) {
+			found.add(processors[index].getOption());
+		}
+		return found;
+	}
+
+	/**
+	 * This method will write the usage text to the passed appendable but only
+	 * include the options that match the passed query, ordered by relevance.
+	 * This is used to implement a --help &lt;term&gt; option for applications
+	 * with a large number of options.
+	 * 
+	 * @param mainClass
+	 *            The main class that a user calls and passed the command line
+	 *            parameters to.
+	 * @param message
+	 *            The message that will be displayed explaining parameter line
+	 *            choices.
+	 * @param query
+	 *            One or more space separated search terms
+	 * @param out
+	 *            The appendable the usage text is written to
+	 * @throws IOException
+	 *             If the appendable was unable to write the usage text
+	 * 
+	 * @see #search(String)
+	 */
+	public void usage(Class<?> mainClass, String message, String query, Appendable out) throws IOException {
+		usageRenderer().render(mainClass, message, UsageRenderer.DEFAULT_WIDTH, helpIndex().search(query), out);
+	}
+
+	/**
+	 * This method will return the help index, it is only created the first
+	 * time that the options are searched.
+	 * 
+	 * @return The help index of this instance
+	 */
+	HelpIndex helpIndex() {
+		HelpIndex index = this.helpIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = this.helpIndex;
+				if (index == null) {
+					index = new HelpIndex(usageRenderer().processors(), usageRenderer().descriptions(Locale.getDefault()));
+					this.helpIndex = index;
 				}
 			}
-			logger.debug("After long check str=[[" + str.toString() + "]]");
-			if (option.defaultValue().length() > 0) {
-				str.append(", default=").append(option.defaultValue());
-			}
-			logger.debug("After default value check str=[[" + str.toString() + "]]");
-			if (option.description().length() > 0) {
-				String description = option.description();
-				if (description.length() + (str.length() - startIndex) < 116) {
-					str.append(FOUR_SPACE_TAB).append(option.description());
-				} else {
-					while(description.length() > 0) {
-						logger.debug("Processing descrition: " + description);
-						// Setup the current length of the current display string....
-						int curLen = str.length() - startIndex;
-						// Determine the last character that can be displayed on the screen
-						int maxSize = 116 - curLen;
-						// Find the end of the last space before the max
-						if( description.length() >= maxSize) {
-							while(description.charAt(--maxSize) != ' ' && maxSize > 0);
-							if (maxSize == 0) {
-								str.append(FOUR_SPACE_TAB).append(description);
-								description = "";
-							} else {
-								str.append(FOUR_SPACE_TAB).append(description.substring(0, maxSize));
-								int max = description.length();
-								while(description.charAt(maxSize) == ' ' && ++maxSize < max);
-								if (maxSize != max) {
-									// Extract the smaller string and append a line separator...
-									description = description.substring(maxSize);
-									str.append(lineSep);
-									startIndex = str.length();
-								} else {
-									description = "";
-								}
-							}
-						} else {
-							str.append(FOUR_SPACE_TAB).append(description);
-							description = "";
-						}
-					}
+		}
+		return index;
+	}
+
+	/**
+	 * This method will return the usage renderer, it is only created the first
+	 * time that the usage text is requested.
+	 * 
+	 * @return The usage renderer of this instance
+	 */
+	UsageRenderer usageRenderer() {
+		UsageRenderer renderer = this.usageRenderer;
+		if (renderer == null) {
+			synchronized (this) {
+				renderer = this.usageRenderer;
+				if (renderer == null) {
+					renderer = new UsageRenderer(this.processors);
+					this.usageRenderer = renderer;
 				}
 			}
-			str.append(lineSep);
-			logger.debug("After description check str=[[" + str.toString() + "]]");
 		}
-		return str.toString();
+		return renderer;
+	}
+
+	/**
+	 * This method will return the option processors in the order the options
+	 * were defined.
+	 * 
+	 * @return Collection containing all of the option processors
+	 */
+	Collection<OptionProcessor> getProcessors() {
+		return Collections.unmodifiableCollection(this.processors);
 	}
 
 	/**
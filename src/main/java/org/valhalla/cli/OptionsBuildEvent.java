@@ -0,0 +1,49 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This JDK Flight Recorder event is emitted for each option class that is
+ * processed while an Options instance builds its option model. </p>
+ * 
+ * The event duration covers the processing of a single class and the option
+ * count states how many Option annotations were found within that class.
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+@Name("org.valhalla.cli.OptionsBuild")
+@Label("Options Model Build")
+@Category({ "Valhalla CLI" })
+@Description("Processing of the Option annotations of a single option class")
+@StackTrace(false)
+class OptionsBuildEvent extends Event {
+
+	@Label("Option Class")
+	String optionClass;
+
+	@Label("Option Count")
+	int optionCount;
+
+}
@@ -0,0 +1,183 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * This class is the client of an {@link OptionsServer}. It forwards the
+ * command line arguments, working directory, environment and standard streams
+ * to the server and returns the exit code of the command. </p>
+ *
+ * usage: java org.valhalla.cli.OptionsClient socket command arguments...
+ *
+ * The protocol is described by {@link LauncherProtocol} so that a native
+ * client can be used when the startup of the client JVM matters. </p>
+ *
+ * @author Claudio Corsi
+ *
+ */
+public class OptionsClient {
+
+	private final Path socket;
+
+	/**
+	 * @param socket
+	 *            The path of the Unix domain socket of the server
+	 */
+	public OptionsClient(Path socket) {
+		this.socket = socket;
+	}
+
+	/**
+	 * This method will execute the command on the server and copy its output
+	 * to the passed streams.
+	 *
+	 * @param command
+	 *            The name of the registered command
+	 * @param args
+	 *            The command line arguments of the command
+	 * @param workingDirectory
+	 *            The working directory passed to the command
+	 * @param environment
+	 *            The environment passed to the command
+	 * @param in
+	 *            The standard input of the command, it is read by a daemon
+	 *            thread
+	 * @param out
+	 *            The standard output of the command
+	 * @param err
+	 *            The standard error of the command
+	 * @return The exit code of the command
+	 * @throws IOException
+	 *             If the server could not be reached or closed the connection
+	 *             before sending the exit code
+	 */
+	public int execute(String command, String args[], Path workingDirectory, Map<String, String> environment,
+			final InputStream in, OutputStream out, OutputStream err) throws IOException {
+		SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+		try {
+			channel.connect(UnixDomainSocketAddress.of(socket));
+			final DataOutputStream request = new DataOutputStream(new BufferedOutputStream(
+					LauncherProtocol.newOutputStream(channel)));
+			request.writeInt(LauncherProtocol.MAGIC);
+			LauncherProtocol.writeString(request, command);
+			LauncherProtocol.writeString(request, workingDirectory.toAbsolutePath().toString());
+			request.writeInt(environment.size());
+			for (Map.Entry<String, String> entry : environment.entrySet()) {
+				LauncherProtocol.writeString(request, entry.getKey());
+				LauncherProtocol.writeString(request, entry.getValue());
+			}
+			request.writeInt(args.length);
+			for (String arg : args) {
+				LauncherProtocol.writeString(request, arg);
+			}
+			request.flush();
+			Thread input = new Thread(new Runnable() {
+				public void run() {
+					forward(in, request);
+				}
+			}, "OptionsClient stdin");
+			input.setDaemon(true);
+			input.start();
+			DataInputStream response = new DataInputStream(new BufferedInputStream(
+					LauncherProtocol.newInputStream(channel)));
+			byte buffer[] = new byte[8192];
+			while (true) {
+				byte type;
+				int length;
+				try {
+					type = response.readByte();
+					length = response.readInt();
+				} catch (EOFException e) {
+					throw new IOException("The server closed the connection before the command completed", e);
+				}
+				if (type == LauncherProtocol.EXIT) {
+					out.flush();
+					err.flush();
+					return response.readInt();
+				}
+				OutputStream stream = (type == LauncherProtocol.STDERR) ? err : out;
+				while (length > 0) {
+					int count = response.read(buffer, 0, Math.min(length, buffer.length));
+					if (count < 0) {
+						throw new IOException("The server closed the connection before the command completed");
+					}
+					stream.write(buffer, 0, count);
+					length -= count;
+				}
+				stream.flush();
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * This method will forward the standard input until it is closed or the
+	 * connection to the server is closed.
+	 */
+	private static void forward(InputStream in, DataOutputStream request) {
+		byte buffer[] = new byte[8192];
+		try {
+			int count;
+			while ((count = in.read(buffer)) > 0) {
+				LauncherProtocol.writeChunk(request, LauncherProtocol.STDIN, buffer, 0, count);
+			}
+			LauncherProtocol.writeChunk(request, LauncherProtocol.EOF, buffer, 0, 0);
+		} catch (IOException e) {
+			// The command completed before the standard input was read
+		}
+	}
+
+	/**
+	 * This method will execute the command on the server using the standard
+	 * streams, working directory and environment of this JVM and exit with the
+	 * exit code of the command.
+	 *
+	 * @param args
+	 *            The socket path, the command name and its arguments
+	 * @throws Exception
+	 *             If the server could not be reached
+	 */
+	public static void main(String args[]) throws Exception {
+		if (args.length < 2) {
+			System.err.println("usage: java " + OptionsClient.class.getName() + " socket command arguments...");
+			System.exit(OptionsServer.ERROR_EXIT_CODE);
+			return;
+		}
+		OptionsClient client = new OptionsClient(Paths.get(args[0]));
+		int exitCode = client.execute(args[1], Arrays.copyOfRange(args, 2, args.length),
+				Paths.get(System.getProperty("user.dir")), System.getenv(), System.in, System.out, System.err);
+		System.exit(exitCode);
+	}
+
+}
@@ -0,0 +1,407 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * This class answers the completion and validation requests of editors and
+ * shells for partial command lines. The option model is loaded once and each
+ * connection, usually an editor session, is served on its own thread, a
+ * virtual thread when the JVM supports them. </p>
+ *
+ * The protocol is line based, a request is a line containing the request name
+ * followed by the command line arguments, all separated by tabs. The tab,
+ * newline and backslash characters of an argument are escaped as \t, \n and
+ * \\. The response is a single line:
+ *
+ * <pre>
+ * complete	--mo          OK	--mode
+ * validate	--mode	FAST    OK
+ * validate	--mode	SLOW    ERROR	An exception was thrown...
+ * </pre>
+ *
+ * The last argument of a complete request is the word being completed, it is
+ * empty when a new word is started. The candidates are returned sorted after
+ * the OK. File values are not completed, clients are expected to fall back to
+ * their own file name completion when no candidates are returned. </p>
+ *
+ * The validation parses and converts the arguments without calling the
+ * option methods, no option instance is created. </p>
+ *
+ * A request line longer than {@link #MAX_REQUEST_LENGTH} characters is
+ * answered with an ERROR and the connection is closed. </p>
+ *
+ * @author Claudio Corsi
+ *
+ */
+public class OptionsDaemon implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(OptionsDaemon.class);
+
+	private static final String OK = "OK";
+	private static final String ERROR = "ERROR";
+
+	/**
+	 * The maximum number of characters of a request line
+	 */
+	static final int MAX_REQUEST_LENGTH = 64 * 1024;
+
+	private final Path socket;
+	private final Options options;
+	/**
+	 * The sorted option words as they are passed on the command line
+	 */
+	private final String words[];
+	/**
+	 * The sorted values of the options whose value is completed, keyed by the
+	 * option names without the = sign
+	 */
+	private final Map<String, String[]> values = new HashMap<String, String[]>();
+	/**
+	 * The names of the options whose value is the next argument
+	 */
+	private final Map<String, String[]> separateValues = new HashMap<String, String[]>();
+	private ServerSocketChannel channel;
+	private ExecutorService executor;
+
+	/**
+	 * @param socket
+	 *            The path of the Unix domain socket the daemon listens to, an
+	 *            existing file at this path is replaced when the daemon is
+	 *            started
+	 * @param classes
+	 *            The option classes that are completed and validated
+	 * @throws OptionsException
+	 *             If the option classes are not valid
+	 */
+	public OptionsDaemon(Path socket, Class<?> classes[]) throws OptionsException {
+		this.socket = socket;
+		this.options = new Options(classes);
+		TreeSet<String> words = new TreeSet<String>();
+		for (OptionProcessor processor : options.getProcessors()) {
+			Option option = processor.getOption();
+			String constants[] = CompletionGenerator.constants(processor);
+			if (constants != null) {
+				Arrays.sort(constants);
+			} else {
+				constants = new String[0];
+			}
+			for (String name : CompletionGenerator.names(processor)) {
+				if (option.embeddedValue() && constants.length > 0) {
+					for (String constant : constants) {
+						words.add(name + constant);
+					}
+					continue;
+				}
+				words.add(name);
+				if (processor.hasValue() && !option.embeddedValue()) {
+					if (name.endsWith("=")) {
+						values.put(name.substring(0, name.length() - 1), constants);
+					} else {
+						values.put(name, constants);
+						separateValues.put(name, constants);
+					}
+				}
+			}
+		}
+		this.words = words.toArray(new String[words.size()]);
+	}
+
+	/**
+	 * This method will return the candidates of the last passed argument.
+	 *
+	 * @param args
+	 *            The arguments of the command line up to the word being
+	 *            completed, the last argument is the possibly empty word being
+	 *            completed
+	 * @return The sorted candidates, the complete words
+	 */
+	public List<String> complete(String args[]) {
+		String word = (args.length > 0) ? args[args.length - 1] : "";
+		if (args.length > 1) {
+			String constants[] = separateValues.get(args[args.length - 2]);
+			if (constants != null) {
+				return matches(constants, "", word);
+			}
+		}
+		int eq = word.indexOf('=');
+		if (eq > 0) {
+			String constants[] = values.get(word.substring(0, eq));
+			if (constants != null) {
+				return matches(constants, word.substring(0, eq + 1), word.substring(eq + 1));
+			}
+			return Collections.emptyList();
+		}
+		return matches(words, "", word);
+	}
+
+	/**
+	 * This method will return the prefix followed by each of the sorted
+	 * candidates that start with the passed word.
+	 */
+	private static List<String> matches(String candidates[], String prefix, String word) {
+		int idx = Arrays.binarySearch(candidates, word);
+		if (idx < 0) {
+			idx = -idx - 1;
+		}
+		List<String> matches = new ArrayList<String>();
+		while (idx < candidates.length && candidates[idx].startsWith(word)) {
+			matches.add(prefix + candidates[idx++]);
+		}
+		return matches;
+	}
+
+	/**
+	 * This method will parse and convert the passed arguments, the option
+	 * methods are not called.
+	 *
+	 * @param args
+	 *            The command line arguments
+	 * @return The error message, null if the arguments are valid
+	 */
+	public String validate(String args[]) {
+		try {
+			options.parse(args, Collections.<String, String> emptyMap(), null);
+			return null;
+		} catch (OptionsException e) {
+			return e.getMessage();
+		} catch (Exception e) {
+			return e.toString();
+		}
+	}
+
+	/**
+	 * This method will bind the socket and start accepting the client
+	 * connections.
+	 *
+	 * @throws IOException
+	 *             If the socket could not be bound
+	 */
+	public synchronized void start() throws IOException {
+		if (channel != null) {
+			throw new IllegalStateException("The daemon was already started");
+		}
+		Files.deleteIfExists(socket);
+		channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		channel.bind(UnixDomainSocketAddress.of(socket));
+		executor = OptionsServer.newExecutor();
+		final ServerSocketChannel channel = this.channel;
+		final ExecutorService executor = this.executor;
+		Thread acceptor = new Thread(new Runnable() {
+			public void run() {
+				accept(channel, executor);
+			}
+		}, "OptionsDaemon " + socket);
+		acceptor.setDaemon(true);
+		acceptor.start();
+		logger.debug("The options daemon is listening on {}", socket);
+	}
+
+	/**
+	 * @return The path of the Unix domain socket of this daemon
+	 */
+	public Path getSocket() {
+		return socket;
+	}
+
+	/**
+	 * This method will stop accepting connections and remove the socket file.
+	 */
+	public synchronized void close() throws IOException {
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.close();
+			executor.shutdown();
+		} finally {
+			channel = null;
+			Files.deleteIfExists(socket);
+		}
+	}
+
+	private void accept(ServerSocketChannel channel, ExecutorService executor) {
+		while (channel.isOpen()) {
+			final SocketChannel client;
+			try {
+				client = channel.accept();
+			} catch (ClosedChannelException e) {
+				return;
+			} catch (IOException e) {
+				logger.error("An exception was raised while accepting a client connection", e);
+				return;
+			}
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						serve(client);
+					} catch (IOException e) {
+						logger.debug("The client connection was closed", e);
+					} finally {
+						try {
+							client.close();
+						} catch (IOException e) {
+							logger.debug("Unable to close the client connection", e);
+						}
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * This method will answer the requests of a client until it closes the
+	 * connection or sends a request that is too long.
+	 */
+	private void serve(SocketChannel client) throws IOException {
+		Reader in = new BufferedReader(new InputStreamReader(LauncherProtocol.newInputStream(client),
+				StandardCharsets.UTF_8));
+		Writer out = new BufferedWriter(new OutputStreamWriter(LauncherProtocol.newOutputStream(client),
+				StandardCharsets.UTF_8));
+		StringBuilder line = new StringBuilder();
+		while (readLine(in, line)) {
+			if (line.length() > MAX_REQUEST_LENGTH) {
+				out.write(ERROR + "\tThe request is longer than " + MAX_REQUEST_LENGTH + " characters\n");
+				out.flush();
+				return;
+			}
+			out.write(answer(line.toString()));
+			out.write('\n');
+			out.flush();
+		}
+	}
+
+	/**
+	 * This method will read the next request line, without its line
+	 * terminator, into the passed builder. The reading stops once the line is
+	 * longer than {@link #MAX_REQUEST_LENGTH} characters so that a client
+	 * cannot make the builder grow without bounds.
+	 *
+	 * @return false at the end of the stream
+	 */
+	static boolean readLine(Reader in, StringBuilder line) throws IOException {
+		line.setLength(0);
+		int c;
+		while ((c = in.read()) >= 0) {
+			if (c == '\n') {
+				if (line.length() > 0 && line.charAt(line.length() - 1) == '\r') {
+					line.setLength(line.length() - 1);
+				}
+				return true;
+			}
+			line.append((char) c);
+			if (line.length() > MAX_REQUEST_LENGTH) {
+				return true;
+			}
+		}
+		return line.length() > 0;
+	}
+
+	/**
+	 * @return The response line of the passed request line
+	 */
+	String answer(String request) {
+		List<String> fields = split(request);
+		String name = fields.get(0);
+		String args[] = fields.subList(1, fields.size()).toArray(new String[fields.size() - 1]);
+		if ("complete".equals(name)) {
+			List<String> candidates = complete(args);
+			StringBuilder response = new StringBuilder(OK);
+			for (String candidate : candidates) {
+				response.append('\t');
+				escape(candidate, response);
+			}
+			return response.toString();
+		} else if ("validate".equals(name)) {
+			String message = validate(args);
+			if (message == null) {
+				return OK;
+			}
+			StringBuilder response = new StringBuilder(ERROR).append('\t');
+			escape(message, response);
+			return response.toString();
+		}
+		return ERROR + "\tUnknown request " + name;
+	}
+
+	/**
+	 * This method will split the request line at its tabs and unescape the
+	 * fields.
+	 */
+	static List<String> split(String line) {
+		List<String> fields = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		for (int idx = 0; idx < line.length(); idx++) {
+			char c = line.charAt(idx);
+			if (c == '\t') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if (c == '\\' && idx + 1 < line.length()) {
+				c = line.charAt(++idx);
+				field.append((c == 't') ? '\t' : (c == 'n') ? '\n' : c);
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+
+	static void escape(String value, StringBuilder out) {
+		for (int idx = 0; idx < value.length(); idx++) {
+			char c = value.charAt(idx);
+			if (c == '\t') {
+				out.append("\\t");
+			} else if (c == '\n') {
+				out.append("\\n");
+			} else if (c == '\\') {
+				out.append("\\\\");
+			} else {
+				out.append(c);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,427 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class is a long lived server that keeps the Options instances of its
+ * registered commands so that the option models are only built once and the
+ * processing code stays warm. The {@link OptionsClient} forwards its command
+ * line arguments, working directory, environment and standard streams over a
+ * Unix domain socket and exits with the exit code of the command. </p>
+ *
+ * Each invocation runs on its own thread, a virtual thread when the JVM
+ * supports them, and is applied to new instances of the option classes of the
+ * command. The option classes must therefore define a public no argument
+ * constructor. </p>
+ *
+ * <pre>
+ * OptionsServer server = new OptionsServer(Paths.get("/tmp/tool.sock"));
+ * server.register("tool", new Class&lt;?&gt;[] { ToolOptions.class }, new OptionsServer.Command() {
+ * 	public int execute(OptionsServer.Invocation invocation) throws Exception {
+ * 		...
+ * 	}
+ * });
+ * server.start();
+ * </pre>
+ *
+ * @author Claudio Corsi
+ *
+ */
+public class OptionsServer implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(OptionsServer.class);
+
+	/**
+	 * The exit code used when the command could not be executed
+	 */
+	public static final int ERROR_EXIT_CODE = 1;
+
+	/**
+	 * The command executed by the server once the arguments were applied to
+	 * the option instances of the invocation.
+	 */
+	public static interface Command {
+
+		/**
+		 * @param invocation
+		 *            The invocation that this command is executed for
+		 * @return The exit code of the command
+		 * @throws Exception
+		 *             If the command failed, the client will exit with the
+		 *             {@link OptionsServer#ERROR_EXIT_CODE}
+		 */
+		int execute(Invocation invocation) throws Exception;
+
+	}
+
+	/**
+	 * This class contains the state of a single client invocation. The
+	 * standard streams must be used instead of the System streams since those
+	 * are shared by all invocations.
+	 */
+	public static final class Invocation {
+
+		private final String command;
+		private final Path workingDirectory;
+		private final Map<String, String> environment;
+		private final Object objects[];
+		private final String arguments[];
+		private final InputStream in;
+		private final PrintStream out;
+		private final PrintStream err;
+
+		Invocation(String command, Path workingDirectory, Map<String, String> environment, Object objects[],
+				String arguments[], InputStream in, PrintStream out, PrintStream err) {
+			this.command = command;
+			this.workingDirectory = workingDirectory;
+			this.environment = environment;
+			this.objects = objects;
+			this.arguments = arguments;
+			this.in = in;
+			this.out = out;
+			this.err = err;
+		}
+
+		public String getCommand() {
+			return command;
+		}
+
+		/**
+		 * @return The working directory of the client
+		 */
+		public Path getWorkingDirectory() {
+			return workingDirectory;
+		}
+
+		/**
+		 * @return The environment of the client
+		 */
+		public Map<String, String> getEnvironment() {
+			return environment;
+		}
+
+		/**
+		 * @return The option instances that the arguments were applied to
+		 */
+		public Object[] getObjects() {
+			return objects;
+		}
+
+		/**
+		 * @return The arguments that were not processed as options
+		 */
+		public String[] getArguments() {
+			return arguments;
+		}
+
+		public InputStream getIn() {
+			return in;
+		}
+
+		public PrintStream getOut() {
+			return out;
+		}
+
+		public PrintStream getErr() {
+			return err;
+		}
+
+	}
+
+	/**
+	 * The Options instance and option classes of a registered command
+	 */
+	private static class Registration {
+
+		private final Options options;
+		private final Constructor<?> constructors[];
+		private final Command command;
+
+		Registration(Options options, Constructor<?> constructors[], Command command) {
+			this.options = options;
+			this.constructors = constructors;
+			this.command = command;
+		}
+
+	}
+
+	private final Path socket;
+	private final ConcurrentMap<String, Registration> commands = new ConcurrentHashMap<String, Registration>();
+	private ServerSocketChannel channel;
+	private ExecutorService executor;
+
+	/**
+	 * @param socket
+	 *            The path of the Unix domain socket the server listens to, an
+	 *            existing file at this path is replaced when the server is
+	 *            started
+	 */
+	public OptionsServer(Path socket) {
+		this.socket = socket;
+	}
+
+	/**
+	 * This method will register a command that can be invoked by the clients.
+	 * The Options instance of the command is created by this method.
+	 *
+	 * @param name
+	 *            The name of the command passed by the client
+	 * @param classes
+	 *            The option classes of the command
+	 * @param command
+	 *            The command executed for each invocation
+	 * @throws OptionsException
+	 *             If the option classes are not valid or can not be created
+	 */
+	public void register(String name, Class<?> classes[], Command command) throws OptionsException {
+		commands.put(name, new Registration(new Options(classes), constructors(classes), command));
+	}
+
+	/**
+	 * @return The public no argument constructors of the passed option classes
+	 * @throws OptionsException
+	 *             If one of the classes does not define one
+	 */
+	static Constructor<?>[] constructors(Class<?> classes[]) throws OptionsException {
+		Constructor<?> constructors[] = new Constructor<?>[classes.length];
+		for (int idx = 0; idx < classes.length; idx++) {
+			try {
+				constructors[idx] = classes[idx].getConstructor();
+			} catch (NoSuchMethodException e) {
+				logger.error("The option class {} does not define a public no argument constructor", classes[idx]);
+				throw new OptionsException("The option class " + classes[idx]
+						+ " does not define a public no argument constructor", e);
+			}
+		}
+		return constructors;
+	}
+
+	/**
+	 * @return New instances of the option classes of the passed constructors
+	 */
+	static Object[] newInstances(Constructor<?> constructors[]) throws Exception {
+		Object objects[] = new Object[constructors.length];
+		for (int idx = 0; idx < objects.length; idx++) {
+			objects[idx] = constructors[idx].newInstance();
+		}
+		return objects;
+	}
+
+	/**
+	 * This method will bind the socket and start accepting the client
+	 * connections.
+	 *
+	 * @throws IOException
+	 *             If the socket could not be bound
+	 */
+	public synchronized void start() throws IOException {
+		if (channel != null) {
+			throw new IllegalStateException("The server was already started");
+		}
+		Files.deleteIfExists(socket);
+		channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		channel.bind(UnixDomainSocketAddress.of(socket));
+		executor = newExecutor();
+		Thread acceptor = new Thread(new Runnable() {
+			public void run() {
+				accept();
+			}
+		}, "OptionsServer " + socket);
+		acceptor.setDaemon(true);
+		acceptor.start();
+		logger.debug("The options server is listening on {}", socket);
+	}
+
+	/**
+	 * @return The path of the Unix domain socket of this server
+	 */
+	public Path getSocket() {
+		return socket;
+	}
+
+	/**
+	 * This method will stop accepting connections and remove the socket file.
+	 * The invocations that are currently running are completed.
+	 */
+	public synchronized void close() throws IOException {
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.close();
+			executor.shutdown();
+		} finally {
+			channel = null;
+			Files.deleteIfExists(socket);
+		}
+	}
+
+	/**
+	 * This method will return an executor that runs each task on a new virtual
+	 * thread. The virtual threads are looked up reflectively so that the
+	 * server still runs on JVMs without them, using a cached thread pool.
+	 */
+	static ExecutorService newExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (NoSuchMethodException e) {
+			logger.debug("Virtual threads are not available, using a thread pool");
+		} catch (Exception e) {
+			logger.debug("Unable to create the virtual thread executor, using a thread pool", e);
+		}
+		return Executors.newCachedThreadPool(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "OptionsServer invocation");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	private void accept() {
+		ServerSocketChannel channel;
+		ExecutorService executor;
+		synchronized (this) {
+			channel = this.channel;
+			executor = this.executor;
+		}
+		while (channel != null && channel.isOpen()) {
+			final SocketChannel client;
+			try {
+				client = channel.accept();
+			} catch (ClosedChannelException e) {
+				return;
+			} catch (IOException e) {
+				logger.error("An exception was raised while accepting a client connection", e);
+				return;
+			}
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						serve(client);
+					} catch (IOException e) {
+						logger.error("An exception was raised while serving a client connection", e);
+					} finally {
+						try {
+							client.close();
+						} catch (IOException e) {
+							logger.debug("Unable to close the client connection", e);
+						}
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * This method will read the request header, execute the requested command
+	 * and send its exit code.
+	 */
+	private void serve(SocketChannel client) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				LauncherProtocol.newInputStream(client)));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				LauncherProtocol.newOutputStream(client)));
+		if (in.readInt() != LauncherProtocol.MAGIC) {
+			throw new IOException("The client did not send a valid request");
+		}
+		String name = LauncherProtocol.readString(in);
+		Path workingDirectory = Paths.get(LauncherProtocol.readString(in));
+		int count = LauncherProtocol.readLength(in, LauncherProtocol.MAX_COUNT, "environment count");
+		Map<String, String> environment = new HashMap<String, String>(count * 2);
+		for (int idx = 0; idx < count; idx++) {
+			environment.put(LauncherProtocol.readString(in), LauncherProtocol.readString(in));
+		}
+		String args[] = new String[LauncherProtocol.readLength(in, LauncherProtocol.MAX_COUNT, "argument count")];
+		for (int idx = 0; idx < args.length; idx++) {
+			args[idx] = LauncherProtocol.readString(in);
+		}
+		PrintStream stdout = new PrintStream(new BufferedOutputStream(new LauncherProtocol.ChunkOutputStream(out,
+				LauncherProtocol.STDOUT)), true);
+		PrintStream stderr = new PrintStream(new BufferedOutputStream(new LauncherProtocol.ChunkOutputStream(out,
+				LauncherProtocol.STDERR)), true);
+		int exitCode = execute(name, workingDirectory, Collections.unmodifiableMap(environment), args,
+				new LauncherProtocol.ChunkInputStream(in), stdout, stderr);
+		stdout.flush();
+		stderr.flush();
+		synchronized (out) {
+			out.writeByte(LauncherProtocol.EXIT);
+			out.writeInt(4);
+			out.writeInt(exitCode);
+			out.flush();
+		}
+	}
+
+	private int execute(String name, Path workingDirectory, Map<String, String> environment, String args[],
+			InputStream in, PrintStream out, PrintStream err) {
+		Registration registration = commands.get(name);
+		if (registration == null) {
+			err.println("Unknown command " + name);
+			return ERROR_EXIT_CODE;
+		}
+		try {
+			Object objects[] = newInstances(registration.constructors);
+			// The usage and version are written to the client instead of the shared outputs
+			if (registration.options.processHelpOptions(args, objects, out)) {
+				out.flush();
+				return 0;
+			}
+			String arguments[] = registration.options.processArguements(args, environment, objects);
+			return registration.command.execute(new Invocation(name, workingDirectory, environment, objects,
+					arguments, in, out, err));
+		} catch (OptionsException e) {
+			err.println(e.getMessage());
+			return ERROR_EXIT_CODE;
+		} catch (Exception e) {
+			logger.error("An exception was raised while executing the command {}", name, e);
+			e.printStackTrace(err);
+			return ERROR_EXIT_CODE;
+		}
+	}
+
+}
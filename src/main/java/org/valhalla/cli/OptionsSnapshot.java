@@ -0,0 +1,72 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class contains the option instances created by a
+ * {@link SnapshotPublisher} for a set of option values. The instances are
+ * fully populated before the snapshot is published and must be treated as
+ * read only, a change of the values is published as a new snapshot. </p>
+ *
+ * @author Claudio Corsi
+ *
+ */
+public final class OptionsSnapshot {
+
+	private final Map<Class<?>, Object> instances;
+	private final String remaining[];
+
+	OptionsSnapshot(Object optionObjects[], String remaining[]) {
+		Map<Class<?>, Object> instances = new HashMap<Class<?>, Object>();
+		for (Object object : optionObjects) {
+			// The values are applied to the first instance of each class
+			if (!instances.containsKey(object.getClass())) {
+				instances.put(object.getClass(), object);
+			}
+		}
+		this.instances = Collections.unmodifiableMap(instances);
+		this.remaining = remaining;
+	}
+
+	/**
+	 * @param type
+	 *            The option class, a root class or a class referenced by an
+	 *            OptionReference field
+	 * @return The instance of the passed class
+	 * @throws IllegalArgumentException
+	 *             If the snapshot does not contain an instance of the class
+	 */
+	public <T> T get(Class<T> type) {
+		Object instance = instances.get(type);
+		if (instance == null) {
+			throw new IllegalArgumentException("The snapshot does not contain an instance of " + type.getName());
+		}
+		return type.cast(instance);
+	}
+
+	/**
+	 * @return The arguments that were not processed
+	 */
+	public String[] getRemaining() {
+		return remaining.clone();
+	}
+
+}
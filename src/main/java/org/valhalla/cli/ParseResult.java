@@ -0,0 +1,338 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * This class contains the converted option values returned by
+ * {@link Options#parse(String[], Map, ConfigFile)}. No option method was
+ * called yet, the values are applied to the option instances by
+ * {@link #bind(Object[])}. </p>
+ *
+ * The values are grouped per option class. The first instance of a class is
+ * passed the command line, configuration file, environment and default
+ * values. The other instances of the class are passed the environment and
+ * default values. </p>
+ *
+ * A result can be bound many times, the mutable converted values like the
+ * atomics are converted again once they were passed to an instance. A
+ * {@link BindingPlan} binds the result to many target sets of the same shape.
+ * </p>
+ *
+ * @author Claudio Corsi
+ *
+ */
+public final class ParseResult {
+
+	private static final Logger logger = LoggerFactory.getLogger(ParseResult.class);
+
+	private final Options options;
+	private final String remaining[];
+	/**
+	 * The values of each class in the order they are applied
+	 */
+	private final Map<Class<?>, List<Value>> values;
+	/**
+	 * The name of the first command line or configuration file option of each
+	 * class, these classes must have an instance
+	 */
+	private final Map<Class<?>, String> requiredClasses;
+	private final Set<Option> commandLine;
+
+	ParseResult(Options options, String remaining[], Map<Class<?>, List<Value>> values,
+			Map<Class<?>, String> requiredClasses, Set<Option> commandLine) {
+		this.options = options;
+		this.remaining = remaining;
+		this.values = values;
+		this.requiredClasses = requiredClasses;
+		this.commandLine = commandLine;
+	}
+
+	/**
+	 * @return The arguments that were not processed
+	 */
+	public String[] getRemaining() {
+		return remaining.clone();
+	}
+
+	/**
+	 * @return The options passed on the command line
+	 */
+	Set<Option> getCommandLine() {
+		return commandLine;
+	}
+
+	/**
+	 * This method will apply the values to the passed option instances and the
+	 * instances referenced by their OptionReference fields. The instances are
+	 * resolved and every value is checked before the first option method is
+	 * called, the methods are then called one instance at a time.
+	 *
+	 * @param objects
+	 *            The instances that the values will be applied to
+	 * @throws OptionsException
+	 *             If an instance is missing, a value could not be converted or
+	 *             an option method raised an exception
+	 */
+	public void bind(Object objects[]) throws OptionsException {
+		Object optionObjects[] = options.findOptionObjects(objects);
+		boolean first[] = new boolean[optionObjects.length];
+		Set<Class<?>> boundClasses = new HashSet<Class<?>>();
+		for (int idx = 0; idx < optionObjects.length; idx++) {
+			first[idx] = boundClasses.add(optionObjects[idx].getClass());
+			List<Value> classValues = values.get(optionObjects[idx].getClass());
+			if (classValues == null) {
+				continue;
+			}
+			for (Value value : classValues) {
+				if (first[idx] ? value.first : value.others) {
+					value.check(optionObjects[idx]);
+				}
+			}
+		}
+		checkInstances(boundClasses);
+		for (int idx = 0; idx < optionObjects.length; idx++) {
+			List<Value> classValues = values.get(optionObjects[idx].getClass());
+			if (classValues == null) {
+				continue;
+			}
+			for (Value value : classValues) {
+				if (first[idx] ? value.first : value.others) {
+					value.apply(optionObjects[idx]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * This method will compile a binding plan for target sets with the same
+	 * shape as the passed instances. The plan is then used to bind the values
+	 * to many target sets without walking the OptionReference members or
+	 * converting the values again.
+	 * 
+	 * @param objects
+	 *            The sample instances, they are not updated
+	 * @return The binding plan of the target sets
+	 * @throws OptionsException
+	 *             If an instance is missing, a value could not be converted or
+	 *             a reference could not be read
+	 * 
+	 * @see BindingPlan#bind(Object[])
+	 */
+	public BindingPlan plan(Object objects[]) throws OptionsException {
+		return new BindingPlan(this, objects);
+	}
+
+	/**
+	 * @return The checked values of the first or other instances of the passed
+	 *         class
+	 * @throws OptionsException
+	 *             If one of the values could not be converted
+	 */
+	Value[] values(Class<?> clz, boolean first) throws OptionsException {
+		List<Value> classValues = values.get(clz);
+		if (classValues == null) {
+			return new Value[0];
+		}
+		List<Value> applied = new ArrayList<Value>(classValues.size());
+		for (Value value : classValues) {
+			if (first ? value.first : value.others) {
+				value.check();
+				applied.add(value);
+			}
+		}
+		return applied.toArray(new Value[applied.size()]);
+	}
+
+	/**
+	 * @throws OptionsException
+	 *             If one of the classes with command line or configuration file
+	 *             values has no instance
+	 */
+	void checkInstances(Set<Class<?>> boundClasses) throws OptionsException {
+		for (Map.Entry<Class<?>, String> entry : requiredClasses.entrySet()) {
+			if (!boundClasses.contains(entry.getKey())) {
+				logger.error("No object available to set option {}", entry.getValue());
+				throw new OptionsException("No object available to set option " + entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * @return true, if instances of the passed class can be passed to many
+	 *         option instances
+	 */
+	static boolean isImmutable(Class<?> type) {
+		return type == String.class || type == Integer.class || type == Long.class || type == Boolean.class
+				|| type == Double.class || type == Float.class || type == Short.class || type == Byte.class
+				|| type == Character.class || type == BigInteger.class || type == BigDecimal.class
+				|| type == URI.class || type.isEnum();
+	}
+
+	/**
+	 * A value of an option and its converted value.
+	 */
+	static final class Value {
+
+		final String name;
+		final OptionProcessor processor;
+		final String value;
+		final boolean defaultValue;
+		/**
+		 * true, if the value is applied to the first instance of the class
+		 */
+		final boolean first;
+		/**
+		 * true, if the value is applied to the other instances of the class
+		 */
+		final boolean others;
+		Object converted;
+		Exception failure;
+		/**
+		 * true, if the converted value is immutable and passed to every
+		 * instance
+		 */
+		boolean shared;
+		/**
+		 * true, once a mutable converted value was passed to an instance
+		 */
+		private boolean taken;
+
+		/**
+		 * @param name
+		 *            The name of the option as it was passed, the environment
+		 *            variable name for an environment value
+		 * @param processor
+		 *            The processor of the option
+		 * @param value
+		 *            The value, null for an option without a value
+		 * @param defaultValue
+		 *            true, if this is the default value of the option
+		 * @param first
+		 *            true, if the value is applied to the first instance
+		 * @param others
+		 *            true, if the value is applied to the other instances
+		 */
+		Value(String name, OptionProcessor processor, String value, boolean defaultValue, boolean first,
+				boolean others) {
+			this.name = name;
+			this.processor = processor;
+			this.value = value;
+			this.defaultValue = defaultValue;
+			this.first = first;
+			this.others = others;
+		}
+
+		/**
+		 * This method will convert the value, a failure is kept until the
+		 * value is checked.
+		 */
+		void convert() {
+			try {
+				converted = processor.convert(value);
+				shared = converted == null || isImmutable(converted.getClass());
+			} catch (Exception e) {
+				failure = e;
+			}
+		}
+
+		/**
+		 * @throws OptionsException
+		 *             If the value could not be converted
+		 */
+		void check() throws OptionsException {
+			if (failure != null) {
+				throw exception(failure);
+			}
+		}
+
+		/**
+		 * @throws OptionsException
+		 *             If the value could not be converted or can not be
+		 *             applied to the passed object
+		 */
+		void check(Object object) throws OptionsException {
+			check();
+			try {
+				processor.check(object, converted);
+			} catch (Exception e) {
+				throw exception(e);
+			}
+		}
+
+		/**
+		 * @return The converted value, a mutable value is converted again
+		 *         once it was passed to an instance
+		 * @throws OptionsException
+		 *             If the value could not be converted
+		 */
+		Object take() throws OptionsException {
+			if (shared) {
+				return converted;
+			}
+			synchronized (this) {
+				if (!taken) {
+					taken = true;
+					return converted;
+				}
+			}
+			try {
+				return processor.convert(value);
+			} catch (Exception e) {
+				throw exception(e);
+			}
+		}
+
+		void apply(Object object) throws OptionsException {
+			Object converted = take();
+			try {
+				if (!defaultValue && logger.isDebugEnabled()) {
+					logger.debug("Applying value: {} to object: {} for option: {}", new Object[] { value, object,
+							name });
+				}
+				processor.apply(object, converted);
+			} catch (Exception e) {
+				throw exception(e);
+			}
+		}
+
+		private OptionsException exception(Exception e) {
+			if (defaultValue) {
+				logger.error("An exception was raised while trying to set the default value for option {}",
+						processor.getOption(), e);
+				return new OptionsException("An exception was raised while trying to set the default value for option "
+						+ processor.getOption(), e);
+			}
+			logger.error("An exception was thrown when processing option {}", name, e);
+			return new OptionsException("An exception was thrown when processing option " + name, e);
+		}
+
+	}
+
+}
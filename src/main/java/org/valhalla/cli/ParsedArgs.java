@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+/**
+ * This class contains the option values returned by
+ * {@link ParsedArgsParser#parse(String[])}. The values are read by the option
+ * ids of the parser, the default value of an option is returned when it was
+ * not passed. No option instance is involved. </p>
+ *
+ * The integral and boolean values are kept in a long array, the floating point
+ * values in a double array and the other values in an object array, each
+ * option only has a slot in the array of its kind. Whether an option was
+ * passed is kept in the bits of a long array. </p>
+ *
+ * @author Claudio Corsi
+ *
+ */
+public final class ParsedArgs {
+
+	private final ParsedArgsParser parser;
+	private final long longs[];
+	private final double doubles[];
+	private final Object objects[];
+	private final long set[];
+	private final String remaining[];
+
+	ParsedArgs(ParsedArgsParser parser, long longs[], double doubles[], Object objects[], long set[],
+			String remaining[]) {
+		this.parser = parser;
+		this.longs = longs;
+		this.doubles = doubles;
+		this.objects = objects;
+		this.set = set;
+		this.remaining = remaining;
+	}
+
+	/**
+	 * @return true, if the option of the passed id was passed
+	 */
+	public boolean isSet(int id) {
+		return (set[id >>> 6] & (1L << id)) != 0;
+	}
+
+	/**
+	 * @return The value of an int, short or byte option
+	 * @throws IllegalArgumentException
+	 *             If the option does not have an integral value
+	 */
+	public int getInt(int id) {
+		return (int) getLong(id);
+	}
+
+	/**
+	 * @return The value of an integral option
+	 * @throws IllegalArgumentException
+	 *             If the option does not have an integral value
+	 */
+	public long getLong(int id) {
+		int slot = parser.slot(id, ParsedArgsParser.LONG);
+		return isSet(id) ? longs[slot] : parser.defaultLong(slot);
+	}
+
+	/**
+	 * @return The value of a double or float option
+	 * @throws IllegalArgumentException
+	 *             If the option does not have a floating point value
+	 */
+	public double getDouble(int id) {
+		int slot = parser.slot(id, ParsedArgsParser.DOUBLE);
+		return isSet(id) ? doubles[slot] : parser.defaultDouble(slot);
+	}
+
+	/**
+	 * @return The value of a boolean option, true for an option without a
+	 *         value that was passed
+	 * @throws IllegalArgumentException
+	 *             If the option does not have a boolean value
+	 */
+	public boolean getBoolean(int id) {
+		if (parser.kind(id) == ParsedArgsParser.FLAG) {
+			return isSet(id);
+		}
+		return getLong(id) != 0;
+	}
+
+	/**
+	 * @return The value of a String option
+	 * @throws IllegalArgumentException
+	 *             If the option does not have an object value
+	 */
+	public String getString(int id) {
+		return (String) get(id);
+	}
+
+	/**
+	 * @return The value of an option that is neither integral, floating point
+	 *         nor boolean
+	 * @throws IllegalArgumentException
+	 *             If the option does not have an object value
+	 */
+	public Object get(int id) {
+		int slot = parser.slot(id, ParsedArgsParser.OBJECT);
+		return isSet(id) ? objects[slot] : parser.defaultObject(id);
+	}
+
+	/**
+	 * @return The arguments that were not processed
+	 */
+	public String[] getRemaining() {
+		return remaining.clone();
+	}
+
+}
@@ -0,0 +1,357 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * This class parses the command line parameters into a {@link ParsedArgs}
+ * instead of applying them to option instances. The values are kept in
+ * arrays indexed by the option ids, the integral and boolean values in a long
+ * array, the floating point values in a double array and the other values in
+ * an object array. The integral and floating point values are parsed without
+ * being boxed:
+ *
+ * <pre>
+ * ParsedArgsParser parser = new ParsedArgsParser(options);
+ * final int port = parser.id("port");
+ * ...
+ * ParsedArgs parsed = parser.parse(args);
+ * int value = parsed.getInt(port);
+ * </pre>
+ *
+ * The ids are the ones used by {@link OptionOverlays}. The default values are
+ * converted once by the constructor and returned for the options that were
+ * not passed. The long names, short names with or without an embedded value
+ * and property names are supported, the grouped short names, flag families
+ * and help options are not. The environment variables and configuration
+ * files are not looked at. </p>
+ *
+ * @author Claudio Corsi
+ *
+ */
+public class ParsedArgsParser {
+
+	private static final Logger logger = LoggerFactory.getLogger(ParsedArgsParser.class);
+
+	static final byte UNSUPPORTED = 0;
+	static final byte FLAG = 1;
+	static final byte LONG = 2;
+	static final byte DOUBLE = 3;
+	static final byte OBJECT = 4;
+
+	private static final String NO_ARGUMENTS[] = new String[0];
+
+	private final OptionProcessor processors[];
+	/**
+	 * The kind of slot of each option id
+	 */
+	private final byte kinds[];
+	/**
+	 * The index of each option id in the array of its kind
+	 */
+	private final int slots[];
+	private final int longCount;
+	private final int doubleCount;
+	private final int objectCount;
+	private final long defaultLongs[];
+	private final double defaultDoubles[];
+	private final Object defaultObjects[];
+	/**
+	 * true, for the default objects that are converted again when read
+	 */
+	private final boolean mutableDefaults[];
+	private final int required[];
+	/**
+	 * The option ids keyed by the long and short names of the options
+	 */
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+	/**
+	 * The option ids keyed by the names as they are passed, --name, -n or
+	 * name= for a property option
+	 */
+	private final Map<String, Integer> arguments = new HashMap<String, Integer>();
+
+	/**
+	 * @param options
+	 *            The options that are parsed
+	 * @throws OptionsException
+	 *             If a default value could not be converted
+	 */
+	public ParsedArgsParser(Options options) throws OptionsException {
+		Collection<OptionProcessor> processors = options.getProcessors();
+		this.processors = processors.toArray(new OptionProcessor[processors.size()]);
+		this.kinds = new byte[this.processors.length];
+		this.slots = new int[this.processors.length];
+		int counts[] = new int[OBJECT + 1];
+		List<Integer> required = new ArrayList<Integer>();
+		for (int id = 0; id < this.processors.length; id++) {
+			OptionProcessor processor = this.processors[id];
+			Option option = processor.getOption();
+			if (option.help() || option.version() || option.flagFamily()) {
+				continue;
+			}
+			kinds[id] = kind(processor);
+			slots[id] = counts[kinds[id]]++;
+			if (option.required()) {
+				required.add(id);
+			}
+			if (option.shortName() != ' ') {
+				String name = String.valueOf(option.shortName());
+				ids.put(name, id);
+				arguments.put(option.propertyValue() ? name + "=" : "-" + name, id);
+			}
+			if (option.longName().length() > 0) {
+				ids.put(option.longName(), id);
+				arguments.put(option.propertyValue() ? option.longName() + "=" : "--" + option.longName(), id);
+			}
+		}
+		this.longCount = counts[LONG];
+		this.doubleCount = counts[DOUBLE];
+		this.objectCount = counts[OBJECT];
+		this.defaultLongs = new long[longCount];
+		this.defaultDoubles = new double[doubleCount];
+		this.defaultObjects = new Object[objectCount];
+		this.mutableDefaults = new boolean[objectCount];
+		for (int id = 0; id < this.processors.length; id++) {
+			Option option = this.processors[id].getOption();
+			if (kinds[id] == UNSUPPORTED || kinds[id] == FLAG || option.defaultValue().length() == 0) {
+				continue;
+			}
+			try {
+				store(id, option.defaultValue(), defaultLongs, defaultDoubles, defaultObjects);
+			} catch (Exception e) {
+				logger.error("An exception was raised while trying to set the default value for option {}", option, e);
+				throw new OptionsException("An exception was raised while trying to set the default value for option "
+						+ option, e);
+			}
+			if (kinds[id] == OBJECT && defaultObjects[slots[id]] != null) {
+				mutableDefaults[slots[id]] = !ParseResult.isImmutable(defaultObjects[slots[id]].getClass());
+			}
+		}
+		this.required = new int[required.size()];
+		for (int idx = 0; idx < this.required.length; idx++) {
+			this.required[idx] = required.get(idx);
+		}
+	}
+
+	/**
+	 * @return The kind of slot the value of the passed processor is kept in
+	 */
+	private static byte kind(OptionProcessor processor) {
+		if (!processor.hasValue()) {
+			return FLAG;
+		}
+		Class<?> type = processor.getValueType();
+		if (type == Integer.TYPE || type == Integer.class || type == Long.TYPE || type == Long.class
+				|| type == Short.TYPE || type == Short.class || type == Byte.TYPE || type == Byte.class
+				|| type == Boolean.TYPE || type == Boolean.class) {
+			return LONG;
+		}
+		if (type == Double.TYPE || type == Double.class || type == Float.TYPE || type == Float.class) {
+			return DOUBLE;
+		}
+		return OBJECT;
+	}
+
+	/**
+	 * @param name
+	 *            The long name or short name of an option
+	 * @return The id of the option, it is used to read the option value
+	 * @throws IllegalArgumentException
+	 *             If there is no option with the passed name
+	 */
+	public int id(String name) {
+		Integer id = ids.get(name);
+		if (id == null) {
+			throw new IllegalArgumentException("No available option for " + name);
+		}
+		return id.intValue();
+	}
+
+	/**
+	 * This method will parse the passed command line parameters.
+	 *
+	 * @param args
+	 *            The command line parameters
+	 * @return The parsed values
+	 * @throws OptionsException
+	 *             If an option is unknown, its value is missing or could not
+	 *             be converted or a required option was not passed
+	 */
+	public ParsedArgs parse(String args[]) throws OptionsException {
+		long longs[] = new long[longCount];
+		double doubles[] = new double[doubleCount];
+		Object objects[] = new Object[objectCount];
+		long set[] = new long[(processors.length + 63) >>> 6];
+		List<String> remaining = null;
+		for (int idx = 0; idx < args.length; idx++) {
+			String arg = args[idx];
+			String value = null;
+			Integer id = arguments.get(arg);
+			if (id == null) {
+				int eq = arg.indexOf('=');
+				if (arg.startsWith("--")) {
+					// --name=value
+					id = (eq > 2) ? arguments.get(arg.substring(0, eq)) : null;
+				} else if (arg.startsWith("-")) {
+					// -nvalue
+					id = (arg.length() > 2) ? arguments.get(arg.substring(0, 2)) : null;
+					if (id != null && !processors[id].getOption().embeddedValue()) {
+						id = null;
+					}
+					eq = 1;
+				} else if (eq > 0) {
+					// name=value
+					id = arguments.get(arg.substring(0, eq + 1));
+				} else {
+					if (remaining == null) {
+						remaining = new ArrayList<String>();
+					}
+					remaining.add(arg);
+					continue;
+				}
+				if (id == null || !processors[id].hasValue()) {
+					logger.error("No available option for {}", arg);
+					throw new OptionsException("No available option for " + arg);
+				}
+				value = arg.substring(eq + 1);
+			} else if (processors[id].hasValue()) {
+				if (processors[id].getOption().embeddedValue() || ++idx == args.length) {
+					logger.error("Missing value for option {}", arg);
+					throw new OptionsException("Missing value for option " + arg);
+				}
+				value = args[idx];
+			}
+			if (kinds[id] == UNSUPPORTED) {
+				logger.error("No available option for {}", arg);
+				throw new OptionsException("No available option for " + arg);
+			}
+			if (value != null) {
+				try {
+					store(id, value, longs, doubles, objects);
+				} catch (Exception e) {
+					logger.error("An exception was thrown when processing option {}", arg, e);
+					throw new OptionsException("An exception was thrown when processing option " + arg, e);
+				}
+			}
+			set[id >>> 6] |= 1L << id;
+		}
+		for (int id : required) {
+			if ((set[id >>> 6] & (1L << id)) == 0) {
+				List<Option> missing = new ArrayList<Option>();
+				for (int requiredId : required) {
+					if ((set[requiredId >>> 6] & (1L << requiredId)) == 0) {
+						missing.add(processors[requiredId].getOption());
+					}
+				}
+				String message = Options.missingOptions(missing);
+				logger.error(message);
+				throw new OptionsException(message);
+			}
+		}
+		return new ParsedArgs(this, longs, doubles, objects, set, (remaining != null) ? remaining
+				.toArray(new String[remaining.size()]) : NO_ARGUMENTS);
+	}
+
+	/**
+	 * This method will convert the passed value into the slot of the passed
+	 * option id, the integral and floating point values are not boxed.
+	 */
+	private void store(int id, String value, long longs[], double doubles[], Object objects[]) throws Exception {
+		int slot = slots[id];
+		switch (kinds[id]) {
+		case LONG:
+			Class<?> type = processors[id].getValueType();
+			if (type == Integer.TYPE || type == Integer.class) {
+				longs[slot] = Integer.parseInt(value);
+			} else if (type == Long.TYPE || type == Long.class) {
+				longs[slot] = Long.parseLong(value);
+			} else if (type == Short.TYPE || type == Short.class) {
+				longs[slot] = Short.parseShort(value);
+			} else if (type == Byte.TYPE || type == Byte.class) {
+				longs[slot] = Byte.parseByte(value);
+			} else {
+				longs[slot] = Boolean.parseBoolean(value) ? 1 : 0;
+			}
+			break;
+		case DOUBLE:
+			if (processors[id].getValueType() == Float.TYPE || processors[id].getValueType() == Float.class) {
+				doubles[slot] = Float.parseFloat(value);
+			} else {
+				doubles[slot] = Double.parseDouble(value);
+			}
+			break;
+		default:
+			objects[slot] = processors[id].convert(value);
+			break;
+		}
+	}
+
+	/**
+	 * @return The slot of the passed option id in the array of the passed kind
+	 * @throws IllegalArgumentException
+	 *             If the value of the option is not kept in the array of the
+	 *             passed kind
+	 */
+	int slot(int id, byte kind) {
+		if (kinds[id] != kind) {
+			throw new IllegalArgumentException("The option " + processors[id].getOption() + " is of type "
+					+ processors[id].getValueType());
+		}
+		return slots[id];
+	}
+
+	byte kind(int id) {
+		return kinds[id];
+	}
+
+	long defaultLong(int slot) {
+		return defaultLongs[slot];
+	}
+
+	double defaultDouble(int slot) {
+		return defaultDoubles[slot];
+	}
+
+	/**
+	 * @return The default object of the passed option id, a mutable default
+	 *         object is converted again
+	 */
+	Object defaultObject(int id) {
+		int slot = slots[id];
+		if (!mutableDefaults[slot]) {
+			return defaultObjects[slot];
+		}
+		try {
+			return processors[id].convert(processors[id].getOption().defaultValue());
+		} catch (Exception e) {
+			// The default value was converted by the constructor
+			throw new IllegalStateException("Unable to convert the default value of option "
+					+ processors[id].getOption(), e);
+		}
+	}
+
+}
@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This JDK Flight Recorder event is emitted for each call to the
+ * Options processArguements method. </p>
+ * 
+ * The outcome is set to "success" when all of the arguments were applied,
+ * else it will contain the message of the exception that was raised.
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+@Name("org.valhalla.cli.ProcessArguments")
+@Label("Process Arguments")
+@Category({ "Valhalla CLI" })
+@Description("Processing of the command line arguments by an Options instance")
+@StackTrace(false)
+class ProcessArgumentsEvent extends Event {
+
+	@Label("Argument Count")
+	int argumentCount;
+
+	@Label("Remaining Count")
+	@Description("The number of arguments that were not consumed as options")
+	int remainingCount;
+
+	@Label("Outcome")
+	String outcome;
+
+}
@@ -0,0 +1,59 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * This JDK Flight Recorder event is emitted when the conversion of an option
+ * value into the type expected by the option method took longer than the
+ * configured threshold. </p>
+ * 
+ * The threshold defaults to one millisecond and can be changed like any other
+ * Flight Recorder threshold, for instance using
+ * <code>-XX:StartFlightRecording:settings=my.jfc</code> or by passing the
+ * <code>org.valhalla.cli.SlowConversion#threshold</code> setting to a
+ * recording.
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+@Name("org.valhalla.cli.SlowConversion")
+@Label("Slow Option Conversion")
+@Category({ "Valhalla CLI" })
+@Description("Conversion of an option value that exceeded the threshold")
+@Threshold("1 ms")
+@StackTrace(false)
+class SlowConversionEvent extends Event {
+
+	@Label("Option Class")
+	String optionClass;
+
+	@Label("Method")
+	String method;
+
+	@Label("Type")
+	@Description("The type the option value was converted into")
+	String type;
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.lang.reflect.Constructor;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class binds the option values to new instances of the option classes
+ * instead of the live instances used by the application. The new instances
+ * are populated first and then published as an {@link OptionsSnapshot} with
+ * a single volatile write, the readers get the current snapshot without any
+ * locking and never see a partially applied set of values:
+ *
+ * <pre>
+ * SnapshotPublisher publisher = new SnapshotPublisher(new Class&lt;?&gt;[] { Settings.class });
+ * publisher.publish(args, System.getenv(), config);
+ * ...
+ * Settings settings = publisher.current().get(Settings.class);
+ * </pre>
+ *
+ * A reader that needs several values consistently reads them from the same
+ * snapshot. The option classes must define a public no argument constructor.
+ * </p>
+ *
+ * @author Claudio Corsi
+ *
+ * @see ConfigWatcher#ConfigWatcher(SnapshotPublisher, java.nio.file.Path)
+ */
+public class SnapshotPublisher {
+
+	private static final Logger logger = LoggerFactory.getLogger(SnapshotPublisher.class);
+
+	private final Options options;
+	private final Constructor<?> constructors[];
+	private volatile OptionsSnapshot current;
+
+	/**
+	 * @param classes
+	 *            The option classes whose instances are published
+	 * @throws OptionsException
+	 *             If the option classes are not valid
+	 */
+	public SnapshotPublisher(Class<?> classes[]) throws OptionsException {
+		this.options = new Options(classes);
+		this.constructors = OptionsServer.constructors(classes);
+	}
+
+	/**
+	 * @return The options used to bind the values, configuration files are
+	 *         loaded for it
+	 */
+	public Options getOptions() {
+		return options;
+	}
+
+	/**
+	 * This method will apply the passed values to new instances of the option
+	 * classes and publish them. The current snapshot is not changed when the
+	 * values could not be applied.
+	 *
+	 * @param args
+	 *            The command line parameters
+	 * @param environment
+	 *            The environment variables
+	 * @param config
+	 *            The configuration file values or null
+	 * @return The published snapshot
+	 * @throws OptionsException
+	 *             If the values could not be applied
+	 *
+	 * @see Options#processArguements(String[], Map, ConfigFile, Object[])
+	 */
+	public synchronized OptionsSnapshot publish(String args[], Map<String, String> environment, ConfigFile config)
+			throws OptionsException {
+		Object objects[];
+		try {
+			objects = OptionsServer.newInstances(constructors);
+		} catch (Exception e) {
+			logger.error("Unable to create the option instances", e);
+			throw new OptionsException("Unable to create the option instances", e);
+		}
+		String remaining[] = options.processArguements(args, environment, config, objects);
+		OptionsSnapshot snapshot = new OptionsSnapshot(options.findOptionObjects(objects), remaining);
+		current = snapshot;
+		return snapshot;
+	}
+
+	/**
+	 * @return The current snapshot, null if none was published
+	 */
+	public OptionsSnapshot current() {
+		return current;
+	}
+
+}
@@ -0,0 +1,503 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * This class renders the usage text of an Options instance. </p>
+ * 
+ * The option column of each option, the short and long name part including
+ * the default value, is computed once when the renderer is created. The
+ * rendered option lines are cached for each locale and line width so that
+ * the usage text is only formatted once, the header line is rendered on every
+ * call since it depends on the passed main class and message. The
+ * descriptions are resolved by {@link Descriptions} for the rendered
+ * locale. </p>
+ * 
+ * The option lines can be rendered at build time by the {@link HelpGenerator}
+ * into a resource named after the main class, for instance Main.usage next to
+ * Main.class. When it exists the resource is streamed instead of rendering the
+ * option lines at the default width for the default locale. The first line of
+ * the resource is the fingerprint of the options it was rendered for, the
+ * resource is ignored when it does not match the options of this
+ * renderer. </p>
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+final class UsageRenderer {
+
+	private static final Logger logger = LoggerFactory.getLogger(UsageRenderer.class);
+
+	/**
+	 * The line width used when none is passed
+	 */
+	static final int DEFAULT_WIDTH = 120;
+
+	private static final String FOUR_SPACE_TAB = "    ";
+	private static final String USAGE = "usage: java ";
+
+	/**
+	 * The suffix of the pre-rendered option lines resource
+	 */
+	static final String RESOURCE_SUFFIX = ".usage";
+
+	/**
+	 * The prefix of the fingerprint line of the pre-rendered resource
+	 */
+	static final String FINGERPRINT = "#fingerprint ";
+
+	private final String lineSep = System.getProperty("line.separator");
+	private final OptionProcessor processors[];
+	private final String columns[];
+	private final Descriptions descriptions;
+	private final ConcurrentMap<Locale, ConcurrentMap<Integer, String>> rendered = new ConcurrentHashMap<Locale, ConcurrentMap<Integer, String>>();
+	/**
+	 * The main classes that do not have a pre-rendered resource matching the
+	 * options
+	 */
+	private final ConcurrentMap<Class<?>, Boolean> missing = new ConcurrentHashMap<Class<?>, Boolean>();
+	private volatile String fingerprint;
+
+	/**
+	 * @param processors
+	 *            The option processors in the order they will be displayed
+	 */
+	UsageRenderer(Collection<OptionProcessor> processors) {
+		this.processors = processors.toArray(new OptionProcessor[processors.size()]);
+		this.columns = new String[this.processors.length];
+		for (int idx = 0; idx < this.processors.length; idx++) {
+			this.columns[idx] = column(this.processors[idx]);
+		}
+		this.descriptions = new Descriptions(this.processors);
+	}
+
+	/**
+	 * This method will render the usage header and all of the options to the
+	 * passed appendable.
+	 * 
+	 * @param mainClass
+	 *            The main class that is displayed in the header
+	 * @param message
+	 *            The message explaining the parameter line choices
+	 * @param width
+	 *            The maximum number of characters per line
+	 * @param out
+	 *            The appendable the usage text is written to
+	 * @throws IOException
+	 *             If the appendable was unable to append the text
+	 */
+	void render(Class<?> mainClass, String message, int width, Appendable out) throws IOException {
+		render(mainClass, message, width, Locale.getDefault(), out);
+	}
+
+	/**
+	 * This method will render the usage header and all of the options with
+	 * the descriptions of the passed locale to the passed appendable.
+	 * 
+	 * @see #render(Class, String, int, Appendable)
+	 */
+	void render(Class<?> mainClass, String message, int width, Locale locale, Appendable out) throws IOException {
+		header(mainClass, message, width, out);
+		if (width != DEFAULT_WIDTH || !locale.equals(Locale.getDefault()) || !resource(mainClass, out)) {
+			out.append(options(width, locale));
+		}
+	}
+
+	/**
+	 * This method will copy the pre-rendered option lines of the passed main
+	 * class to the passed appendable.
+	 * 
+	 * @return true, if the main class has a pre-rendered resource matching
+	 *         the options
+	 */
+	private boolean resource(Class<?> mainClass, Appendable out) throws IOException {
+		if (missing.containsKey(mainClass)) {
+			return false;
+		}
+		InputStream in = mainClass.getResourceAsStream(resourceName(mainClass));
+		if (in == null) {
+			missing.put(mainClass, Boolean.TRUE);
+			return false;
+		}
+		if (!stream(in, out)) {
+			logger.warn("The usage resource of {} does not match the options, it is ignored", mainClass.getName());
+			missing.put(mainClass, Boolean.TRUE);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * This method will copy the option lines of the passed pre-rendered
+	 * resource to the passed appendable when its fingerprint matches the
+	 * options, nothing is copied otherwise. The passed stream is closed.
+	 * 
+	 * @return true, if the option lines were copied
+	 */
+	boolean stream(InputStream in, Appendable out) throws IOException {
+		Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+		try {
+			StringBuilder line = new StringBuilder();
+			int c;
+			while ((c = reader.read()) >= 0 && c != '\n') {
+				line.append((char) c);
+			}
+			if (!matches(line.toString())) {
+				return false;
+			}
+			char buffer[] = new char[4096];
+			int count;
+			while ((count = reader.read(buffer)) > 0) {
+				out.append(CharBuffer.wrap(buffer, 0, count));
+			}
+		} finally {
+			reader.close();
+		}
+		return true;
+	}
+
+	/**
+	 * This method will return the fingerprint line of the options, the hash of
+	 * the option columns followed by the hash of the descriptions of the
+	 * default locale.
+	 */
+	String fingerprint() {
+		String fingerprint = this.fingerprint;
+		if (fingerprint == null) {
+			CRC32 columns = new CRC32();
+			CRC32 descriptions = new CRC32();
+			String texts[] = descriptions(Locale.getDefault());
+			for (int idx = 0; idx < processors.length; idx++) {
+				update(columns, this.columns[idx]);
+				update(descriptions, texts[idx]);
+			}
+			fingerprint = FINGERPRINT + Long.toHexString(columns.getValue()) + " "
+					+ Long.toHexString(descriptions.getValue());
+			this.fingerprint = fingerprint;
+		}
+		return fingerprint;
+	}
+
+	private static void update(CRC32 crc, String value) {
+		crc.update(value.getBytes(StandardCharsets.UTF_8));
+		crc.update(0);
+	}
+
+	/**
+	 * @return true, if the passed fingerprint line matches the options
+	 */
+	private boolean matches(String line) {
+		String expected = fingerprint();
+		if (line.equals(expected)) {
+			return true;
+		}
+		// The descriptions may have been stripped once the resource was rendered
+		int idx = expected.lastIndexOf(' ') + 1;
+		return line.startsWith(FINGERPRINT) && line.lastIndexOf(' ') + 1 == idx
+				&& line.regionMatches(0, expected, 0, idx) && stripped();
+	}
+
+	/**
+	 * @return true, if none of the option annotations define a description
+	 */
+	private boolean stripped() {
+		for (OptionProcessor processor : processors) {
+			if (processor.getOption().description().length() > 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return The name of the pre-rendered resource relative to the main class
+	 */
+	static String resourceName(Class<?> mainClass) {
+		String name = mainClass.getName();
+		return name.substring(name.lastIndexOf('.') + 1) + RESOURCE_SUFFIX;
+	}
+
+	/**
+	 * This method will render the usage header and only the options with the
+	 * passed indexes, in the order of the passed indexes.
+	 * 
+	 * @param mainClass
+	 *            The main class that is displayed in the header
+	 * @param message
+	 *            The message explaining the parameter line choices
+	 * @param width
+	 *            The maximum number of characters per line
+	 * @param indexes
+	 *            The indexes of the options that are rendered
+	 * @param out
+	 *            The appendable the usage text is written to
+	 * @throws IOException
+	 *             If the appendable was unable to append the text
+	 */
+	void render(Class<?> mainClass, String message, int width, int indexes[], Appendable out) throws IOException {
+		header(mainClass, message, width, out);
+		String descriptions[] = descriptions(Locale.getDefault());
+		StringBuilder str = new StringBuilder();
+		for (int index : indexes) {
+			option(index, width, descriptions, str);
+		}
+		out.append(str);
+	}
+
+	/**
+	 * This method will return the rendered option lines for the passed width
+	 * and the default locale.
+	 * 
+	 * @see #options(int, Locale)
+	 */
+	String options(int width) {
+		return options(width, Locale.getDefault());
+	}
+
+	/**
+	 * This method will return the rendered option lines for the passed width
+	 * and locale, they are only formatted on the first call for a given width
+	 * and locale.
+	 * 
+	 * @param width
+	 *            The maximum number of characters per line
+	 * @param locale
+	 *            The locale of the descriptions
+	 * @return The rendered option lines
+	 */
+	String options(int width, Locale locale) {
+		ConcurrentMap<Integer, String> widths = rendered.get(locale);
+		if (widths == null) {
+			widths = new ConcurrentHashMap<Integer, String>();
+			ConcurrentMap<Integer, String> previous = rendered.putIfAbsent(locale, widths);
+			if (previous != null) {
+				widths = previous;
+			}
+		}
+		Integer key = Integer.valueOf(width);
+		String options = widths.get(key);
+		if (options == null) {
+			String descriptions[] = descriptions(locale);
+			StringBuilder str = new StringBuilder();
+			for (int idx = 0; idx < processors.length; idx++) {
+				option(idx, width, descriptions, str);
+			}
+			options = str.toString();
+			String previous = widths.putIfAbsent(key, options);
+			if (previous != null) {
+				options = previous;
+			}
+		}
+		return options;
+	}
+
+	/**
+	 * @return The descriptions of the options for the passed locale in the
+	 *         order that they are displayed
+	 */
+	String[] descriptions(Locale locale) {
+		return descriptions.get(locale);
+	}
+
+	/**
+	 * This method will render the usage header line(s).
+	 */
+	void header(Class<?> mainClass, String message, int width, Appendable out) throws IOException {
+		String className = mainClass.getName();
+		out.append(USAGE);
+		if ((className.length() + message.length()) <= width) {
+			out.append(className).append(" ").append(message).append(lineSep);
+		} else if (className.length() <= width) {
+			out.append(className).append(" ").append(lineSep);
+			int maxLength = width - (className.length() + 1 + lineSep.length());
+			while (maxLength > 0 && message.charAt(--maxLength) != ' ' && maxLength > 0)
+				;
+			if (maxLength > 0) {
+				out.append(message, 0, maxLength);
+			} else {
+				maxLength = 0;
+			}
+			// Add the line separator and continue to process the message string...
+			out.append(lineSep);
+			// It is possible that we are just copying the whole string into the truncatedMessage string which is fine...
+			String truncatedMessage = message.substring(maxLength);
+			int limit = width - FOUR_SPACE_TAB.length();
+			while (truncatedMessage.length() > limit) {
+				maxLength = Math.min(width, truncatedMessage.length());
+				while (truncatedMessage.charAt(--maxLength) != ' ' && maxLength > 0)
+					;
+				// Prepend each string with four spaces...
+				out.append(FOUR_SPACE_TAB);
+				if (maxLength != 0) {
+					out.append(truncatedMessage, 0, maxLength);
+					truncatedMessage = truncatedMessage.substring(maxLength);
+				} else {
+					// What, this single set of characters does not contain a
+					// space for the whole line!!!!!
+					out.append(truncatedMessage);
+					truncatedMessage = "";
+				}
+				// Always include the line separator...
+				out.append(lineSep);
+			}
+			// Check if there is any remaining message information that needs to be displayed...
+			if (!truncatedMessage.isEmpty()) {
+				out.append(FOUR_SPACE_TAB).append(truncatedMessage).append(lineSep);
+			}
+		} else {
+			// For now, just display the extended class name and move on...
+			out.append(className).append(" ").append(lineSep).append(message).append(lineSep);
+		}
+	}
+
+	/**
+	 * This method will render the option with the passed index including its
+	 * line separator.
+	 */
+	void option(int index, int width, String descriptions[], StringBuilder str) {
+		String column = columns[index];
+		str.append(column);
+		String description = descriptions[index];
+		if (description.length() > 0) {
+			description(column.length(), description, width, str);
+		}
+		str.append(lineSep);
+	}
+
+	/**
+	 * @return The option column, the names and default value, of the option
+	 *         with the passed index
+	 */
+	String column(int index) {
+		return columns[index];
+	}
+
+	/**
+	 * @return The option processors in the order they are displayed
+	 */
+	OptionProcessor[] processors() {
+		return processors;
+	}
+
+	/**
+	 * This method will wrap the description so that no line is longer than
+	 * the passed width. The continuation lines are indented with four spaces.
+	 */
+	private void description(int columnLength, String description, int width, StringBuilder str) {
+		int limit = width - FOUR_SPACE_TAB.length();
+		if (description.length() + columnLength < limit) {
+			str.append(FOUR_SPACE_TAB).append(description);
+			return;
+		}
+		int curLen = columnLength;
+		while (description.length() > 0) {
+			// Determine the last character that can be displayed on the screen
+			int maxSize = limit - curLen;
+			if (description.length() >= maxSize) {
+				// Find the end of the last space before the max
+				if (maxSize > 0) {
+					while (description.charAt(--maxSize) != ' ' && maxSize > 0)
+						;
+				} else {
+					maxSize = 0;
+				}
+				if (maxSize == 0) {
+					str.append(FOUR_SPACE_TAB).append(description);
+					description = "";
+				} else {
+					str.append(FOUR_SPACE_TAB).append(description, 0, maxSize);
+					int max = description.length();
+					while (description.charAt(maxSize) == ' ' && ++maxSize < max)
+						;
+					if (maxSize != max) {
+						// Extract the smaller string and append a line separator...
+						description = description.substring(maxSize);
+						str.append(lineSep);
+						curLen = 0;
+					} else {
+						description = "";
+					}
+				}
+			} else {
+				str.append(FOUR_SPACE_TAB).append(description);
+				description = "";
+			}
+		}
+	}
+
+	/**
+	 * This method will generate the option column, the short and long names
+	 * and the default value, of the passed option processor.
+	 */
+	private static String column(OptionProcessor processor) {
+		Option option = processor.getOption();
+		StringBuilder str = new StringBuilder();
+		if (option.shortName() != ' ') {
+			str.append("  ");
+			if (!option.propertyValue()) {
+				str.append("-").append(option.shortName());
+				if (option.embeddedValue()) {
+					str.append("[value]");
+				} else if (processor.hasValue()) {
+					str.append(" [value]");
+				}
+			} else {
+				str.append(option.shortName()).append("=[value]");
+			}
+		}
+		if (option.longName().length() > 0) {
+			// We've already included an option definition and add some spaces instead of a comma...
+			if (str.length() == 0) {
+				str.append("  ");
+			} else {
+				str.append(", ");
+			}
+			if (option.flagFamily()) {
+				str.append("--").append(option.longName()).append("<flag>[=false]");
+			} else if (!option.propertyValue()) {
+				str.append("--").append(option.longName());
+				// Determine if a value is expected.
+				if (processor.hasValue()) {
+					str.append("[=value| value]");
+				}
+			} else {
+				str.append(option.longName()).append("=[value]");
+			}
+		}
+		if (option.defaultValue().length() > 0) {
+			str.append(", default=").append(option.defaultValue());
+		}
+		return str.toString();
+	}
+
+}
@@ -50,12 +50,16 @@ import java.lang.annotation.Target;
  * 
  * Embedded type names are defined as -O2, where the 2 is embedded within the command line parameter. <p/>
  * 
+ * The annotation can also be set on a field, including a private field, the
+ * value is then written to the field instead of being passed to a method. A
+ * boolean field is an option without a value that sets the field to true. <p/>
+ * 
  * @author Claudio Corsi
  * 
  */
 @Documented
 @Retention(RetentionPolicy.RUNTIME)
-@Target(ElementType.METHOD)
+@Target({ ElementType.METHOD, ElementType.FIELD })
 public @interface Option {
 
 	/**
@@ -99,6 +103,45 @@ public @interface Option {
 	 */
 	String defaultValue() default "";
 
+	/**
+	 * This is the name of the environment variable that defines the value of
+	 * this option when it is not passed on the command line. The environment
+	 * variable takes precedence over the {@link #defaultValue()}. An option
+	 * without a value is applied unless the variable is empty, 0 or false.
+	 * 
+	 * @return The environment variable name, else ""
+	 */
+	String env() default "";
+
+	/**
+	 * This is set to true to update the atomic value held by the instance
+	 * instead of passing a new atomic to the option method, the threads that
+	 * already hold a reference to the atomic then see the new value. The
+	 * option method must expect an AtomicInteger, AtomicLong, AtomicBoolean,
+	 * AtomicReference or LongAdder. The atomic is returned by the getter of
+	 * the option, getFoo for setFoo, or else held by the foo field. The option
+	 * method is only called while the atomic is null.
+	 * 
+	 * @return true, if the atomic is updated in place, default is false
+	 */
+	boolean inPlace() default false;
+
+	/**
+	 * This is set to true to declare a family of boolean flags that share the
+	 * long name of this option as their prefix, for instance --feature-cache
+	 * and --feature-fast-path for the feature- long name. The annotated method
+	 * expects no parameter and returns the
+	 * {@link org.valhalla.cli.FlagSet} that contains the flags. A flag is
+	 * disabled when it is passed as --feature-cache=false. The default value
+	 * is a comma separated list of the flags that are enabled by default. </p>
+	 * 
+	 * The family is registered as a single option, the usage contains a
+	 * single line for all of its flags.
+	 * 
+	 * @return true, if this option is a flag family, default is false
+	 */
+	boolean flagFamily() default false;
+
 	/**
 	 * This is the description of this option for the given method associated to
 	 * the class that the option will be set to.
@@ -107,6 +150,18 @@ public @interface Option {
 	 */
 	String description() default "";
 
+	/**
+	 * This is the key of the description within the resource bundle named
+	 * after the class that declares the option, for instance the
+	 * org.example.ToolOptions bundle for an option of the
+	 * org.example.ToolOptions class. The description is only looked up when
+	 * the help is rendered, for the locale it is rendered for. The
+	 * {@link #description()} is used when the bundle or the key is missing.
+	 * 
+	 * @return The resource bundle key of the description, else ""
+	 */
+	String descriptionKey() default "";
+
 	/**
 	 * This is used to state that this option is required. The Options instance
 	 * will determine if all of the required options have been satisfied and will
@@ -115,4 +170,30 @@ public @interface Option {
 	 * @return true, if this option is required
 	 */
 	boolean required() default false;
+
+	/**
+	 * This is used to state that this option requests the help of the
+	 * application. The help options are detected before any other option is
+	 * processed and when one is passed only its method is called. None of the
+	 * default values are applied, none of the other options are converted and
+	 * the required options are not checked. </p>
+	 * 
+	 * The annotated method can either expect no parameter or a String
+	 * parameter that will be passed the search term that followed the option,
+	 * for instance --help cache, or the default value if none was passed.
+	 * 
+	 * @return true, if this option requests the help, default is false
+	 */
+	boolean help() default false;
+
+	/**
+	 * This is used to state that this option requests the version of the
+	 * application. It is processed like a help option and the annotated method
+	 * is not allowed to expect a parameter.
+	 * 
+	 * @return true, if this option requests the version, default is false
+	 * 
+	 * @see #help()
+	 */
+	boolean version() default false;
 }
@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.lang.management.ManagementFactory;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * These tests verify the number of bytes allocated by a single
+ * processArguements call once the JVM was warmed up. The bounds protect the
+ * parse path against allocation creep and are measured using the per thread
+ * allocation counter of the HotSpot ThreadMXBean. The root logger is raised
+ * to WARN while measuring, log4j without a configuration logs at DEBUG and
+ * the log messages would otherwise dominate the measured bytes.
+ * 
+ * @author Claudio Corsi
+ * 
+ */
+public class AllocationTest {
+
+	private static final int WARMUP = 20000;
+	private static final int ITERATIONS = 2000;
+
+	// The upper bounds in bytes allocated per call with logging disabled,
+	// about 20% above the measured figures. These have to be lowered whenever
+	// the parse path allocates less.
+	private static final long LIMIT_SHORT = 12000;
+	private static final long LIMIT_LONG = 12000;
+	private static final long LIMIT_LONG_VALUE = 12000;
+	private static final long LIMIT_GROUPED = 13000;
+	private static final long LIMIT_PROPERTY = 12000;
+	private static final long LIMIT_EMBEDDED = 6000;
+
+	private com.sun.management.ThreadMXBean threads;
+
+	private Level level;
+
+	@Before
+	public void disableLogging() {
+		level = Logger.getRootLogger().getLevel();
+		Logger.getRootLogger().setLevel(Level.WARN);
+	}
+
+	@After
+	public void restoreLogging() {
+		Logger.getRootLogger().setLevel(level);
+	}
+
+	@Before
+	public void checkAllocationSupport() {
+		Assume.assumeTrue("The JVM does not provide the HotSpot ThreadMXBean",
+				ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue("The JVM does not support thread allocation measurement",
+				threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	@Test
+	public void testShortNameAllocation() throws OptionsException {
+		assertAllocation("short", new String[] { "-I", "23" }, Simple.class, LIMIT_SHORT);
+	}
+
+	@Test
+	public void testLongNameAllocation() throws OptionsException {
+		assertAllocation("long", new String[] { "--iName", "43" }, Simple.class, LIMIT_LONG);
+	}
+
+	@Test
+	public void testLongNameEmbeddedValueAllocation() throws OptionsException {
+		assertAllocation("long embedded", new String[] { "--iName=43" }, Simple.class, LIMIT_LONG_VALUE);
+	}
+
+	@Test
+	public void testGroupedShortNamesAllocation() throws OptionsException {
+		assertAllocation("grouped", new String[] { "-QTZ", "11501234", "true" }, Simple.class, LIMIT_GROUPED);
+	}
+
+	@Test
+	public void testPropertyAllocation() throws OptionsException {
+		assertAllocation("property", new String[] { "foo=bar" }, Simple.class, LIMIT_PROPERTY);
+	}
+
+	@Test
+	public void testEmbeddedAllocation() throws OptionsException {
+		assertAllocation("embedded", new String[] { "-C5", "-A3" }, OptionReferenceEmbeddedImpl.class, LIMIT_EMBEDDED);
+	}
+
+	private void assertAllocation(String syntax, String args[], Class<?> clz, long limit) throws OptionsException {
+		Options options = new Options(new Class<?>[] { clz });
+		Object objects[];
+		try {
+			objects = new Object[] { clz.getConstructor().newInstance() };
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to create instance of " + clz, e);
+		}
+		for (int idx = 0; idx < WARMUP; idx++) {
+			options.processArguements(args, objects);
+		}
+		long threadId = Thread.currentThread().getId();
+		long start = threads.getThreadAllocatedBytes(threadId);
+		for (int idx = 0; idx < ITERATIONS; idx++) {
+			options.processArguements(args, objects);
+		}
+		long perCall = (threads.getThreadAllocatedBytes(threadId) - start) / ITERATIONS;
+		Assert.assertTrue("The " + syntax + " syntax allocated " + perCall + " bytes per call, the limit is " + limit,
+				perCall <= limit);
+	}
+}
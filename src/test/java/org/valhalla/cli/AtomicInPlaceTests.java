@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Claudio Corsi
+ * 
+ */
+public class AtomicInPlaceTests extends AbstractOptionsTestSupport {
+
+	private AtomicOptions atomics;
+
+	@Before
+	public void createAtomics() {
+		this.atomics = new AtomicOptions();
+	}
+
+	@Override
+	Class<?>[] getClasses() {
+		return new Class<?>[] { AtomicOptions.class };
+	}
+
+	@Test
+	public void testAtomicsAreUpdatedInPlace() throws OptionsException {
+		AtomicInteger workers = atomics.getWorkers();
+		AtomicLong timeout = atomics.timeout();
+		AtomicBoolean enabled = atomics.enabled();
+		AtomicReference<TimeUnit> unit = atomics.getUnit();
+		LongAdder budget = atomics.budget();
+		executeOptions(new String[] { "--workers", "8", "--timeout=250", "--enabled", "true", "--unit",
+				"MILLISECONDS", "--budget", "1000" }, new Object[] { atomics }, new String[0]);
+		Assert.assertSame(workers, atomics.getWorkers());
+		Assert.assertEquals(8, workers.get());
+		Assert.assertSame(timeout, atomics.timeout());
+		Assert.assertEquals(250, timeout.get());
+		Assert.assertSame(enabled, atomics.enabled());
+		Assert.assertTrue(enabled.get());
+		Assert.assertSame(unit, atomics.getUnit());
+		Assert.assertEquals(TimeUnit.MILLISECONDS, unit.get());
+		Assert.assertSame(budget, atomics.budget());
+		Assert.assertEquals(1000, budget.sum());
+		Assert.assertEquals("The option method was called", 0, atomics.getTimeoutCalls());
+		executeOptions(new String[] { "--budget", "400" }, new Object[] { atomics }, new String[0]);
+		Assert.assertEquals(400, budget.sum());
+	}
+
+	@Test
+	public void testDefaultValueIsUpdatedInPlace() throws OptionsException {
+		AtomicLong timeout = atomics.timeout();
+		executeOptions(new String[0], new Object[] { atomics }, new String[0]);
+		Assert.assertSame(timeout, atomics.timeout());
+		Assert.assertEquals(100, timeout.get());
+	}
+
+	@Test
+	public void testNullAtomicIsPassedToOptionMethod() throws OptionsException {
+		executeOptions(new String[] { "--retries", "3" }, new Object[] { atomics }, new String[0]);
+		AtomicInteger retries = atomics.retries();
+		Assert.assertEquals(3, retries.get());
+		executeOptions(new String[] { "--retries", "5" }, new Object[] { atomics }, new String[0]);
+		Assert.assertSame(retries, atomics.retries());
+		Assert.assertEquals(5, retries.get());
+	}
+
+	@Test
+	public void testAtomicReferenceOption() throws OptionsException {
+		executeOptions(new String[] { "--label", "fast" }, new Object[] { atomics }, new String[0]);
+		Assert.assertEquals("fast", atomics.getLabel().get());
+	}
+
+	@Test(expected = OptionsException.class)
+	public void testInvalidAtomicReferenceValue() throws OptionsException {
+		executeOptions(new String[] { "--unit", "WEEKS" }, new Object[] { atomics }, new String[0]);
+	}
+
+	@Test(expected = OptionsException.class)
+	public void testInPlaceOptionWithoutAtomic() throws OptionsException {
+		new Options(new Class<?>[] { AtomicOptions.InvalidType.class });
+	}
+
+	@Test(expected = OptionsException.class)
+	public void testInPlaceOptionWithoutAccessor() throws OptionsException {
+		new Options(new Class<?>[] { AtomicOptions.MissingAccessor.class });
+	}
+
+}
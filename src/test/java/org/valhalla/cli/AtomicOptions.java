@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class AtomicOptions {
+
+	private AtomicInteger workers = new AtomicInteger(1);
+	private AtomicLong timeout = new AtomicLong(50);
+	private int timeoutCalls;
+	private AtomicBoolean enabled = new AtomicBoolean();
+	private AtomicReference<TimeUnit> unit = new AtomicReference<TimeUnit>(TimeUnit.SECONDS);
+	private LongAdder budget = new LongAdder();
+	private AtomicReference<String> label;
+	private AtomicInteger retries;
+
+	@Option(longName = "workers", inPlace = true)
+	public void setWorkers(AtomicInteger workers) {
+		this.workers = workers;
+	}
+
+	@Option(longName = "timeout", inPlace = true, defaultValue = "100")
+	public void setTimeout(AtomicLong timeout) {
+		this.timeout = timeout;
+		this.timeoutCalls++;
+	}
+
+	@Option(longName = "enabled", inPlace = true)
+	public void setEnabled(AtomicBoolean enabled) {
+		this.enabled = enabled;
+	}
+
+	@Option(longName = "unit", inPlace = true)
+	public void setUnit(AtomicReference<TimeUnit> unit) {
+		this.unit = unit;
+	}
+
+	@Option(longName = "budget", inPlace = true)
+	public void setBudget(LongAdder budget) {
+		this.budget = budget;
+	}
+
+	@Option(longName = "label")
+	public void setLabel(AtomicReference<String> label) {
+		this.label = label;
+	}
+
+	@Option(longName = "retries", inPlace = true)
+	public void setRetries(AtomicInteger retries) {
+		this.retries = retries;
+	}
+
+	public AtomicInteger getWorkers() {
+		return this.workers;
+	}
+
+	public AtomicLong timeout() {
+		return this.timeout;
+	}
+
+	public int getTimeoutCalls() {
+		return this.timeoutCalls;
+	}
+
+	public AtomicBoolean enabled() {
+		return this.enabled;
+	}
+
+	public AtomicReference<TimeUnit> getUnit() {
+		return this.unit;
+	}
+
+	public LongAdder budget() {
+		return this.budget;
+	}
+
+	public AtomicReference<String> getLabel() {
+		return this.label;
+	}
+
+	public AtomicInteger retries() {
+		return this.retries;
+	}
+
+	/**
+	 * An in place option that does not expect an atomic value
+	 */
+	public static class InvalidType {
+
+		private String name;
+
+		@Option(longName = "name", inPlace = true)
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+	}
+
+	/**
+	 * An in place option whose atomic is not accessible
+	 */
+	public static class MissingAccessor {
+
+		@Option(longName = "count", inPlace = true)
+		public void setCount(AtomicInteger count) {
+		}
+
+	}
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class BindingPlanTest {
+
+	private final Map<String, String> environment = Collections.emptyMap();
+
+	@Test
+	public void testBindManyTargetSets() throws Exception {
+		Options options = new Options(new Class<?>[] { OptionReferenceEmbeddedImpl.class });
+		OptionReferenceEmbeddedImpl sample = new OptionReferenceEmbeddedImpl();
+		BindingPlan plan = options.parse(new String[] { "-C5", "-A3" }, environment, null).plan(
+				new Object[] { sample });
+		Assert.assertEquals(2, plan.size());
+		for (int idx = 0; idx < 3; idx++) {
+			OptionReferenceEmbeddedImpl object = new OptionReferenceEmbeddedImpl();
+			plan.bind(new Object[] { object });
+			Assert.assertEquals(5, object.getOptionReferenceIntValue());
+			Assert.assertEquals(20, object.getOptionReferenceDefaultIntValue());
+			Assert.assertEquals(3, object.getEmbedded().getEmbeddedIntValue());
+			Assert.assertEquals(10, object.getEmbedded().getEmbeddedDefaultIntValue());
+		}
+		Assert.assertEquals("The sample instance was updated", 0, sample.getOptionReferenceIntValue());
+	}
+
+	@Test
+	public void testMutableValuesAreCopied() throws Exception {
+		Options options = new Options(new Class<?>[] { AtomicOptions.class });
+		BindingPlan plan = options.parse(new String[] { "--label", "main", "--workers", "4" }, environment, null)
+				.plan(new Object[] { new AtomicOptions() });
+		AtomicOptions first = new AtomicOptions();
+		AtomicOptions second = new AtomicOptions();
+		plan.bind(new Object[] { first });
+		plan.bind(new Object[] { second });
+		Assert.assertEquals("main", first.getLabel().get());
+		Assert.assertEquals("main", second.getLabel().get());
+		Assert.assertNotSame(first.getLabel(), second.getLabel());
+		second.getWorkers().incrementAndGet();
+		Assert.assertEquals(4, first.getWorkers().get());
+		Assert.assertEquals(5, second.getWorkers().get());
+	}
+
+	@Test
+	public void testParseResultBoundTwice() throws Exception {
+		Options options = new Options(new Class<?>[] { AtomicOptions.class });
+		ParseResult result = options.parse(new String[] { "--label", "main" }, environment, null);
+		AtomicOptions first = new AtomicOptions();
+		AtomicOptions second = new AtomicOptions();
+		result.bind(new Object[] { first });
+		result.bind(new Object[] { second });
+		Assert.assertEquals("main", second.getLabel().get());
+		Assert.assertNotSame(first.getLabel(), second.getLabel());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTargetSetShapeMismatch() throws Exception {
+		Options options = new Options(new Class<?>[] { OptionReferenceEmbeddedImpl.class });
+		BindingPlan plan = options.parse(new String[] { "-C5" }, environment, null).plan(
+				new Object[] { new OptionReferenceEmbeddedImpl() });
+		plan.bind(new Object[] { new Embedded() });
+	}
+
+	@Test(expected = OptionsException.class)
+	public void testMissingInstance() throws Exception {
+		Options options = new Options(new Class<?>[] { AtomicOptions.class });
+		options.parse(new String[] { "--label", "main" }, environment, null).plan(new Object[0]);
+	}
+
+}
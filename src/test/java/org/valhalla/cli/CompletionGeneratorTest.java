@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.valhalla.cli.CompletionGenerator.Shell;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class CompletionGeneratorTest extends AbstractOptionsTestSupport {
+
+	private CompletionGenerator generator;
+
+	@Override
+	Class<?>[] getClasses() {
+		return new Class<?>[] { CompletionOptions.class };
+	}
+
+	@Before
+	public void createGenerator() {
+		this.generator = new CompletionGenerator(options, "my-tool");
+	}
+
+	@Test
+	public void testEnumOption() throws OptionsException {
+		CompletionOptions object = new CompletionOptions();
+		executeOptions(new String[] { "-m", "SAFE", "-OFAST" }, new Object[] { object }, new String[0]);
+		Assert.assertEquals("The mode was not set", CompletionOptions.Mode.SAFE, object.getMode());
+		Assert.assertEquals("The level was not set", CompletionOptions.Mode.FAST, object.getLevel());
+	}
+
+	@Test(expected = OptionsException.class)
+	public void testInvalidEnumOption() throws OptionsException {
+		executeOptions(new String[] { "--mode", "SLOW" }, new Object[] { new CompletionOptions() }, new String[0]);
+	}
+
+	@Test
+	public void testBashScript() throws Exception {
+		String script = generate(Shell.bash);
+		Assert.assertTrue("Missing function", script.contains("_my_tool_complete() {"));
+		int start = script.lastIndexOf("    COMPREPLY=( $(compgen -W \"") + 30;
+		List<String> words = Arrays.asList(script.substring(start, script.indexOf('"', start)).split(" "));
+		Assert.assertEquals("Option names are incorrect", new HashSet<String>(Arrays.asList("-m", "--mode", "-f",
+				"--file", "-OFAST", "-OSAFE", "name=", "-v", "--verbose")), new HashSet<String>(words));
+		Assert.assertTrue("Missing enum values", script.contains("-m|--mode)\n            COMPREPLY=( $(compgen -W \"FAST SAFE\" -- \"$cur\") )"));
+		Assert.assertTrue("Missing file values", script.contains("-f|--file)\n            COMPREPLY=( $(compgen -f -- \"$cur\") )"));
+		Assert.assertTrue("Missing complete command", script.endsWith("complete -o default -F _my_tool_complete my-tool\n"));
+	}
+
+	@Test
+	public void testZshScript() throws Exception {
+		String script = generate(Shell.zsh);
+		Assert.assertTrue("Missing compdef", script.startsWith("#compdef my-tool\n"));
+		Assert.assertTrue("Missing enum option", script.contains("'(-m --mode)--mode=[The processing mode]:value:(FAST SAFE)' \\"));
+		Assert.assertTrue("Missing file option", script.contains("'(-f --file)-f[The input file]:value:_files' \\"));
+		Assert.assertTrue("Missing embedded option", script.contains("'-O-[The optimization level]:value:(FAST SAFE)' \\"));
+		Assert.assertTrue("Missing escaped description", script.contains("--verbose[Display what'\\''s done]'"));
+		Assert.assertTrue("Missing property option", script.contains("compadd -S '' -- 'name='"));
+	}
+
+	@Test
+	public void testFishScript() throws Exception {
+		String script = generate(Shell.fish);
+		Assert.assertTrue("Missing enum option", script.contains("complete -c 'my-tool' -s 'm' -l 'mode' -x -a 'FAST SAFE' -d 'The processing mode'\n"));
+		Assert.assertTrue("Missing file option", script.contains("complete -c 'my-tool' -s 'f' -l 'file' -r -F -d 'The input file'\n"));
+		Assert.assertTrue("Missing property option", script.contains("complete -c 'my-tool' -f -a 'name=' -d 'The name of the [run]'\n"));
+		Assert.assertTrue("Missing flag option", script.contains("complete -c 'my-tool' -s 'v' -l 'verbose' -d 'Display what\\'s done'\n"));
+	}
+
+	private String generate(Shell shell) throws Exception {
+		StringBuilder script = new StringBuilder();
+		generator.generate(shell, script);
+		return script.toString();
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.File;
+
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class CompletionOptions {
+
+	public static enum Mode {
+		FAST, SAFE
+	}
+
+	private Mode mode;
+	private File file;
+	private Mode level;
+	private String name;
+	private boolean verbose;
+
+	@Option(shortName = 'm', longName = "mode", description = "The processing mode")
+	public void setMode(Mode mode) {
+		this.mode = mode;
+	}
+
+	@Option(shortName = 'f', longName = "file", description = "The input file")
+	public void setFile(File file) {
+		this.file = file;
+	}
+
+	@Option(shortName = 'O', embeddedValue = true, description = "The optimization level")
+	public void setLevel(Mode level) {
+		this.level = level;
+	}
+
+	@Option(longName = "name", propertyValue = true, description = "The name of the [run]")
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	@Option(shortName = 'v', longName = "verbose", description = "Display what's done")
+	public void setVerbose() {
+		this.verbose = true;
+	}
+
+	public Mode getMode() {
+		return this.mode;
+	}
+
+	public File getFile() {
+		return this.file;
+	}
+
+	public Mode getLevel() {
+		return this.level;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public boolean isVerbose() {
+		return this.verbose;
+	}
+}
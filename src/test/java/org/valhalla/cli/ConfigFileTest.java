@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class ConfigFileTest extends AbstractOptionsTestSupport {
+
+	private ConfigOptions object;
+	private Map<String, String> environment;
+	private Path file;
+
+	@Override
+	Class<?>[] getClasses() {
+		return new Class<?>[] { ConfigOptions.class };
+	}
+
+	@Before
+	public void createFile() throws IOException {
+		this.object = new ConfigOptions();
+		this.environment = new HashMap<String, String>();
+		this.file = Files.createTempFile("options", ".properties");
+	}
+
+	@After
+	public void deleteFile() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	private ConfigFile load(String content) throws IOException {
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+		return ConfigFile.load(options, file);
+	}
+
+	private String[] process(ConfigFile config, String... args) throws OptionsException {
+		return options.processArguements(args, environment, config, new Object[] { object });
+	}
+
+	@Test
+	public void testConfigurationValues() throws Exception {
+		ConfigFile config = load("# comment\n! comment\n\ncache-size=20\nname : admin\nlevel debug\ndry-run=true\n");
+		Assert.assertEquals(4, config.size());
+		Assert.assertArrayEquals(new String[] { "file" }, process(config, "file"));
+		Assert.assertEquals(20, object.getCacheSize());
+		Assert.assertEquals("The option was applied more than once", 1, object.getCacheSizeCalls());
+		Assert.assertEquals("admin", object.getName());
+		Assert.assertEquals("debug", object.getLevel());
+		Assert.assertTrue(object.isDryRun());
+	}
+
+	@Test
+	public void testEscapesAndContinuations() throws Exception {
+		ConfigFile config = load("message = first \\\r\n    second\\tthird\\u00e9 \u00e8\r\nna\\me=a\\=b\\\\\n  level=\\\n");
+		process(config);
+		Assert.assertEquals("first second\tthird\u00e9 \u00e8", object.getMessage());
+		Assert.assertEquals("a=b\\", object.getName());
+		Assert.assertEquals("", object.getLevel());
+	}
+
+	@Test
+	public void testLastLineWithoutNewLine() throws Exception {
+		process(load("name=admin"));
+		Assert.assertEquals("admin", object.getName());
+	}
+
+	@Test
+	public void testUnknownKeysAreSkipped() throws Exception {
+		ConfigFile config = load("unknown=value\nn=short\nname=admin\n");
+		Assert.assertEquals(1, config.size());
+		process(config);
+		Assert.assertEquals("admin", object.getName());
+	}
+
+	@Test
+	public void testDisabledFlag() throws Exception {
+		process(load("dry-run=false\n"));
+		Assert.assertFalse(object.isDryRun());
+	}
+
+	@Test
+	public void testCommandLineOverridesConfiguration() throws Exception {
+		process(load("cache-size=20\nname=admin\n"), "--cache-size", "30", "-n", "root");
+		Assert.assertEquals(30, object.getCacheSize());
+		Assert.assertEquals("The option was applied more than once", 1, object.getCacheSizeCalls());
+		Assert.assertEquals("root", object.getName());
+	}
+
+	@Test
+	public void testEnvironmentOverridesConfiguration() throws Exception {
+		environment.put("TEST_CACHE_SIZE", "40");
+		process(load("cache-size=20\n"));
+		Assert.assertEquals(40, object.getCacheSize());
+		Assert.assertEquals("The option was applied more than once", 1, object.getCacheSizeCalls());
+	}
+
+	@Test
+	public void testDefaultValueWithoutConfiguration() throws Exception {
+		process(load(""));
+		Assert.assertEquals(10, object.getCacheSize());
+		process(null);
+		Assert.assertEquals(10, object.getCacheSize());
+	}
+
+	@Test(expected = OptionsException.class)
+	public void testInvalidValue() throws Exception {
+		process(load("cache-size=many\n"));
+	}
+
+	@Test(expected = IOException.class)
+	public void testMalformedEscape() throws Exception {
+		load("name=\\u12\n");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOtherOptions() throws Exception {
+		ConfigFile config = ConfigFile.load(new Options(new Class<?>[] { ConfigOptions.class }), file);
+		process(config);
+	}
+
+}
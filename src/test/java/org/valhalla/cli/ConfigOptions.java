@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class ConfigOptions {
+
+	private int cacheSize;
+	private int cacheSizeCalls;
+	private String name;
+	private String message;
+	private boolean dryRun;
+	private String level;
+	private int limit;
+
+	@Option(longName = "cache-size", env = "TEST_CACHE_SIZE", defaultValue = "10")
+	public void setCacheSize(int cacheSize) {
+		this.cacheSize = cacheSize;
+		this.cacheSizeCalls++;
+	}
+
+	@Option(shortName = 'n', longName = "name")
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	@Option(longName = "message")
+	public void setMessage(String message) {
+		this.message = message;
+	}
+
+	@Option(longName = "dry-run")
+	public void setDryRun() {
+		this.dryRun = true;
+	}
+
+	@Option(longName = "level", propertyValue = true)
+	public void setLevel(String level) {
+		this.level = level;
+	}
+
+	@Option(longName = "limit")
+	public void setLimit(int limit) {
+		if (limit < 0) {
+			throw new IllegalArgumentException("The limit can not be negative");
+		}
+		this.limit = limit;
+	}
+
+	public int getCacheSize() {
+		return this.cacheSize;
+	}
+
+	public int getCacheSizeCalls() {
+		return this.cacheSizeCalls;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public String getMessage() {
+		return this.message;
+	}
+
+	public boolean isDryRun() {
+		return this.dryRun;
+	}
+
+	public String getLevel() {
+		return this.level;
+	}
+
+	public int getLimit() {
+		return this.limit;
+	}
+
+}
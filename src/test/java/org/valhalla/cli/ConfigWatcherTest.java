@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class ConfigWatcherTest {
+
+	private ConfigOptions object;
+	private Map<String, String> environment;
+	private Path directory;
+	private Path file;
+	private ConfigWatcher watcher;
+
+	@Before
+	public void createWatcher() throws Exception {
+		this.object = new ConfigOptions();
+		this.environment = new HashMap<String, String>();
+		this.directory = Files.createTempDirectory("options");
+		this.file = directory.resolve("options.properties");
+		this.watcher = new ConfigWatcher(new Options(new Class<?>[] { ConfigOptions.class }), file,
+				new Object[] { object });
+	}
+
+	@After
+	public void closeWatcher() throws IOException {
+		watcher.close();
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(directory);
+	}
+
+	private void write(String content) throws IOException {
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testOnlyChangedValuesAreApplied() throws Exception {
+		write("cache-size=20\nname=first\n");
+		watcher.process(new String[0], environment);
+		Assert.assertEquals(20, object.getCacheSize());
+		Assert.assertEquals(1, object.getCacheSizeCalls());
+		write("cache-size=20\nname=second\nlevel=debug\n");
+		Assert.assertTrue(watcher.reload());
+		Assert.assertEquals("second", object.getName());
+		Assert.assertEquals("debug", object.getLevel());
+		Assert.assertEquals("An unchanged value was applied", 1, object.getCacheSizeCalls());
+		Assert.assertFalse(watcher.reload());
+	}
+
+	@Test
+	public void testOverriddenValuesAreKept() throws Exception {
+		write("cache-size=20\nname=first\n");
+		environment.put("TEST_CACHE_SIZE", "40");
+		watcher.process(new String[] { "--name", "cli" }, environment);
+		write("cache-size=30\nname=second\n");
+		Assert.assertFalse(watcher.reload());
+		Assert.assertEquals("cli", object.getName());
+		Assert.assertEquals(40, object.getCacheSize());
+	}
+
+	@Test
+	public void testInvalidValueRejectsReload() throws Exception {
+		write("cache-size=20\nname=first\n");
+		watcher.process(new String[0], environment);
+		write("name=second\ncache-size=many\n");
+		try {
+			watcher.reload();
+			Assert.fail("The invalid value was accepted");
+		} catch (OptionsException e) {
+			// expected
+		}
+		Assert.assertEquals("first", object.getName());
+		Assert.assertEquals(20, object.getCacheSize());
+		write("name=second\ncache-size=20\n");
+		Assert.assertTrue(watcher.reload());
+		Assert.assertEquals("second", object.getName());
+		Assert.assertEquals(1, object.getCacheSizeCalls());
+	}
+
+	@Test
+	public void testFailedSetterRestoresAppliedValues() throws Exception {
+		write("cache-size=20\nname=first\nlimit=5\n");
+		watcher.process(new String[0], environment);
+		write("name=second\ncache-size=30\nlevel=debug\nlimit=-1\n");
+		try {
+			watcher.reload();
+			Assert.fail("The failing setter was ignored");
+		} catch (OptionsException e) {
+			// expected
+		}
+		Assert.assertEquals("first", object.getName());
+		Assert.assertEquals(20, object.getCacheSize());
+		Assert.assertEquals(5, object.getLimit());
+		write("name=second\ncache-size=30\nlimit=6\n");
+		Assert.assertTrue(watcher.reload());
+		Assert.assertEquals("second", object.getName());
+		Assert.assertEquals(30, object.getCacheSize());
+		Assert.assertEquals(6, object.getLimit());
+	}
+
+	@Test
+	public void testRemovedValueRestoresDefault() throws Exception {
+		write("cache-size=20\n");
+		watcher.process(new String[0], environment);
+		write("name=first\n");
+		Assert.assertTrue(watcher.reload());
+		Assert.assertEquals(10, object.getCacheSize());
+		Assert.assertEquals("first", object.getName());
+	}
+
+	@Test
+	public void testEmptyFileIsIgnored() throws Exception {
+		write("cache-size=20\nname=first\n");
+		watcher.process(new String[0], environment);
+		// The file is truncated before it is rewritten
+		write("");
+		Assert.assertFalse(watcher.reload());
+		Assert.assertEquals(20, object.getCacheSize());
+		Assert.assertEquals("first", object.getName());
+		write("cache-size=20\nname=second\n");
+		Assert.assertTrue(watcher.reload());
+		Assert.assertEquals("second", object.getName());
+		Assert.assertEquals(1, object.getCacheSizeCalls());
+	}
+
+	@Test
+	public void testMissingFileAtStartup() throws Exception {
+		watcher.process(new String[0], environment);
+		Assert.assertEquals(10, object.getCacheSize());
+		write("cache-size=20\n");
+		Assert.assertTrue(watcher.reload());
+		Assert.assertEquals(20, object.getCacheSize());
+	}
+
+	@Test
+	public void testWatchedFileIsReloaded() throws Exception {
+		write("name=first\n");
+		watcher.process(new String[0], environment);
+		watcher.start();
+		write("name=second\n");
+		long deadline = System.currentTimeMillis() + 30000;
+		while (System.currentTimeMillis() < deadline) {
+			synchronized (watcher.getLock()) {
+				if ("second".equals(object.getName())) {
+					return;
+				}
+			}
+			Thread.sleep(50);
+		}
+		Assert.fail("The configuration file was not reloaded");
+	}
+
+}
@@ -0,0 +1,80 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class EnvironmentOptions {
+
+	private int cacheSize;
+	private int cacheSizeCalls;
+	private int threadCount;
+	private int threadCountCalls;
+	private boolean verbose;
+	private String user;
+
+	@Option(longName = "cache-size", env = "TEST_CACHE_SIZE", defaultValue = "10")
+	public void setCacheSize(int cacheSize) {
+		this.cacheSize = cacheSize;
+		this.cacheSizeCalls++;
+	}
+
+	@Option(longName = "thread-count", defaultValue = "1")
+	public void setThreadCount(int threadCount) {
+		this.threadCount = threadCount;
+		this.threadCountCalls++;
+	}
+
+	@Option(shortName = 'v', env = "TEST_VERBOSE")
+	public void setVerbose() {
+		this.verbose = true;
+	}
+
+	@Option(longName = "user", env = "TEST_USER", required = true)
+	public void setUser(String user) {
+		this.user = user;
+	}
+
+	public int getCacheSize() {
+		return this.cacheSize;
+	}
+
+	public int getCacheSizeCalls() {
+		return this.cacheSizeCalls;
+	}
+
+	public int getThreadCount() {
+		return this.threadCount;
+	}
+
+	public int getThreadCountCalls() {
+		return this.threadCountCalls;
+	}
+
+	public boolean isVerbose() {
+		return this.verbose;
+	}
+
+	public String getUser() {
+		return this.user;
+	}
+
+}
@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class EnvironmentTest extends AbstractOptionsTestSupport {
+
+	private EnvironmentOptions object;
+	private Map<String, String> environment;
+
+	@Override
+	Class<?>[] getClasses() {
+		return new Class<?>[] { EnvironmentOptions.class };
+	}
+
+	@Before
+	public void createEnvironment() {
+		this.object = new EnvironmentOptions();
+		this.environment = new HashMap<String, String>();
+		this.environment.put("TEST_USER", "admin");
+	}
+
+	private String[] process(String... args) throws OptionsException {
+		return options.processArguements(args, environment, new Object[] { object });
+	}
+
+	@Test
+	public void testDefaultValue() throws OptionsException {
+		process();
+		Assert.assertEquals(10, object.getCacheSize());
+		Assert.assertEquals(1, object.getCacheSizeCalls());
+		Assert.assertFalse(object.isVerbose());
+		Assert.assertEquals("admin", object.getUser());
+	}
+
+	@Test
+	public void testEnvironmentOverridesDefaultValue() throws OptionsException {
+		environment.put("TEST_CACHE_SIZE", "20");
+		process();
+		Assert.assertEquals(20, object.getCacheSize());
+		Assert.assertEquals("The option was applied more than once", 1, object.getCacheSizeCalls());
+	}
+
+	@Test
+	public void testCommandLineOverridesEnvironment() throws OptionsException {
+		environment.put("TEST_CACHE_SIZE", "20");
+		Assert.assertArrayEquals(new String[] { "file" }, process("--cache-size", "30", "--user=root", "file"));
+		Assert.assertEquals(30, object.getCacheSize());
+		Assert.assertEquals("The option was applied more than once", 1, object.getCacheSizeCalls());
+		Assert.assertEquals("root", object.getUser());
+	}
+
+	@Test
+	public void testCommandLineDoesNotApplyDefaultValue() throws OptionsException {
+		process("--thread-count", "4");
+		Assert.assertEquals(4, object.getThreadCount());
+		Assert.assertEquals("The default value was applied", 1, object.getThreadCountCalls());
+	}
+
+	@Test
+	public void testEnvironmentFlag() throws OptionsException {
+		environment.put("TEST_VERBOSE", "true");
+		process();
+		Assert.assertTrue(object.isVerbose());
+	}
+
+	@Test
+	public void testDisabledEnvironmentFlag() throws OptionsException {
+		environment.put("TEST_VERBOSE", "false");
+		process();
+		Assert.assertFalse(object.isVerbose());
+	}
+
+	@Test
+	public void testRequiredOptionFromEnvironment() throws OptionsException {
+		environment.clear();
+		try {
+			process();
+			Assert.fail("The missing required option was not reported");
+		} catch (OptionsException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("--user"));
+		}
+	}
+
+	@Test
+	public void testInvalidEnvironmentValue() {
+		environment.put("TEST_CACHE_SIZE", "large");
+		try {
+			process();
+			Assert.fail("The invalid environment value was not reported");
+		} catch (OptionsException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("TEST_CACHE_SIZE"));
+		}
+	}
+
+	@Test
+	public void testEnvironmentPrefix() throws OptionsException {
+		options.setEnvironmentPrefix("APP");
+		environment.put("APP_THREAD_COUNT", "8");
+		environment.put("APP_CACHE_SIZE", "40");
+		process();
+		Assert.assertEquals(8, object.getThreadCount());
+		Assert.assertEquals(1, object.getThreadCountCalls());
+		Assert.assertEquals("The declared environment variable was not used", 10, object.getCacheSize());
+	}
+
+}
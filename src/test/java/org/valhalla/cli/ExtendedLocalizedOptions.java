@@ -0,0 +1,35 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * The descriptions of these options are defined by the
+ * ExtendedLocalizedOptions resource bundle while the descriptions of the
+ * inherited options are defined by the LocalizedOptions resource bundle.
+ * 
+ * @author Claudio Corsi
+ *
+ */
+public class ExtendedLocalizedOptions extends LocalizedOptions {
+
+	@Option(longName = "timeout", descriptionKey = "timeout")
+	public void setTimeout(int timeout) {
+	}
+
+}
@@ -0,0 +1,65 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class FeatureOptions {
+
+	public enum Feature {
+		FAST_PATH, CACHE, TRACING
+	}
+
+	private final FlagSet features = new FlagSet(Feature.class);
+	private final FlagSet experiments = new FlagSet("alpha", "beta");
+	private boolean verbose;
+
+	@Option(longName = "feature-", flagFamily = true, defaultValue = "cache", description = "Enables the named feature")
+	public FlagSet getFeatures() {
+		return features;
+	}
+
+	@Option(longName = "feature-x-", flagFamily = true, description = "Enables the named experiment")
+	public FlagSet getExperiments() {
+		return experiments;
+	}
+
+	@Option(longName = "feature-verbose")
+	public void setVerbose() {
+		this.verbose = true;
+	}
+
+	public boolean isVerbose() {
+		return verbose;
+	}
+
+	/**
+	 * A flag family method that does not return a FlagSet
+	 */
+	public static class InvalidFamily {
+
+		@Option(longName = "flag-", flagFamily = true)
+		public void setFlags() {
+		}
+
+	}
+
+}
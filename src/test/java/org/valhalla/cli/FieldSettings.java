@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class FieldSettings {
+
+	@Option(shortName = 'p', longName = "port", defaultValue = "8080", description = "The listening port")
+	private int port;
+
+	@Option(longName = "size", defaultValue = "1024")
+	private long size;
+
+	@Option(longName = "level")
+	private short level;
+
+	@Option(longName = "mask")
+	private byte mask;
+
+	@Option(longName = "ratio", defaultValue = "0.5")
+	private double ratio;
+
+	@Option(longName = "scale")
+	private float scale;
+
+	@Option(longName = "verbose", description = "Display the processing steps")
+	private boolean verbose;
+
+	@Option(longName = "cache", defaultValue = "true")
+	private Boolean cache;
+
+	@Option(longName = "host", description = "The listening host", required = true)
+	private String host;
+
+	@Option(longName = "unit", defaultValue = "SECONDS")
+	private TimeUnit unit;
+
+	@Option(longName = "workers", inPlace = true)
+	private AtomicInteger workers = new AtomicInteger(1);
+
+	public int getPort() {
+		return port;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public short getLevel() {
+		return level;
+	}
+
+	public byte getMask() {
+		return mask;
+	}
+
+	public double getRatio() {
+		return ratio;
+	}
+
+	public float getScale() {
+		return scale;
+	}
+
+	public boolean isVerbose() {
+		return verbose;
+	}
+
+	public Boolean getCache() {
+		return cache;
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	public TimeUnit getUnit() {
+		return unit;
+	}
+
+	public AtomicInteger getWorkers() {
+		return workers;
+	}
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.valhalla.cli.FeatureOptions.Feature;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class FlagFamilyTest extends AbstractOptionsTestSupport {
+
+	private FeatureOptions object;
+
+	@Override
+	Class<?>[] getClasses() {
+		return new Class<?>[] { FeatureOptions.class };
+	}
+
+	@Before
+	public void createObject() {
+		this.object = new FeatureOptions();
+	}
+
+	@Test
+	public void testFlags() throws OptionsException {
+		executeOptions(new String[] { "--feature-fast-path", "--feature-x-beta", "--feature-verbose", "file" },
+				new Object[] { object }, new String[] { "file" });
+		FlagSet features = object.getFeatures();
+		Assert.assertTrue(features.isEnabled(Feature.FAST_PATH));
+		Assert.assertTrue("The default flag was not enabled", features.isEnabled(Feature.CACHE));
+		Assert.assertFalse(features.isEnabled("tracing"));
+		Assert.assertTrue(object.getExperiments().isEnabled("beta"));
+		Assert.assertFalse(object.getExperiments().isEnabled("alpha"));
+		Assert.assertTrue(object.isVerbose());
+	}
+
+	@Test
+	public void testDisableDefaultFlag() throws OptionsException {
+		executeOptions(new String[] { "--feature-cache=false", "--feature-tracing=true" }, new Object[] { object },
+				new String[0]);
+		Assert.assertFalse(object.getFeatures().isEnabled(Feature.CACHE));
+		Assert.assertTrue(object.getFeatures().isEnabled(Feature.TRACING));
+		Assert.assertEquals(1, object.getFeatures().cardinality());
+	}
+
+	@Test(expected = OptionsException.class)
+	public void testUnknownFlag() throws OptionsException {
+		executeOptions(new String[] { "--feature-unknown" }, new Object[] { object }, new String[0]);
+	}
+
+	@Test(expected = OptionsException.class)
+	public void testInvalidFamily() throws OptionsException {
+		new Options(new Class<?>[] { FeatureOptions.InvalidFamily.class });
+	}
+
+	@Test
+	public void testUsageSummarizesFamily() {
+		String usage = options.usage(FlagFamilyTest.class, "[options]");
+		Assert.assertTrue(usage, usage.contains("--feature-<flag>[=false]"));
+		Assert.assertTrue(usage, usage.contains("Enables the named feature"));
+	}
+
+	@Test
+	public void testConcurrentUpdates() throws InterruptedException {
+		final FlagSet flags = new FlagSet(names(256));
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int thread = 0; thread < 4; thread++) {
+			final int offset = thread;
+			threads.add(new Thread(new Runnable() {
+				public void run() {
+					for (int id = offset; id < flags.size(); id += 4) {
+						flags.set(id, true);
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(256, flags.cardinality());
+		flags.set(65, false);
+		Assert.assertFalse(flags.isEnabled(65));
+		Assert.assertTrue(flags.isEnabled(64));
+		Assert.assertEquals("flag65", flags.name(65));
+		Assert.assertEquals(65, flags.id("flag65"));
+	}
+
+	private static String[] names(int count) {
+		String names[] = new String[count];
+		for (int idx = 0; idx < count; idx++) {
+			names[idx] = "flag" + idx;
+		}
+		return names;
+	}
+
+}
@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class FlightRecorderEventsTest {
+
+	@Test
+	public void testBuildAndProcessEvents() throws Exception {
+		List<RecordedEvent> events = record(new String[] { "-I", "23", "foo" });
+		RecordedEvent build = find(events, "org.valhalla.cli.OptionsBuild");
+		Assert.assertNotNull("No options build event was recorded", build);
+		Assert.assertEquals("Option class is incorrect", Simple.class.getName(), build.getString("optionClass"));
+		Assert.assertTrue("Option count was not set", build.getInt("optionCount") > 0);
+		RecordedEvent process = find(events, "org.valhalla.cli.ProcessArguments");
+		Assert.assertNotNull("No process arguments event was recorded", process);
+		Assert.assertEquals("Argument count is incorrect", 3, process.getInt("argumentCount"));
+		Assert.assertEquals("Remaining count is incorrect", 1, process.getInt("remainingCount"));
+		Assert.assertEquals("Outcome is incorrect", "success", process.getString("outcome"));
+	}
+
+	@Test
+	public void testFailedProcessEvent() throws Exception {
+		List<RecordedEvent> events = record(new String[] { "--unknown" });
+		RecordedEvent process = find(events, "org.valhalla.cli.ProcessArguments");
+		Assert.assertNotNull("No process arguments event was recorded", process);
+		Assert.assertEquals("Outcome is incorrect", "No available option for unknown", process.getString("outcome"));
+	}
+
+	@Test
+	public void testSlowConversionEvent() throws Exception {
+		List<RecordedEvent> events = record(new String[] { "-C", "value" }, true);
+		boolean found = false;
+		for (RecordedEvent event : events) {
+			if (event.getEventType().getName().equals("org.valhalla.cli.SlowConversion")
+					&& ParameterValue.class.getName().equals(event.getString("type"))) {
+				Assert.assertEquals("Option class is incorrect", Simple.class.getName(), event.getString("optionClass"));
+				found = true;
+			}
+		}
+		Assert.assertTrue("No slow conversion event was recorded", found);
+	}
+
+	private List<RecordedEvent> record(String args[]) throws Exception {
+		return record(args, false);
+	}
+
+	private List<RecordedEvent> record(String args[], boolean conversions) throws Exception {
+		File file = File.createTempFile("options", ".jfr");
+		try {
+			Recording recording = new Recording();
+			try {
+				recording.enable("org.valhalla.cli.OptionsBuild");
+				recording.enable("org.valhalla.cli.ProcessArguments");
+				if (conversions) {
+					// Report every conversion instead of the slow ones only
+					recording.enable("org.valhalla.cli.SlowConversion").withThreshold(Duration.ZERO);
+				}
+				recording.start();
+				Options options = new Options(new Class<?>[] { Simple.class });
+				try {
+					options.processArguements(args, new Object[] { new Simple() });
+				} catch (OptionsException e) {
+					// expected by the failure test
+				}
+				recording.stop();
+				recording.dump(file.toPath());
+			} finally {
+				recording.close();
+			}
+			return RecordingFile.readAllEvents(file.toPath());
+		} finally {
+			file.delete();
+		}
+	}
+
+	private RecordedEvent find(List<RecordedEvent> events, String name) throws IOException {
+		for (RecordedEvent event : events) {
+			if (event.getEventType().getName().equals(name)) {
+				return event;
+			}
+		}
+		return null;
+	}
+}
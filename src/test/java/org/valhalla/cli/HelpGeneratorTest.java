@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class HelpGeneratorTest extends AbstractOptionsTestSupport {
+
+	private static String lineSep = System.getProperty("line.separator");
+
+	private HelpGenerator generator;
+
+	@Override
+	Class<?>[] getClasses() {
+		return new Class<?>[] { CompletionOptions.class };
+	}
+
+	@Before
+	public void createGenerator() {
+		this.generator = new HelpGenerator(options, MainClass.class, "tool", "[options] files...");
+	}
+
+	@Test
+	public void testText() throws IOException {
+		StringBuilder text = new StringBuilder();
+		generator.text(text);
+		String usage = options.usage(MainClass.class, "[options] files...");
+		Assert.assertTrue("The option lines are not part of the usage", usage.endsWith(text.toString()));
+		Assert.assertEquals("The header was part of the option lines", usage.indexOf(lineSep) + lineSep.length(),
+				usage.length() - text.length());
+	}
+
+	@Test
+	public void testManPage() throws IOException {
+		StringBuilder man = new StringBuilder();
+		generator.man(man);
+		String text = man.toString();
+		Assert.assertTrue(text, text.contains(".TH TOOL 1\n"));
+		Assert.assertTrue(text, text.contains(".SH OPTIONS\n"));
+		Assert.assertTrue(text, text.contains(".TP\n.B \\-m [value], \\-\\-mode[=value| value]\nThe processing mode\n"));
+		Assert.assertTrue(text, text.contains(".B name=[value]\nThe name of the [run]\n"));
+	}
+
+	@Test
+	public void testMarkdown() throws IOException {
+		StringBuilder markdown = new StringBuilder();
+		generator.markdown(markdown);
+		String text = markdown.toString();
+		Assert.assertTrue(text, text.startsWith("# tool #\n\n    tool [options] files...\n"));
+		Assert.assertTrue(text, text.contains("* `-m [value], --mode[=value| value]` - The processing mode\n"));
+		Assert.assertTrue(text, text.contains("* `-v, --verbose` - Display what's done\n"));
+	}
+
+	@Test
+	public void testWrite() throws Exception {
+		Path directory = Files.createTempDirectory("help");
+		try {
+			generator.write(directory.toFile());
+			StringBuilder text = new StringBuilder();
+			generator.text(text);
+			Path usage = directory.resolve("org/valhalla/cli/MainClass.usage");
+			Assert.assertEquals(options.usageRenderer().fingerprint() + "\n" + text,
+					new String(Files.readAllBytes(usage), StandardCharsets.UTF_8));
+			// The resource is streamed since it matches the options
+			StringBuilder streamed = new StringBuilder();
+			Assert.assertTrue(options.usageRenderer().stream(Files.newInputStream(usage), streamed));
+			Assert.assertEquals(text.toString(), streamed.toString());
+			// The resource does not match the options of another instance
+			Options other = new Options(new Class<?>[] { Simple.class });
+			streamed.setLength(0);
+			Assert.assertFalse(other.usageRenderer().stream(Files.newInputStream(usage), streamed));
+			Assert.assertEquals("", streamed.toString());
+			Assert.assertTrue(Files.exists(directory.resolve("org/valhalla/cli/MainClass.1")));
+			Assert.assertTrue(Files.exists(directory.resolve("org/valhalla/cli/MainClass.md")));
+		} finally {
+			for (String name : new String[] { "MainClass.usage", "MainClass.1", "MainClass.md" }) {
+				Files.deleteIfExists(directory.resolve("org/valhalla/cli/" + name));
+			}
+			Files.deleteIfExists(directory.resolve("org/valhalla/cli"));
+			Files.deleteIfExists(directory.resolve("org/valhalla"));
+			Files.deleteIfExists(directory.resolve("org"));
+			Files.deleteIfExists(directory);
+		}
+	}
+
+	@Test
+	public void testStaleResourceIsRendered() throws IOException {
+		// The fingerprint of the resource does not match the options
+		String usage = options.usage(PrerenderedMain.class, "[options]");
+		Assert.assertFalse(usage, usage.contains("--prerendered"));
+		Assert.assertEquals(options.usage(MainClass.class, "[options]").replace(MainClass.class.getName(),
+				PrerenderedMain.class.getName()), usage);
+	}
+
+	@Test
+	public void testStrippedDescriptionsMatch() throws Exception {
+		Class<?> type = new DefiningClassLoader().define(CompletionOptions.class.getName(),
+				DescriptionStripper.strip(read(CompletionOptions.class)));
+		UsageRenderer stripped = new Options(new Class<?>[] { type }).usageRenderer();
+		String fingerprint = options.usageRenderer().fingerprint();
+		Assert.assertNotEquals(fingerprint, stripped.fingerprint());
+		StringBuilder streamed = new StringBuilder();
+		Assert.assertTrue(stripped.stream(new ByteArrayInputStream((fingerprint + "\nlines\n")
+				.getBytes(StandardCharsets.UTF_8)), streamed));
+		Assert.assertEquals("lines\n", streamed.toString());
+		// The descriptions of the live options must match
+		Assert.assertFalse(options.usageRenderer().stream(new ByteArrayInputStream((stripped.fingerprint()
+				+ "\nlines\n").getBytes(StandardCharsets.UTF_8)), new StringBuilder()));
+	}
+
+	@Test
+	public void testStripDescriptions() throws Exception {
+		byte classFile[] = read(CompletionOptions.class);
+		byte stripped[] = DescriptionStripper.strip(classFile);
+		Assert.assertNotNull("The descriptions were not stripped", stripped);
+		Assert.assertTrue("The class file did not shrink", stripped.length < classFile.length);
+		Class<?> type = new DefiningClassLoader().define(CompletionOptions.class.getName(), stripped);
+		Assert.assertNotSame(CompletionOptions.class, type);
+		Option option = type.getMethod("setMode", CompletionOptions.Mode.class).getAnnotation(Option.class);
+		Assert.assertEquals("", option.description());
+		Assert.assertEquals("mode", option.longName());
+		Assert.assertEquals('m', option.shortName());
+		Assert.assertEquals(5, new Options(new Class<?>[] { type }).getOptions().size());
+		Assert.assertNull("A class without descriptions was rewritten", DescriptionStripper.strip(stripped));
+		Assert.assertNull(DescriptionStripper.strip(read(PrerenderedMain.class)));
+	}
+
+	private static byte[] read(Class<?> type) throws IOException {
+		InputStream in = type.getResourceAsStream(type.getSimpleName() + ".class");
+		try {
+			return in.readAllBytes();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static class DefiningClassLoader extends ClassLoader {
+
+		DefiningClassLoader() {
+			super(HelpGeneratorTest.class.getClassLoader());
+		}
+
+		Class<?> define(String name, byte classFile[]) {
+			return defineClass(name, classFile, 0, classFile.length);
+		}
+
+	}
+
+	@Test
+	public void testStripDirectory() throws IOException {
+		Path directory = Files.createTempDirectory("classes");
+		File file = directory.resolve("CompletionOptions.class").toFile();
+		try {
+			Files.write(file.toPath(), read(CompletionOptions.class));
+			Assert.assertEquals(1, DescriptionStripper.strip(directory.toFile()));
+			Assert.assertEquals(0, DescriptionStripper.strip(directory.toFile()));
+		} finally {
+			Files.deleteIfExists(file.toPath());
+			Files.deleteIfExists(directory);
+		}
+	}
+
+}
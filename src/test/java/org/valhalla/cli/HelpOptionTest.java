@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.valhalla.cli.annotations.Option;
+import org.valhalla.cli.annotations.OptionReference;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class HelpOptionTest extends AbstractOptionsTestSupport {
+
+	private static String lineSep = System.getProperty("line.separator");
+
+	private HelpOptions object;
+
+	@Override
+	Class<?>[] getClasses() {
+		return new Class<?>[] { HelpOptions.class };
+	}
+
+	@Before
+	public void createHelpOptions() {
+		this.object = new HelpOptions();
+	}
+
+	@Test
+	public void testLongHelpOption() throws OptionsException {
+		executeOptions(new String[] { "--count", "value", "--help" }, new Object[] { this.object }, new String[0]);
+		Assert.assertEquals("The help option was not set", "", this.object.getHelp());
+		Assert.assertEquals("The count option was set", 0, this.object.getCount());
+		Assert.assertFalse("The required option was set", this.object.isRequired());
+	}
+
+	@Test
+	public void testShortHelpOptionWithTerm() throws OptionsException {
+		executeOptions(new String[] { "-h", "count" }, new Object[] { this.object }, new String[0]);
+		Assert.assertEquals("The help term was not set", "count", this.object.getHelp());
+	}
+
+	@Test
+	public void testLongHelpOptionWithEmbeddedTerm() throws OptionsException {
+		executeOptions(new String[] { "-R", "--help=count" }, new Object[] { this.object }, new String[0]);
+		Assert.assertEquals("The help term was not set", "count", this.object.getHelp());
+		Assert.assertFalse("The required option was set", this.object.isRequired());
+	}
+
+	@Test
+	public void testVersionOption() throws OptionsException {
+		StringBuilder out = new StringBuilder();
+		options.setVersionOutput(out, "HelpOptions 1.0");
+		executeOptions(new String[] { "-V", "foo" }, new Object[] { this.object }, new String[0]);
+		Assert.assertTrue("The version option was not set", this.object.isVersion());
+		Assert.assertEquals("The version output is incorrect", "HelpOptions 1.0" + lineSep, out.toString());
+	}
+
+	@Test
+	public void testHelpOutput() throws OptionsException {
+		StringBuilder out = new StringBuilder();
+		options.setHelpOutput(out, MainClass.class, "[options]");
+		executeOptions(new String[] { "--help" }, new Object[] { this.object }, new String[0]);
+		Assert.assertEquals("The help output is incorrect", options.usage(MainClass.class, "[options]"), out.toString());
+	}
+
+	@Test
+	public void testHelpOutputWithTerm() throws OptionsException {
+		StringBuilder out = new StringBuilder();
+		options.setHelpOutput(out, MainClass.class, "[options]");
+		executeOptions(new String[] { "--help", "repeat" }, new Object[] { this.object }, new String[0]);
+		String expected = "usage: java org.valhalla.cli.MainClass [options]" + lineSep
+				+ "  --count[=value| value], default=unknown    The number of times to repeat" + lineSep;
+		Assert.assertEquals("The help output is incorrect", expected, out.toString());
+	}
+
+	@Test
+	public void testHelpOptionOfReferencedObject() throws OptionsException {
+		Options referenced = new Options(new Class<?>[] { HelpReference.class });
+		HelpReference reference = new HelpReference();
+		referenced.processArguements(new String[] { "-h" }, new Object[] { reference });
+		Assert.assertEquals("The help option was not set", "", reference.helpOptions.getHelp());
+	}
+
+	@Test(expected = OptionsException.class)
+	public void testWithoutHelpOption() throws OptionsException {
+		// The default count value can not be converted
+		executeOptions(new String[] { "-R" }, new Object[] { this.object }, new String[0]);
+	}
+
+	@Test(expected = OptionsException.class)
+	public void testInvalidHelpOption() throws OptionsException {
+		new Options(new Class<?>[] { InvalidHelpOption.class });
+	}
+
+	public static class HelpReference {
+
+		@OptionReference
+		public HelpOptions helpOptions = new HelpOptions();
+
+	}
+
+	public static class InvalidHelpOption {
+
+		@Option(longName = "help", help = true)
+		public void setHelp(int value) {
+		}
+
+	}
+}
@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class HelpOptions {
+
+	private String help;
+	private boolean version;
+	private int count;
+	private boolean required;
+
+	@Option(shortName = 'h', longName = "help", help = true, description = "Display the help of the matching options")
+	public void setHelp(String term) {
+		this.help = term;
+	}
+
+	@Option(shortName = 'V', longName = "version", version = true, description = "Display the version")
+	public void setVersion() {
+		this.version = true;
+	}
+
+	// The default value can not be converted, it is only applied when help is not requested.
+	@Option(longName = "count", defaultValue = "unknown", description = "The number of times to repeat")
+	public void setCount(int count) {
+		this.count = count;
+	}
+
+	@Option(shortName = 'R', longName = "required", required = true, description = "A required option")
+	public void setRequired() {
+		this.required = true;
+	}
+
+	public String getHelp() {
+		return this.help;
+	}
+
+	public boolean isVersion() {
+		return this.version;
+	}
+
+	public int getCount() {
+		return this.count;
+	}
+
+	public boolean isRequired() {
+		return this.required;
+	}
+}
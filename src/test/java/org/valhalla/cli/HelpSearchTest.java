@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class HelpSearchTest extends AbstractOptionsTestSupport {
+
+	private static String lineSep = System.getProperty("line.separator");
+
+	@Override
+	Class<?>[] getClasses() {
+		return new Class<?>[] { OptionImplOne.class, OptionImplTwo.class, OptionImplThree.class };
+	}
+
+	@Test
+	public void testSearchByLongName() {
+		List<Option> found = options.search("bOption");
+		Assert.assertFalse("No option was found", found.isEmpty());
+		Assert.assertEquals("The best match is incorrect", "bOption", found.get(0).longName());
+	}
+
+	@Test
+	public void testSearchByOptionSyntax() {
+		List<Option> found = options.search("--bOption");
+		Assert.assertEquals("Number of found options is incorrect", 1, found.size());
+		Assert.assertEquals("The found option is incorrect", "bOption", found.get(0).longName());
+	}
+
+	@Test
+	public void testSearchByWordsOfTerm() {
+		List<Option> found = options.search("display-screen");
+		Assert.assertEquals("Number of found options is incorrect", 1, found.size());
+		Assert.assertEquals("The found option is incorrect", 'B', found.get(0).shortName());
+	}
+
+	@Test
+	public void testSearchByShortName() {
+		List<Option> found = options.search("A");
+		Assert.assertEquals("The best match is incorrect", 'A', found.get(0).shortName());
+	}
+
+	@Test
+	public void testSearchByDescriptionPrefix() {
+		List<Option> found = options.search("mech");
+		Assert.assertEquals("Number of found options is incorrect", 1, found.size());
+		Assert.assertEquals("The found option is incorrect", 'B', found.get(0).shortName());
+	}
+
+	@Test
+	public void testSearchRanking() {
+		// Every description contains the word option, the B option contains it twice
+		List<Option> found = options.search("option");
+		Assert.assertEquals("Number of found options is incorrect", 3, found.size());
+		Assert.assertEquals("The best match is incorrect", "bOption", found.get(0).longName());
+	}
+
+	@Test
+	public void testSearchWithoutMatch() {
+		Assert.assertTrue("Options were found", options.search("nothing").isEmpty());
+	}
+
+	@Test
+	public void testSearchUsage() throws Exception {
+		StringBuilder usage = new StringBuilder();
+		options.usage(MainClass.class, "simple command line string", "screen", usage);
+		String expectedUsageMessage = "usage: java org.valhalla.cli.MainClass simple command line string"
+				+ lineSep
+				+ "  -B    This is option B that will contain a description that will span multiple lines to test that the usage mechanism"
+				+ lineSep 
+				+ "    will properly display this information on the screen"
+				+ lineSep;
+		Assert.assertEquals("Usage string is incorrect", expectedUsageMessage, usage.toString());
+	}
+
+}
@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class LocalizedDescriptionTest extends AbstractOptionsTestSupport {
+
+	private Locale defaultLocale;
+
+	@Override
+	Class<?>[] getClasses() {
+		return new Class<?>[] { LocalizedOptions.class };
+	}
+
+	@Before
+	public void setDefaultLocale() {
+		defaultLocale = Locale.getDefault();
+		Locale.setDefault(Locale.ENGLISH);
+	}
+
+	@After
+	public void resetDefaultLocale() {
+		Locale.setDefault(defaultLocale);
+	}
+
+	private String usage(Locale locale) throws IOException {
+		StringBuilder str = new StringBuilder();
+		options.usage(MainClass.class, "[options]", locale, str);
+		return str.toString();
+	}
+
+	@Test
+	public void testDefaultLocale() throws IOException {
+		String usage = options.usage(MainClass.class, "[options]");
+		Assert.assertTrue(usage, usage.contains("--cache[=value| value]    The size of the cache"));
+		Assert.assertTrue(usage, usage.contains("--missing[=value| value]    The fallback description"));
+		Assert.assertTrue(usage, usage.contains("--literal    The literal description"));
+		Assert.assertEquals(usage, usage(Locale.ENGLISH));
+	}
+
+	@Test
+	public void testLocalizedDescription() throws IOException {
+		String usage = usage(Locale.FRENCH);
+		Assert.assertTrue(usage, usage.contains("--cache[=value| value]    La taille du cache"));
+		Assert.assertTrue(usage, usage.contains("--missing[=value| value]    The fallback description"));
+		Assert.assertTrue(usage, usage.contains("--literal    The literal description"));
+	}
+
+	@Test
+	public void testOptionInterfaceDescription() throws Exception {
+		Options options = new Options(new Class<?>[] { LocalizedServerOptions.class });
+		String usage = options.usage(MainClass.class, "[options]");
+		Assert.assertTrue(usage, usage.contains("--port[=value| value], default=8080    The listening port"));
+		StringBuilder str = new StringBuilder();
+		options.usage(MainClass.class, "[options]", Locale.FRENCH, str);
+		Assert.assertTrue(str.toString(), str.toString().contains("Le port d\u00e9coute"));
+	}
+
+	@Test
+	public void testInheritedOptionDescription() throws Exception {
+		Options options = new Options(new Class<?>[] { ExtendedLocalizedOptions.class });
+		String usage = options.usage(MainClass.class, "[options]");
+		Assert.assertTrue(usage, usage.contains("--cache[=value| value]    The size of the cache"));
+		Assert.assertTrue(usage, usage.contains("--timeout[=value| value]    The request timeout"));
+		StringBuilder str = new StringBuilder();
+		options.usage(MainClass.class, "[options]", Locale.FRENCH, str);
+		Assert.assertTrue(str.toString(), str.toString().contains("La taille du cache"));
+	}
+
+	@Test
+	public void testDescriptionsAreCachedPerLocale() {
+		UsageRenderer renderer = options.usageRenderer();
+		Assert.assertSame(renderer.descriptions(Locale.FRENCH), renderer.descriptions(Locale.FRENCH));
+		Assert.assertNotSame(renderer.descriptions(Locale.FRENCH), renderer.descriptions(Locale.ENGLISH));
+		Assert.assertSame(renderer.options(120, Locale.FRENCH), renderer.options(120, Locale.FRENCH));
+	}
+
+	@Test
+	public void testSearchUsesResolvedDescriptions() {
+		Assert.assertEquals(1, options.search("size").size());
+		Assert.assertEquals("cache", options.search("size").get(0).longName());
+	}
+
+}
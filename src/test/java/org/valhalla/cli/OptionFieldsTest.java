@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class OptionFieldsTest extends AbstractOptionsTestSupport {
+
+	public static class ExtendedSettings extends FieldSettings {
+
+		@Option(longName = "name")
+		private String name;
+
+	}
+
+	public static class FinalSettings {
+
+		@Option(longName = "name")
+		private final String name = "final";
+
+	}
+
+	public static class StaticSettings {
+
+		@Option(longName = "name")
+		private static String name;
+
+	}
+
+	public static class EmbeddedFlagSettings {
+
+		@Option(shortName = 'v', embeddedValue = true)
+		private boolean verbose;
+
+	}
+
+	public static class GenericSettings<T extends Number> {
+
+		@Option(longName = "value")
+		private T value;
+
+		public T getValue() {
+			return value;
+		}
+
+	}
+
+	public static class IntegerSettings extends GenericSettings<Integer> {
+	}
+
+	public static class ArraySettings {
+
+		@Option(longName = "values")
+		private Integer values[];
+
+	}
+
+	@Override
+	Class<?>[] getClasses() {
+		return new Class<?>[] { FieldSettings.class };
+	}
+
+	@Test
+	public void testDefaultValues() throws Exception {
+		FieldSettings settings = new FieldSettings();
+		AtomicInteger workers = settings.getWorkers();
+		options.processArguements(new String[] { "--host", "localhost" }, new Object[] { settings });
+		Assert.assertEquals(8080, settings.getPort());
+		Assert.assertEquals(1024L, settings.getSize());
+		Assert.assertEquals(0, settings.getLevel());
+		Assert.assertEquals(0.5, settings.getRatio(), 0);
+		Assert.assertFalse(settings.isVerbose());
+		Assert.assertEquals(Boolean.TRUE, settings.getCache());
+		Assert.assertEquals("localhost", settings.getHost());
+		Assert.assertEquals(TimeUnit.SECONDS, settings.getUnit());
+		Assert.assertSame(workers, settings.getWorkers());
+		Assert.assertEquals(1, workers.get());
+	}
+
+	@Test
+	public void testPassedValues() throws Exception {
+		FieldSettings settings = new FieldSettings();
+		AtomicInteger workers = settings.getWorkers();
+		String remaining[] = options.processArguements(new String[] { "-p", "9090", "--size=2048", "--level", "3",
+				"--mask", "7", "--ratio", "0.25", "--scale", "1.5", "--verbose", "--cache", "--host", "example.org",
+				"--unit", "MINUTES", "--workers", "4", "file" }, new Object[] { settings });
+		Assert.assertArrayEquals(new String[] { "file" }, remaining);
+		Assert.assertEquals(9090, settings.getPort());
+		Assert.assertEquals(2048L, settings.getSize());
+		Assert.assertEquals(3, settings.getLevel());
+		Assert.assertEquals(7, settings.getMask());
+		Assert.assertEquals(0.25, settings.getRatio(), 0);
+		Assert.assertEquals(1.5f, settings.getScale(), 0);
+		Assert.assertTrue(settings.isVerbose());
+		Assert.assertEquals(Boolean.TRUE, settings.getCache());
+		Assert.assertEquals("example.org", settings.getHost());
+		Assert.assertEquals(TimeUnit.MINUTES, settings.getUnit());
+		Assert.assertSame(workers, settings.getWorkers());
+		Assert.assertEquals(4, workers.get());
+	}
+
+	@Test
+	public void testParseAndBind() throws Exception {
+		ParseResult result = options.parse(new String[] { "-p", "9091", "--verbose", "--host", "example.org" },
+				new HashMap<String, String>(), null);
+		FieldSettings first = new FieldSettings();
+		FieldSettings second = new FieldSettings();
+		result.bind(new Object[] { first });
+		result.bind(new Object[] { second });
+		Assert.assertEquals(9091, first.getPort());
+		Assert.assertEquals(9091, second.getPort());
+		Assert.assertTrue(second.isVerbose());
+		Assert.assertEquals("example.org", second.getHost());
+	}
+
+	@Test
+	public void testRequiredField() throws Exception {
+		try {
+			options.processArguements(new String[0], new Object[] { new FieldSettings() });
+			Assert.fail("The required host option was not checked");
+		} catch (OptionsException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("host"));
+		}
+	}
+
+	@Test
+	public void testInheritedFields() throws Exception {
+		Options options = new Options(new Class<?>[] { ExtendedSettings.class });
+		ExtendedSettings settings = new ExtendedSettings();
+		options.processArguements(new String[] { "--name", "extended", "--host", "localhost", "-p", "80" },
+				new Object[] { settings });
+		Assert.assertEquals("extended", settings.name);
+		Assert.assertEquals(80, settings.getPort());
+	}
+
+	@Test
+	public void testGenericFields() throws Exception {
+		Options options = new Options(new Class<?>[] { IntegerSettings.class });
+		IntegerSettings settings = new IntegerSettings();
+		options.processArguements(new String[] { "--value", "5" }, new Object[] { settings });
+		Assert.assertEquals(Integer.valueOf(5), settings.getValue());
+	}
+
+	@Test
+	public void testUsage() throws Exception {
+		String usage = options.usage(MainClass.class, "[options]");
+		Assert.assertTrue(usage, usage.contains("--port"));
+		Assert.assertTrue(usage, usage.contains("The listening port"));
+		Assert.assertTrue(usage, usage.contains("--verbose"));
+		Assert.assertTrue(usage, usage.contains("--workers"));
+	}
+
+	@Test
+	public void testInvalidFields() throws Exception {
+		for (Class<?> clz : new Class<?>[] { FinalSettings.class, StaticSettings.class, EmbeddedFlagSettings.class,
+				ArraySettings.class, GenericSettings.class }) {
+			try {
+				new Options(new Class<?>[] { clz });
+				Assert.fail("The option field of " + clz.getName() + " was accepted");
+			} catch (OptionsException e) {
+				// expected
+			}
+		}
+	}
+
+}
@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class OptionInterfacesTest extends AbstractOptionsTestSupport {
+
+	public interface InvalidOptions {
+
+		@Option(longName = "name")
+		String name();
+
+		String other();
+
+	}
+
+	public interface NumberOptions {
+
+		@Option(longName = "number")
+		Number number();
+
+	}
+
+	public interface IntegerOptions {
+
+		@Option(longName = "number")
+		Integer number();
+
+	}
+
+	public interface CovariantOptions extends NumberOptions, IntegerOptions {
+	}
+
+	private Map<String, String> environment;
+
+	@Override
+	Class<?>[] getClasses() {
+		return new Class<?>[] { ServerOptions.class };
+	}
+
+	@Before
+	public void createEnvironment() {
+		environment = new HashMap<String, String>();
+	}
+
+	@Test
+	public void testDefaultValues() throws Exception {
+		ServerOptions server = options.newInstance(ServerOptions.class);
+		options.processArguements(new String[0], environment, new Object[] { server });
+		Assert.assertEquals(8080, server.port());
+		Assert.assertEquals("localhost", server.host());
+		Assert.assertEquals(0.5, server.ratio(), 0);
+		Assert.assertEquals(0, server.timeout());
+		Assert.assertFalse(server.verbose());
+		Assert.assertTrue(server.cache());
+		Assert.assertEquals(TimeUnit.SECONDS, server.unit());
+		Assert.assertEquals("localhost:8080", server.address());
+	}
+
+	@Test
+	public void testPassedValues() throws Exception {
+		environment.put("TEST_SERVER_HOST", "example.org");
+		ServerOptions server = options.newInstance(ServerOptions.class);
+		String remaining[] = options.processArguements(new String[] { "-p", "9090", "--timeout", "30", "--verbose",
+				"--unit=MINUTES", "file" }, environment, new Object[] { server });
+		Assert.assertArrayEquals(new String[] { "file" }, remaining);
+		Assert.assertEquals(9090, server.port());
+		Assert.assertEquals("example.org", server.host());
+		Assert.assertEquals(30, server.timeout());
+		Assert.assertTrue(server.verbose());
+		Assert.assertEquals(TimeUnit.MINUTES, server.unit());
+	}
+
+	@Test
+	public void testGeneratedImplementation() throws Exception {
+		ServerOptions first = options.newInstance(ServerOptions.class);
+		ServerOptions second = options.newInstance(ServerOptions.class);
+		Class<?> type = first.getClass();
+		Assert.assertSame(type, second.getClass());
+		Assert.assertTrue(type.isHidden());
+		Assert.assertTrue(Modifier.isFinal(type.getModifiers()));
+		Assert.assertFalse(Proxy.isProxyClass(type));
+		Assert.assertSame("The implementation was generated again", type,
+				new Options(new Class<?>[] { ServerOptions.class }).newInstance(ServerOptions.class).getClass());
+	}
+
+	@Test
+	public void testUsage() throws Exception {
+		String usage = options.usage(OptionInterfacesTest.class, "[options]");
+		Assert.assertTrue(usage, usage.contains("--port"));
+		Assert.assertTrue(usage, usage.contains("--verbose"));
+	}
+
+	@Test
+	public void testCovariantGetters() throws Exception {
+		Options options = new Options(new Class<?>[] { CovariantOptions.class });
+		Assert.assertEquals(1, options.getOptions().size());
+		CovariantOptions covariant = options.newInstance(CovariantOptions.class);
+		options.processArguements(new String[] { "--number", "5" }, environment, new Object[] { covariant });
+		Assert.assertEquals(Integer.valueOf(5), ((IntegerOptions) covariant).number());
+		Assert.assertEquals(Integer.valueOf(5), ((NumberOptions) covariant).number());
+	}
+
+	@Test
+	public void testInterfaceOfAnotherClassLoader() throws Exception {
+		ClassLoader loader = new ClassLoader(getClass().getClassLoader()) {
+			@Override
+			protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+				if (!ServerOptions.class.getName().equals(name)) {
+					return super.loadClass(name, resolve);
+				}
+				synchronized (getClassLoadingLock(name)) {
+					Class<?> type = findLoadedClass(name);
+					if (type == null) {
+						try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+							byte bytes[] = in.readAllBytes();
+							type = defineClass(name, bytes, 0, bytes.length);
+						} catch (IOException e) {
+							throw new ClassNotFoundException(name, e);
+						}
+					}
+					return type;
+				}
+			}
+		};
+		Class<?> type = loader.loadClass(ServerOptions.class.getName());
+		Assert.assertNotSame(ServerOptions.class, type);
+		Options options = new Options(new Class<?>[] { type });
+		Object server = options.newInstance(type);
+		options.processArguements(new String[] { "-p", "9090" }, environment, new Object[] { server });
+		Assert.assertEquals(9090, type.getMethod("port").invoke(server));
+	}
+
+	@Test(expected = OptionsException.class)
+	public void testInvalidInterface() throws Exception {
+		new Options(new Class<?>[] { InvalidOptions.class });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownInterface() throws Exception {
+		options.newInstance(Runnable.class);
+	}
+
+}
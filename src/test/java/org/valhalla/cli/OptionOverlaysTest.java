@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class OptionOverlaysTest extends AbstractOptionsTestSupport {
+
+	private ConfigOptions base;
+	private OptionOverlays overlays;
+	private int cacheSize;
+	private int name;
+	private int dryRun;
+	private int level;
+
+	@Override
+	Class<?>[] getClasses() {
+		return new Class<?>[] { ConfigOptions.class };
+	}
+
+	@Before
+	public void createOverlays() throws OptionsException {
+		this.base = new ConfigOptions();
+		options.processArguements(new String[] { "--name", "base" }, new Object[] { base });
+		this.overlays = new OptionOverlays(options);
+		this.cacheSize = overlays.id("cache-size");
+		this.name = overlays.id("n");
+		this.dryRun = overlays.id("dry-run");
+		this.level = overlays.id("level");
+	}
+
+	@Test
+	public void testOverlayValues() throws Exception {
+		OptionOverlay overlay = overlays.parse(new String[] { "--cache-size", "5", "--dry-run", "level=debug" });
+		Assert.assertEquals(3, overlay.size());
+		String value = overlays.call(overlay, new Callable<String>() {
+			public String call() {
+				Assert.assertEquals(5, overlays.getInt(cacheSize, base.getCacheSize()));
+				Assert.assertTrue(overlays.isEnabled(dryRun, base.isDryRun()));
+				Assert.assertEquals("debug", overlays.get(level, base.getLevel()));
+				return overlays.get(name, base.getName());
+			}
+		});
+		Assert.assertEquals("The base value was not returned", "base", value);
+		Assert.assertNull(overlays.current());
+		Assert.assertEquals(10, overlays.getInt(cacheSize, base.getCacheSize()));
+		Assert.assertEquals("The base object was changed", 10, base.getCacheSize());
+		Assert.assertFalse(base.isDryRun());
+	}
+
+	@Test
+	public void testNestedOverlays() throws OptionsException {
+		final OptionOverlay outer = overlays.parse(new String[] { "-n", "outer" });
+		final OptionOverlay inner = overlays.parse(new String[] { "--name=inner", "--name=last" });
+		Assert.assertEquals(1, inner.size());
+		overlays.run(outer, new Runnable() {
+			public void run() {
+				overlays.run(inner, new Runnable() {
+					public void run() {
+						Assert.assertEquals("last", overlays.get("name", base.getName()));
+					}
+				});
+				Assert.assertSame(outer, overlays.current());
+				Assert.assertEquals("outer", overlays.get("name", base.getName()));
+			}
+		});
+	}
+
+	@Test
+	public void testOverlayIsBoundToThread() throws Exception {
+		OptionOverlay overlay = overlays.parse(new String[] { "--cache-size", "5" });
+		final AtomicReference<Integer> other = new AtomicReference<Integer>();
+		overlays.run(overlay, new Runnable() {
+			public void run() {
+				Thread thread = new Thread(new Runnable() {
+					public void run() {
+						other.set(overlays.getInt(cacheSize, base.getCacheSize()));
+					}
+				});
+				thread.start();
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		Assert.assertEquals(Integer.valueOf(10), other.get());
+	}
+
+	@Test
+	public void testManyOptionsAreSorted() throws OptionsException {
+		final OptionOverlay overlay = overlays.parse(new String[] { "level=a", "--message", "m", "--dry-run",
+				"--name", "n", "--cache-size", "1", "-n", "o", "level=b", "--message=x", "--cache-size=2",
+				"level=c" });
+		Assert.assertEquals(5, overlay.size());
+		overlays.run(overlay, new Runnable() {
+			public void run() {
+				Assert.assertEquals("c", overlays.get(level, base.getLevel()));
+				Assert.assertEquals("o", overlays.get(name, base.getName()));
+				Assert.assertEquals(2, overlays.getInt(cacheSize, base.getCacheSize()));
+				Assert.assertEquals("x", overlays.get("message", base.getMessage()));
+			}
+		});
+	}
+
+	@Test(expected = OptionsException.class)
+	public void testInvalidValue() throws OptionsException {
+		overlays.parse(new String[] { "--cache-size", "many" });
+	}
+
+	@Test(expected = OptionsException.class)
+	public void testUnknownOption() throws OptionsException {
+		overlays.parse(new String[] { "--unknown" });
+	}
+
+	@Test(expected = OptionsException.class)
+	public void testMissingValue() throws OptionsException {
+		overlays.parse(new String[] { "--cache-size" });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownId() {
+		overlays.id("unknown");
+	}
+
+}
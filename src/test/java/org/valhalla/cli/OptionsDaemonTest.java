@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class OptionsDaemonTest {
+
+	public static class CountingOptions {
+
+		static int calls;
+
+		@Option(longName = "count", defaultValue = "1")
+		public void setCount(int count) {
+			calls++;
+		}
+
+	}
+
+	private Path directory;
+	private OptionsDaemon daemon;
+
+	@Before
+	public void startDaemon() throws Exception {
+		directory = Files.createTempDirectory("options");
+		daemon = new OptionsDaemon(directory.resolve("daemon.sock"), new Class<?>[] { CompletionOptions.class });
+	}
+
+	@After
+	public void stopDaemon() throws IOException {
+		daemon.close();
+		Files.deleteIfExists(directory);
+	}
+
+	@Test
+	public void testCompleteOptionNames() {
+		Assert.assertEquals(Arrays.asList("--mode"), daemon.complete(new String[] { "--mo" }));
+		Assert.assertEquals(Arrays.asList("-OFAST", "-OSAFE"), daemon.complete(new String[] { "-O" }));
+		Assert.assertEquals(Arrays.asList("name="), daemon.complete(new String[] { "-v", "na" }));
+		Assert.assertEquals(
+				Arrays.asList("--file", "--mode", "--verbose", "-OFAST", "-OSAFE", "-f", "-m", "-v", "name="),
+				daemon.complete(new String[] { "" }));
+	}
+
+	@Test
+	public void testCompleteOptionValues() {
+		Assert.assertEquals(Arrays.asList("FAST", "SAFE"), daemon.complete(new String[] { "--mode", "" }));
+		Assert.assertEquals(Arrays.asList("SAFE"), daemon.complete(new String[] { "-m", "S" }));
+		Assert.assertEquals(Arrays.asList("--mode=FAST"), daemon.complete(new String[] { "--mode=F" }));
+		Assert.assertEquals(Collections.emptyList(), daemon.complete(new String[] { "--file", "/tm" }));
+		Assert.assertEquals(Collections.emptyList(), daemon.complete(new String[] { "name=" }));
+	}
+
+	@Test
+	public void testValidate() {
+		Assert.assertNull(daemon.validate(new String[] { "--mode", "FAST", "-OSAFE", "name=run", "file" }));
+		Assert.assertNotNull(daemon.validate(new String[] { "--mode", "SLOW" }));
+		Assert.assertNotNull(daemon.validate(new String[] { "--mode" }));
+		Assert.assertNotNull(daemon.validate(new String[] { "--unknown" }));
+	}
+
+	@Test
+	public void testValidateDoesNotCallOptionMethods() throws Exception {
+		OptionsDaemon counting = new OptionsDaemon(directory.resolve("counting.sock"),
+				new Class<?>[] { CountingOptions.class });
+		CountingOptions.calls = 0;
+		Assert.assertNull(counting.validate(new String[] { "--count", "3" }));
+		Assert.assertNotNull(counting.validate(new String[] { "--count", "three" }));
+		Assert.assertEquals(0, CountingOptions.calls);
+	}
+
+	@Test
+	public void testEscaping() {
+		StringBuilder escaped = new StringBuilder();
+		OptionsDaemon.escape("a\tb\nc\\d", escaped);
+		Assert.assertEquals("a\\tb\\nc\\\\d", escaped.toString());
+		Assert.assertEquals(Arrays.asList("complete", "a\tb\nc\\d", ""),
+				OptionsDaemon.split("complete\t" + escaped + "\t"));
+	}
+
+	@Test
+	public void testSocketRequests() throws IOException {
+		daemon.start();
+		SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+		try {
+			channel.connect(UnixDomainSocketAddress.of(daemon.getSocket()));
+			OutputStream out = Channels.newOutputStream(channel);
+			BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel),
+					StandardCharsets.UTF_8));
+			out.write("complete\t--mode\t\n".getBytes(StandardCharsets.UTF_8));
+			Assert.assertEquals("OK\tFAST\tSAFE", in.readLine());
+			out.write("validate\t-m\tFAST\n".getBytes(StandardCharsets.UTF_8));
+			Assert.assertEquals("OK", in.readLine());
+			out.write("validate\t-m\n".getBytes(StandardCharsets.UTF_8));
+			Assert.assertTrue(in.readLine().startsWith("ERROR\t"));
+			out.write("unknown\n".getBytes(StandardCharsets.UTF_8));
+			Assert.assertEquals("ERROR\tUnknown request unknown", in.readLine());
+		} finally {
+			channel.close();
+		}
+	}
+
+	@Test
+	public void testLongRequestIsRejected() throws IOException {
+		daemon.start();
+		SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+		try {
+			channel.connect(UnixDomainSocketAddress.of(daemon.getSocket()));
+			OutputStream out = Channels.newOutputStream(channel);
+			BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel),
+					StandardCharsets.UTF_8));
+			byte request[] = new byte[OptionsDaemon.MAX_REQUEST_LENGTH + 1];
+			Arrays.fill(request, (byte) 'x');
+			out.write(request);
+			Assert.assertTrue(in.readLine().startsWith("ERROR\t"));
+			Assert.assertNull("The connection was not closed", in.readLine());
+		} finally {
+			channel.close();
+		}
+		Assert.assertEquals("OK", daemon.answer("validate\t-m\tFAST"));
+	}
+
+}
@@ -0,0 +1,239 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class OptionsServerTest {
+
+	private Path directory;
+	private OptionsServer server;
+	private OptionsClient client;
+
+	@Before
+	public void startServer() throws Exception {
+		directory = Files.createTempDirectory("options");
+		server = new OptionsServer(directory.resolve("server.sock"));
+		server.register("simple", new Class<?>[] { Simple.class }, new OptionsServer.Command() {
+			public int execute(OptionsServer.Invocation invocation) throws Exception {
+				Simple simple = (Simple) invocation.getObjects()[0];
+				invocation.getOut().println("trace=" + simple.isNoValueOption() + " value=" + simple.getIntegerValue()
+						+ " args=" + Arrays.asList(invocation.getArguments()));
+				return simple.getIntegerValue();
+			}
+		});
+		server.register("environment", new Class<?>[] { Simple.class }, new OptionsServer.Command() {
+			public int execute(OptionsServer.Invocation invocation) throws Exception {
+				invocation.getOut().println(invocation.getWorkingDirectory());
+				invocation.getErr().println(invocation.getEnvironment().get("OPTIONS_TEST"));
+				return 0;
+			}
+		});
+		server.register("cat", new Class<?>[] { Simple.class }, new OptionsServer.Command() {
+			public int execute(OptionsServer.Invocation invocation) throws Exception {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(invocation.getIn(), "UTF-8"));
+				String line;
+				while ((line = reader.readLine()) != null) {
+					invocation.getOut().println(line.toUpperCase());
+				}
+				return 0;
+			}
+		});
+		server.register("help", new Class<?>[] { HelpOptions.class }, new OptionsServer.Command() {
+			public int execute(OptionsServer.Invocation invocation) throws Exception {
+				invocation.getOut().println("executed");
+				return 0;
+			}
+		});
+		server.start();
+		client = new OptionsClient(server.getSocket());
+	}
+
+	@After
+	public void stopServer() throws IOException {
+		server.close();
+		Assert.assertFalse("The socket file was not removed", Files.exists(server.getSocket()));
+		Files.deleteIfExists(directory);
+	}
+
+	private String execute(String command, String args[], int exitCode) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		Assert.assertEquals("The exit code is not as expected", exitCode, client.execute(command, args,
+				directory, Collections.<String, String> emptyMap(), new ByteArrayInputStream(new byte[0]), out, err));
+		return out.toString("UTF-8") + err.toString("UTF-8");
+	}
+
+	@Test
+	public void testArgumentsAreProcessed() throws IOException {
+		Assert.assertEquals("trace=true value=5 args=[file]" + System.lineSeparator(),
+				execute("simple", new String[] { "-T", "-E", "5", "file" }, 5));
+	}
+
+	@Test
+	public void testEachInvocationUsesNewObjects() throws IOException {
+		execute("simple", new String[] { "-T", "-E", "7" }, 7);
+		Assert.assertEquals("trace=false value=2 args=[]" + System.lineSeparator(),
+				execute("simple", new String[0], 2));
+	}
+
+	@Test
+	public void testInvalidOption() throws IOException {
+		String output = execute("simple", new String[] { "-E", "five" }, OptionsServer.ERROR_EXIT_CODE);
+		Assert.assertTrue("The error was not written: " + output, output.length() > 0);
+	}
+
+	@Test
+	public void testUnknownCommand() throws IOException {
+		Assert.assertEquals("Unknown command missing" + System.lineSeparator(),
+				execute("missing", new String[0], OptionsServer.ERROR_EXIT_CODE));
+	}
+
+	@Test
+	public void testWorkingDirectoryAndEnvironment() throws IOException {
+		Map<String, String> environment = new HashMap<String, String>();
+		environment.put("OPTIONS_TEST", "forwarded");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		Path workingDirectory = Paths.get("/tmp");
+		Assert.assertEquals(0, client.execute("environment", new String[0], workingDirectory, environment,
+				new ByteArrayInputStream(new byte[0]), out, err));
+		Assert.assertEquals("/tmp" + System.lineSeparator(), out.toString("UTF-8"));
+		Assert.assertEquals("forwarded" + System.lineSeparator(), err.toString("UTF-8"));
+	}
+
+	@Test
+	public void testHelpIsWrittenToTheClient() throws IOException {
+		String output = execute("help", new String[] { "--help" }, 0);
+		Assert.assertTrue(output, output.contains("--count"));
+		Assert.assertFalse("The command was executed: " + output, output.contains("executed"));
+	}
+
+	@Test
+	public void testLargeValues() throws IOException {
+		char chars[] = new char[100000];
+		Arrays.fill(chars, 'x');
+		String value = new String(chars);
+		Map<String, String> environment = new HashMap<String, String>();
+		environment.put("OPTIONS_TEST", value);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		Assert.assertEquals(0, client.execute("environment", new String[] { value }, directory, environment,
+				new ByteArrayInputStream(new byte[0]), out, err));
+		Assert.assertEquals(value + System.lineSeparator(), err.toString("UTF-8"));
+	}
+
+	@Test
+	public void testOversizedLengthIsRejected() throws IOException {
+		SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+		try {
+			channel.connect(UnixDomainSocketAddress.of(server.getSocket()));
+			DataOutputStream request = new DataOutputStream(LauncherProtocol.newOutputStream(channel));
+			request.writeInt(LauncherProtocol.MAGIC);
+			request.writeInt(Integer.MAX_VALUE);
+			request.flush();
+			Assert.assertEquals("The server did not close the connection", -1,
+					LauncherProtocol.newInputStream(channel).read());
+		} finally {
+			channel.close();
+		}
+		Assert.assertEquals("trace=false value=3 args=[]" + System.lineSeparator(),
+				execute("simple", new String[] { "-E", "3" }, 3));
+	}
+
+	@Test
+	public void testNegativeCountIsRejected() throws IOException {
+		SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+		try {
+			channel.connect(UnixDomainSocketAddress.of(server.getSocket()));
+			DataOutputStream request = new DataOutputStream(LauncherProtocol.newOutputStream(channel));
+			request.writeInt(LauncherProtocol.MAGIC);
+			LauncherProtocol.writeString(request, "simple");
+			LauncherProtocol.writeString(request, directory.toString());
+			request.writeInt(-1);
+			request.flush();
+			Assert.assertEquals("The server did not close the connection", -1,
+					LauncherProtocol.newInputStream(channel).read());
+		} finally {
+			channel.close();
+		}
+		Assert.assertEquals("trace=false value=3 args=[]" + System.lineSeparator(),
+				execute("simple", new String[] { "-E", "3" }, 3));
+	}
+
+	@Test
+	public void testStandardInput() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Assert.assertEquals(0, client.execute("cat", new String[0], directory,
+				Collections.<String, String> emptyMap(), new ByteArrayInputStream("one\ntwo\n".getBytes("UTF-8")),
+				out, new ByteArrayOutputStream()));
+		Assert.assertEquals("ONE" + System.lineSeparator() + "TWO" + System.lineSeparator(), out.toString("UTF-8"));
+	}
+
+	@Test
+	public void testConcurrentInvocations() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int idx = 0; idx < 32; idx++) {
+				final int value = idx;
+				results.add(executor.submit(new Callable<String>() {
+					public String call() throws Exception {
+						return execute("simple", new String[] { "-E", String.valueOf(value) }, value);
+					}
+				}));
+			}
+			for (int idx = 0; idx < results.size(); idx++) {
+				Assert.assertEquals("trace=false value=" + idx + " args=[]" + System.lineSeparator(), results.get(idx)
+						.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -21,6 +21,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.math.BigDecimal;
+
 import org.junit.Test;
 import org.valhalla.cli.Options;
 import org.valhalla.cli.OptionsException;
@@ -32,6 +34,21 @@ import org.valhalla.cli.annotations.Option;
  */
 public class OptionsTest {
 
+	public static class GenericOptions<T extends BigDecimal> {
+
+		private T value;
+
+		@Option(longName = "value")
+		public void setValue(T value) {
+			this.value = value;
+		}
+
+		@Option(longName = "values")
+		public void setValues(T values[]) {
+		}
+
+	}
+
 	/**
 	 * Test method for {@link
 	 * org.apache.commons.cli.Options#Options(java.lang.Class<?>[])}.
@@ -169,4 +186,12 @@ public class OptionsTest {
 		}
 	}
 
+	@Test
+	public void testGenericParameterTypes() throws OptionsException {
+		Options options = new Options(new Class<?>[] { GenericOptions.class });
+		GenericOptions<BigDecimal> generic = new GenericOptions<BigDecimal>();
+		options.processArguements(new String[] { "--value", "1.5" }, new Object[] { generic });
+		assertEquals(new BigDecimal("1.5"), generic.value);
+	}
+
 }
@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class ParseResultTest extends AbstractOptionsTestSupport {
+
+	private ConfigOptions object;
+	private Simple simple;
+	private Map<String, String> environment;
+
+	@Override
+	Class<?>[] getClasses() {
+		return new Class<?>[] { ConfigOptions.class, Simple.class };
+	}
+
+	@Before
+	public void createObjects() {
+		this.object = new ConfigOptions();
+		this.simple = new Simple();
+		this.environment = new HashMap<String, String>();
+	}
+
+	@Test
+	public void testParseDoesNotApplyValues() throws Exception {
+		ParseResult result = options.parse(new String[] { "--name", "admin", "file" }, environment, null);
+		Assert.assertArrayEquals(new String[] { "file" }, result.getRemaining());
+		Assert.assertNull(object.getName());
+		Assert.assertEquals(0, object.getCacheSizeCalls());
+		result.bind(new Object[] { object, simple });
+		Assert.assertEquals("admin", object.getName());
+		Assert.assertEquals(10, object.getCacheSize());
+		Assert.assertEquals(1, object.getCacheSizeCalls());
+		Assert.assertEquals(3, simple.getPrimitiveIntegerValue());
+	}
+
+	@Test
+	public void testUnknownFlagLeavesObjectsUntouched() throws Exception {
+		Options options = new Options(new Class<?>[] { FeatureOptions.class });
+		FeatureOptions features = new FeatureOptions();
+		try {
+			options.processArguements(new String[] { "--feature-verbose", "--feature-fast-path", "--feature-bogus" },
+					environment, new Object[] { features });
+			Assert.fail("The unknown flag was accepted");
+		} catch (OptionsException e) {
+			Assert.assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("bogus"));
+		}
+		Assert.assertFalse(features.isVerbose());
+		Assert.assertEquals(0, features.getFeatures().cardinality());
+		Assert.assertEquals(0, features.getExperiments().cardinality());
+	}
+
+	@Test
+	public void testCommandLineValueOverridesEnvironment() throws Exception {
+		environment.put("TEST_CACHE_SIZE", "30");
+		ConfigOptions other = new ConfigOptions();
+		options.parse(new String[] { "--cache-size", "40" }, environment, null).bind(
+				new Object[] { object, other, simple });
+		Assert.assertEquals(40, object.getCacheSize());
+		Assert.assertEquals("The option was applied more than once", 1, object.getCacheSizeCalls());
+		Assert.assertEquals(30, other.getCacheSize());
+	}
+
+	@Test
+	public void testConversionFailureLeavesObjectsUntouched() throws Exception {
+		try {
+			options.processArguements(new String[] { "--name", "admin", "--cache-size", "large" }, environment,
+					new Object[] { object, simple });
+			Assert.fail("The invalid value was accepted");
+		} catch (OptionsException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("cache-size"));
+		}
+		Assert.assertNull(object.getName());
+		Assert.assertEquals(0, object.getCacheSizeCalls());
+		Assert.assertEquals(0, simple.getPrimitiveIntegerValue());
+	}
+
+	@Test
+	public void testEnvironmentFailureLeavesObjectsUntouched() throws Exception {
+		environment.put("TEST_CACHE_SIZE", "large");
+		ParseResult result = options.parse(new String[] { "--name", "admin" }, environment, null);
+		try {
+			result.bind(new Object[] { object, simple });
+			Assert.fail("The invalid value was accepted");
+		} catch (OptionsException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("TEST_CACHE_SIZE"));
+		}
+		Assert.assertNull(object.getName());
+		Assert.assertEquals(0, simple.getPrimitiveIntegerValue());
+	}
+
+	@Test
+	public void testMissingInstanceLeavesObjectsUntouched() throws Exception {
+		ParseResult result = options.parse(new String[] { "-I", "7", "--name", "admin" }, environment, null);
+		try {
+			result.bind(new Object[] { simple });
+			Assert.fail("The missing instance was not reported");
+		} catch (OptionsException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("name"));
+		}
+		Assert.assertEquals(0, simple.getPrimitiveIntegerValue());
+	}
+
+	@Test
+	public void testParallelConversion() throws Exception {
+		options.setParallelConversion(true);
+		options.parse(new String[] { "--name", "admin", "-I", "7", "level=debug" }, environment, null).bind(
+				new Object[] { object, simple });
+		Assert.assertEquals("admin", object.getName());
+		Assert.assertEquals("debug", object.getLevel());
+		Assert.assertEquals(10, object.getCacheSize());
+		Assert.assertEquals(7, simple.getPrimitiveIntegerValue());
+	}
+
+	@Test
+	public void testBindTwice() throws Exception {
+		ParseResult result = options.parse(new String[] { "--dry-run" }, environment, null);
+		ConfigOptions other = new ConfigOptions();
+		result.bind(new Object[] { object, simple });
+		result.bind(new Object[] { other, simple });
+		Assert.assertTrue(object.isDryRun());
+		Assert.assertTrue(other.isDryRun());
+	}
+
+}
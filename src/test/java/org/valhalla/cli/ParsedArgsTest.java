@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class ParsedArgsTest extends AbstractOptionsTestSupport {
+
+	private ParsedArgsParser parser;
+
+	@Override
+	Class<?>[] getClasses() {
+		return new Class<?>[] { Simple.class };
+	}
+
+	@Before
+	public void createParser() throws OptionsException {
+		parser = new ParsedArgsParser(options);
+	}
+
+	@Test
+	public void testPrimitiveValues() throws Exception {
+		ParsedArgs parsed = parser.parse(new String[] { "-I", "23", "--lName=4000000000", "-S", "7", "--kName",
+				"0.25", "-H", "1.75", "--boolean", "false" });
+		Assert.assertEquals(23, parsed.getInt(parser.id("iName")));
+		Assert.assertEquals(4000000000L, parsed.getLong(parser.id("L")));
+		Assert.assertEquals(7, parsed.getInt(parser.id("sName")));
+		Assert.assertEquals(0.25, parsed.getDouble(parser.id("kName")), 0);
+		Assert.assertEquals(1.75, parsed.getDouble(parser.id("hName")), 0);
+		Assert.assertFalse(parsed.getBoolean(parser.id("boolean")));
+		Assert.assertTrue(parsed.isSet(parser.id("iName")));
+	}
+
+	@Test
+	public void testDefaultValues() throws Exception {
+		ParsedArgs parsed = parser.parse(new String[0]);
+		int id = parser.id("iName");
+		Assert.assertFalse(parsed.isSet(id));
+		Assert.assertEquals(3, parsed.getInt(id));
+		Assert.assertEquals(75, parsed.getInt(parser.id("aName")));
+		Assert.assertEquals(6.5, parsed.getDouble(parser.id("nName")), 0);
+		Assert.assertTrue(parsed.getBoolean(parser.id("zillow")));
+		Assert.assertFalse(parsed.getBoolean(parser.id("trace")));
+		Assert.assertEquals("default", parsed.getString(parser.id("default")));
+		Assert.assertNull(parsed.getString(parser.id("foo")));
+		Assert.assertEquals(new BigDecimal("12345678901234567890.1234567890"), parsed.get(parser.id("rName")));
+	}
+
+	@Test
+	public void testObjectValues() throws Exception {
+		ParsedArgs parsed = parser.parse(new String[] { "foo=bar", "--uName", "http://localhost/", "-T", "file" });
+		Assert.assertEquals("bar", parsed.getString(parser.id("foo")));
+		Assert.assertEquals(URI.create("http://localhost/"), parsed.get(parser.id("U")));
+		Assert.assertTrue(parsed.getBoolean(parser.id("trace")));
+		Assert.assertArrayEquals(new String[] { "file" }, parsed.getRemaining());
+	}
+
+	@Test
+	public void testMutableDefaultsAreNotShared() throws Exception {
+		int id = parser.id("oName");
+		AtomicInteger value = (AtomicInteger) parser.parse(new String[0]).get(id);
+		value.incrementAndGet();
+		Assert.assertEquals(101, ((AtomicInteger) parser.parse(new String[0]).get(id)).get());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWrongKind() throws Exception {
+		parser.parse(new String[0]).getString(parser.id("iName"));
+	}
+
+	@Test(expected = OptionsException.class)
+	public void testInvalidValue() throws Exception {
+		parser.parse(new String[] { "-I", "many" });
+	}
+
+	@Test(expected = OptionsException.class)
+	public void testUnknownOption() throws Exception {
+		parser.parse(new String[] { "--unknown" });
+	}
+
+	@Test
+	public void testRequiredOption() throws Exception {
+		ParsedArgsParser parser = new ParsedArgsParser(new Options(new Class<?>[] { EnvironmentOptions.class }));
+		try {
+			parser.parse(new String[0]);
+			Assert.fail("The missing required option was not reported");
+		} catch (OptionsException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("--user"));
+		}
+		Assert.assertEquals("admin", parser.parse(new String[] { "--user", "admin" }).getString(parser.id("user")));
+	}
+
+}
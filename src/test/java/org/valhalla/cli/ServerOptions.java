@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.util.concurrent.TimeUnit;
+
+import org.valhalla.cli.annotations.Option;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public interface ServerOptions {
+
+	@Option(shortName = 'p', longName = "port", defaultValue = "8080")
+	int port();
+
+	@Option(longName = "host", env = "TEST_SERVER_HOST", defaultValue = "localhost")
+	String host();
+
+	@Option(longName = "ratio", defaultValue = "0.5")
+	double ratio();
+
+	@Option(longName = "timeout")
+	long timeout();
+
+	@Option(longName = "verbose")
+	boolean verbose();
+
+	@Option(longName = "cache", defaultValue = "true")
+	boolean cache();
+
+	@Option(longName = "unit", defaultValue = "SECONDS")
+	TimeUnit unit();
+
+	default String address() {
+		return host() + ":" + port();
+	}
+
+}
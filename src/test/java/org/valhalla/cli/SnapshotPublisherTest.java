@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.valhalla.cli;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Claudio Corsi
+ *
+ */
+public class SnapshotPublisherTest {
+
+	private SnapshotPublisher publisher;
+	private Map<String, String> environment;
+
+	@Before
+	public void createPublisher() throws OptionsException {
+		this.publisher = new SnapshotPublisher(new Class<?>[] { ConfigOptions.class });
+		this.environment = new HashMap<String, String>();
+	}
+
+	@Test
+	public void testPublish() throws OptionsException {
+		Assert.assertNull(publisher.current());
+		OptionsSnapshot first = publisher.publish(new String[] { "--name", "first", "file" }, environment, null);
+		Assert.assertSame(first, publisher.current());
+		Assert.assertArrayEquals(new String[] { "file" }, first.getRemaining());
+		OptionsSnapshot second = publisher.publish(new String[] { "--name", "second" }, environment, null);
+		Assert.assertSame(second, publisher.current());
+		Assert.assertEquals("first", first.get(ConfigOptions.class).getName());
+		Assert.assertEquals("second", second.get(ConfigOptions.class).getName());
+		Assert.assertEquals(10, second.get(ConfigOptions.class).getCacheSize());
+	}
+
+	@Test
+	public void testFailedPublishKeepsSnapshot() throws OptionsException {
+		OptionsSnapshot first = publisher.publish(new String[] { "--cache-size", "20" }, environment, null);
+		try {
+			publisher.publish(new String[] { "--name", "second", "--cache-size", "many" }, environment, null);
+			Assert.fail("The invalid value was accepted");
+		} catch (OptionsException e) {
+			// expected
+		}
+		Assert.assertSame(first, publisher.current());
+		Assert.assertEquals(20, first.get(ConfigOptions.class).getCacheSize());
+		Assert.assertNull(first.get(ConfigOptions.class).getName());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownClass() throws OptionsException {
+		publisher.publish(new String[0], environment, null).get(Simple.class);
+	}
+
+	@Test
+	public void testWatcherPublishesSnapshots() throws Exception {
+		Path directory = Files.createTempDirectory("options");
+		Path file = directory.resolve("options.properties");
+		ConfigWatcher watcher = new ConfigWatcher(publisher, file);
+		try {
+			Files.write(file, "cache-size=20\nname=first\n".getBytes(StandardCharsets.UTF_8));
+			Assert.assertArrayEquals(new String[] { "file" }, watcher.process(new String[] { "file" }, environment));
+			OptionsSnapshot first = publisher.current();
+			Assert.assertEquals("first", first.get(ConfigOptions.class).getName());
+			Assert.assertFalse(watcher.reload());
+			Assert.assertSame(first, publisher.current());
+			Files.write(file, "cache-size=20\nname=second\n".getBytes(StandardCharsets.UTF_8));
+			Assert.assertTrue(watcher.reload());
+			ConfigOptions second = publisher.current().get(ConfigOptions.class);
+			Assert.assertEquals("second", second.getName());
+			Assert.assertEquals(20, second.getCacheSize());
+			Assert.assertArrayEquals(new String[] { "file" }, publisher.current().getRemaining());
+			Assert.assertEquals("first", first.get(ConfigOptions.class).getName());
+		} finally {
+			watcher.close();
+			Files.deleteIfExists(file);
+			Files.deleteIfExists(directory);
+		}
+	}
+
+	@Test
+	public void testReadersSeeConsistentSnapshots() throws Exception {
+		publisher.publish(new String[] { "--cache-size", "0", "--name", "0" }, environment, null);
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicReference<String> failure = new AtomicReference<String>();
+		Thread reader = new Thread(new Runnable() {
+			public void run() {
+				while (running.get()) {
+					ConfigOptions options = publisher.current().get(ConfigOptions.class);
+					if (!String.valueOf(options.getCacheSize()).equals(options.getName())) {
+						failure.set(options.getCacheSize() + " != " + options.getName());
+						return;
+					}
+				}
+			}
+		});
+		reader.start();
+		try {
+			for (int idx = 1; idx < 2000; idx++) {
+				String value = String.valueOf(idx);
+				publisher.publish(new String[] { "--cache-size", value, "--name", value },
+						Collections.<String, String> emptyMap(), null);
+			}
+		} finally {
+			running.set(false);
+			reader.join();
+		}
+		Assert.assertNull(failure.get());
+	}
+
+}
@@ -16,6 +16,8 @@
  */
 package org.valhalla.cli;
 
+import java.io.StringWriter;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -77,6 +79,42 @@ public class UsageTests extends AbstractOptionsTestSupport {
 				usageMessage);
 	}
 	
+	@Test
+	public void testUsageAppendable() throws Exception {
+		setUpAndCreateOptions(new Class<?>[] { OptionImplOne.class,
+				OptionImplTwo.class, OptionImplThree.class });
+		StringWriter writer = new StringWriter();
+		this.options.usage(MainClass.class, "simple command line string", writer);
+		Assert.assertEquals("Usage written to the writer is incorrect",
+				this.options.usage(MainClass.class, "simple command line string"),
+				writer.toString());
+	}
+
+	@Test
+	public void testUsageWidth() throws Exception {
+		setUpAndCreateOptions(new Class<?>[] { OptionImplOne.class,
+				OptionImplThree.class });
+		String expectedUsageMessage = "usage: java org.valhalla.cli.MainClass simple command line string"
+				+ lineSep
+				+ "  -A    This is an A option"
+				+ lineSep
+				+ "  -B    This is option B that will contain a description"
+				+ lineSep
+				+ "    that will span multiple lines to test that the usage"
+				+ lineSep
+				+ "    mechanism will properly display this information on the"
+				+ lineSep
+				+ "    screen"
+				+ lineSep;
+		// Render twice to check the cached option lines
+		for (int idx = 0; idx < 2; idx++) {
+			StringBuilder usageMessage = new StringBuilder();
+			this.options.usage(MainClass.class, "simple command line string", 60, usageMessage);
+			Assert.assertEquals("Usage string is incorrect", expectedUsageMessage,
+					usageMessage.toString());
+		}
+	}
+
 	private void setUpAndCreateOptions(Class<?>[] classes) throws OptionsException {
 		optionClasses = classes;
 		createOptions();